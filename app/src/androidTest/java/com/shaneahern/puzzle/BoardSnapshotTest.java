@@ -0,0 +1,99 @@
+package com.shaneahern.puzzle;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.PuzzleView.Tile;
+
+// in the package of the snapshot, which is package private to the view and render thread
+public class BoardSnapshotTest {
+
+	private static final float DELTA = 0.001f;
+	private static final long START = 1000000000L;
+	private static final long DURATION = 200000000L;
+
+	private static Tile[] createTiles(int count) {
+		Tile[] tiles = new Tile[count];
+		for (int i=0; i < count; i++) {
+			tiles[i] = new Tile(null);
+		}
+		return tiles;
+	}
+
+	@Test
+	public void testCopiesBoard() {
+		int[][] positions = { { 1, 2, 3 }, { 4, 0, 5 }, { 6, 7, 8 } };
+		Tile[] tiles = createTiles(9);
+		tiles[2].deltaX = 12;
+		tiles[2].deltaY = -3;
+		Viewport viewport = new Viewport(300, 300, 300, 300, 4f);
+		viewport.zoom(2f, 150, 150);
+		BoardSnapshot snapshot = BoardSnapshot.capture(positions, tiles, null, null, 100, 100, viewport);
+
+		// later changes on the UI thread do not show in the snapshot
+		positions[0][1] = 0;
+		tiles[2].deltaX = 0;
+		viewport.reset();
+
+		assertEquals(3, snapshot.getRows());
+		assertEquals(3, snapshot.getCols());
+		assertEquals(2, snapshot.getTileId(0, 1));
+		assertEquals(0, snapshot.getTileId(1, 1));
+		assertEquals(12, snapshot.getOffsetX(0, 1, START));
+		assertEquals(-3, snapshot.getOffsetY(0, 1, START));
+		assertEquals(0, snapshot.getOffsetX(0, 0, START));
+		assertEquals(2f, snapshot.getScale(), DELTA);
+		assertEquals(75f, snapshot.getViewportX(), DELTA);
+		assertNull(snapshot.getTileSet());
+		assertFalse(snapshot.isAnimating(START));
+		snapshot.release();
+	}
+
+	@Test
+	public void testInterpolatesAnimation() {
+		int[][] positions = { { 1, 0 }, { 2, 3 } };
+		Tile[] tiles = createTiles(4);
+		Tile tile = tiles[1];
+		tile.animating = true;
+		tile.startX = 40;
+		tile.startY = 0;
+		tile.targetX = 100;
+		tile.targetY = -20;
+		tile.animationStartNanos = START;
+		tile.animationDurationNanos = DURATION;
+		BoardSnapshot snapshot = BoardSnapshot.capture(positions, tiles, null, null, 100, 100, new Viewport(200, 200, 200, 200, 1f));
+
+		assertEquals(40, snapshot.getOffsetX(0, 0, START));
+		assertEquals(0, snapshot.getOffsetY(0, 0, START));
+		assertTrue(snapshot.isAnimating(START));
+
+		// decelerating, three quarters of the way at half time
+		assertEquals(85, snapshot.getOffsetX(0, 0, START + DURATION / 2));
+		assertEquals(-15, snapshot.getOffsetY(0, 0, START + DURATION / 2));
+		assertTrue(snapshot.isAnimating(START + DURATION / 2));
+
+		// held at the target once the animation ends, and before it starts
+		assertEquals(100, snapshot.getOffsetX(0, 0, START + DURATION));
+		assertEquals(-20, snapshot.getOffsetY(0, 0, START + 2 * DURATION));
+		assertEquals(40, snapshot.getOffsetX(0, 0, START - DURATION));
+		assertFalse(snapshot.isAnimating(START + DURATION));
+
+		// tiles that are not animating keep their touch offset
+		assertEquals(0, snapshot.getOffsetX(1, 0, START + DURATION / 2));
+		snapshot.release();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReleasedOncePerHold() {
+		BoardSnapshot snapshot = BoardSnapshot.capture(new int[][] { { 1, 0 } }, createTiles(2), null, null, 100, 100, new Viewport(200, 100, 200, 100, 1f));
+		snapshot.retain();
+		snapshot.release();
+		snapshot.release();
+		snapshot.release();
+	}
+}
@@ -0,0 +1,106 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.solver.AStarSolver;
+import com.shaneahern.puzzle.solver.BucketQueue;
+import com.shaneahern.puzzle.solver.Heuristics;
+import com.shaneahern.puzzle.solver.IdaStarSolver;
+import com.shaneahern.puzzle.solver.LongIntHashMap;
+import com.shaneahern.puzzle.solver.OffHeapNodeStore;
+import com.shaneahern.puzzle.solver.PuzzleInstance;
+import com.shaneahern.puzzle.solver.Solution;
+
+public class AStarTest {
+
+	@Test
+	public void testBucketQueueOrder() {
+		BucketQueue queue = new BucketQueue();
+		queue.push(1, 20, 5);
+		queue.push(2, 18, 3);
+		queue.push(3, 18, 9);
+		queue.push(4, 150, 140);
+		queue.push(5, 18, 9);
+		int[] expected = { 5, 3, 2, 1, 4 };
+		for (int slot : expected) {
+			assertEquals(slot, queue.pop());
+		}
+		assertEquals(140, queue.getPoppedG());
+		assertTrue(queue.isEmpty());
+		assertEquals(5, queue.getMaxSize());
+	}
+
+	@Test
+	public void testLongIntHashMap() {
+		LongIntHashMap map = new LongIntHashMap(4, -1);
+		assertEquals(-1, map.get(0));
+		assertEquals(-1, map.put(0, 7));
+		assertEquals(7, map.get(0));
+		Random random = new Random(50);
+		long[] keys = new long[10000];
+		for (int i=0; i < keys.length; i++) {
+			keys[i] = random.nextLong() | 1;
+			map.put(keys[i], i);
+		}
+		assertEquals(keys.length + 1, map.size());
+		for (int i=0; i < keys.length; i++) {
+			assertEquals(i, map.get(keys[i]));
+		}
+		assertEquals(keys.length - 1, map.put(keys[keys.length - 1], 3));
+		assertEquals(-1, map.get(2));
+		map.clear();
+		assertEquals(-1, map.get(keys[0]));
+		assertEquals(0, map.size());
+	}
+
+	@Test
+	public void testMatchesIdaStar3x3() {
+		Random random = new Random(12);
+		AStarSolver astar = new AStarSolver(3, 3, Heuristics.create(Heuristics.MANHATTAN, 3, 3));
+		IdaStarSolver ida = new IdaStarSolver(3, 3);
+		for (int i=0; i < 30; i++) {
+			PuzzleInstance instance = PuzzleInstance.randomPermutation("p" + i, 3, 3, random);
+			Solution solution = astar.solve(instance);
+			assertTrue(instance.verify(solution.getMoves()));
+			assertEquals(ida.solve(instance).getLength(), solution.getLength());
+			assertTrue(astar.getStored() <= 181440);
+		}
+		assertFalse(astar.solve(PuzzleInstance.parse("8 6 7 2 5 4 3 0 1", 3, 3, "hard"), 10).isSolved());
+	}
+
+	@Test
+	public void testDuplicateDetection4x4() {
+		// the same boards with nodes off the heap, A* expands each board once where IDA* expands it again and again
+		Random random = new Random(60);
+		OffHeapNodeStore store = new OffHeapNodeStore(64L << 20, new File(System.getProperty("java.io.tmpdir")), 1 << 20);
+		AStarSolver astar = new AStarSolver(4, 4, Heuristics.create(Heuristics.LINEAR_CONFLICT, 4, 4), store);
+		IdaStarSolver ida = new IdaStarSolver(4, 4, Heuristics.create(Heuristics.LINEAR_CONFLICT, 4, 4));
+		long astarNodes = 0;
+		long idaNodes = 0;
+		long duplicates = 0;
+		for (int i=0; i < 8; i++) {
+			PuzzleInstance instance = PuzzleInstance.randomWalk("w" + i, 4, 4, 80, random);
+			Solution solution = astar.solve(instance);
+			Solution reference = ida.solve(instance);
+			assertTrue(instance.verify(solution.getMoves()));
+			assertEquals(reference.getLength(), solution.getLength());
+			astarNodes += solution.getNodes();
+			idaNodes += reference.getNodes();
+			duplicates += astar.getDuplicates();
+			System.out.println(String.format("%s length %d expanded %d generated %d duplicates %d improved %d stale %d stored %d max open %d",
+					instance.getId(), solution.getLength(), solution.getNodes(), astar.getGenerated(), astar.getDuplicates(),
+					astar.getImproved(), astar.getStale(), astar.getStored(), astar.getMaxOpen()));
+		}
+		store.close();
+		assertTrue(duplicates > 0);
+		assertTrue(astarNodes < idaNodes);
+	}
+}
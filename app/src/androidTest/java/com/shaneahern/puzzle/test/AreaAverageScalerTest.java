@@ -0,0 +1,103 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shaneahern.puzzle.image.AreaAverageScaler;
+
+public class AreaAverageScalerTest {
+
+	private ExecutorService mExecutor;
+
+	@Before
+	public void setUp() throws Exception {
+		mExecutor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		mExecutor.shutdownNow();
+	}
+
+	static int[] noise(int width, int height) {
+		int[] pixels = new int[width * height];
+		int seed = 12345;
+		for (int i=0; i < pixels.length; i++) {
+			seed = seed * 1103515245 + 12345;
+			pixels[i] = 0xff000000 | (seed >>> 8);
+		}
+		return pixels;
+	}
+
+	static AreaAverageScaler.RowSource rowSource(final int[] pixels, final int width) {
+		return new AreaAverageScaler.RowSource() {
+			public void readRows(int firstRow, int numRows, int[] dst) throws IOException {
+				System.arraycopy(pixels, firstRow * width, dst, 0, numRows * width);
+			}
+		};
+	}
+
+	@Test
+	public void testUniformImageStaysUniform() throws InterruptedException {
+		int[] src = new int[300 * 200];
+		Arrays.fill(src, 0xff336699);
+		int[] dst = new int[70 * 70];
+		new AreaAverageScaler(null, 1).scale(src, 300, 50, 0, 200, 200, dst, 70, 70);
+		for (int pixel : dst) {
+			assertEquals(0xff336699, pixel);
+		}
+	}
+
+	@Test
+	public void testHalfSizeAveragesBlocks() throws InterruptedException {
+		int[] src = {
+				0xff000000, 0xff0000ff, 0xff00ff00, 0xff00ff00,
+				0xff000000, 0xff0000ff, 0xff00ff00, 0xff00ff00,
+				0xffff0000, 0xffff0000, 0xff101010, 0xff303030,
+				0xffff0000, 0xffff0000, 0xff303030, 0xff101010 };
+		int[] dst = new int[4];
+		new AreaAverageScaler(null, 1).scale(src, 4, 0, 0, 4, 4, dst, 2, 2);
+		// 0xff / 2 rounds up to 0x80
+		assertArrayEquals(new int[] { 0xff000080, 0xff00ff00, 0xffff0000, 0xff202020 }, dst);
+	}
+
+	@Test
+	public void testCropsBeforeScaling() throws InterruptedException {
+		// left half black, right half white, cropping the right half gives white only
+		int[] src = new int[8 * 4];
+		for (int y=0; y < 4; y++) {
+			for (int x=0; x < 8; x++) {
+				src[y * 8 + x] = x < 4 ? 0xff000000 : 0xffffffff;
+			}
+		}
+		int[] dst = new int[4];
+		new AreaAverageScaler(null, 1).scale(src, 8, 4, 0, 4, 4, dst, 2, 2);
+		assertArrayEquals(new int[] { 0xffffffff, 0xffffffff, 0xffffffff, 0xffffffff }, dst);
+	}
+
+	@Test
+	public void testStripsAndThreadsMatchInMemory() throws IOException, InterruptedException {
+		// non integer scale factor, so strips share source rows at their edges
+		int[] src = noise(333, 333);
+		int[] expected = new int[97 * 97];
+		new AreaAverageScaler(null, 1).scale(src, 333, 0, 0, 333, 333, expected, 97, 97);
+
+		int[] strips = new int[97 * 97];
+		new AreaAverageScaler(null, 1, 7).scale(rowSource(src, 333), 333, 333, strips, 97, 97);
+		assertArrayEquals(expected, strips);
+
+		int[] parallel = new int[97 * 97];
+		new AreaAverageScaler(mExecutor, 4, 16).scale(rowSource(src, 333), 333, 333, parallel, 97, 97);
+		assertArrayEquals(expected, parallel);
+	}
+}
@@ -0,0 +1,136 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shaneahern.puzzle.solver.DistanceFile;
+import com.shaneahern.puzzle.solver.ExternalBfs;
+import com.shaneahern.puzzle.solver.Heuristics;
+import com.shaneahern.puzzle.solver.IdaStarSolver;
+import com.shaneahern.puzzle.solver.PackedBoard;
+import com.shaneahern.puzzle.solver.PuzzleInstance;
+
+public class ExternalBfsTest {
+
+	// small enough that every layer past the first few is sorted in several runs and merged in several passes
+	private static final int BUFFER_STATES = 4000;
+
+	private File mDir;
+
+	@Before
+	public void setUp() throws IOException {
+		mDir = File.createTempFile("bfs", "");
+		mDir.delete();
+		mDir.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = mDir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		mDir.delete();
+	}
+
+	@Test
+	public void testFullSearch3x3() throws IOException {
+		ExternalBfs bfs = new ExternalBfs(3, 3, null, mDir, BUFFER_STATES);
+		long[] counts = bfs.run();
+		assertTrue(bfs.getMergePasses() > 0);
+
+		// half of the 9! boards are reachable, the hardest two take 31 moves
+		assertEquals(31, counts.length - 1);
+		assertEquals(2, counts[31]);
+		assertEquals(181440, sum(counts));
+
+		DistanceFile distances = DistanceFile.open(bfs.getDistanceFile());
+		assertArrayEquals(counts, distances.getHistogram());
+		assertTrue(bfs.getHistogramFile().length() > 0);
+		assertFalse(new File(mDir, "layer-0.bin").exists());
+
+		// sampled distances agree with the length of an optimal solution
+		final Map<Long, Integer> sampled = new HashMap<Long, Integer>();
+		final Random random = new Random(47);
+		distances.forEach(new DistanceFile.Visitor() {
+			@Override
+			public void visit(long state, int distance) {
+				if (random.nextInt(4000) == 0 || distance == 31) {
+					sampled.put(state, distance);
+				}
+			}
+		});
+		IdaStarSolver solver = new IdaStarSolver(3, 3, Heuristics.create(Heuristics.MAX, 3, 3));
+		int[] tiles = new int[9];
+		for (Map.Entry<Long, Integer> entry : sampled.entrySet()) {
+			PackedBoard.unpack(entry.getKey(), tiles);
+			assertEquals(entry.getValue().intValue(), solver.solve(new PuzzleInstance("s", 3, 3, tiles.clone())).getLength());
+		}
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		long[] expected = new ExternalBfs(3, 3, null, mDir, BUFFER_STATES).run();
+		tearDown();
+		mDir.mkdirs();
+
+		ExternalBfs first = new ExternalBfs(3, 3, null, mDir, BUFFER_STATES);
+		assertFalse(first.runLayers(12));
+		assertEquals(12, first.getDepth());
+		// a run stopped part way through a layer leaves files that the next run clears away
+		new File(mDir, "run-99.bin").createNewFile();
+		new File(mDir, "layer-13.bin.tmp").createNewFile();
+
+		ExternalBfs second = new ExternalBfs(3, 3, null, mDir, BUFFER_STATES);
+		assertArrayEquals(expected, second.run());
+		assertFalse(new File(mDir, "run-99.bin").exists());
+		assertTrue(second.isComplete());
+	}
+
+	@Test
+	public void testPattern() throws IOException {
+		ExternalBfs bfs = new ExternalBfs(3, 3, new int[] { 1, 2, 3 }, mDir, BUFFER_STATES);
+		long[] counts = bfs.run();
+		// every placement of the empty tile and three tiles, with the others alike there is no parity to keep
+		assertEquals(9 * 8 * 7 * 6, sum(counts));
+
+		// the distance of a placement never exceeds the length of a solution of a board with that placement
+		final Map<Long, Integer> distances = new HashMap<Long, Integer>();
+		DistanceFile.open(bfs.getDistanceFile()).forEach(new DistanceFile.Visitor() {
+			@Override
+			public void visit(long state, int distance) {
+				distances.put(state, distance);
+			}
+		});
+		Random random = new Random(5);
+		IdaStarSolver solver = new IdaStarSolver(3, 3, Heuristics.create(Heuristics.MAX, 3, 3));
+		for (int i=0; i < 20; i++) {
+			PuzzleInstance instance = PuzzleInstance.randomPermutation("p" + i, 3, 3, random);
+			int distance = distances.get(bfs.abstractState(instance.getTiles()));
+			assertTrue(distance <= solver.solve(instance).getLength());
+		}
+	}
+
+	private static long sum(long[] counts) {
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,105 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shaneahern.puzzle.metrics.Clock;
+import com.shaneahern.puzzle.metrics.FrameReport;
+import com.shaneahern.puzzle.metrics.FrameTracer;
+
+public class FrameTracerTest {
+
+	private static final long MS = 1000000L;
+	private static final long BUDGET = 16 * MS;
+	
+	private FakeClock mClock;
+	private FrameTracer mTracer;
+	
+	static class FakeClock implements Clock {
+		long now;
+		
+		@Override
+		public long nanoTime() {
+			return now;
+		}
+	}
+	
+	@Before
+	public void setUp() throws Exception {
+		mClock = new FakeClock();
+		mTracer = new FrameTracer(mClock, BUDGET);
+	}
+	
+	private void drawFrame(long startTime, long drawTime, int tiles) {
+		mClock.now = startTime;
+		long frame = mTracer.beginFrame();
+		mClock.now += drawTime;
+		mTracer.endFrame(frame, tiles);
+	}
+
+	@Test
+	public void testJankyFrames() {
+		for (int i=0; i < 10; i++) {
+			drawFrame(i * BUDGET, 2 * MS, 15);
+		}
+		drawFrame(10 * BUDGET, 20 * MS, 15);
+		
+		FrameReport report = mTracer.getReport();
+		assertEquals(11, report.totalFrames);
+		assertEquals(1, report.jankyFrames);
+		assertEquals(2 * MS, report.p50FrameNanos);
+		assertEquals(20 * MS, report.p99FrameNanos);
+		assertEquals(15f, report.meanTilesDrawn, 0.001);
+	}
+	
+	@Test
+	public void testDroppedFramesPerAnimation() {
+		mTracer.beginAnimation();
+		drawFrame(0, MS, 4);
+		drawFrame(BUDGET, MS, 4);
+		// two frames missed
+		drawFrame(4 * BUDGET, MS, 4);
+		mTracer.endAnimation();
+		
+		// frames drawn outside of an animation never count as dropped
+		drawFrame(100 * BUDGET, MS, 4);
+		
+		mTracer.beginAnimation();
+		drawFrame(200 * BUDGET, MS, 4);
+		drawFrame(201 * BUDGET, MS, 4);
+		mTracer.endAnimation();
+		
+		FrameReport report = mTracer.getReport();
+		assertEquals(2, report.droppedFramesPerAnimation.length);
+		assertEquals(2, report.droppedFramesPerAnimation[0]);
+		assertEquals(0, report.droppedFramesPerAnimation[1]);
+		assertEquals(2, report.getDroppedFrames());
+	}
+	
+	@Test
+	public void testAnimationTickIntervals() {
+		mTracer.beginAnimation();
+		for (int i=0; i < 100; i++) {
+			mClock.now = i * 5 * MS;
+			mTracer.animationTick();
+		}
+		mClock.now += 50 * MS;
+		mTracer.animationTick();
+		mTracer.endAnimation();
+		
+		FrameReport report = mTracer.getReport();
+		assertEquals(5 * MS, report.p50TickIntervalNanos);
+		assertEquals(5 * MS, report.p99TickIntervalNanos);
+	}
+	
+	@Test
+	public void testEmptyReport() {
+		FrameReport report = mTracer.getReport();
+		assertEquals(0, report.totalFrames);
+		assertEquals(0, report.p99FrameNanos);
+		assertEquals(0, report.getDroppedFrames());
+	}
+}
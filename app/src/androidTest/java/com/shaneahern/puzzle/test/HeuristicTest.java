@@ -0,0 +1,140 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.solver.Heuristic;
+import com.shaneahern.puzzle.solver.Heuristics;
+import com.shaneahern.puzzle.solver.IdaStarSolver;
+import com.shaneahern.puzzle.solver.PuzzleInstance;
+import com.shaneahern.puzzle.solver.Solution;
+import com.shaneahern.puzzle.solver.WalkingDistanceHeuristic;
+
+public class HeuristicTest {
+
+	private static final String[] NAMES = { Heuristics.MANHATTAN, Heuristics.LINEAR_CONFLICT, Heuristics.WALKING_DISTANCE, Heuristics.MAX };
+
+	@Test
+	public void testIncrementalMatchesInit() {
+		for (String name : NAMES) {
+			for (int[] size : new int[][] { { 3, 3 }, { 4, 4 }, { 3, 4 } }) {
+				int rows = size[0];
+				int cols = size[1];
+				Heuristic incremental = Heuristics.create(name, rows, cols);
+				Heuristic fresh = Heuristics.create(name, rows, cols);
+				int[] tiles = PuzzleInstance.randomPermutation("p", rows, cols, new Random(3)).getTiles();
+				incremental.init(tiles);
+				int blank = 0;
+				while (tiles[blank] != 0) {
+					blank++;
+				}
+				Random random = new Random(4);
+				int[] undoTiles = new int[200];
+				int[] undoFrom = new int[200];
+				int[] undoTo = new int[200];
+				for (int i=0; i < 200; i++) {
+					int next;
+					do {
+						int direction = random.nextInt(4);
+						next = direction == 0 ? blank - cols : direction == 1 ? blank + cols : direction == 2 ? blank - 1 : blank + 1;
+					} while (next < 0 || next >= tiles.length || (next / cols != blank / cols && next % cols != blank % cols));
+					int tile = tiles[next];
+					tiles[blank] = tile;
+					tiles[next] = 0;
+					undoTiles[i] = tile;
+					undoFrom[i] = next;
+					undoTo[i] = blank;
+					assertEquals(name, fresh.init(tiles), incremental.applyMove(tile, next, blank));
+					blank = next;
+				}
+				// take every move back, the estimate returns to the estimate of each earlier board
+				for (int i=199; i >= 0; i--) {
+					tiles[undoFrom[i]] = undoTiles[i];
+					tiles[undoTo[i]] = 0;
+					assertEquals(name, fresh.init(tiles), incremental.undoMove(undoTiles[i], undoFrom[i], undoTo[i]));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRestoreMatchesInit() {
+		for (String name : NAMES) {
+			Heuristic heuristic = Heuristics.create(name, 4, 4);
+			assertTrue(name, heuristic.getStateBits() <= 32);
+			Random random = new Random(5);
+			int[][] boards = new int[20][];
+			int[] states = new int[boards.length];
+			int[] estimates = new int[boards.length];
+			for (int i=0; i < boards.length; i++) {
+				boards[i] = PuzzleInstance.randomPermutation("p" + i, 4, 4, random).getTiles();
+				estimates[i] = heuristic.init(boards[i]);
+				states[i] = heuristic.save();
+			}
+			// restored out of order, as A* pops nodes, each state gives the estimate of its own board
+			for (int i=boards.length - 1; i >= 0; i -= 2) {
+				assertEquals(name, estimates[i], heuristic.restore(boards[i], states[i]));
+			}
+			for (int i=0; i < boards.length; i += 2) {
+				assertEquals(name, estimates[i], heuristic.restore(boards[i], states[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testNeverOverestimates() {
+		Random random = new Random(11);
+		IdaStarSolver solver = new IdaStarSolver(3, 3, Heuristics.create(Heuristics.MAX, 3, 3));
+		for (int i=0; i < 100; i++) {
+			PuzzleInstance instance = PuzzleInstance.randomPermutation("p" + i, 3, 3, random);
+			int length = solver.solve(instance).getLength();
+			int manhattan = Heuristics.create(Heuristics.MANHATTAN, 3, 3).init(instance.getTiles());
+			int linearConflict = Heuristics.create(Heuristics.LINEAR_CONFLICT, 3, 3).init(instance.getTiles());
+			int walkingDistance = Heuristics.create(Heuristics.WALKING_DISTANCE, 3, 3).init(instance.getTiles());
+			assertTrue(manhattan <= linearConflict);
+			assertTrue(linearConflict <= length);
+			assertTrue(walkingDistance <= length);
+		}
+	}
+
+	@Test
+	public void testWalkingDistanceTableSize() {
+		// number of row states of the 4x4 puzzle, as counted in the original description of walking distance
+		assertEquals(2 * 24964, new WalkingDistanceHeuristic(4, 4).getTableSize());
+	}
+
+	@Test
+	public void testPruningPower() {
+		// the same boards solved with each heuristic, stronger heuristics find equally short solutions in fewer nodes
+		Random random = new Random(8);
+		PuzzleInstance[] instances = new PuzzleInstance[10];
+		for (int i=0; i < instances.length; i++) {
+			instances[i] = PuzzleInstance.randomWalk("w" + i, 4, 4, 60, random);
+		}
+		long[] nodes = new long[NAMES.length];
+		int[] lengths = new int[instances.length];
+		for (int h=0; h < NAMES.length; h++) {
+			IdaStarSolver solver = new IdaStarSolver(4, 4, Heuristics.create(NAMES[h], 4, 4));
+			long elapsed = 0;
+			for (int i=0; i < instances.length; i++) {
+				Solution solution = solver.solve(instances[i]);
+				assertTrue(instances[i].verify(solution.getMoves()));
+				if (h == 0) {
+					lengths[i] = solution.getLength();
+				}
+				assertEquals(lengths[i], solution.getLength());
+				nodes[h] += solution.getNodes();
+				elapsed += solution.getElapsedNanos();
+			}
+			System.out.println(String.format("%-18s %12d nodes %8.1f ms", NAMES[h], nodes[h], elapsed / 1e6));
+		}
+		assertTrue(nodes[1] < nodes[0]);
+		assertTrue(nodes[2] < nodes[0]);
+		assertTrue(nodes[3] <= nodes[1] && nodes[3] <= nodes[2]);
+	}
+}
@@ -0,0 +1,65 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.metrics.DefaultMetricsRegistry;
+import com.shaneahern.puzzle.metrics.MetricsFileExporter;
+
+public class MetricsFileExporterTest {
+
+	private static String readFirstLine(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			return reader.readLine();
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testRotatesPastLimit() throws IOException {
+		File file = File.createTempFile("metrics", ".csv");
+		File rotated = new File(file.getPath() + ".1");
+		try {
+			DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+			registry.counter("test.count").inc();
+			MetricsFileExporter exporter = new MetricsFileExporter(file, "1.0", 100);
+
+			exporter.export(registry);
+			long oneExport = file.length();
+			assertTrue(oneExport > 0);
+			assertFalse(rotated.exists());
+
+			// appended while within the limit
+			exporter.export(registry);
+			long twoExports = file.length();
+			assertTrue(twoExports > 100);
+			assertFalse(rotated.exists());
+
+			// past the limit the file is moved aside and started again with a header
+			exporter.export(registry);
+			assertTrue(rotated.exists());
+			assertEquals(oneExport, file.length());
+			assertEquals("timestamp,build,metric,unit,count,sum,min,p50,p95,p99,max", readFirstLine(file));
+
+			// the older rotated file is replaced
+			exporter.export(registry);
+			exporter.export(registry);
+			assertEquals(twoExports, rotated.length());
+			assertEquals(oneExport, file.length());
+		} finally {
+			file.delete();
+			rotated.delete();
+		}
+	}
+}
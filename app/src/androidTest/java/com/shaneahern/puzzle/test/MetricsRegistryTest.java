@@ -0,0 +1,44 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.metrics.DefaultMetricsRegistry;
+import com.shaneahern.puzzle.metrics.MetricsSnapshot;
+import com.shaneahern.puzzle.stats.HistogramSnapshot;
+
+public class MetricsRegistryTest {
+
+	@Test
+	public void testTimerRecordsNanos() {
+		DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+		registry.timer("test.timer").record(400);
+		registry.timer("test.timer").record(600);
+		registry.histogram("test.histogram").record(3);
+
+		// durations under a microsecond are kept rather than truncated to 0
+		MetricsSnapshot snapshot = registry.snapshot();
+		HistogramSnapshot timer = snapshot.getHistograms().get("test.timer");
+		assertEquals(2, timer.getCount());
+		assertEquals(1000, timer.getSum());
+		assertEquals(400, timer.getMin());
+		assertEquals(MetricsSnapshot.UNIT_NANOS, snapshot.getUnit("test.timer"));
+		assertEquals("", snapshot.getUnit("test.histogram"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTimerNameTaken() {
+		DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+		registry.histogram("test.latency");
+		registry.timer("test.latency");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHistogramNameTaken() {
+		DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+		registry.timer("test.latency");
+		registry.histogram("test.latency");
+	}
+}
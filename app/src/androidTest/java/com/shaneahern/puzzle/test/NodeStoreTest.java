@@ -0,0 +1,73 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.solver.NodeStore;
+import com.shaneahern.puzzle.solver.OffHeapNodeStore;
+
+public class NodeStoreTest {
+
+	@Test
+	public void testAddFindAndSpill() {
+		File dir = new File(System.getProperty("java.io.tmpdir"));
+		// small segments and a cap well below the nodes added, so most of the store is spilled
+		OffHeapNodeStore store = new OffHeapNodeStore(256 * 1024, dir, 4096);
+		int count = 200000;
+		long[] states = new long[count];
+		Random random = new Random(49);
+		for (int i=0; i < count; i++) {
+			long state;
+			do {
+				state = random.nextLong();
+			} while (store.find(state) != NodeStore.NONE);
+			states[i] = state;
+			assertEquals(i, store.add(state, i % 90, i - 1, i * 7));
+		}
+		assertEquals(count, store.size());
+		assertTrue(store.getDirectBytes() <= 256 * 1024);
+		assertTrue(store.getMappedBytes() > 0);
+
+		for (int i=0; i < count; i++) {
+			int slot = store.find(states[i]);
+			assertEquals(i, slot);
+			assertEquals(states[i], store.getState(slot));
+			assertEquals(i % 90, store.getG(slot));
+			assertEquals(i - 1, store.getParent(slot));
+			assertEquals(i * 7, store.getHeuristicState(slot));
+		}
+		store.update(7, 3, NodeStore.NONE);
+		assertEquals(3, store.getG(7));
+		assertEquals(NodeStore.NONE, store.getParent(7));
+
+		store.clear();
+		assertEquals(0, store.size());
+		assertEquals(NodeStore.NONE, store.find(states[0]));
+		assertEquals(0, store.add(states[1], 0, NodeStore.NONE, 0));
+		assertEquals(0, store.find(states[1]));
+		store.close();
+		assertEquals(0, store.getDirectBytes());
+		assertEquals(0, store.getMappedBytes());
+	}
+
+	@Test
+	public void testCapWithoutSpill() {
+		OffHeapNodeStore store = new OffHeapNodeStore(64 * 1024, null, 4096);
+		try {
+			for (int i=0; i < 100000; i++) {
+				store.add(i, 0, NodeStore.NONE, 0);
+			}
+			fail("Expected the memory cap to be reached");
+		} catch (IllegalStateException e) {
+			assertTrue(store.getDirectBytes() <= 64 * 1024);
+		}
+		store.close();
+	}
+}
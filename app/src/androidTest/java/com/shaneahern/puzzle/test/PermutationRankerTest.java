@@ -0,0 +1,141 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.PuzzleModel;
+import com.shaneahern.puzzle.PuzzlePosition;
+import com.shaneahern.puzzle.solver.BoardIndexer;
+import com.shaneahern.puzzle.solver.PermutationRanker;
+import com.shaneahern.puzzle.solver.PuzzleInstance;
+
+public class PermutationRankerTest {
+
+	private static final int[] ORDERS = { PermutationRanker.LEXICOGRAPHIC, PermutationRanker.MYRVOLD_RUSKEY };
+
+	@Test
+	public void testRoundTrip() {
+		for (int order : ORDERS) {
+			for (int k=1; k <= 6; k++) {
+				PermutationRanker ranker = new PermutationRanker(6, k, order);
+				long expected = 1;
+				for (int i=0; i < k; i++) {
+					expected *= 6 - i;
+				}
+				assertEquals(expected, ranker.size());
+				int[] values = new int[k];
+				for (long rank=0; rank < ranker.size(); rank++) {
+					ranker.unrank(rank, values);
+					assertEquals(rank, ranker.rank(values));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPartialRoundTrip5x5() {
+		// tiles of a 5x5 board, the most of them whose arrangements still fit in a long
+		Random random = new Random(25);
+		for (int order : ORDERS) {
+			PermutationRanker ranker = new PermutationRanker(25, 15, order);
+			long expected = 1;
+			for (int i=0; i < 15; i++) {
+				expected *= 25 - i;
+			}
+			assertEquals(expected, ranker.size());
+			int[] values = new int[15];
+			int[] cells = new int[25];
+			for (int i=0; i < 1000; i++) {
+				long rank = (random.nextLong() >>> 1) % ranker.size();
+				ranker.unrank(rank, values);
+				assertEquals(rank, ranker.rank(values));
+
+				for (int j=0; j < 25; j++) {
+					cells[j] = j;
+				}
+				for (int j=0; j < 15; j++) {
+					int swap = j + random.nextInt(25 - j);
+					int value = cells[swap];
+					cells[swap] = cells[j];
+					cells[j] = value;
+				}
+				ranker.unrank(ranker.rank(cells), values);
+				assertArrayEquals(Arrays.copyOf(cells, 15), values);
+			}
+			ranker.unrank(ranker.size() - 1, values);
+			assertEquals(ranker.size() - 1, ranker.rank(values));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyArrangements() {
+		new PermutationRanker(25, 16, PermutationRanker.LEXICOGRAPHIC);
+	}
+
+	@Test
+	public void testLexicographicOrder() {
+		PermutationRanker ranker = new PermutationRanker(5, 3, PermutationRanker.LEXICOGRAPHIC);
+		int[] previous = new int[3];
+		int[] values = new int[3];
+		ranker.unrank(0, previous);
+		assertArrayEquals(new int[] { 0, 1, 2 }, previous);
+		for (long rank=1; rank < ranker.size(); rank++) {
+			ranker.unrank(rank, values);
+			int i = 0;
+			while (values[i] == previous[i]) {
+				i++;
+			}
+			assertTrue(values[i] > previous[i]);
+			System.arraycopy(values, 0, previous, 0, 3);
+		}
+		assertArrayEquals(new int[] { 4, 3, 2 }, previous);
+	}
+
+	@Test
+	public void testSolvableOnly3x3() {
+		for (int order : ORDERS) {
+			BoardIndexer indexer = new BoardIndexer(3, 3, order, true);
+			assertEquals(181440, indexer.size());
+			int[] tiles = new int[9];
+			for (long index=0; index < indexer.size(); index++) {
+				indexer.unrank(index, tiles);
+				assertTrue(PuzzleInstance.isSolvable(tiles, 3));
+				assertEquals(index, indexer.rank(tiles));
+			}
+		}
+	}
+
+	@Test
+	public void testPuzzleModelBoards() {
+		Random random = new Random(48);
+		for (int order : ORDERS) {
+			BoardIndexer all = new BoardIndexer(4, 4, order, false);
+			BoardIndexer solvable = new BoardIndexer(4, 4, order, true);
+			assertEquals(20922789888000L, all.size());
+			PuzzleModel model = new PuzzleModel(4, 4, new PuzzlePosition(0, 0));
+			if (order == PermutationRanker.LEXICOGRAPHIC) {
+				// the solved board is the first in dictionary order
+				assertEquals(0, solvable.rank(model.getPuzzlePositions()));
+			}
+			int[][] puzzlePositions = new int[4][4];
+			for (int i=0; i < 1000; i++) {
+				model.setPuzzlePositions(PuzzleInstance.randomPermutation("p", 4, 4, random).toPuzzlePositions());
+				long index = solvable.rank(model.getPuzzlePositions());
+				assertTrue(index >= 0 && index < solvable.size());
+				solvable.unrank(index, puzzlePositions);
+				assertTrue(Arrays.deepEquals(model.getPuzzlePositions(), puzzlePositions));
+
+				long rank = all.rank(model.getPuzzlePositions());
+				all.unrank(rank, puzzlePositions);
+				assertTrue(Arrays.deepEquals(model.getPuzzlePositions(), puzzlePositions));
+			}
+		}
+	}
+}
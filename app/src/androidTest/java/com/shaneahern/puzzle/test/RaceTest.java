@@ -0,0 +1,256 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.shaneahern.puzzle.PuzzlePosition;
+import com.shaneahern.puzzle.race.MoveCodec;
+import com.shaneahern.puzzle.race.RaceBoard;
+import com.shaneahern.puzzle.race.RaceProtocol;
+import com.shaneahern.puzzle.race.RaceSession;
+import com.shaneahern.puzzle.race.ZobristHash;
+
+public class RaceTest {
+
+	private static final long SEED = 1234;
+	private static final int SCRAMBLE_ATTEMPTS = 200;
+	private static final long TIMEOUT_MS = 5000;
+
+	private final List<RaceSession> mSessions = new ArrayList<RaceSession>();
+	private final List<Socket> mSockets = new ArrayList<Socket>();
+	private volatile int mDesyncs;
+	private volatile int mDesyncSeq = -1;
+	private volatile int mDisconnects;
+
+	private final RaceSession.Listener mListener = new RaceSession.Listener() {
+		public void onRaceStarted(long seed) {
+		}
+
+		public void onPeerMoved(int peer, RaceBoard board) {
+		}
+
+		public void onDesync(int peer, int seq) {
+			mDesyncSeq = seq;
+			mDesyncs++;
+		}
+
+		public void onPeerDisconnected(int peer) {
+			mDisconnects++;
+		}
+	};
+
+	@After
+	public void tearDown() throws Exception {
+		for (RaceSession session : mSessions) {
+			session.close();
+		}
+		for (Socket socket : mSockets) {
+			socket.close();
+		}
+	}
+
+	/**
+     * Connect two sockets over loopback
+     */
+	private Socket[] connect() throws IOException {
+		ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+		try {
+			Socket client = new Socket(server.getInetAddress(), server.getLocalPort());
+			Socket accepted = server.accept();
+			return new Socket[] { client, accepted };
+		} finally {
+			server.close();
+		}
+	}
+
+	/**
+     * Make a random legal move on the local board of a session
+     */
+	private void randomMove(RaceSession session, Random random) {
+		while (!session.move(new PuzzlePosition(random.nextInt(RaceBoard.ROWS), random.nextInt(RaceBoard.COLS)))) {
+		}
+	}
+
+	private void awaitSeq(RaceSession session, int peer, int seq) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+		while (session.getPeerBoard(peer) == null || session.getPeerBoard(peer).getSeq() < seq) {
+			assertTrue("Timed out waiting for moves", System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	public void testMoveCodecRoundTrip() {
+		PuzzlePosition empty = new PuzzlePosition(1, 2);
+		for (int row=0; row < RaceBoard.ROWS; row++) {
+			for (int col=0; col < RaceBoard.COLS; col++) {
+				if ((row == empty.getRow()) == (col == empty.getCol())) {
+					continue;
+				}
+				PuzzlePosition origin = MoveCodec.decode(MoveCodec.encode(empty, new PuzzlePosition(row, col)), empty);
+				assertEquals(row, origin.getRow());
+				assertEquals(col, origin.getCol());
+			}
+		}
+	}
+
+	@Test
+	public void testIncrementalChecksumMatchesFullHash() {
+		ZobristHash zobrist = new ZobristHash(RaceBoard.ROWS, RaceBoard.COLS, ZobristHash.DEFAULT_SEED);
+		RaceBoard board = new RaceBoard(SEED, SCRAMBLE_ATTEMPTS);
+		Random random = new Random(7);
+		for (int i=0; i < 500; i++) {
+			PuzzlePosition p = new PuzzlePosition(random.nextInt(RaceBoard.ROWS), random.nextInt(RaceBoard.COLS));
+			PuzzlePosition empty = board.getEmptyPosition();
+			if ((p.getRow() == empty.getRow()) != (p.getCol() == empty.getCol())) {
+				assertTrue(board.apply(board.encode(p)));
+			}
+			assertEquals(zobrist.hash(board.getPuzzlePositions()), board.getChecksum());
+		}
+	}
+
+	@Test
+	public void testSameSeedSameBoard() {
+		RaceBoard a = new RaceBoard(SEED, SCRAMBLE_ATTEMPTS);
+		RaceBoard b = new RaceBoard(SEED, SCRAMBLE_ATTEMPTS);
+		for (int row=0; row < RaceBoard.ROWS; row++) {
+			assertArrayEquals(a.getPuzzlePositions()[row], b.getPuzzlePositions()[row]);
+		}
+		assertEquals(a.getChecksum(), b.getChecksum());
+	}
+
+	@Test
+	public void testRaceOverLoopback() throws Exception {
+		int numPeers = 3;
+		for (int i=0; i < numPeers; i++) {
+			mSessions.add(new RaceSession(20, mListener));
+		}
+		// full mesh, peer ids are assigned in the order connections are added
+		int[][] peerIds = new int[numPeers][numPeers];
+		for (int i=0; i < numPeers; i++) {
+			for (int j=i + 1; j < numPeers; j++) {
+				Socket[] sockets = connect();
+				peerIds[i][j] = mSessions.get(i).addPeer(sockets[0]);
+				peerIds[j][i] = mSessions.get(j).addPeer(sockets[1]);
+			}
+		}
+
+		// starting one session starts all of them
+		mSessions.get(0).start(SEED, SCRAMBLE_ATTEMPTS);
+		int numMoves = 100;
+		Random random = new Random(99);
+		for (int i=0; i < numPeers; i++) {
+			long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+			while (mSessions.get(i).getLocalBoard() == null) {
+				assertTrue(System.currentTimeMillis() < deadline);
+				Thread.sleep(5);
+			}
+		}
+		for (int m=0; m < numMoves; m++) {
+			for (RaceSession session : mSessions) {
+				randomMove(session, random);
+			}
+		}
+		for (RaceSession session : mSessions) {
+			session.flush();
+		}
+
+		for (int i=0; i < numPeers; i++) {
+			for (int j=0; j < numPeers; j++) {
+				if (i == j) {
+					continue;
+				}
+				RaceSession session = mSessions.get(i);
+				awaitSeq(session, peerIds[i][j], numMoves);
+				RaceBoard local = mSessions.get(j).getLocalBoard();
+				RaceBoard remote = session.getPeerBoard(peerIds[i][j]);
+				assertEquals(local.getChecksum(), remote.getChecksum());
+				for (int row=0; row < RaceBoard.ROWS; row++) {
+					assertArrayEquals(local.getPuzzlePositions()[row], remote.getPuzzlePositions()[row]);
+				}
+			}
+		}
+		assertEquals(0, mDesyncs);
+		// moves made in a burst share packets
+		for (RaceSession session : mSessions) {
+			assertTrue(session.getPacketsSent() < numMoves);
+		}
+	}
+
+	@Test
+	public void testWrongChecksumIsDesync() throws Exception {
+		RaceSession session = new RaceSession(20, mListener);
+		mSessions.add(session);
+		Socket[] sockets = connect();
+		mSockets.add(sockets[1]);
+		int peer = session.addPeer(sockets[0]);
+
+		// a raw peer that starts the race, makes a move and sends a checksum that does not match it
+		RaceBoard board = new RaceBoard(SEED, SCRAMBLE_ATTEMPTS);
+		PuzzlePosition empty = board.getEmptyPosition();
+		byte move = board.encode(new PuzzlePosition(empty.getRow(), empty.getCol() == 0 ? 1 : 0));
+		assertTrue(board.apply(move));
+		ByteBuffer buffer = ByteBuffer.allocate(RaceProtocol.MAX_PACKET_BYTES);
+		RaceProtocol.writeStart(buffer, RaceBoard.ROWS, RaceBoard.COLS, SEED, SCRAMBLE_ATTEMPTS);
+		RaceProtocol.appendMove(buffer, RaceProtocol.writeMovesHeader(buffer, 0), move);
+		RaceProtocol.writeChecksum(buffer, 1, board.getChecksum() ^ 1);
+		RaceProtocol.writePacket(sockets[1].getOutputStream(), buffer);
+
+		long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+		while (mDesyncs == 0) {
+			assertTrue("Timed out waiting for desync", System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+		assertEquals(1, mDesyncs);
+		assertEquals(1, mDesyncSeq);
+		assertEquals(1, session.getPeerBoard(peer).getSeq());
+	}
+
+	@Test
+	public void testStalledPeerIsClosed() throws Exception {
+		RaceSession session = new RaceSession(20, mListener);
+		mSessions.add(session);
+		// small socket buffers, so a peer that never reads fills them quickly
+		ServerSocket server = new ServerSocket();
+		server.setReceiveBufferSize(4096);
+		server.bind(null);
+		Socket client = new Socket();
+		Socket stalled;
+		try {
+			client.setSendBufferSize(4096);
+			client.connect(server.getLocalSocketAddress());
+			stalled = server.accept();
+		} finally {
+			server.close();
+		}
+		mSockets.add(stalled);
+		session.addPeer(client);
+		session.start(SEED, SCRAMBLE_ATTEMPTS);
+
+		// moves never wait for the peer, once a whole packet is pending the peer is disconnected
+		Random random = new Random(7);
+		long deadline = System.currentTimeMillis() + 4 * TIMEOUT_MS;
+		while (mDisconnects == 0) {
+			assertTrue("Timed out waiting for disconnect", System.currentTimeMillis() < deadline);
+			for (int i=0; i < 1000; i++) {
+				randomMove(session, random);
+			}
+		}
+		assertEquals(1, mDisconnects);
+		assertEquals(0, mDesyncs);
+	}
+}
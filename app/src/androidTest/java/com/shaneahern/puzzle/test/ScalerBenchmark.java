@@ -0,0 +1,106 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.image.AreaAverageScaler;
+import com.shaneahern.puzzle.image.TileSlicer;
+
+/**
+ * Throughput of the crop-then-area-average scaler against the previous approach of scaling the whole image
+ * without filtering and then cropping the centre square. Results are printed, not asserted, as they depend on
+ * the device.
+ */
+public class ScalerBenchmark {
+
+	private static final int SRC_WIDTH = 3264;
+	private static final int SRC_HEIGHT = 2448;
+	private static final int TARGET_SIZE = 720;
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int ITERATIONS = 10;
+
+	interface Scaler {
+		public void scale(int[] src, int[] dst) throws Exception;
+	}
+
+	/**
+     * Previous approach: scale the whole image so its short side is the target size, sampling the nearest pixel
+     * like a Matrix scale without bitmap filtering, then crop the centre square
+     */
+	static void scaleThenCrop(int[] src, int srcWidth, int srcHeight, int[] dst, int targetSize) {
+		float scale = (float)targetSize / Math.min(srcWidth, srcHeight);
+		int scaledWidth = Math.round(srcWidth * scale);
+		int scaledHeight = Math.round(srcHeight * scale);
+		int[] scaled = new int[scaledWidth * scaledHeight];
+		for (int y=0; y < scaledHeight; y++) {
+			int sy = Math.min(srcHeight - 1, (int)(y / scale));
+			for (int x=0; x < scaledWidth; x++) {
+				scaled[y * scaledWidth + x] = src[sy * srcWidth + Math.min(srcWidth - 1, (int)(x / scale))];
+			}
+		}
+		int left = (scaledWidth - targetSize) / 2;
+		int top = (scaledHeight - targetSize) / 2;
+		for (int y=0; y < targetSize; y++) {
+			System.arraycopy(scaled, (top + y) * scaledWidth + left, dst, y * targetSize, targetSize);
+		}
+	}
+
+	private static double megapixelsPerSecond(String name, Scaler scaler, int[] src, int[] dst) throws Exception {
+		for (int i=0; i < WARMUP_ITERATIONS; i++) {
+			scaler.scale(src, dst);
+		}
+		long start = System.nanoTime();
+		for (int i=0; i < ITERATIONS; i++) {
+			scaler.scale(src, dst);
+		}
+		long elapsed = System.nanoTime() - start;
+		double mps = (double)SRC_WIDTH * SRC_HEIGHT * ITERATIONS / (elapsed / 1000.0);
+		System.out.println(String.format("%-28s %8.1f ms/image %8.1f source MP/s", name, elapsed / 1e6 / ITERATIONS, mps));
+		return mps;
+	}
+
+	@Test
+	public void benchmarkScalers() throws Exception {
+		final int[] src = AreaAverageScalerTest.noise(SRC_WIDTH, SRC_HEIGHT);
+		final int[] dst = new int[TARGET_SIZE * TARGET_SIZE];
+		final int side = Math.min(SRC_WIDTH, SRC_HEIGHT);
+		final int cropX = (SRC_WIDTH - side) / 2;
+		final int cropY = (SRC_HEIGHT - side) / 2;
+		int threads = Runtime.getRuntime().availableProcessors();
+		final AreaAverageScaler serial = new AreaAverageScaler(null, 1);
+		final AreaAverageScaler parallel = new AreaAverageScaler(TileSlicer.getDefaultExecutor(), threads);
+
+		megapixelsPerSecond("scale then crop (nearest)", new Scaler() {
+			public void scale(int[] src, int[] dst) {
+				scaleThenCrop(src, SRC_WIDTH, SRC_HEIGHT, dst, TARGET_SIZE);
+			}
+		}, src, dst);
+		megapixelsPerSecond("crop then area average", new Scaler() {
+			public void scale(int[] src, int[] dst) throws InterruptedException {
+				serial.scale(src, SRC_WIDTH, cropX, cropY, side, side, dst, TARGET_SIZE, TARGET_SIZE);
+			}
+		}, src, dst);
+		megapixelsPerSecond("crop then area average x" + threads, new Scaler() {
+			public void scale(int[] src, int[] dst) throws InterruptedException {
+				parallel.scale(src, SRC_WIDTH, cropX, cropY, side, side, dst, TARGET_SIZE, TARGET_SIZE);
+			}
+		}, src, dst);
+		megapixelsPerSecond("strips x" + threads, new Scaler() {
+			public void scale(final int[] src, int[] dst) throws IOException, InterruptedException {
+				AreaAverageScaler.RowSource source = new AreaAverageScaler.RowSource() {
+					public void readRows(int firstRow, int numRows, int[] rows) {
+						for (int row=0; row < numRows; row++) {
+							System.arraycopy(src, (cropY + firstRow + row) * SRC_WIDTH + cropX, rows, row * side, side);
+						}
+					}
+				};
+				parallel.scale(source, side, side, dst, TARGET_SIZE, TARGET_SIZE);
+			}
+		}, src, dst);
+		assertEquals(TARGET_SIZE * TARGET_SIZE, dst.length);
+	}
+}
@@ -0,0 +1,120 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shaneahern.puzzle.sensor.ShakeDetector;
+
+public class ShakeDetectorTest {
+
+	// samples at 25Hz, the rate the activity registers the accelerometer at
+	private static final long SAMPLE_PERIOD_NANOS = 40000000L;
+	private static final float G = ShakeDetector.STANDARD_GRAVITY;
+
+	private ShakeDetector mDetector;
+	private int mShakes;
+	private long mTime;
+	private Random mRandom;
+
+	@Before
+	public void setUp() throws Exception {
+		mShakes = 0;
+		mTime = 1000000000L;
+		mRandom = new Random(42);
+		mDetector = new ShakeDetector(new ShakeDetector.Listener() {
+			public void onShake() {
+				mShakes++;
+			}
+		});
+	}
+
+	/**
+     * Replay a trace of samples with gravity along z, plus noise and acceleration along x
+     */
+	private void replay(float[] accelerationX) {
+		for (float x : accelerationX) {
+			float noise = (float)mRandom.nextGaussian() * 0.3f;
+			mDetector.onSample(mTime, x + noise, noise, G + noise);
+			mTime += SAMPLE_PERIOD_NANOS;
+		}
+	}
+
+	private static float[] sine(float amplitude, float hz, float seconds) {
+		int n = (int)(seconds * 1e9f / SAMPLE_PERIOD_NANOS);
+		float[] trace = new float[n];
+		for (int i=0; i < n; i++) {
+			trace[i] = (float)(amplitude * Math.sin(2 * Math.PI * hz * i * SAMPLE_PERIOD_NANOS / 1e9));
+		}
+		return trace;
+	}
+
+	private static float[] rest(float seconds) {
+		return new float[(int)(seconds * 1e9f / SAMPLE_PERIOD_NANOS)];
+	}
+
+	@Test
+	public void testRestIsNotShake() {
+		replay(rest(5));
+		assertEquals(0, mShakes);
+	}
+
+	@Test
+	public void testShakeDetectedOnce() {
+		replay(rest(1));
+		// shaken back and forth at 4Hz for a second, reported once thanks to the cooldown
+		replay(sine(2.5f * G, 4, 1));
+		replay(rest(1));
+		assertEquals(1, mShakes);
+	}
+
+	@Test
+	public void testGentleMovementIsNotShake() {
+		replay(rest(1));
+		replay(sine(0.8f * G, 3, 2));
+		assertEquals(0, mShakes);
+	}
+
+	@Test
+	public void testSingleBumpIsNotShake() {
+		replay(rest(1));
+		replay(new float[] { 3 * G, -3 * G, 2 * G });
+		replay(rest(1));
+		assertEquals(0, mShakes);
+	}
+
+	@Test
+	public void testTiltIsNotShake() {
+		// turn the device from flat to upright over a second, gravity moves from z to y
+		for (int i=0; i <= 25; i++) {
+			double angle = Math.PI / 2 * i / 25;
+			mDetector.onSample(mTime, 0, (float)(G * Math.sin(angle)), (float)(G * Math.cos(angle)));
+			mTime += SAMPLE_PERIOD_NANOS;
+		}
+		assertEquals(0, mShakes);
+	}
+
+	@Test
+	public void testPauseRestartsFilter() {
+		replay(rest(1));
+		// sampling paused while the device was turned upside down, the first sample after the pause is not a spike
+		mTime += 10 * 1000000000L;
+		for (int i=0; i < 25; i++) {
+			mDetector.onSample(mTime, 0, 0, -G);
+			mTime += SAMPLE_PERIOD_NANOS;
+		}
+		assertEquals(0, mShakes);
+	}
+
+	@Test
+	public void testSecondShakeAfterCooldown() {
+		replay(sine(2.5f * G, 4, 1));
+		replay(rest(1.5f));
+		replay(sine(2.5f * G, 4, 1));
+		assertEquals(2, mShakes);
+	}
+}
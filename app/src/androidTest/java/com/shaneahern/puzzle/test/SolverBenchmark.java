@@ -0,0 +1,534 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.solver.Heuristic;
+import com.shaneahern.puzzle.solver.Heuristics;
+import com.shaneahern.puzzle.solver.IdaStarSolver;
+import com.shaneahern.puzzle.solver.PuzzleInstance;
+import com.shaneahern.puzzle.solver.Solution;
+
+/**
+ * Solver benchmark on fixed suites of boards, rather than microbenchmarks of single moves, to see how the solver
+ * behaves on hard boards. The bundled suites are generated from fixed seeds, so every run solves the same boards:
+ *
+ * 3x3  100 uniformly random solvable boards
+ * 4x4  25 boards from random walks of 100 moves, from under a ms to a few seconds each
+ * 5x5  10 boards from random walks of 60 moves
+ *
+ * Published sets, e.g. the standard 100 4x4 instances, can be run from a file with one board per line in their
+ * format, "id t0 t1 ... t15". Each suite is run single threaded and with a thread per core, every solution is
+ * replayed through PuzzleModel to check it, and solution lengths and node counts are compared with a checked in
+ * baseline. As the solver is optimal a length that differs from the baseline is a bug, node counts are expected to
+ * change with the solver and are only reported. Peak heap is sampled for the whole JVM, so it is only a per board
+ * figure in single threaded runs.
+ *
+ * Each run uses one heuristic, Manhattan distance by default. The baseline node counts are those of the Manhattan
+ * distance, so the node count of a run against the baseline measures how much more its heuristic prunes, and the
+ * estimate for the start board against the solution length measures how close the heuristic is to exact.
+ *
+ * Run headless on a desktop JVM with the app and test classes on the class path:
+ *
+ * java com.shaneahern.puzzle.test.SolverBenchmark [--suite 3x3|4x4|5x5]... [--instances file --rows 4 --cols 4]
+ *     [--threads n]... [--heuristic manhattan|linear_conflict|walking_distance|max]... [--node-limit n]
+ *     [--csv file] [--json file] [--baseline file] [--write-baseline file]
+ *
+ * The exit status is 1 if any solution fails verification or differs in length from the baseline.
+ */
+public class SolverBenchmark {
+
+	private static final String BASELINE_RESOURCE = "solver_baseline.csv";
+	private static final long DEFAULT_NODE_LIMIT = 20000000000L;
+	// interval heap use is sampled at for peak memory
+	private static final long HEAP_SAMPLE_MS = 5;
+
+	static class Result {
+		final String suite;
+		final PuzzleInstance instance;
+		final int threads;
+		final String heuristic;
+		// estimate for the start board
+		final int rootEstimate;
+		final Solution solution;
+		final boolean verified;
+		// peak heap of the whole JVM while solving, with more than one thread it includes the other threads' boards
+		final long peakHeapBytes;
+		// -1 if the instance is not in the baseline
+		int baselineLength = -1;
+		long baselineNodes = -1;
+
+		Result(String suite, PuzzleInstance instance, int threads, String heuristic, int rootEstimate, Solution solution,
+				boolean verified, long peakHeapBytes) {
+			this.suite = suite;
+			this.instance = instance;
+			this.threads = threads;
+			this.heuristic = heuristic;
+			this.rootEstimate = rootEstimate;
+			this.solution = solution;
+			this.verified = verified;
+			this.peakHeapBytes = peakHeapBytes;
+		}
+
+		boolean matchesBaseline() {
+			return baselineLength < 0 || baselineLength == solution.getLength();
+		}
+	}
+
+	/**
+     * Samples heap use in the background and keeps the peak of each interval still running, so memory stays
+     * bounded however long the benchmark runs. Heap use is that of the whole JVM, so with more than one thread the
+     * peak of an instance includes the heap of the instances solved by the other threads at the same time.
+     */
+	static class HeapSampler extends Thread {
+		// intervals begun and not yet ended
+		private final List<Interval> mActive = new ArrayList<Interval>();
+		private volatile boolean mStopped;
+
+		static class Interval {
+			long peakBytes;
+		}
+
+		HeapSampler() {
+			super("HeapSampler");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (!mStopped) {
+				sample();
+				try {
+					Thread.sleep(HEAP_SAMPLE_MS);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+		/**
+         * Record the heap in use now in the peak of every active interval
+         *
+         */
+		synchronized void sample() {
+			Runtime runtime = Runtime.getRuntime();
+			long used = runtime.totalMemory() - runtime.freeMemory();
+			for (Interval interval : mActive) {
+				interval.peakBytes = Math.max(interval.peakBytes, used);
+			}
+		}
+
+		/**
+         * @return Interval whose peak is kept from now until end()
+         */
+		synchronized Interval begin() {
+			Interval interval = new Interval();
+			mActive.add(interval);
+			sample();
+			return interval;
+		}
+
+		/**
+         * @return long peak heap in use between begin() and now
+         */
+		synchronized long end(Interval interval) {
+			sample();
+			mActive.remove(interval);
+			return interval.peakBytes;
+		}
+
+		void finish() {
+			mStopped = true;
+			interrupt();
+		}
+	}
+
+	/**
+     * @param name
+     * 			Name of a bundled suite
+     * @return List<PuzzleInstance> boards of the suite
+     */
+	static List<PuzzleInstance> suite(String name) {
+		List<PuzzleInstance> instances = new ArrayList<PuzzleInstance>();
+		if ("3x3".equals(name)) {
+			Random random = new Random(9);
+			for (int i=0; i < 100; i++) {
+				instances.add(PuzzleInstance.randomPermutation("3x3-" + i, 3, 3, random));
+			}
+		} else if ("4x4".equals(name)) {
+			Random random = new Random(16);
+			for (int i=0; i < 25; i++) {
+				instances.add(PuzzleInstance.randomWalk("4x4-" + i, 4, 4, 100, random));
+			}
+		} else if ("5x5".equals(name)) {
+			Random random = new Random(25);
+			for (int i=0; i < 10; i++) {
+				instances.add(PuzzleInstance.randomWalk("5x5-" + i, 5, 5, 60, random));
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown suite " + name);
+		}
+		return instances;
+	}
+
+	/**
+     * Read boards from a stream with one board per line, ignoring blank lines and lines starting with #
+     *
+     */
+	static List<PuzzleInstance> readInstances(InputStream in, int rows, int cols, String prefix) throws IOException {
+		List<PuzzleInstance> instances = new ArrayList<PuzzleInstance>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.length() > 0 && !line.startsWith("#")) {
+				instances.add(PuzzleInstance.parse(line, rows, cols, prefix + "-" + (instances.size() + 1)));
+			}
+		}
+		return instances;
+	}
+
+	/**
+     * Solve a suite with a number of threads, each thread solving whole instances with its own solver and heuristic
+     *
+     * @return List<Result> results in the order of the instances
+     */
+	static List<Result> run(final String suite, List<PuzzleInstance> instances, final int threads, final String heuristic,
+			final long nodeLimit, final HeapSampler sampler) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final ThreadLocal<Map<String, IdaStarSolver>> solvers = new ThreadLocal<Map<String, IdaStarSolver>>() {
+			@Override
+			protected Map<String, IdaStarSolver> initialValue() {
+				return new HashMap<String, IdaStarSolver>();
+			}
+		};
+		final ThreadLocal<Map<String, Heuristic>> heuristics = new ThreadLocal<Map<String, Heuristic>>() {
+			@Override
+			protected Map<String, Heuristic> initialValue() {
+				return new HashMap<String, Heuristic>();
+			}
+		};
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final PuzzleInstance instance : instances) {
+				futures.add(executor.submit(new Callable<Result>() {
+					public Result call() {
+						String size = instance.getRows() + "x" + instance.getCols();
+						IdaStarSolver solver = solvers.get().get(size);
+						if (solver == null) {
+							Heuristic h = Heuristics.create(heuristic, instance.getRows(), instance.getCols());
+							solver = new IdaStarSolver(instance.getRows(), instance.getCols(), h);
+							solvers.get().put(size, solver);
+							heuristics.get().put(size, h);
+						}
+						int rootEstimate = heuristics.get().get(size).init(instance.getTiles());
+						HeapSampler.Interval interval = sampler.begin();
+						Solution solution = solver.solve(instance, nodeLimit);
+						long peak = sampler.end(interval);
+						boolean verified = solution.isSolved() && instance.verify(solution.getMoves());
+						return new Result(suite, instance, threads, heuristic, rootEstimate, solution, verified, peak);
+					}
+				}));
+			}
+			List<Result> results = new ArrayList<Result>();
+			for (Future<Result> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+     * Read a baseline, the length and node count of each instance keyed by suite and id
+     *
+     */
+	static Map<String, long[]> readBaseline(InputStream in) throws IOException {
+		Map<String, long[]> baseline = new HashMap<String, long[]>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		String line = reader.readLine();
+		while ((line = reader.readLine()) != null) {
+			String[] fields = line.split(",");
+			if (fields.length == 4) {
+				baseline.put(fields[0] + "/" + fields[1], new long[] { Long.parseLong(fields[2]), Long.parseLong(fields[3]) });
+			}
+		}
+		return baseline;
+	}
+
+	static void applyBaseline(List<Result> results, Map<String, long[]> baseline) {
+		for (Result result : results) {
+			long[] entry = baseline.get(result.suite + "/" + result.instance.getId());
+			if (entry != null) {
+				result.baselineLength = (int)entry[0];
+				result.baselineNodes = entry[1];
+			}
+		}
+	}
+
+	static void writeBaseline(Writer out, List<Result> results) {
+		PrintWriter writer = new PrintWriter(out);
+		writer.println("suite,id,length,nodes");
+		Map<String, Result> unique = new LinkedHashMap<String, Result>();
+		for (Result result : results) {
+			if (result.solution.isSolved()) {
+				unique.put(result.suite + "/" + result.instance.getId(), result);
+			}
+		}
+		for (Result result : unique.values()) {
+			writer.println(result.suite + "," + result.instance.getId() + "," + result.solution.getLength() + "," + result.solution.getNodes());
+		}
+		writer.flush();
+	}
+
+	static void writeCsv(Writer out, List<Result> results) {
+		PrintWriter writer = new PrintWriter(out);
+		writer.println("suite,id,threads,heuristic,root_estimate,solved,verified,length,baseline_length,nodes,baseline_nodes,"
+				+ "nodes_per_sec,wall_ms,peak_heap_bytes");
+		for (Result result : results) {
+			Solution solution = result.solution;
+			writer.println(String.format(Locale.US, "%s,%s,%d,%s,%d,%b,%b,%d,%d,%d,%d,%.0f,%.3f,%d", result.suite, result.instance.getId(),
+					result.threads, result.heuristic, result.rootEstimate, solution.isSolved(), result.verified, solution.getLength(), result.baselineLength,
+					solution.getNodes(), result.baselineNodes, solution.getNodesPerSecond(), solution.getElapsedNanos() / 1e6,
+					result.peakHeapBytes));
+		}
+		writer.flush();
+	}
+
+	static void writeJson(Writer out, List<Result> results) {
+		PrintWriter writer = new PrintWriter(out);
+		writer.println("{");
+		writer.println(String.format(Locale.US, "  \"cores\": %d,", Runtime.getRuntime().availableProcessors()));
+		writer.println(String.format(Locale.US, "  \"java\": \"%s\",", System.getProperty("java.version")));
+		writer.println("  \"results\": [");
+		for (int i=0; i < results.size(); i++) {
+			Result result = results.get(i);
+			Solution solution = result.solution;
+			StringBuilder moves = new StringBuilder();
+			if (solution.isSolved()) {
+				for (int move : solution.getMoves()) {
+					moves.append(moves.length() > 0 ? "," : "").append(move);
+				}
+			}
+			writer.print(String.format(Locale.US, "    {\"suite\": \"%s\", \"id\": \"%s\", \"threads\": %d, \"heuristic\": \"%s\", "
+					+ "\"root_estimate\": %d, \"solved\": %b, \"verified\": %b, \"length\": %d, \"baseline_length\": %d, "
+					+ "\"nodes\": %d, \"baseline_nodes\": %d, \"nodes_per_sec\": %.0f, \"wall_ms\": %.3f, \"peak_heap_bytes\": %d, "
+					+ "\"moves\": [%s]}",
+					result.suite, result.instance.getId(), result.threads, result.heuristic, result.rootEstimate,
+					solution.isSolved(), result.verified,
+					solution.getLength(), result.baselineLength, solution.getNodes(), result.baselineNodes,
+					solution.getNodesPerSecond(), solution.getElapsedNanos() / 1e6, result.peakHeapBytes, moves));
+			writer.println(i < results.size() - 1 ? "," : "");
+		}
+		writer.println("  ]");
+		writer.println("}");
+		writer.flush();
+	}
+
+	/**
+     * Print a summary of each run of a suite
+     *
+     * @return true if every instance that was solved was verified and matches the baseline
+     */
+	static boolean printSummary(PrintWriter out, List<Result> results, long wallNanos) {
+		boolean ok = true;
+		long nodes = 0;
+		long baselineNodes = 0;
+		int solved = 0;
+		for (Result result : results) {
+			nodes += result.solution.getNodes();
+			baselineNodes += Math.max(0, result.baselineNodes);
+			if (result.solution.isSolved()) {
+				solved++;
+				if (!result.verified) {
+					out.println("FAILED verification: " + result.suite + " " + result.instance.getId());
+					ok = false;
+				}
+				if (!result.matchesBaseline()) {
+					out.println("FAILED baseline: " + result.suite + " " + result.instance.getId() + " length "
+							+ result.solution.getLength() + ", baseline " + result.baselineLength);
+					ok = false;
+				}
+			}
+		}
+		Result first = results.get(0);
+		out.println(String.format(Locale.US, "%-6s x%-3d %-18s %4d/%-4d solved %14d nodes (%6.3f of baseline) %10.1f s %8.1f Mnodes/s",
+				first.suite, first.threads, first.heuristic, solved, results.size(), nodes,
+				baselineNodes > 0 ? (double)nodes / baselineNodes : 0, wallNanos / 1e9, nodes * 1e3 / wallNanos));
+		out.flush();
+		return ok;
+	}
+
+	@Test
+	public void benchmark3x3AgainstBaseline() throws Exception {
+		HeapSampler sampler = new HeapSampler();
+		sampler.start();
+		Map<String, long[]> baseline = readBaseline(SolverBenchmark.class.getResourceAsStream(BASELINE_RESOURCE));
+		PrintWriter out = new PrintWriter(System.out);
+		try {
+			for (int threads : new int[] { 1, Math.max(2, Runtime.getRuntime().availableProcessors()) }) {
+				long start = System.nanoTime();
+				List<Result> results = run("3x3", suite("3x3"), threads, Heuristics.MANHATTAN, DEFAULT_NODE_LIMIT, sampler);
+				long wallNanos = System.nanoTime() - start;
+				applyBaseline(results, baseline);
+				for (Result result : results) {
+					assertTrue(result.instance.getId(), result.solution.isSolved() && result.baselineLength >= 0);
+				}
+				assertTrue(printSummary(out, results, wallNanos));
+			}
+		} finally {
+			sampler.finish();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> suites = new ArrayList<String>();
+		List<Integer> threadCounts = new ArrayList<Integer>();
+		List<String> heuristics = new ArrayList<String>();
+		String instancesFile = null;
+		int rows = 4;
+		int cols = 4;
+		long nodeLimit = DEFAULT_NODE_LIMIT;
+		String csvFile = null;
+		String jsonFile = null;
+		String baselineFile = null;
+		String writeBaselineFile = null;
+		for (int i=0; i < args.length; i++) {
+			String arg = args[i];
+			String value = i + 1 < args.length ? args[i + 1] : null;
+			if (value == null) {
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			i++;
+			if ("--suite".equals(arg)) {
+				suites.add(value);
+			} else if ("--instances".equals(arg)) {
+				instancesFile = value;
+			} else if ("--rows".equals(arg)) {
+				rows = Integer.parseInt(value);
+			} else if ("--cols".equals(arg)) {
+				cols = Integer.parseInt(value);
+			} else if ("--threads".equals(arg)) {
+				threadCounts.add(Integer.parseInt(value));
+			} else if ("--heuristic".equals(arg)) {
+				heuristics.add(value);
+			} else if ("--node-limit".equals(arg)) {
+				nodeLimit = Long.parseLong(value);
+			} else if ("--csv".equals(arg)) {
+				csvFile = value;
+			} else if ("--json".equals(arg)) {
+				jsonFile = value;
+			} else if ("--baseline".equals(arg)) {
+				baselineFile = value;
+			} else if ("--write-baseline".equals(arg)) {
+				writeBaselineFile = value;
+			} else {
+				throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+		if (suites.isEmpty() && instancesFile == null) {
+			suites.add("3x3");
+			suites.add("4x4");
+			suites.add("5x5");
+		}
+		if (heuristics.isEmpty()) {
+			heuristics.add(Heuristics.MANHATTAN);
+		}
+		if (threadCounts.isEmpty()) {
+			threadCounts.add(1);
+			if (Runtime.getRuntime().availableProcessors() > 1) {
+				threadCounts.add(Runtime.getRuntime().availableProcessors());
+			}
+		}
+
+		Map<String, List<PuzzleInstance>> runs = new LinkedHashMap<String, List<PuzzleInstance>>();
+		for (String suite : suites) {
+			runs.put(suite, suite(suite));
+		}
+		if (instancesFile != null) {
+			String name = new File(instancesFile).getName();
+			InputStream in = new FileInputStream(instancesFile);
+			try {
+				runs.put(name, readInstances(in, rows, cols, name));
+			} finally {
+				in.close();
+			}
+		}
+		InputStream baselineIn = baselineFile != null ? new FileInputStream(baselineFile) : SolverBenchmark.class.getResourceAsStream(BASELINE_RESOURCE);
+		Map<String, long[]> baseline;
+		try {
+			baseline = readBaseline(baselineIn);
+		} finally {
+			baselineIn.close();
+		}
+
+		HeapSampler sampler = new HeapSampler();
+		sampler.start();
+		PrintWriter out = new PrintWriter(System.out);
+		List<Result> all = new ArrayList<Result>();
+		boolean ok = true;
+		for (Map.Entry<String, List<PuzzleInstance>> entry : runs.entrySet()) {
+			for (String heuristic : heuristics) {
+				for (int threads : threadCounts) {
+					long start = System.nanoTime();
+					List<Result> results = run(entry.getKey(), entry.getValue(), threads, heuristic, nodeLimit, sampler);
+					long wallNanos = System.nanoTime() - start;
+					applyBaseline(results, baseline);
+					ok &= printSummary(out, results, wallNanos);
+					all.addAll(results);
+				}
+			}
+		}
+		sampler.finish();
+
+		if (csvFile != null) {
+			Writer writer = new FileWriter(csvFile);
+			try {
+				writeCsv(writer, all);
+			} finally {
+				writer.close();
+			}
+		}
+		if (jsonFile != null) {
+			Writer writer = new FileWriter(jsonFile);
+			try {
+				writeJson(writer, all);
+			} finally {
+				writer.close();
+			}
+		}
+		if (writeBaselineFile != null) {
+			Writer writer = new FileWriter(writeBaselineFile);
+			try {
+				writeBaseline(writer, all);
+			} finally {
+				writer.close();
+			}
+		}
+		System.exit(ok ? 0 : 1);
+	}
+}
@@ -0,0 +1,78 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.solver.IdaStarSolver;
+import com.shaneahern.puzzle.solver.PuzzleInstance;
+import com.shaneahern.puzzle.solver.Solution;
+
+public class SolverTest {
+
+	@Test
+	public void testSolvedBoardNeedsNoMoves() {
+		PuzzleInstance instance = new PuzzleInstance("solved", 4, 4, new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 });
+		Solution solution = new IdaStarSolver(4, 4).solve(instance);
+		assertEquals(0, solution.getLength());
+		assertTrue(instance.verify(solution.getMoves()));
+	}
+
+	@Test
+	public void testHardest3x3() {
+		// one of the two 3x3 boards that need 31 moves, relabelled for the empty tile solving to the top left
+		PuzzleInstance instance = PuzzleInstance.parse("8 0 6 5 4 7 2 3 1", 3, 3, "hardest");
+		Solution solution = new IdaStarSolver(3, 3).solve(instance);
+		assertEquals(31, solution.getLength());
+		assertTrue(instance.verify(solution.getMoves()));
+	}
+
+	@Test
+	public void testRandomWalksSolveWithinWalkLength() {
+		Random random = new Random(5);
+		IdaStarSolver solver = new IdaStarSolver(4, 4);
+		for (int i=0; i < 20; i++) {
+			PuzzleInstance instance = PuzzleInstance.randomWalk("walk-" + i, 4, 4, 30, random);
+			Solution solution = solver.solve(instance);
+			assertTrue(solution.getLength() <= 30);
+			assertTrue(instance.verify(solution.getMoves()));
+		}
+	}
+
+	@Test
+	public void testVerifyRejectsBadSolutions() {
+		PuzzleInstance instance = PuzzleInstance.parse("1 0 2 3 4 5 6 7 8", 3, 3, "one");
+		assertTrue(instance.verify(new int[] { 0 }));
+		// jumps the empty tile over a tile
+		assertFalse(instance.verify(new int[] { 7, 4, 1, 0 }));
+		// legal moves that do not solve the board
+		assertFalse(instance.verify(new int[] { 2 }));
+	}
+
+	@Test
+	public void testSolvability() {
+		assertTrue(PuzzleInstance.isSolvable(new int[] { 1, 0, 2, 3 }, 2));
+		assertFalse(PuzzleInstance.isSolvable(new int[] { 0, 2, 1, 3 }, 2));
+		Random random = new Random(1);
+		for (int i=0; i < 100; i++) {
+			assertTrue(PuzzleInstance.isSolvable(PuzzleInstance.randomPermutation("p", 4, 4, random).getTiles(), 4));
+		}
+	}
+
+	@Test
+	public void testParseWithId() {
+		PuzzleInstance instance = PuzzleInstance.parse("7  14 13 2 11 10 4 9 0 8 7 15 12 6 1 5 3", 4, 4, "default");
+		assertEquals("7", instance.getId());
+		assertEquals(0, instance.getTiles()[7]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsolvableRejected() {
+		new IdaStarSolver(3, 3).solve(PuzzleInstance.parse("0 2 1 3 4 5 6 7 8", 3, 3, "unsolvable"));
+	}
+}
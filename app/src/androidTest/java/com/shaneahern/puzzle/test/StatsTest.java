@@ -0,0 +1,99 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.stats.HistogramSnapshot;
+import com.shaneahern.puzzle.stats.SolveStats;
+import com.shaneahern.puzzle.stats.StripedHistogram;
+
+public class StatsTest {
+
+	@Test
+	public void testPercentiles() {
+		StripedHistogram histogram = new StripedHistogram("test");
+		for (int i=1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(1000, snapshot.getCount());
+		assertEquals(1, snapshot.getMin());
+		assertEquals(1000, snapshot.getMax());
+		assertEquals(500500, snapshot.getSum());
+		
+		// log-linear buckets are accurate to within ~3%
+		assertEquals(500, snapshot.getPercentile(50), 500 * 0.04);
+		assertEquals(990, snapshot.getPercentile(99), 990 * 0.04);
+		assertEquals(1000, snapshot.getPercentile(100));
+		assertEquals(1, snapshot.getPercentile(0));
+	}
+	
+	@Test
+	public void testSmallValuesAreExact() {
+		StripedHistogram histogram = new StripedHistogram("test");
+		histogram.record(3);
+		histogram.record(7);
+		histogram.record(7);
+		histogram.record(-5);
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(0, snapshot.getMin());
+		assertEquals(0, snapshot.getPercentile(25));
+		assertEquals(3, snapshot.getPercentile(50));
+		assertEquals(7, snapshot.getPercentile(75));
+	}
+	
+	@Test
+	public void testEmptySnapshot() {
+		HistogramSnapshot snapshot = new StripedHistogram("empty").snapshot();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getPercentile(99));
+		assertEquals(0, snapshot.getMax());
+	}
+	
+	@Test
+	public void testConcurrentRecording() throws InterruptedException {
+		final StripedHistogram histogram = new StripedHistogram("concurrent");
+		final int threads = 8;
+		final int valuesPerThread = 20000;
+		Thread[] writers = new Thread[threads];
+		for (int t=0; t < threads; t++) {
+			writers[t] = new Thread() {
+				public void run() {
+					for (int i=0; i < valuesPerThread; i++) {
+						histogram.record(i % 100);
+					}
+				}
+			};
+			writers[t].start();
+		}
+		// snapshots taken while writers are running never block them
+		long lastCount = 0;
+		for (int i=0; i < 10; i++) {
+			long count = histogram.snapshot().getCount();
+			assertTrue(count >= lastCount);
+			lastCount = count;
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(threads * valuesPerThread, snapshot.getCount());
+		assertEquals(threads * valuesPerThread, histogram.getCount());
+		assertEquals(99, snapshot.getMax());
+	}
+	
+	@Test
+	public void testSolveStats() {
+		SolveStats stats = new SolveStats();
+		stats.recordSolve(40, 60000, 4, 4, 70);
+		stats.recordSolve(20, 30000, 4, 4, 50);
+		SolveStats.Snapshot snapshot = stats.snapshot();
+		assertEquals(2, snapshot.getSolvedCount());
+		assertEquals(16, snapshot.boardSize.getPercentile(50));
+		assertEquals(20, snapshot.movesToSolve.getPercentile(50));
+		assertEquals(40, snapshot.movesToSolve.getPercentile(99));
+	}
+}
@@ -0,0 +1,117 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shaneahern.puzzle.image.TileSlicer;
+
+public class TileSlicerTest {
+
+	private static final int BORDER = 0xffffffff;
+
+	private ExecutorService mExecutor;
+
+	@Before
+	public void setUp() throws Exception {
+		mExecutor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		mExecutor.shutdownNow();
+	}
+
+	private static int[] image(int width, int height) {
+		int[] pixels = new int[width * height];
+		for (int i=0; i < pixels.length; i++) {
+			pixels[i] = 0xff000000 | i;
+		}
+		return pixels;
+	}
+
+	@Test
+	public void testBorders() throws InterruptedException {
+		// 2x2 tiles of 4x4 pixels with a 1 pixel border
+		int[] src = image(8, 8);
+		int[] atlas = new TileSlicer(null, 1, 1, BORDER).slice(src, 8, 8, 2, 2);
+
+		for (int y=0; y < 8; y++) {
+			for (int x=0; x < 8; x++) {
+				int tx = x % 4;
+				int ty = y % 4;
+				boolean isBorder = tx == 0 || tx == 3 || ty == 0 || ty == 3;
+				assertEquals("pixel " + x + "," + y, isBorder ? BORDER : src[y * 8 + x], atlas[y * 8 + x]);
+			}
+		}
+	}
+
+	@Test
+	public void testRemainderCopied() throws InterruptedException {
+		// 10x10 image in 3x3 tiles leaves a 1 pixel strip at the right and bottom outside of tiles
+		int[] src = image(10, 10);
+		int[] atlas = new TileSlicer(null, 1, 1, BORDER).slice(src, 10, 10, 3, 3);
+
+		assertEquals(src[9], atlas[9]);
+		assertEquals(src[9 * 10 + 4], atlas[9 * 10 + 4]);
+		assertEquals(src[1 * 10 + 1], atlas[1 * 10 + 1]);
+		assertEquals(BORDER, atlas[2 * 10 + 1]);
+	}
+
+	@Test
+	public void testInPlace() throws InterruptedException {
+		int[] src = image(16, 16);
+		int[] expected = new TileSlicer(null, 1, 2, BORDER).slice(src, 16, 16, 4, 4).clone();
+
+		int[] inPlace = src.clone();
+		new TileSlicer(null, 1, 2, BORDER).slice(inPlace, inPlace, 16, 16, 4, 4);
+		assertArrayEquals(expected, inPlace);
+	}
+
+	@Test
+	public void testBandsMatchWholeImage() throws InterruptedException {
+		// slicing one row of tiles at a time in a band sized buffer, as TileSet does, leaves the rows below the
+		// last whole row of tiles unchanged
+		int[] src = image(11, 11);
+		int[] expected = new TileSlicer(null, 1, 1, BORDER).slice(src, 11, 11, 3, 3).clone();
+
+		TileSlicer slicer = new TileSlicer(mExecutor, 4, 1, BORDER);
+		int[] banded = new int[src.length];
+		int[] band = slicer.obtainBuffer(11 * 3);
+		for (int top=0; top < 11; top += 3) {
+			int bandRows = Math.min(3, 11 - top);
+			System.arraycopy(src, top * 11, band, 0, bandRows * 11);
+			if (top < 9) {
+				slicer.slice(band, band, 11, 3, 1, 3);
+			}
+			System.arraycopy(band, 0, banded, top * 11, bandRows * 11);
+		}
+		assertArrayEquals(expected, banded);
+		assertEquals(11 * 3, band.length);
+	}
+
+	@Test
+	public void testParallelMatchesSerial() throws InterruptedException {
+		// large board with hundreds of tiles
+		int[] src = image(400, 400);
+		int[] serial = new TileSlicer(null, 1, 1, BORDER).slice(src, 400, 400, 20, 20).clone();
+		int[] parallel = new TileSlicer(mExecutor, 4, 1, BORDER).slice(src, 400, 400, 20, 20);
+		assertArrayEquals(serial, parallel);
+	}
+
+	@Test
+	public void testNoBorder() throws InterruptedException {
+		int[] src = image(8, 8);
+		int[] atlas = new TileSlicer(mExecutor, 4, 0, BORDER).slice(src, 8, 8, 2, 2);
+		for (int i=0; i < src.length; i++) {
+			assertEquals(src[i], atlas[i]);
+		}
+	}
+}
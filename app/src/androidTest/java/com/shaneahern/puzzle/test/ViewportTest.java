@@ -0,0 +1,83 @@
+package com.shaneahern.puzzle.test;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.shaneahern.puzzle.Viewport;
+
+public class ViewportTest {
+
+	private static final float DELTA = 0.001f;
+
+	@Test
+	public void testFitsWholeBoard() {
+		// 100 x 100 board of 50 pixel tiles in a 500 pixel view
+		Viewport viewport = new Viewport(500, 500, 5000, 5000, 20f);
+		assertEquals(0.1f, viewport.getScale(), DELTA);
+		assertTrue(viewport.isZoomedOut());
+
+		int[] range = new int[4];
+		viewport.getVisibleCells(50, 50, 100, 100, range);
+		assertArrayEquals(new int[] { 0, 0, 100, 100 }, range);
+	}
+
+	@Test
+	public void testZoomKeepsFocus() {
+		Viewport viewport = new Viewport(500, 500, 5000, 5000, 20f);
+		float boardX = viewport.toBoardX(100);
+		float boardY = viewport.toBoardY(300);
+		assertTrue(viewport.zoom(4f, 100, 300));
+		assertEquals(0.4f, viewport.getScale(), DELTA);
+		assertEquals(boardX, viewport.toBoardX(100), 0.01f);
+		assertEquals(boardY, viewport.toBoardY(300), 0.01f);
+		assertEquals(100, viewport.toViewX(boardX), 0.01f);
+	}
+
+	@Test
+	public void testZoomClamped() {
+		Viewport viewport = new Viewport(500, 500, 5000, 5000, 20f);
+		assertFalse(viewport.zoom(0.5f, 250, 250));
+		viewport.zoom(1000f, 250, 250);
+		assertEquals(2f, viewport.getScale(), DELTA);
+	}
+
+	@Test
+	public void testPanClampedToBoard() {
+		Viewport viewport = new Viewport(500, 500, 5000, 5000, 20f);
+		viewport.zoom(10f, 0, 0);
+		assertEquals(0, viewport.getOffsetX(), DELTA);
+		// cannot pan past the top left corner
+		assertFalse(viewport.pan(100, 100));
+		viewport.pan(-100000, -100000);
+		assertEquals(4500, viewport.getOffsetX(), DELTA);
+		assertEquals(4500, viewport.getOffsetY(), DELTA);
+	}
+
+	@Test
+	public void testVisibleCellsOnlyCoverView() {
+		// zoomed in to 1:1, a 500 pixel view shows 10 of 100 columns, plus one on each side for sliding tiles
+		Viewport viewport = new Viewport(500, 500, 5000, 5000, 20f);
+		viewport.zoom(10f, 0, 0);
+		viewport.pan(-1000, -2000);
+		int[] range = new int[4];
+		viewport.getVisibleCells(50, 50, 100, 100, range);
+		assertArrayEquals(new int[] { 39, 19, 51, 31 }, range);
+	}
+
+	@Test
+	public void testMipLevel() {
+		// tiles of 200 image pixels, 50 board pixels
+		Viewport viewport = new Viewport(500, 500, 5000, 5000, 20f);
+		// 5 view pixels per tile
+		assertEquals(3, viewport.getMipLevel(200, 50, 3));
+		assertEquals(5, viewport.getMipLevel(200, 50, 8));
+		viewport.zoom(20f, 0, 0);
+		// 100 view pixels per tile
+		assertEquals(1, viewport.getMipLevel(200, 50, 3));
+	}
+}
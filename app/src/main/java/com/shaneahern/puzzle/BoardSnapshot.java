@@ -0,0 +1,241 @@
+package com.shaneahern.puzzle;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.shaneahern.puzzle.PuzzleView.Tile;
+import com.shaneahern.puzzle.image.TileCache;
+import com.shaneahern.puzzle.image.TileSet;
+
+/**
+ * Immutable copy of everything needed to draw the board: the tile in each cell, each tile's touch offset, the
+ * parameters of any animation in progress and the viewport. Snapshots are taken on the UI thread whenever the board changes and
+ * handed to the render thread, which can then draw and animate the board without reading any state that the UI
+ * thread modifies. Animations are carried as start, target and timing rather than as current offsets, so the
+ * render thread computes the offsets for each frame itself and keeps animating even while the UI thread is busy.
+ *
+ * A snapshot holds its tile set in the TileCache, so the tile images are not reused by the next decode while the
+ * render thread may still draw them, even after the view has moved on to another tile set. Snapshots are shared by
+ * the surface and the render thread and are reference counted: capture() returns a snapshot held once by the
+ * caller, each further holder calls retain(), and the tile set is released when the last holder calls release().
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+final class BoardSnapshot {
+
+	// values per cell in mOffsets and mAnimations
+	private static final int OFFSET_FIELDS = 2;
+	private static final int ANIMATION_FIELDS = 4;
+	private static final int TIMING_FIELDS = 2;
+
+	private final int mRows;
+	private final int mCols;
+	private final int mTileWidth;
+	private final int mTileHeight;
+	private final TileSet mTileSet;
+	private final TileCache mTileCache;
+	private final AtomicInteger mRefCount = new AtomicInteger(1);
+	// tile id in each cell in row major order
+	private final int[] mTileIds;
+	// deltaX, deltaY of the tile in each cell
+	private final int[] mOffsets;
+	// startX, startY, targetX, targetY of the tile in each cell, and the animation start and duration, duration is
+	// negative for tiles that are not animating
+	private final int[] mAnimations;
+	private final long[] mTimings;
+	private final boolean mAnimating;
+	// viewport transform, the board is drawn scaled by mScale with board point mViewportX, mViewportY at the top left
+	private final float mScale;
+	private final float mViewportX;
+	private final float mViewportY;
+
+	private BoardSnapshot(int rows, int cols, int tileWidth, int tileHeight, TileSet tileSet, TileCache tileCache,
+			int[] tileIds, int[] offsets, int[] animations, long[] timings, boolean animating, Viewport viewport) {
+		mRows = rows;
+		mCols = cols;
+		mTileWidth = tileWidth;
+		mTileHeight = tileHeight;
+		mTileSet = tileSet;
+		mTileCache = tileCache;
+		mTileIds = tileIds;
+		mOffsets = offsets;
+		mAnimations = animations;
+		mTimings = timings;
+		mAnimating = animating;
+		mScale = viewport.getScale();
+		mViewportX = viewport.getOffsetX();
+		mViewportY = viewport.getOffsetY();
+	}
+
+	/**
+     * Take a snapshot of the board, on the UI thread
+     *
+     * @param puzzlePositions
+     * 			Tile id in each cell of the board
+     * @param tiles
+     * 			Tile state by tile id
+     * @param tileSet
+     * 			Tile images, may be null if not loaded yet
+     * @param tileCache
+     * 			Cache to hold the tile set in until the snapshot is released, may be null if the tile set is null
+     * @param tileWidth
+     * 			Width of a tile on screen
+     * @param tileHeight
+     * 			Height of a tile on screen
+     * @param viewport
+     * 			Visible region of the board
+     * @return BoardSnapshot copy of the board, held once by the caller
+     */
+	static BoardSnapshot capture(int[][] puzzlePositions, Tile[] tiles, TileSet tileSet, TileCache tileCache, int tileWidth, int tileHeight, Viewport viewport) {
+		int rows = puzzlePositions.length;
+		int cols = puzzlePositions[0].length;
+		int numCells = rows * cols;
+		int[] tileIds = new int[numCells];
+		int[] offsets = new int[numCells * OFFSET_FIELDS];
+		int[] animations = new int[numCells * ANIMATION_FIELDS];
+		long[] timings = new long[numCells * TIMING_FIELDS];
+		boolean animating = false;
+		for (int row=0; row < rows; row++) {
+			for (int col=0; col < cols; col++) {
+				int cell = row * cols + col;
+				int tileId = puzzlePositions[row][col];
+				Tile tile = tiles[tileId];
+				tileIds[cell] = tileId;
+				offsets[cell * OFFSET_FIELDS] = tile.deltaX;
+				offsets[cell * OFFSET_FIELDS + 1] = tile.deltaY;
+				if (tile.animating) {
+					animating = true;
+					animations[cell * ANIMATION_FIELDS] = tile.startX;
+					animations[cell * ANIMATION_FIELDS + 1] = tile.startY;
+					animations[cell * ANIMATION_FIELDS + 2] = tile.targetX;
+					animations[cell * ANIMATION_FIELDS + 3] = tile.targetY;
+					timings[cell * TIMING_FIELDS] = tile.animationStartNanos;
+					timings[cell * TIMING_FIELDS + 1] = tile.animationDurationNanos;
+				} else {
+					timings[cell * TIMING_FIELDS + 1] = -1;
+				}
+			}
+		}
+		if (tileSet != null) {
+			tileCache.acquire(tileSet);
+		}
+		return new BoardSnapshot(rows, cols, tileWidth, tileHeight, tileSet, tileCache, tileIds, offsets, animations, timings, animating, viewport);
+	}
+
+	/**
+     * Hold the snapshot for another user, may be called from any thread
+     *
+     */
+	void retain() {
+		mRefCount.incrementAndGet();
+	}
+
+	/**
+     * Release a hold on the snapshot, may be called from any thread. The tile set is released when the snapshot
+     * has no holders left, the snapshot must not be drawn by a holder after its release.
+     *
+     */
+	void release() {
+		int refCount = mRefCount.decrementAndGet();
+		if (refCount == 0 && mTileSet != null) {
+			mTileCache.release(mTileSet);
+		} else if (refCount < 0) {
+			throw new IllegalStateException("Snapshot released more often than held");
+		}
+	}
+
+	int getRows() {
+		return mRows;
+	}
+
+	int getCols() {
+		return mCols;
+	}
+
+	int getTileWidth() {
+		return mTileWidth;
+	}
+
+	int getTileHeight() {
+		return mTileHeight;
+	}
+
+	TileSet getTileSet() {
+		return mTileSet;
+	}
+
+	float getScale() {
+		return mScale;
+	}
+
+	float getViewportX() {
+		return mViewportX;
+	}
+
+	float getViewportY() {
+		return mViewportY;
+	}
+
+	/**
+     * @param row
+     * 			Row of the cell
+     * @param col
+     * 			Column of the cell
+     * @return int id of the tile in the cell, 0 for the empty tile
+     */
+	int getTileId(int row, int col) {
+		return mTileIds[row * mCols + col];
+	}
+
+	/**
+     * @param row
+     * 			Row of the cell
+     * @param col
+     * 			Column of the cell
+     * @param frameTimeNanos
+     * 			Time of the frame being drawn
+     * @return int x offset of the tile in the cell at the frame time
+     */
+	int getOffsetX(int row, int col, long frameTimeNanos) {
+		return getOffset(row * mCols + col, 0, frameTimeNanos);
+	}
+
+	/**
+     * @param row
+     * 			Row of the cell
+     * @param col
+     * 			Column of the cell
+     * @param frameTimeNanos
+     * 			Time of the frame being drawn
+     * @return int y offset of the tile in the cell at the frame time
+     */
+	int getOffsetY(int row, int col, long frameTimeNanos) {
+		return getOffset(row * mCols + col, 1, frameTimeNanos);
+	}
+
+	private int getOffset(int cell, int axis, long frameTimeNanos) {
+		long duration = mTimings[cell * TIMING_FIELDS + 1];
+		if (duration < 0) {
+			return mOffsets[cell * OFFSET_FIELDS + axis];
+		}
+		float fraction = TileAnimator.fraction(frameTimeNanos, mTimings[cell * TIMING_FIELDS], duration);
+		return TileAnimator.offset(mAnimations[cell * ANIMATION_FIELDS + axis], mAnimations[cell * ANIMATION_FIELDS + 2 + axis], fraction);
+	}
+
+	/**
+     * @param frameTimeNanos
+     * 			Time of the frame being drawn
+     * @return true if any tile is still moving at the frame time, so another frame is needed
+     */
+	boolean isAnimating(long frameTimeNanos) {
+		if (!mAnimating) {
+			return false;
+		}
+		for (int cell=0; cell < mTileIds.length; cell++) {
+			long duration = mTimings[cell * TIMING_FIELDS + 1];
+			if (duration >= 0 && frameTimeNanos - mTimings[cell * TIMING_FIELDS] < duration) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
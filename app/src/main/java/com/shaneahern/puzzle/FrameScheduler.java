@@ -0,0 +1,119 @@
+package com.shaneahern.puzzle;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.view.Choreographer;
+
+/**
+ * Schedules a callback for the next display frame. On API 16+ callbacks are driven by the display vsync via
+ * Choreographer, on older devices a Handler posts callbacks at the display refresh interval. Callbacks are one
+ * shot and must be posted again to receive the following frame, so nothing is scheduled while there is no work.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+abstract class FrameScheduler {
+
+	interface Callback {
+		/**
+	     * Called once for the frame following postFrameCallback()
+	     *
+	     * @param frameTimeNanos
+	     * 			Time the frame started rendering, in the System.nanoTime() time base
+	     */
+		public void doFrame(long frameTimeNanos);
+	}
+	
+	/**
+     * @return FrameScheduler suitable for the current device, must be called from a thread with a Looper
+     */
+	static FrameScheduler create() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			return new ChoreographerFrameScheduler();
+		}
+		return new HandlerFrameScheduler();
+	}
+	
+	/**
+     * Request a callback on the next frame. A scheduler holds a single pending callback, posting again before the 
+     * frame replaces the pending callback rather than scheduling a second frame.
+     *
+     * @param callback
+     * 			Callback to run on the next frame
+     */
+	abstract void postFrameCallback(Callback callback);
+	
+	/**
+     * Remove a pending callback
+     *
+     * @param callback
+     * 			Callback to remove
+     */
+	abstract void removeFrameCallback(Callback callback);
+	
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private static class ChoreographerFrameScheduler extends FrameScheduler implements Choreographer.FrameCallback {
+		
+		private final Choreographer mChoreographer = Choreographer.getInstance();
+		private Callback mCallback;
+		
+		@Override
+		void postFrameCallback(Callback callback) {
+			if (mCallback == null) {
+				mChoreographer.postFrameCallback(this);
+			}
+			mCallback = callback;
+		}
+
+		@Override
+		void removeFrameCallback(Callback callback) {
+			if (mCallback == callback) {
+				mChoreographer.removeFrameCallback(this);
+				mCallback = null;
+			}
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			Callback callback = mCallback;
+			mCallback = null;
+			if (callback != null) {
+				callback.doFrame(frameTimeNanos);
+			}
+		}
+	}
+	
+	private static class HandlerFrameScheduler extends FrameScheduler implements Runnable {
+		
+		// 60 fps display
+		private static final long FRAME_INTERVAL_MS = 16;
+		
+		private final Handler mHandler = new Handler();
+		private Callback mCallback;
+		
+		@Override
+		void postFrameCallback(Callback callback) {
+			if (mCallback == null) {
+				mHandler.postDelayed(this, FRAME_INTERVAL_MS);
+			}
+			mCallback = callback;
+		}
+
+		@Override
+		void removeFrameCallback(Callback callback) {
+			if (mCallback == callback) {
+				mHandler.removeCallbacks(this);
+				mCallback = null;
+			}
+		}
+
+		@Override
+		public void run() {
+			Callback callback = mCallback;
+			mCallback = null;
+			if (callback != null) {
+				callback.doFrame(System.nanoTime());
+			}
+		}
+	}
+}
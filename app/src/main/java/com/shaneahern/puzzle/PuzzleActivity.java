@@ -1,29 +1,51 @@
 package com.shaneahern.puzzle;
 
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.os.Process;
+import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.View.OnTouchListener;
 import android.widget.Button;
 import android.widget.Toast;
 
+import com.shaneahern.puzzle.image.ImageLoader;
+import com.shaneahern.puzzle.image.ImageRequest;
+import com.shaneahern.puzzle.image.RegionTileSource;
+import com.shaneahern.puzzle.image.SquareImageDecoder;
+import com.shaneahern.puzzle.image.TileCache;
+import com.shaneahern.puzzle.image.TileSet;
+import com.shaneahern.puzzle.metrics.DefaultMetricsRegistry;
+import com.shaneahern.puzzle.metrics.Metrics;
+import com.shaneahern.puzzle.metrics.MetricsFileExporter;
+import com.shaneahern.puzzle.metrics.MetricsSnapshot;
+import com.shaneahern.puzzle.metrics.Timer;
+import com.shaneahern.puzzle.sensor.ShakeDetector;
+import com.shaneahern.puzzle.stats.SolveStats;
+
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Main activity for puzzle. Implements listeners for the sensor module (to detect device "shake" action),
@@ -31,15 +53,27 @@ import java.io.IOException;
  *
  * @author  Shane Ahern (shane@shaneahern.com)
  */
-public class PuzzleActivity extends Activity implements OnTouchListener, SensorEventListener, OnClickListener, PuzzleMoveListener {
+public class PuzzleActivity extends Activity implements OnTouchListener, SensorEventListener, OnClickListener, PuzzleMoveListener, ImageLoader.Callback, ShakeDetector.Listener {
 
-	// constants for motion detection to detect device shake action
-	private static final float SHAKE_MOVEMENT_RATIO_THRESHOLD = 0.1f;
-    private static final int MOTION_SENSOR_UPDATE_FREQUENCY_MS = 100;
+	// accelerometer rate for shake detection, 25Hz samples a hand shake several times per swing
+	private static final int SHAKE_SAMPLING_PERIOD_US = 40000;
+	// where the sensor hub can batch samples, deliver them at most this late so the CPU can sleep in between
+	private static final int SHAKE_MAX_REPORT_LATENCY_US = 200000;
 	
     // result code for gallery image selection intent
 	private static final int ACTIVITY_SELECT_IMAGE = 0;
 	
+	// preference to collect metrics for controller, model and view hot paths, exported to METRICS_FILE_NAME in app
+	// files dir on pause, read on creation and on by default only in debuggable builds
+	private static final String PREF_METRICS = "metrics";
+	private static final String METRICS_FILE_NAME = "metrics.csv";
+	// the metrics file is rotated past this size, so repeated exports do not fill the files dir
+	private static final long METRICS_FILE_MAX_BYTES = 256 * 1024;
+	
+	// preference to draw the board on a dedicated render thread, so UI thread stalls do not drop animation frames,
+	// read on creation and off by default
+	private static final String PREF_RENDER_THREAD = "render_thread";
+	
     PuzzleView mView;
 	PuzzleController mController;
 
@@ -49,24 +83,94 @@ public class PuzzleActivity extends Activity implements OnTouchListener, SensorE
     private Button mResetPuzzleButton;
     private Button mGalleryButton;
     
+    private ImageLoader mImageLoader;
+    // writes metrics exports off the UI thread, null if metrics are disabled
+    private ExecutorService mMetricsExecutor;
+    // time from picking an image until the board is first drawn with its tiles, from a preview or the full image
+    private Timer mFirstPlayableTimer;
+    private long mLoadStartTime;
+    private boolean mShowingPreview;
+    // cold start, from onCreate until the first frame is drawn, and until the first frame drawn with tile images
+    private Timer mFirstFrameTimer;
+    private Timer mInteractiveTimer;
+    private long mInteractiveStartTime;
+    private boolean mGlobeShown;
+    // image being loaded, tiles zoomed in beyond the loaded tile images are decoded from it on demand
+    private Uri mLoadingUri;
+    
+    // two finger gestures zoom and pan the board, tiles are only moved by single finger touches
+    private ScaleGestureDetector mScaleDetector;
+    private boolean mMultiTouch;
+    private float mLastFocusX, mLastFocusY;
+    
 	// For shake motion detection.
-    private long mLastMotionUpdate = -1;
-    private float mMotionX, mMotionY, mMotionZ;
-    private float mLastMotionX, mLastMotionY, mLastMotionZ;
+    private ShakeDetector mShakeDetector;
     
 
 	@Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        // registry must be installed before the view and controller are created, as they look up their metrics on creation
+        if (prefs.getBoolean(PREF_METRICS, debuggable) && !Metrics.isEnabled()) {
+        	Metrics.setRegistry(new DefaultMetricsRegistry());
+        }
+        if (Metrics.isEnabled()) {
+        	mMetricsExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        		public Thread newThread(final Runnable r) {
+        			return new Thread(new Runnable() {
+        				public void run() {
+        					Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+        					r.run();
+        				}
+        			}, "MetricsExporter");
+        		}
+        	});
+        }
+        mFirstFrameTimer = Metrics.get().timer("startup.time_to_first_frame");
+        mInteractiveTimer = Metrics.get().timer("startup.time_to_interactive");
+        final long firstFrameStartTime = mFirstFrameTimer.start();
+        mInteractiveStartTime = mInteractiveTimer.start();
+        mFirstPlayableTimer = Metrics.get().timer("image.time_to_first_playable");
+        TileCache tileCache = TileCache.getInstance(this);
+        mImageLoader = new ImageLoader(new SquareImageDecoder(getContentResolver(), tileCache.getBitmapPool()), tileCache, PuzzleView.createTileSlicer());
             
 		mSensorManager = (SensorManager)getSystemService(SENSOR_SERVICE);
         mAccelerometer = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        mShakeDetector = new ShakeDetector(this);
 
         setContentView(R.layout.main);
         
         mView = (PuzzleView) findViewById(R.id.puzzleView);
         mView.setOnTouchListener(this);
         mView.setOnClickListener(this);
+        mScaleDetector = new ScaleGestureDetector(this, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        	@Override
+        	public boolean onScaleBegin(ScaleGestureDetector detector) {
+        		mLastFocusX = detector.getFocusX();
+        		mLastFocusY = detector.getFocusY();
+        		return true;
+        	}
+        	
+        	@Override
+        	public boolean onScale(ScaleGestureDetector detector) {
+        		// zoom about the focus between the fingers, and pan by the movement of the focus
+        		float focusX = detector.getFocusX();
+        		float focusY = detector.getFocusY();
+        		mView.zoomBy(detector.getScaleFactor(), focusX, focusY);
+        		mView.panBy(focusX - mLastFocusX, focusY - mLastFocusY);
+        		mLastFocusX = focusX;
+        		mLastFocusY = focusY;
+        		return true;
+        	}
+        });
+        if (prefs.getBoolean(PREF_RENDER_THREAD, false)) {
+        	PuzzleSurfaceView surface = (PuzzleSurfaceView) findViewById(R.id.puzzleSurface);
+        	surface.setVisibility(View.VISIBLE);
+        	mView.setRenderTarget(surface);
+        }
         
         mController = new PuzzleController(mView);
         mView.addMoveListener(this);
@@ -77,29 +181,153 @@ public class PuzzleActivity extends Activity implements OnTouchListener, SensorE
         mGalleryButton.setOnClickListener(this);
         
         mView.setPuzzlePositions(mController.getModel().getPuzzlePositions(), mController.getModel().getEmptyPosition());
+        
+        // the first frame shows the board with placeholder tiles, the globe tiles follow once loaded
+        mView.runAfterNextFrame(new Runnable() {
+        	public void run() {
+        		mFirstFrameTimer.stop(firstFrameStartTime);
+        	}
+        });
+        loadGlobe();
     }
 	
+	/**
+     * Load the globe tiles in the background, from the tile cache after the first run, and swap them in
+     * without changing the board, so moves made on the placeholder tiles are kept
+     * 
+     */
+	private void loadGlobe() {
+		mImageLoader.load(mView.getGlobeRequest(), mView.getPuzzleWidth(), PuzzleView.PUZZLE_ROWS, PuzzleView.PUZZLE_COLS, 
+				mView.isLowMemoryMode(), new ImageLoader.Callback() {
+			public void onPreviewLoaded(TileSet preview, long latencyMs) {
+				showGlobe(preview);
+			}
+			
+			public void onImageLoaded(TileSet tileSet, long latencyMs) {
+				if (tileSet != null) {
+					Log.i("ImageLoader", "Globe loaded in " + latencyMs + "ms");
+					showGlobe(tileSet);
+				}
+			}
+		});
+	}
+	
+	private void showGlobe(TileSet tileSet) {
+		mView.setTileSet(tileSet);
+		if (!mGlobeShown) {
+			mGlobeShown = true;
+			mView.runAfterNextFrame(new Runnable() {
+				public void run() {
+					mInteractiveTimer.stop(mInteractiveStartTime);
+				}
+			});
+		}
+	}
+	
 	@Override
 	protected void onResume() {
         super.onResume();
-        mSensorManager.registerListener(this, mAccelerometer, SensorManager.SENSOR_DELAY_NORMAL);
+        registerShakeSensor();
     }
+	
+	/**
+     * Register for accelerometer samples at the lowest rate that detects shakes, batched where supported
+     * 
+     */
+	private void registerShakeSensor() {
+		if (mAccelerometer == null) {
+			return;
+		}
+		mShakeDetector.reset();
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			registerBatchedShakeSensor();
+		} else {
+			mSensorManager.registerListener(this, mAccelerometer, SHAKE_SAMPLING_PERIOD_US);
+		}
+	}
+	
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	private void registerBatchedShakeSensor() {
+		// sensors without a FIFO deliver every sample as it is taken regardless of the report latency
+		int maxReportLatencyUs = mAccelerometer.getFifoMaxEventCount() > 0 ? SHAKE_MAX_REPORT_LATENCY_US : 0;
+		mSensorManager.registerListener(this, mAccelerometer, SHAKE_SAMPLING_PERIOD_US, maxReportLatencyUs);
+	}
+
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		mImageLoader.shutdown();
+		mView.setTileSource(null);
+		if (mMetricsExecutor != null) {
+			// exports already queued are still written
+			mMetricsExecutor.shutdown();
+		}
+	}
 
 	@Override
 	protected void onPause() {
         super.onPause();
         mSensorManager.unregisterListener(this);
+        if (Metrics.isEnabled()) {
+        	// debug and metrics builds only, alongside the metrics export
+        	Log.d("FrameTracer", mView.getFrameTracer().getReport().toString());
+        }
+        exportMetrics();
     }
+	
+	/**
+     * Append a snapshot of the current metrics to the metrics file, tagged with the app version so exports 
+     * from different builds can be compared. The snapshot is taken on the UI thread and written to the file on the
+     * metrics executor.
+     * 
+     */
+	private void exportMetrics() {
+		if (mMetricsExecutor == null) {
+			return;
+		}
+		final MetricsSnapshot snapshot = Metrics.get().snapshot();
+		String build;
+		try {
+			build = getPackageManager().getPackageInfo(getPackageName(), 0).versionName;
+		} catch (PackageManager.NameNotFoundException e) {
+			build = "unknown";
+		}
+		final MetricsFileExporter exporter = new MetricsFileExporter(new File(getFilesDir(), METRICS_FILE_NAME), build, METRICS_FILE_MAX_BYTES);
+		mMetricsExecutor.execute(new Runnable() {
+			public void run() {
+				try {
+					exporter.export(snapshot);
+				} catch (IOException e) {
+					Log.w("Metrics", "Unable to export metrics", e);
+				}
+			}
+		});
+	}
 
 	@Override
 	public void puzzleMoved(PuzzlePosition p) {
 		mController.move(p);
 		if (mController.isPuzzleSolved()) {
+			recordSolve();
 			showPuzzleSolvedDialog();
 			mController.resetNumMoves();
 		}
 	}
 
+	/**
+     * Record the solved game in the aggregate solve statistics
+     * 
+     */
+	private void recordSolve() {
+		SolveStats stats = SolveStats.getInstance();
+		stats.recordSolve(mController.getPlayerMoves(), mController.getGameTimeMillis(), 
+				PuzzleView.PUZZLE_ROWS, PuzzleView.PUZZLE_COLS, mController.getScrambleMoves());
+		if (Metrics.isEnabled()) {
+			// debug and metrics builds only, the snapshot copies every histogram
+			Log.d("SolveStats", stats.snapshot().toString());
+		}
+	}
+
 	/**
      * Shows message dialog to be displayed when puzzle is solved
      * 
@@ -121,23 +349,41 @@ public class PuzzleActivity extends Activity implements OnTouchListener, SensorE
 	public boolean onTouch(View v, MotionEvent event) {
 		float touchX = event.getX();
 		float touchY = event.getY();
+		mScaleDetector.onTouchEvent(event);
 
-		switch (event.getAction()) { 
+		switch (event.getActionMasked()) { 
 
         case MotionEvent.ACTION_DOWN: // touch down 
         	// set start touch x ,y 
+        	mMultiTouch = false;
         	mView.setIsTouchActive(true, touchX, touchY);
         	break; 
 
+        case MotionEvent.ACTION_POINTER_DOWN: // second finger down
+        	// the rest of the gesture zooms and pans the board, put back any tiles dragged by the first finger
+        	if (!mMultiTouch) {
+        		mMultiTouch = true;
+        		mView.cancelTouch();
+        	}
+        	break;
 
         case MotionEvent.ACTION_MOVE:   // touch drag
-        	// update touch x, y as touch moves
-        	mView.setTouchXY(touchX, touchY);
+        	if (mMultiTouch) {
+        		break;
+        	}
+        	// update touch x, y as touch moves, including the samples batched since the last event, 
+        	// the view coalesces them into one update per frame
+        	for (int i=0; i < event.getHistorySize(); i++) {
+        		mView.addTouchSample(event.getHistoricalX(i), event.getHistoricalY(i));
+        	}
+        	mView.addTouchSample(touchX, touchY);
         	break; 
 
         case MotionEvent.ACTION_UP: // touch up
         	// set end touch x, y
-        	mView.setIsTouchActive(false, touchX, touchY);
+        	if (!mMultiTouch) {
+        		mView.setIsTouchActive(false, touchX, touchY);
+        	}
         	break; 
         } 
         return true; 
@@ -146,30 +392,17 @@ public class PuzzleActivity extends Activity implements OnTouchListener, SensorE
 	@Override
 	public void onSensorChanged(SensorEvent event) {
 		if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-		    long currentTime = System.currentTimeMillis();
-		    if ((currentTime - mLastMotionUpdate) > MOTION_SENSOR_UPDATE_FREQUENCY_MS) {
-				long diffTime = (currentTime - mLastMotionUpdate);
-				mLastMotionUpdate = currentTime;
-		 
-				// store current x, y, z values
-				mMotionX = event.values[SensorManager.DATA_X];
-				mMotionY = event.values[SensorManager.DATA_Y];
-				mMotionZ = event.values[SensorManager.DATA_Z];
-		 
-				// compute ratio of delta from previous values to time since last sensor reading
-				float speed = Math.abs(mMotionX + mMotionY + mMotionZ - mLastMotionX - mLastMotionY - mLastMotionZ) / diffTime;
-				if (speed > SHAKE_MOVEMENT_RATIO_THRESHOLD) {
-				    shufflePuzzle();
-				}
-				
-				// save as last x, y, z
-				mLastMotionX = mMotionX;
-				mLastMotionY = mMotionY;
-				mLastMotionZ = mMotionZ;
-		    }
+			// batched samples keep the timestamps they were taken at, so the detector sees them as evenly spaced
+			mShakeDetector.onSample(event.timestamp, event.values[SensorManager.DATA_X], 
+					event.values[SensorManager.DATA_Y], event.values[SensorManager.DATA_Z]);
 		}
 	}
 	
+	@Override
+	public void onShake() {
+		shufflePuzzle();
+	}
+	
 	@Override
 	public void onAccuracyChanged(Sensor sensor, int accuracy) {
 		//required to implement SensorEventListener
@@ -180,15 +413,7 @@ public class PuzzleActivity extends Activity implements OnTouchListener, SensorE
      * 
      */
 	private void shufflePuzzle() {
-		
-		for (int i=0; i < 100; i++) {
-			int row = (int)(Math.random() * PuzzleView.PUZZLE_ROWS);
-			int col = (int)(Math.random() * PuzzleView.PUZZLE_COLS);
-			
-			if (mController.isMoveLegal(row, col)) {
-				mController.move(row, col);
-			}
-		}
+		mController.scramble(100);
 	}
 
 	@Override
@@ -214,104 +439,75 @@ public class PuzzleActivity extends Activity implements OnTouchListener, SensorE
 	        if(resultCode == RESULT_OK){
 
                 Uri imageUri = returnedIntent.getData();
-                Bitmap bitmap = null;
-                try {
-                    bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-                    useImageFileInPuzzle(resizeAndCropSquare(bitmap));
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                if (bitmap == null) {
-	    			// in some cases, no image is returned, if for example an image is selected from a Picassa album where the image is not stored locally
-	    			Toast.makeText(this, R.string.load_photo_error, Toast.LENGTH_LONG).show();
-	    		}
+                // decode, crop and slice on a background thread, the current board stays playable until the new tiles are ready
+                mLoadStartTime = mFirstPlayableTimer.start();
+                mShowingPreview = false;
+                mLoadingUri = imageUri;
+                mImageLoader.load(ImageRequest.forUri(imageUri), mView.getPuzzleWidth(), PuzzleView.PUZZLE_ROWS, PuzzleView.PUZZLE_COLS, 
+                		mView.isLowMemoryMode(), this);
 	        }
 	    
 	    }
 	}
 
+	@Override
+	public void onPreviewLoaded(TileSet preview, long latencyMs) {
+		Log.i("ImageLoader", "Preview loaded in " + latencyMs + "ms");
+		mShowingPreview = true;
+		useTilesInPuzzle(preview);
+		useTileSource();
+		recordFirstPlayableFrame();
+	}
+
+	@Override
+	public void onImageLoaded(TileSet tileSet, long latencyMs) {
+		if (tileSet == null) {
+			// in some cases, no image is returned, if for example an image is selected from a Picassa album where the image is not stored locally
+			Toast.makeText(this, R.string.load_photo_error, Toast.LENGTH_LONG).show();
+		} else if (mShowingPreview) {
+			// upgrade the preview tiles in place, the board and any moves made on the preview are kept
+			Log.i("ImageLoader", "Image loaded in " + latencyMs + "ms");
+			mView.setTileSet(tileSet);
+		} else {
+			Log.i("ImageLoader", "Image loaded in " + latencyMs + "ms");
+			useTilesInPuzzle(tileSet);
+			useTileSource();
+			recordFirstPlayableFrame();
+		}
+		mShowingPreview = false;
+	}
+	
 	/**
-     * Reinitialize the puzzle with the specified image
+     * Decode tiles of the loaded image on demand when the board is zoomed in beyond the resolution of its tiles
      * 
-     * @param imageBitmap
-     * 				Image bitmap to display in puzzle view
      */
-	private void useImageFileInPuzzle(Bitmap imageBitmap) {
-		mView.initTiles(imageBitmap);
-		mController.resetPuzzle();
+	private void useTileSource() {
+		mView.setTileSource(new RegionTileSource(getContentResolver(), mLoadingUri, PuzzleView.PUZZLE_ROWS, PuzzleView.PUZZLE_COLS, 
+				TileCache.getInstance(this).getBitmapPool(), mView));
 	}
 	
 	/**
-     * Get a bitmap for the image at the specified file path, scale, re-orient, and crop to square
+     * Record the time from picking an image until the next frame, the first frame drawn with its tiles
      * 
-     * @param filePath
-     * 				Path to image file
-     * @param orientation
-     * 				Image orientation (should normally be 0, 90, 180 or 270)
-     * @return Bitmap image resized in correct orientation, cropped to square
      */
-	private Bitmap getBitmapFromPath(String filePath, int orientation) {
-
-		BitmapFactory.Options opts = new BitmapFactory.Options();
-		// down-sample large images
-		opts.inSampleSize = 4;
-
-		Bitmap imageBitmap = BitmapFactory.decodeFile(filePath, opts);
-				
-		// rotate according to orientation stored for image in media store, if needed
-		if (orientation > 0) {
-            Matrix matrix = new Matrix();
-            matrix.postRotate(orientation);
-
-            imageBitmap = Bitmap.createBitmap(imageBitmap, 0, 0, imageBitmap.getWidth(), imageBitmap.getHeight(), matrix, true);
-        }
-		
-		imageBitmap = resizeAndCropSquare(imageBitmap);
-		
-		return imageBitmap;
+	private void recordFirstPlayableFrame() {
+		final long startTime = mLoadStartTime;
+		mView.runAfterNextFrame(new Runnable() {
+			public void run() {
+				mFirstPlayableTimer.stop(startTime);
+			}
+		});
 	}
-	
+
 	/**
-     * Resize the specified bitmap to fit view width and crop to square
+     * Reinitialize the puzzle with the specified tiles
      * 
-     * @param imageBitmap
-     * 			Image bitmap to be resized and cropped
-     * @return Bitmap image resized to fit view width and cropped to square
+     * @param tileSet
+     * 				Tile images to display in puzzle view
      */
-	public Bitmap resizeAndCropSquare(Bitmap imageBitmap) {
-		
-		//compute scaled dimensions based on puzzle width
-		float aspectRatio = (float)imageBitmap.getHeight() / (float)imageBitmap.getWidth();
-		int newWidth = mView.getPuzzleWidth();
-		int newHeight = (int)(newWidth * aspectRatio);
-
-		//ensure that image height equal or greater than width in order to crop a square image based on width
-		if (newHeight < newWidth) {
-			newHeight = newWidth;
-			newWidth = (int)((float)	newWidth / aspectRatio);
-		}
-		
-		// resize the bitmap
-		int width = imageBitmap.getWidth();
-		int height = imageBitmap.getHeight();
-		float scaleWidth = ((float) newWidth) / width;
-		float scaleHeight = ((float) newHeight) / height;
-		Matrix matrix = new Matrix();
-		matrix.postScale(scaleWidth, scaleHeight);
-	
-		//get new bitmap with scaled dimensions
-		imageBitmap = Bitmap.createBitmap(imageBitmap, 0, 0, width, height, matrix, false);
-		
-		int squareDim = mView.getPuzzleWidth();
-		//crop to square
-		imageBitmap = Bitmap.createBitmap(imageBitmap, 
-											(imageBitmap.getWidth() - squareDim) / 2,
-											(imageBitmap.getHeight() - squareDim) / 2,
-											squareDim, 
-											squareDim);
-
-		return imageBitmap;
-
+	private void useTilesInPuzzle(TileSet tileSet) {
+		mView.setTileSet(tileSet);
+		mController.resetPuzzle();
 	}
 
 }
\ No newline at end of file
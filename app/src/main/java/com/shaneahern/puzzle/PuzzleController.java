@@ -1,5 +1,10 @@
 package com.shaneahern.puzzle;
 
+import java.util.Random;
+
+import com.shaneahern.puzzle.metrics.Metrics;
+import com.shaneahern.puzzle.metrics.Timer;
+
 /**
  * Controller for puzzle, relays moves to model, checks if moves are legal, resets puzzle to orignal state, checks if puzzle is solved.
  *
@@ -12,6 +17,19 @@ public class PuzzleController {
 	
 	private int mNumMoves;
 	
+	// for solve statistics, moves made by scrambling are tracked separately from player moves
+	private boolean mScrambling;
+	private int mScrambleMoves;
+	private int mPlayerMoves;
+	private long mGameStartTime = -1;
+	
+	// source of scramble moves for scramble(int)
+	private static final Random sScrambleRandom = new Random();
+	
+	private final Timer mMoveTimer = Metrics.get().timer("controller.move");
+	private final Timer mMoveLegalTimer = Metrics.get().timer("controller.is_move_legal");
+	private final Timer mPuzzleSolvedTimer = Metrics.get().timer("controller.is_puzzle_solved");
+	
 	public PuzzleController(PuzzleView view) {
 		mView = view;
 		mModel = new PuzzleModel(PuzzleView.PUZZLE_ROWS, PuzzleView.PUZZLE_COLS, new PuzzlePosition(PuzzleView.INITIAL_EMPTY_TILE_ROW, PuzzleView.INITIAL_EMPTY_TILE_COL));
@@ -46,7 +64,10 @@ public class PuzzleController {
      * @return true if there is a legal move from p
      */
 	public boolean isMoveLegal(PuzzlePosition p) {
-		return !mModel.positionIsEmpty(p) && (mModel.rowContainsEmptyPosition(p.getRow()) || mModel.colContainsEmptyPosition(p.getCol()));
+		long t = mMoveLegalTimer.start();
+		boolean isLegal = !mModel.positionIsEmpty(p) && (mModel.rowContainsEmptyPosition(p.getRow()) || mModel.colContainsEmptyPosition(p.getCol()));
+		mMoveLegalTimer.stop(t);
+		return isLegal;
 	}
 	
 	/**
@@ -70,6 +91,7 @@ public class PuzzleController {
      * @return true if there is a legal move from p, move succeeded and model updated
      */
 	public boolean move(PuzzlePosition p) {
+		long t = mMoveTimer.start();
 		boolean moveSuccess = false;
 		
 		if (isMoveLegal(p)) {
@@ -83,18 +105,66 @@ public class PuzzleController {
 			moveSuccess = true;
 			
 			mNumMoves++;
+			
+			if (!mScrambling) {
+				if (mGameStartTime < 0) {
+					// game starts with the first player move if the puzzle was not scrambled
+					mGameStartTime = System.nanoTime();
+				}
+				mPlayerMoves++;
+			}
 		}
 		
+		mMoveTimer.stop(t);
 		return moveSuccess;
 	}
 	
+	/**
+     * Generate a series of random legal moves to scramble puzzle positions. Scramble moves are not counted as player moves,
+     * and the game timer restarts when the scramble completes.
+     * 
+     * @param numAttempts
+     * 			Number of random positions to attempt a move from
+     * @return int number of legal moves made
+     */
+	public int scramble(int numAttempts) {
+		return scramble(numAttempts, sScrambleRandom);
+	}
+	
+	/**
+     * Generate a series of random legal moves to scramble puzzle positions, drawing positions from the given random
+     * source, so that puzzles scrambled from the same state with sources of the same seed end up identical
+     * 
+     * @param numAttempts
+     * 			Number of random positions to attempt a move from
+     * @param random
+     * 			Source of the positions to attempt moves from
+     * @return int number of legal moves made
+     */
+	public int scramble(int numAttempts, Random random) {
+		int numScrambleMoves = 0;
+		mScrambling = true;
+		for (int i=0; i < numAttempts; i++) {
+			int row = random.nextInt(PuzzleView.PUZZLE_ROWS);
+			int col = random.nextInt(PuzzleView.PUZZLE_COLS);
+			
+			if (move(row, col)) {
+				numScrambleMoves++;
+			}
+		}
+		mScrambling = false;
+		mScrambleMoves += numScrambleMoves;
+		mGameStartTime = System.nanoTime();
+		return numScrambleMoves;
+	}
+	
 	/**
      * Test if puzzle solved, e.g. all tiles returned to starting position
      * 
      * @return true if puzzle is solved, all tiles returned to starting position
      */
 	public boolean isPuzzleSolved() {
-		
+		long t = mPuzzleSolvedTimer.start();
 		boolean isSolved = true;
 		if (mNumMoves < 1) {
 			isSolved = false;
@@ -111,6 +181,7 @@ public class PuzzleController {
 				}
 			}
 		}
+		mPuzzleSolvedTimer.stop(t);
 		return isSolved;
 	}
 	
@@ -119,8 +190,7 @@ public class PuzzleController {
      * 
      */
 	public void resetPuzzle() {
-		// first move from initial position doesn't count towards moves to solve puzzle, so set to -1, first move will set to 0
-		mNumMoves = -1;
+		resetNumMoves();
 		mModel.initPuzzle();
 		mView.setPuzzlePositions(mModel.getPuzzlePositions(), mModel.getEmptyPosition());
 	}
@@ -139,6 +209,30 @@ public class PuzzleController {
 	public void resetNumMoves() {
 		// first move from initial position doesn't count towards moves to solve puzzle, so set to -1, first move will set to 0
 		mNumMoves = -1;
+		mScrambleMoves = 0;
+		mPlayerMoves = 0;
+		mGameStartTime = -1;
+	}
+	
+	/**
+     * @return int number of moves made by the player (excluding scramble moves) since the game started
+     */
+	public int getPlayerMoves() {
+		return mPlayerMoves;
+	}
+	
+	/**
+     * @return int number of moves used to scramble the puzzle since the game started
+     */
+	public int getScrambleMoves() {
+		return mScrambleMoves;
+	}
+	
+	/**
+     * @return long ms elapsed since the game started, or 0 if no game is in progress
+     */
+	public long getGameTimeMillis() {
+		return mGameStartTime < 0 ? 0 : (System.nanoTime() - mGameStartTime) / 1000000;
 	}
 	
 	/**
@@ -135,6 +135,23 @@ public class PuzzleModel {
 		return mEmptyPosition.getRow() == p.getRow() && mEmptyPosition.getCol() == p.getCol();
 	}
 	
+	/**
+    * Set the puzzle to any arrangement of its tiles, e.g. a board to solve
+    *
+    * @param puzzlePositions
+    * 		Tile in each position, 0 for the empty position
+    */
+	public void setPuzzlePositions(int[][] puzzlePositions) {
+		for (int row=0; row < mRows; row++) {
+			for (int col=0; col < mCols; col++) {
+				mPuzzlePositions[row][col] = puzzlePositions[row][col];
+				if (puzzlePositions[row][col] == 0) {
+					mEmptyPosition = new PuzzlePosition(row, col);
+				}
+			}
+		}
+	}
+	
 	/**
     * Getter for the current tile position
     * 
@@ -0,0 +1,101 @@
+package com.shaneahern.puzzle;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+/**
+ * Surface that the board is drawn on by a dedicated render thread, for the optional render thread mode of the
+ * PuzzleView. The PuzzleView keeps handling input and board state on the UI thread and publishes a BoardSnapshot
+ * whenever the board changes, the render thread draws and animates the latest snapshot independently of the UI
+ * thread. The render thread runs while the surface exists.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class PuzzleSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+	private RenderThread mRenderThread;
+	// latest snapshot, held by the view and handed to a new render thread when the surface is recreated
+	private BoardSnapshot mSnapshot;
+
+	public PuzzleSurfaceView(Context context) {
+		super(context);
+		getHolder().addCallback(this);
+	}
+
+	public PuzzleSurfaceView(Context context, AttributeSet attrs) {
+		super(context, attrs);
+		getHolder().addCallback(this);
+	}
+
+	public PuzzleSurfaceView(Context context, AttributeSet attrs, int defStyle) {
+		super(context, attrs, defStyle);
+		getHolder().addCallback(this);
+	}
+
+	/**
+     * Publish a snapshot of the board to be drawn on the next frame, on the UI thread. The caller's hold on the
+     * snapshot passes to the view, which releases the previous snapshot.
+     *
+     * @param snapshot
+     * 			Snapshot of the board
+     */
+	void publish(BoardSnapshot snapshot) {
+		if (mSnapshot != null) {
+			mSnapshot.release();
+		}
+		mSnapshot = snapshot;
+		if (mRenderThread != null) {
+			mRenderThread.publish(snapshot);
+		}
+	}
+
+	/**
+     * Run an action on the UI thread once the next frame has been drawn, immediately if there is no surface
+     *
+     * @param action
+     * 			Action to run
+     */
+	void runAfterNextFrame(Runnable action) {
+		if (mRenderThread != null) {
+			mRenderThread.runAfterNextFrame(action);
+		} else {
+			post(action);
+		}
+	}
+
+	@Override
+	public void surfaceCreated(SurfaceHolder holder) {
+		mRenderThread = new RenderThread(holder, PuzzleView.createTilePainter(), getResources().getColor(R.color.gray));
+		if (mSnapshot != null) {
+			mRenderThread.publish(mSnapshot);
+		}
+		mRenderThread.start();
+	}
+
+	@Override
+	public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+		// redraw the latest snapshot on the resized surface
+		if (mSnapshot != null) {
+			mRenderThread.publish(mSnapshot);
+		}
+	}
+
+	@Override
+	public void surfaceDestroyed(SurfaceHolder holder) {
+		// the render thread must stop drawing before the surface goes away
+		mRenderThread.quit();
+		mRenderThread = null;
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		// let the tile set of the last snapshot be reused once the view is gone
+		if (mSnapshot != null) {
+			mSnapshot.release();
+			mSnapshot = null;
+		}
+	}
+}
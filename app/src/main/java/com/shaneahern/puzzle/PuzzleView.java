@@ -3,25 +3,39 @@ package com.shaneahern.puzzle;
 import java.util.ArrayList;
 import java.util.List;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.os.Handler;
+import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.Display;
 import android.view.View;
 import android.view.WindowManager;
 
+import com.shaneahern.puzzle.image.ImageRequest;
+import com.shaneahern.puzzle.image.MipChain;
+import com.shaneahern.puzzle.image.RegionTileSource;
+import com.shaneahern.puzzle.image.TileCache;
+import com.shaneahern.puzzle.image.TileSet;
+import com.shaneahern.puzzle.image.TileSlicer;
+import com.shaneahern.puzzle.metrics.Clock;
+import com.shaneahern.puzzle.metrics.FrameTracer;
+import com.shaneahern.puzzle.metrics.Metrics;
+import com.shaneahern.puzzle.metrics.Timer;
+
 /**
  * Main view class for puzzle. Takes square input bitmap and divides into equal sized bitmap tiles according to the number of rows and columns in the puzzle.
  * Allows touch interface to drag tiles to a new position, and animates tiles that are partially moved to the destination position if moved more than 50%
  * of the way to the new position, or else animates back to the starting position. Notifies registered listeners when a move has completed.
+ * 
+ * The board can be zoomed and panned within the view through a Viewport, e.g. for boards with too many cells to play at the view size. Only the
+ * cells visible in the view are drawn, zoomed out boards are drawn from downscaled mip levels of the tile images and zoomed in boards from tiles
+ * decoded on demand by a RegionTileSource, so drawing cost and memory use depend on what is on screen rather than on the size of the board.
  *
  * @author  Shane Ahern (shane@shaneahern.com)
  */
-public class PuzzleView extends View {
+public class PuzzleView extends View implements TileAnimator.Listener, RegionTileSource.Listener {
 
 	
 	/// 4 x 4 puzzle with starting empty postion at row 1, col 1
@@ -37,15 +51,24 @@ public class PuzzleView extends View {
 	private static final int MS_TOUCH_THRESHOLD_FOR_DRAG_DETECTION = 250;
 	private static final float PERCENT_MOVEMENT_THRESHOLD_FOR_DRAG_DETECTION = 0.1f;
 	
-	// for tile animation
-	private int mAnimationSpeed = 5; // number of ms between animation updates
-	private int mAnimationIncrement = 2; // number of pixels moved in each animation update
+	// for tile animation, average speed in pixels per ms
+	private static final float ANIMATION_SPEED_SLOW = 0.4f;
+	private static final float ANIMATION_SPEED_FAST = 10f;
 
 	// thin white border around each tile
 	private static final float BORDER_WIDTH = 2.0f;
 	private static final int BORDER_COLOR = 0xffffffff;
+	
+	// devices with a heap limit at or below this use RGB_565 tile images by default
+	private static final int LOW_MEMORY_CLASS_MB = 32;
 
-	private Paint mBorderPaint;
+	// fill for tiles whose image has not been loaded
+	private static final int PLACEHOLDER_COLOR = 0xff808080;
+	
+	// boards are laid out with tiles of at least this size, boards that do not fit the view are zoomed out to fit
+	private static final int MIN_TILE_SIZE_DP = 48;
+	// largest zoom relative to the whole board fitting the view
+	private static final float MAX_ZOOM = 8f;
 	
 	// listeners to be notified on each completed move
 	List<PuzzleMoveListener> mMoveListeners;
@@ -58,6 +81,30 @@ public class PuzzleView extends View {
 	int mTileWidth;
 	int mTileHeight;
 	
+	// whole board dimensions, larger than the view for boards with more cells than fit the view at the minimum tile size
+	int mBoardWidth;
+	int mBoardHeight;
+	// visible region of the board, touches are mapped to board coordinates and the board is drawn scaled and translated by it
+	private Viewport mViewport;
+	
+	// all tiles are drawn from regions of one shared source bitmap, until the first tile set is loaded placeholder tiles are drawn
+	TileSet mTileSet;
+	// downscaled tile images for zoomed out drawing, and tiles decoded on demand for zoomed in drawing, may be null
+	private MipChain mMipChain;
+	private RegionTileSource mTileSource;
+	// actions to run after the next frame is drawn
+	private final List<Runnable> mAfterNextFrame = new ArrayList<Runnable>();
+	// surface drawn by a render thread in render thread mode, null when the board is drawn in onDraw
+	private PuzzleSurfaceView mRenderTarget;
+	
+	// shared cache of tile sets and pool of bitmaps to reuse when the image changes
+	private TileCache mTileCache;
+	private boolean mLowMemoryMode;
+	private final Rect mTileDstRect = new Rect();
+	private final Rect mLevelRect = new Rect();
+	// first row, first column, end row and end column of the cells drawn in a frame
+	private final int[] mCellRange = new int[4];
+	
 	// tile state and positions in puzzle grid
 	Tile[] mTiles;
 	int[][] mPuzzlePositions;
@@ -68,25 +115,59 @@ public class PuzzleView extends View {
 	private float mStartTouchY;
 	private float mTouchX;
 	private float mTouchY;
+	// largest movement from the start position during the touch
+	private float mMaxTouchMoveX;
+	private float mMaxTouchMoveY;
+	// latest touch sample on the board, applied to the tiles on the next frame
+	private float mPendingTouchX;
+	private float mPendingTouchY;
+	private FrameScheduler mTouchScheduler;
+	private final FrameScheduler.Callback mTouchFrameCallback = new FrameScheduler.Callback() {
+		public void doFrame(long frameTimeNanos) {
+			moveTouch(mPendingTouchX, mPendingTouchY);
+		}
+	};
+	// tiles moving along with the selected tile, reused for every touch sample
+	private final Tile[] mMovingTiles = new Tile[Math.max(PUZZLE_ROWS, PUZZLE_COLS)];
 	private long mTouchStartTime;
 	private PuzzlePosition mActivePosition;
 	
 	// for tile animation
-	private Handler mAnimationHandler = new Handler();
-	private Paint mTilePaint;
+	private TileAnimator mAnimator;
+	private TilePainter mTilePainter;
+	
+	// for dirty region invalidation, the region covered by the tiles moving in the current slide and by in progress animations
+	private final Rect mMoveBounds = new Rect();
+	private final Rect mAnimationBounds = new Rect();
+	private final Rect mClipBounds = new Rect();
+	private final Rect mInvalidRect = new Rect();
+	
+	// instrumentation of hot paths, no-op unless a metrics registry is installed before the view is created (animation ticks are timed by TileAnimator)
+	private final Timer mDrawTimer = Metrics.get().timer("view.on_draw");
+	
+	// per-frame tracing for jank detection
+	private FrameTracer mFrameTracer = new FrameTracer();
 	
 	// holder class for tile state
-	class Tile {
-		public Bitmap tileImage;
+	static class Tile {
+		// region of the shared tile source bitmap holding the tile image, null for the empty tile
+		public Rect srcRect;
 		// touch movement delta from original position
 		public int deltaX;
 		public int deltaY;
 		// target x, y position that tile should animate to on move end
 		public int targetX;
 		public int targetY;
+		// delta at the start of the current animation, and its timing
+		public int startX;
+		public int startY;
+		public long animationStartNanos;
+		public long animationDurationNanos;
+		// true while the animator is moving the tile
+		public boolean animating;
 		
-		public Tile (Bitmap tileImage) {
-			this.tileImage = tileImage;
+		public Tile (Rect srcRect) {
+			this.srcRect = srcRect;
 			deltaX = 0;
 			deltaY = 0;
 			targetX = 0;
@@ -113,6 +194,23 @@ public class PuzzleView extends View {
 		return mWidth;
 	}
 	
+	/**
+     * @return FrameTracer holding draw times, animation tick intervals and dropped frames for recent frames
+     */
+	public FrameTracer getFrameTracer() {
+		return mFrameTracer;
+	}
+	
+	/**
+     * Replace the frame tracer, e.g. with one using a different clock or frame budget
+     *
+     * @param frameTracer
+     * 			Tracer to record frames with
+     */
+	public void setFrameTracer(FrameTracer frameTracer) {
+		mFrameTracer = frameTracer;
+	}
+	
 	private void init(Context context) {
 		
 		// show empty placeholder in xml layout viewer
@@ -129,68 +227,95 @@ public class PuzzleView extends View {
 		mHeight = display.getWidth();
 		
         setMeasuredDimension(mWidth, mHeight);
+        int minTileSize = (int)(MIN_TILE_SIZE_DP * getResources().getDisplayMetrics().density);
+        mTileWidth = Math.max(mWidth / PUZZLE_COLS, minTileSize);
+        mTileHeight = Math.max(mHeight / PUZZLE_ROWS, minTileSize);
+        mBoardWidth = mTileWidth * PUZZLE_COLS;
+        mBoardHeight = mTileHeight * PUZZLE_ROWS;
+        mViewport = new Viewport(mWidth, mHeight, mBoardWidth, mBoardHeight, MAX_ZOOM);
         
-        mTilePaint = new Paint();
-    	mTilePaint.setFilterBitmap(true);
-    	
-        mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mBorderPaint.setStrokeWidth(BORDER_WIDTH);
-    	mBorderPaint.setStyle(Paint.Style.STROKE);
-    	mBorderPaint.setColor(BORDER_COLOR);
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        mLowMemoryMode = am.getMemoryClass() <= LOW_MEMORY_CLASS_MB;
+        
+        mTileCache = TileCache.getInstance(context);
+        mTouchScheduler = FrameScheduler.create();
+        mAnimator = new TileAnimator(FrameScheduler.create(), Clock.SYSTEM, this);
+        
+        mTilePainter = createTilePainter();
     	
-        initTiles();
+        // tile images are loaded in the background, see getGlobeRequest(), the view is created without decoding anything
+        initPlaceholderTiles();
+	}
+	
+	/**
+     * @return ImageRequest for the globe image stored in app resources, shown until an image is picked
+     */
+	public ImageRequest getGlobeRequest() {
+		return ImageRequest.forResource(getResources(), R.drawable.globe);
 	}
 
 	/**
-     * Initialize tiles with the globe bitmap image stored in app resources
+     * Create tiles without images, drawn as a grid of placeholders until the first tile set is loaded, so the view
+     * can be created and the board shown and played before any image has been decoded
      *
      */
-	private void initTiles() {
-		
+	private void initPlaceholderTiles() {
 		mTiles = new Tile[PUZZLE_ROWS * PUZZLE_COLS];
-        
-        Bitmap globe = BitmapFactory.decodeResource(getResources(), R.drawable.globe);
-        globe = Bitmap.createScaledBitmap(globe, mWidth, mWidth, true);
-        
-		initTiles(globe);
+		for (int tilePos=0; tilePos < mTiles.length; tilePos++) {
+			mTiles[tilePos] = new Tile(null);
+		}
 	}
 
 	/**
-     * Initialize tiles with the specified bitmap image, which will be divided into equal sized tile images with borders.
-     * Image can be from resources, or other origin such as the Gallery or Camera
+     * Create a painter that draws tiles with the view's borders and placeholder, one per drawing thread
+     *
+     * @return TilePainter for puzzle tiles
+     */
+	static TilePainter createTilePainter() {
+		return new TilePainter(BORDER_WIDTH, BORDER_COLOR, PLACEHOLDER_COLOR);
+	}
+	
+	/**
+     * Create a slicer that paints tile borders matching the borders drawn by the view
+     *
+     * @return TileSlicer for puzzle images
+     */
+	public static TileSlicer createTileSlicer() {
+		// a border stroke of half of BORDER_WIDTH drawn at the tile edge covers whole pixels inside the tile
+		return TileSlicer.create((int)(BORDER_WIDTH / 2), BORDER_COLOR);
+	}
+	
+	/**
+     * Swap in a new set of tile images, e.g. sliced on a background thread. The tile images are replaced in one step,
+     * and the state and positions of tiles are unchanged. Tile sets may be shared with the TileCache, so the
+     * previous tile set is not recycled, it is released to the cache, which reuses its image once it is evicted.
      *
-     * @param image
-     * 			Bitmap image to display in puzzle view
-     */
-	public void initTiles(Bitmap image) {
-		int tilePos = 0;
-        int x = 0;
-        int y = 0;
-        mTileWidth = image.getWidth() / PUZZLE_COLS;
-        mTileHeight = image.getHeight() / PUZZLE_ROWS;
-        for (int row=0; row < PUZZLE_ROWS; row++) {
-        	for (int col=0; col < PUZZLE_COLS; col++) {
-        		if (row == INITIAL_EMPTY_TILE_ROW && col == INITIAL_EMPTY_TILE_COL) {
-        			// create tile with no image for empty position
-        			mTiles[tilePos++] = new Tile(null);
-        		} else {
-        			if (mTiles[tilePos] != null) {
-        				// if tile array contains tile from a previous image, recycle the bitmap
-        				mTiles[tilePos].tileImage.recycle();
-        				mTiles[tilePos] = null;
-        			}
-        			x = col * mTileWidth;
-	        		y = row * mTileHeight;
-	        		// extract a subset of the full image at the location for the current tile
-	        		Bitmap tile = Bitmap.createBitmap(image, x, y, mTileWidth, mTileHeight);
-	        		// add a border
-	        		Canvas canvas = new Canvas(tile);
-	        		canvas.drawRect(0, 0, mTileWidth, mTileHeight, mBorderPaint);
-	        		// save ordered array of tiles
-	        		mTiles[tilePos++] = new Tile(tile);
-        		}
-    		}
-        }
+     * @param tileSet
+     * 			Tile images to display in puzzle view
+     */
+	public void setTileSet(TileSet tileSet) {
+		mTileCache.setDisplayed(tileSet);
+		mTileSet = tileSet;
+		if (mMipChain != null) {
+			mMipChain.release();
+		}
+		mMipChain = new MipChain(tileSet, mTileCache.getBitmapPool());
+		for (int tilePos=0; tilePos < mTiles.length; tilePos++) {
+			if (mTiles[tilePos] == null) {
+				mTiles[tilePos] = new Tile(null);
+			}
+			// tile image is the subset of the full image at the location for the current tile
+			mTiles[tilePos].srcRect = tileSet.getSrcRect(tilePos);
+		}
+		invalidate();
+		publishSnapshot();
+	}
+	
+	/**
+     * @return true if tile images are stored as RGB_565 to save memory
+     */
+	public boolean isLowMemoryMode() {
+		return mLowMemoryMode;
 	}
 	
 	@Override
@@ -205,30 +330,31 @@ public class PuzzleView extends View {
      */
 	public void tileClicked(float touchX, float touchY) {
 		
-		mActivePosition = getTouchPosition(touchX, touchY);
+		mActivePosition = getTouchPosition(mViewport.toBoardX(touchX), mViewport.toBoardY(touchY));
 		
-		for (int row=0; row < PUZZLE_ROWS; row++) {
-        	for (int col=0; col < PUZZLE_COLS; col++) {
-        		
-        		if (this.isPartOfMove(row, col)) {
-        			Tile tile = mTiles[mPuzzlePositions[row][col]];
-        			if (canMoveRight()) {
-        				tile.targetX = mTileWidth;
-        			} else if (canMoveLeft()) {
-        				tile.targetX = -mTileWidth;
-        			}
-        			if (canMoveDown()) {
-        				tile.targetY = mTileHeight;
-        			} else if (canMoveUp()) {
-        				tile.targetY = -mTileHeight;
-        			}
-        		}
-        	}
+		int numMoving = getMovingTiles(mMovingTiles);
+		for (int i=0; i < numMoving; i++) {
+			Tile tile = mMovingTiles[i];
+			if (canMoveRight()) {
+				tile.targetX = mTileWidth;
+			} else if (canMoveLeft()) {
+				tile.targetX = -mTileWidth;
+			}
+			if (canMoveDown()) {
+				tile.targetY = mTileHeight;
+			} else if (canMoveUp()) {
+				tile.targetY = -mTileHeight;
+			}
+			//faster speed when animating on click compared to after drag
+			mAnimator.animate(tile, ANIMATION_SPEED_FAST);
+		}
+		if (mAnimator.isRunning()) {
+			mFrameTracer.beginAnimation();
+			if (getMoveBounds(mMoveBounds)) {
+				mAnimationBounds.union(mMoveBounds);
+			}
+			publishSnapshot();
 		}
-		
-		//faster speed when animating on click compared to after drag
-		setAnimationSpeedFast();
-		mAnimationHandler.post(mAnimationTask);
 	}
 	
 	/**
@@ -236,71 +362,58 @@ public class PuzzleView extends View {
      * 
      */
 	private void tileDragged() {
-		for (int row=0; row < PUZZLE_ROWS; row++) {
-			for (int col=0; col < PUZZLE_COLS; col++) {
-				// when tile dragged more than 50% of the distance to the next position, 
-				// animate to complete the move, otherwise animate return to original position
-				if (this.isPartOfMove(row, col)) {
-					Tile tile = mTiles[mPuzzlePositions[row][col]];
-					tile.deltaX = getXTouchMove(row);
-					if (((float)tile.deltaX / (float)mTileWidth) > PERCENT_THRESHOLD_FOR_DRAG_MOVE) {
-						tile.targetX = mTileWidth;
-					} else if ((float)(tile.deltaX / (float)mTileWidth) < -PERCENT_THRESHOLD_FOR_DRAG_MOVE) {
-						tile.targetX = -mTileWidth;
-					} else {
-						tile.targetX = 0;
-					}
-					tile.deltaY = getYTouchMove(col);
-					if (((float)tile.deltaY / (float)mTileHeight) > PERCENT_THRESHOLD_FOR_DRAG_MOVE) {
-						tile.targetY = mTileHeight;
-					} else if (((float)(tile.deltaY) / (float)mTileHeight) < -PERCENT_THRESHOLD_FOR_DRAG_MOVE) {
-						tile.targetY = -mTileHeight;
-					} else {
-						tile.targetY = 0;
-					}
-				}
+		// all moving tiles are in the row or column of the selected tile, so they all move by the same amount
+		int numMoving = getMovingTiles(mMovingTiles);
+		if (numMoving == 0) {
+			return;
+		}
+		int deltaX = getXTouchMove(mActivePosition.getRow());
+		int deltaY = getYTouchMove(mActivePosition.getCol());
+		for (int i=0; i < numMoving; i++) {
+			// when tile dragged more than 50% of the distance to the next position, 
+			// animate to complete the move, otherwise animate return to original position
+			Tile tile = mMovingTiles[i];
+			tile.deltaX = deltaX;
+			if (((float)tile.deltaX / (float)mTileWidth) > PERCENT_THRESHOLD_FOR_DRAG_MOVE) {
+				tile.targetX = mTileWidth;
+			} else if ((float)(tile.deltaX / (float)mTileWidth) < -PERCENT_THRESHOLD_FOR_DRAG_MOVE) {
+				tile.targetX = -mTileWidth;
+			} else {
+				tile.targetX = 0;
 			}
+			tile.deltaY = deltaY;
+			if (((float)tile.deltaY / (float)mTileHeight) > PERCENT_THRESHOLD_FOR_DRAG_MOVE) {
+				tile.targetY = mTileHeight;
+			} else if (((float)(tile.deltaY) / (float)mTileHeight) < -PERCENT_THRESHOLD_FOR_DRAG_MOVE) {
+				tile.targetY = -mTileHeight;
+			} else {
+				tile.targetY = 0;
+			}
+			// slower speed when animating after drag compared to on click
+			mAnimator.animate(tile, ANIMATION_SPEED_SLOW);
+		}
+		if (mAnimator.isRunning()) {
+			mFrameTracer.beginAnimation();
+			if (getMoveBounds(mMoveBounds)) {
+				mAnimationBounds.union(mMoveBounds);
+			}
+			publishSnapshot();
 		}
-		
-		// slower speed when animating after drag compared to on click
-		setAnimationSpeedSlow();
-		mAnimationHandler.post(mAnimationTask);
-	}
-	
-	/**
-     * Set animation values to create a slower animation speed
-     * 
-     */
-	private void setAnimationSpeedSlow() {
-		// number of ms between animation updates
-		mAnimationSpeed = 5;
-		// number of pixels moved in each animation update
-		mAnimationIncrement = 2;
-	}
-	
-	/**
-     * Set animation values to create a faster animation speed
-     * 
-     */
-	private void setAnimationSpeedFast() {
-		// number of ms between animation updates
-		mAnimationSpeed = 1;
-		// number of pixels moved in each animation update
-		mAnimationIncrement = 10;
 	}
 	
 	/**
      * Update state of touch interface during active touch
      *
      * @param touchX
-     * 				X coordinate of the touch event
+     * 				X coordinate of the touch event on the board
      * @param touchY
-     * 				Y coordinate of the touch event
+     * 				Y coordinate of the touch event on the board
      * @return PuzzlePosition corresponding to the x, y location of the touch position
      */
 	private PuzzlePosition getTouchPosition(float touchX, float touchY) {
-		int row = (int)((touchY/mHeight) * PUZZLE_ROWS);
-		int col = (int)((touchX/mWidth) * PUZZLE_COLS);
+		// the view can show area outside of a zoomed out board, touches there select the nearest cell
+		int row = Math.max(0, Math.min(PUZZLE_ROWS - 1, (int)(touchY / mTileHeight)));
+		int col = Math.max(0, Math.min(PUZZLE_COLS - 1, (int)(touchX / mTileWidth)));
 		return new PuzzlePosition(row, col);
 	}
 	
@@ -317,19 +430,26 @@ public class PuzzleView extends View {
      */
 	public void setIsTouchActive(boolean isActive, float x, float y) {
 		
+		// touches are tracked on the board, so a drag moves tiles along with the finger at any zoom
+		float boardX = mViewport.toBoardX(x);
+		float boardY = mViewport.toBoardY(y);
 		if (isActive) {
-			mActivePosition = getTouchPosition(x, y);
-			mStartTouchX = x;
-			mStartTouchY = y;
+			mActivePosition = getTouchPosition(boardX, boardY);
+			mStartTouchX = boardX;
+			mStartTouchY = boardY;
+			mMaxTouchMoveX = 0;
+			mMaxTouchMoveY = 0;
 			mTouchStartTime = System.currentTimeMillis();
 		} else {
-			mTouchX = x;
-			mTouchY = y;
+			// the release position supersedes any sample still waiting for the next frame
+			mTouchScheduler.removeFrameCallback(mTouchFrameCallback);
+			mTouchX = boardX;
+			mTouchY = boardY;
+			trackTouchMove(boardX, boardY);
 			long touchDuration = System.currentTimeMillis() - mTouchStartTime;
-			// get absolute movement distance for x and y from starting touch position
-			float moveX = Math.abs(mStartTouchX - mTouchX);
-			float moveY = Math.abs(mStartTouchY - mTouchY);
-			if (isClickEvent(touchDuration, moveX, moveY)) {
+			// use the largest movement from the starting touch position during the touch, so a touch that moves
+			// away and comes back is not mistaken for a click
+			if (isClickEvent(touchDuration, mMaxTouchMoveX, mMaxTouchMoveY)) {
 				tileClicked(x, y);
 			} else {
 				tileDragged();
@@ -344,9 +464,9 @@ public class PuzzleView extends View {
      * @param touchDuration
      * 			Sets whether this is the beginning of the touch and drag event or the end
      * @param moveX
-     * 			The absolute change in the x position after touch end from the start touch x position
+     * 			The largest absolute change in the x position during the touch from the start touch x position
      * @param moveY
-     * 			The absolute change in the y position after touch end from the start touch y position
+     * 			The largest absolute change in the y position during the touch from the start touch y position
      */
 	private boolean isClickEvent(long touchDuration, float moveX, float moveY) {
 		return touchDuration < MS_TOUCH_THRESHOLD_FOR_DRAG_DETECTION 
@@ -355,106 +475,164 @@ public class PuzzleView extends View {
 	}
 	
 	/**
-     * Update state of touch interface during active touch
+     * Move the tiles in the current slide to a touch position on the board
+     * 
+     */
+	private void moveTouch(float x, float y) {
+		mTouchX = x;
+		mTouchY = y;
+		trackTouchMove(x, y);
+		int numMoving = getMovingTiles(mMovingTiles);
+		if (numMoving == 0) {
+			return;
+		}
+		// all moving tiles are in the row or column of the selected tile, so they all move by the same amount
+		int deltaX = getXTouchMove(mActivePosition.getRow());
+		int deltaY = getYTouchMove(mActivePosition.getCol());
+		for (int i=0; i < numMoving; i++) {
+			mMovingTiles[i].deltaX = deltaX;
+			mMovingTiles[i].deltaY = deltaY;
+		}
+		// only the tiles in the current slide can move, so only redraw their cells
+		if (mRenderTarget != null) {
+			publishSnapshot();
+		} else if (getMoveBounds(mMoveBounds)) {
+			invalidateBoard(mMoveBounds);
+		}
+	}
+	
+	/**
+     * Cancel the touch in progress, e.g. when a second finger starts zooming, returning any dragged tiles to their cells
+     * 
+     */
+	public void cancelTouch() {
+		mTouchScheduler.removeFrameCallback(mTouchFrameCallback);
+		moveTouch(mStartTouchX, mStartTouchY);
+	}
+	
+	/**
+     * Add a touch sample during active touch, e.g. a historical sample batched in a MotionEvent. Samples are 
+     * coalesced, tiles are moved to the latest sample once per frame, while the largest movement across all
+     * samples is kept for click detection.
      * 
      * @param x
      * 			The x coordinate of the touch
      * @param y
      * 			The y coordinate of the touch
      */
-	public void setTouchXY(float x, float y) {
-		mTouchX = x;
-		mTouchY = y;
-		for (int row=0; row < PUZZLE_ROWS; row++) {
-        	for (int col=0; col < PUZZLE_COLS; col++) {
-        		
-        		if (this.isPartOfMove(row, col)) {
-        			Tile tile = mTiles[mPuzzlePositions[row][col]];
-        			tile.deltaX = getXTouchMove(row);
-        			tile.deltaY = getYTouchMove(col);
-        		}
-        	}
-		}
-		invalidate();
+	public void addTouchSample(float x, float y) {
+		mPendingTouchX = mViewport.toBoardX(x);
+		mPendingTouchY = mViewport.toBoardY(y);
+		trackTouchMove(mPendingTouchX, mPendingTouchY);
+		mTouchScheduler.postFrameCallback(mTouchFrameCallback);
+	}
+	
+	private void trackTouchMove(float x, float y) {
+		mMaxTouchMoveX = Math.max(mMaxTouchMoveX, Math.abs(x - mStartTouchX));
+		mMaxTouchMoveY = Math.max(mMaxTouchMoveY, Math.abs(y - mStartTouchY));
 	}
 	
 	/**
-     * Animation loop to move tiles that have been moved to a location in between two tile positions by touch input.
-     * Animation loops with a delay between loops until all tiles have reached their target location. When all tiles
-     * have reached their target location, reset their target  
+     * Get the tiles that move along with the currently selected tile, from the selected tile up to the empty 
+     * position in the same row or column. Only the cells between the two positions are visited, so the cost does 
+     * not depend on the size of the board.
      * 
+     * @param tiles
+     * 			Array to fill with the moving tiles, at least as long as the longer side of the board
+     * @return int number of moving tiles, 0 if the selected tile cannot move
      */
-	private Runnable mAnimationTask = new Runnable() {
-
-		public void run() {
-		
-			boolean animationComplete = true;
-			for (int row=0; row < PUZZLE_ROWS; row++) {
-	        	for (int col=0; col < PUZZLE_COLS; col++) {
-	        		Tile tile = mTiles[mPuzzlePositions[row][col]];
-	    			if (tile.deltaX < tile.targetX) {
-	    				// tile delta from starting position has not reached target, so increment delta
-	    				tile.deltaX += mAnimationIncrement;
-	    				// make sure delta is not beyond starting or target location
-	    				tile.deltaX = Math.min(tile.deltaX, mTileWidth);
-	    				tile.deltaX = Math.min(tile.deltaX, tile.targetX);
-	    				// continue animation until tile has reached target location
-	    				animationComplete = false;
-	    			} else if (tile.deltaX > tile.targetX) {
-	    				// tile delta from starting position has not reached target, so increment delta
-	    				tile.deltaX -= mAnimationIncrement;
-	    				// make sure delta is not beyond starting or target location
-	    				tile.deltaX = Math.max(tile.deltaX, -mTileWidth);
-	    				tile.deltaX = Math.max(tile.deltaX, tile.targetX);
-	    				// continue animation until tile has reached target location
-	    				animationComplete = false;
-	    			}
-	    			if (tile.deltaY < tile.targetY) {
-	    				// tile delta from starting position has not reached target, so increment delta
-	    				tile.deltaY += mAnimationIncrement;
-	    				// make sure delta is not beyond starting or target location
-	    				tile.deltaY = Math.min(tile.deltaY, mTileHeight);
-	    				tile.deltaY = Math.min(tile.deltaY, tile.targetY);
-	    				// continue animation until tile has reached target location
-	    				animationComplete = false;
-	    			} else if (tile.deltaY > tile.targetY) {
-	    				// tile delta from starting position has not reached target, so increment delta
-	    				tile.deltaY -= mAnimationIncrement;
-	    				// make sure delta is not beyond starting or target location
-	    				tile.deltaY = Math.max(tile.deltaY, -mTileHeight);
-	    				tile.deltaY = Math.max(tile.deltaY, tile.targetY);
-	    				// continue animation until tile has reached target location
-	    				animationComplete = false;
-	    			}
-	    		}
+	private int getMovingTiles(Tile[] tiles) {
+		if (mActivePosition == null || mEmptyPosition == null || mPuzzlePositions == null) {
+			return 0;
+		}
+		int activeRow = mActivePosition.getRow();
+		int activeCol = mActivePosition.getCol();
+		int emptyRow = mEmptyPosition.getRow();
+		int emptyCol = mEmptyPosition.getCol();
+		int count = 0;
+		if (activeRow == emptyRow && activeCol != emptyCol) {
+			int step = activeCol < emptyCol ? 1 : -1;
+			for (int col=activeCol; col != emptyCol; col += step) {
+				tiles[count++] = mTiles[mPuzzlePositions[activeRow][col]];
 			}
-			if (!animationComplete) {
-				// continue animation after delay until all tiles have reached target location
-				invalidate();
-				mAnimationHandler.postDelayed(mAnimationTask, mAnimationSpeed);
-			} else {
-				// animate complete b/c all tiles have reached target location, so reset tile delta and target locations to 0
-				boolean didMove = false;
-				for (int row=0; row < PUZZLE_ROWS; row++) {
-		        	for (int col=0; col < PUZZLE_COLS; col++) {
-		        		Tile tile = mTiles[mPuzzlePositions[row][col]];
-		        		//if any tiles have a non-zero target x or y coordinate, at least one tile has moved
-		        		if (tile.targetX != 0 || tile.targetY != 0) {
-		        			didMove = true;
-		        		} 
-		        		tile.deltaX = 0;
-		        		tile.deltaY = 0;
-		        		tile.targetX = 0;
-		        		tile.targetY = 0;
-		        	}
-				}
-				if (didMove) {
-					//at least one tile has moved to a new position, so need to update board
-	    			notifyMoveListeners(mActivePosition);
-				}
+		} else if (activeCol == emptyCol && activeRow != emptyRow) {
+			int step = activeRow < emptyRow ? 1 : -1;
+			for (int row=activeRow; row != emptyRow; row += step) {
+				tiles[count++] = mTiles[mPuzzlePositions[row][activeCol]];
 			}
 		}
-	};
+		return count;
+	}
+	
+	/**
+     * Compute the region covered by the tiles that move along with the currently selected tile, from the cell of
+     * the selected tile to the empty cell the slide moves into. Tiles can only move within this region during a
+     * drag or animation, so nothing outside it needs to be redrawn.
+     * 
+     * @param bounds
+     * 			Set to the bounding rect of the moving tiles, or to empty if no tiles can move
+     * @return true if any tiles can move
+     */
+	private boolean getMoveBounds(Rect bounds) {
+		bounds.setEmpty();
+		if (mActivePosition == null || mEmptyPosition == null) {
+			return false;
+		}
+		int activeRow = mActivePosition.getRow();
+		int activeCol = mActivePosition.getCol();
+		int emptyRow = mEmptyPosition.getRow();
+		int emptyCol = mEmptyPosition.getCol();
+		if (activeRow != emptyRow && activeCol != emptyCol) {
+			return false;
+		}
+		bounds.set(Math.min(activeCol, emptyCol) * mTileWidth, 
+				Math.min(activeRow, emptyRow) * mTileHeight,
+				(Math.max(activeCol, emptyCol) + 1) * mTileWidth, 
+				(Math.max(activeRow, emptyRow) + 1) * mTileHeight);
+		return !bounds.isEmpty();
+	}
+	
+	/**
+     * Animation frame callback, redraws the tiles that the animator has moved
+     * 
+     */
+	@Override
+	public void onAnimationFrame() {
+		mFrameTracer.animationTick();
+		if (mRenderTarget == null) {
+			// in render thread mode the render thread animates tiles from the animation parameters in the snapshot
+			invalidateBoard(mAnimationBounds);
+		}
+	}
+	
+	/**
+     * Animation complete b/c all tiles have reached target location, so reset tile delta and target locations to 0,
+     * and notify listeners if any tile has moved to a new position
+     * 
+     */
+	@Override
+	public void onAnimationComplete(List<Tile> tiles) {
+		mFrameTracer.endAnimation();
+		mAnimationBounds.setEmpty();
+		boolean didMove = false;
+		for (Tile tile : tiles) {
+			//if any tiles have a non-zero target x or y coordinate, at least one tile has moved
+			if (tile.targetX != 0 || tile.targetY != 0) {
+				didMove = true;
+			}
+			tile.deltaX = 0;
+			tile.deltaY = 0;
+			tile.targetX = 0;
+			tile.targetY = 0;
+		}
+		if (didMove) {
+			//at least one tile has moved to a new position, so need to update board
+			notifyMoveListeners(mActivePosition);
+		} else {
+			// tiles returned to their positions, publish their reset offsets (a move publishes new positions instead)
+			publishSnapshot();
+		}
+	}
 	
 	/**
      * Register to be notified when a puzzle tile position has changed 
@@ -483,42 +661,6 @@ public class PuzzleView extends View {
 		}
 	}
 	
-	/**
-     * Test if the currently selected tile is moving and the tile at row, col is also moving along with it
-     * 
-     * @return boolean true if the currently selected tile is moving and the tile at row, col is also moving along with it
-     */
-	private boolean isPartOfMove(int row, int col) {
-		boolean isPartOfMove = false;
-		
-		if (mActivePosition != null) {
-			if (mActivePosition.getRow() == row && mEmptyPosition.getRow() == row) {
-				if (canMoveLeft()) {
-					if (col > mEmptyPosition.getCol() && col <= mActivePosition.getCol()) {
-						isPartOfMove = true;
-					}
-				} else if (canMoveRight()) {
-					if (col < mEmptyPosition.getCol() && col >= mActivePosition.getCol()) {
-						isPartOfMove = true;
-					}
-				}
-			}
-			if (mActivePosition.getCol() == col && mEmptyPosition.getCol() == col) {
-				if (canMoveDown()) {
-					if (row < mEmptyPosition.getRow() && row >= mActivePosition.getRow()) {
-						isPartOfMove = true;
-					}
-				} else if (canMoveUp()) {
-					if (row > mEmptyPosition.getRow() && row <= mActivePosition.getRow()) {
-						isPartOfMove = true;
-					}
-				}
-			}
-		}
-		
-		return isPartOfMove;
-	}
-	
 	/**
      * Test if currently selected position is above the empty position and so can move down
      * 
@@ -617,27 +759,209 @@ public class PuzzleView extends View {
 
 	@Override
 	protected void onDraw(Canvas canvas) {
-		
+		if (mRenderTarget != null) {
+			// the board is drawn by the render thread
+			return;
+		}
+		long t = mDrawTimer.start();
+		long frame = mFrameTracer.beginFrame();
+		int tilesDrawn = 0;
 		if (mPuzzlePositions != null && mEmptyPosition != null) {
-			// draw all tiles at their current positions in the puzzle grid, with any in progress touch or animation 
+			canvas.save();
+			canvas.scale(mViewport.getScale(), mViewport.getScale());
+			canvas.translate(-mViewport.getOffsetX(), -mViewport.getOffsetY());
 			
+			// draw tiles at their current positions in the puzzle grid, with any in progress touch or animation, visiting
+			// only the cells that can be seen in the invalidated region, the clip bounds are on the board once the canvas is transformed
+			canvas.getClipBounds(mClipBounds);
+			Viewport.getCellRange(mClipBounds.left, mClipBounds.top, mClipBounds.right, mClipBounds.bottom, 
+					mTileWidth, mTileHeight, PUZZLE_ROWS, PUZZLE_COLS, mCellRange);
+			int viewTileSize = (int)(mTileWidth * mViewport.getScale());
+			int level = mMipChain != null ? mViewport.getMipLevel(mMipChain.getTileWidth(), mTileWidth, mMipChain.getMaxLevel()) : 0;
+			if (mTileSource != null) {
+				mTileSource.beginFrame();
+			}
 			int x = 0;
 	        int y = 0;
-	        for (int row=0; row < PUZZLE_ROWS; row++) {
-	        	for (int col=0; col < PUZZLE_COLS; col++) {
+	        for (int row=mCellRange[0]; row < mCellRange[2]; row++) {
+	        	for (int col=mCellRange[1]; col < mCellRange[3]; col++) {
 	        		
-	        		Tile tile = mTiles[mPuzzlePositions[row][col]];
+	        		int tileId = mPuzzlePositions[row][col];
+	        		Tile tile = mTiles[tileId];
 	        		
 	        		// deltaX and deltaY for tile reflect any in progress touch or animation movement
 	        		x = col * mTileWidth  + tile.deltaX;
 	        		y = row * mTileHeight + tile.deltaY;
 	        		
-	        		Bitmap tileImage = tile.tileImage;
-	        		if (tileImage != null) {
-	        			canvas.drawBitmap(tileImage, x, y, mTilePaint);
+	        		boolean isEmptyTile = tileId == 0;
+	        		if (!isEmptyTile && mClipBounds.intersects(x, y, x + mTileWidth, y + mTileHeight)) {
+	        			mTileDstRect.set(x, y, x + mTileWidth, y + mTileHeight);
+	        			drawTile(canvas, tileId, tile, mTileDstRect, level, viewTileSize);
+	        			tilesDrawn++;
 	        		}
 	        	}
 	        }
+	        canvas.restore();
+		}
+		mFrameTracer.endFrame(frame, tilesDrawn);
+		mDrawTimer.stop(t);
+		
+		// posted, so they run once this frame has been handed to the display
+		for (Runnable action : mAfterNextFrame) {
+			post(action);
+		}
+		mAfterNextFrame.clear();
+	}
+	
+	/**
+     * Draw a tile from the best image available for its size on screen: a tile decoded from the original image when
+     * zoomed in beyond the resolution of the tile set, a downscaled mip level when zoomed out, or else the tile set
+     * 
+     * @param level
+     * 			Mip level for the current zoom
+     * @param viewTileSize
+     * 			Size of a tile on screen
+     */
+	private void drawTile(Canvas canvas, int tileId, Tile tile, Rect dst, int level, int viewTileSize) {
+		if (tile.srcRect == null || mMipChain == null) {
+			mTilePainter.drawTile(canvas, mTileSet, tile.srcRect, dst);
+			return;
+		}
+		int tileSetTileSize = mMipChain.getTileWidth();
+		if (mTileSource != null && viewTileSize > tileSetTileSize 
+				&& (mTileSource.getImageTileSize() == 0 || mTileSource.getImageTileSize() > tileSetTileSize)) {
+			Bitmap decoded = mTileSource.getTile(tileId, viewTileSize);
+			if (decoded != null) {
+				mTilePainter.drawTile(canvas, decoded, null, dst, false);
+				return;
+			}
+			// drawn from the tile set until the tile is decoded
+		}
+		if (level > 0) {
+			MipChain.getLevelRect(tile.srcRect, level, mLevelRect);
+			mTilePainter.drawTile(canvas, mMipChain.getLevel(level), mLevelRect, dst, mTileSet.hasBorders());
+		} else {
+			mTilePainter.drawTile(canvas, mTileSet, tile.srcRect, dst);
+		}
+	}
+	
+	/**
+     * Invalidate a region of the board, mapped to the view through the viewport
+     * 
+     * @param bounds
+     * 			Region of the board to redraw
+     */
+	private void invalidateBoard(Rect bounds) {
+		if (bounds.isEmpty()) {
+			return;
+		}
+		mInvalidRect.set((int)Math.floor(mViewport.toViewX(bounds.left)), (int)Math.floor(mViewport.toViewY(bounds.top)),
+				(int)Math.ceil(mViewport.toViewX(bounds.right)), (int)Math.ceil(mViewport.toViewY(bounds.bottom)));
+		invalidate(mInvalidRect);
+	}
+	
+	/**
+     * Zoom the board about a point of the view, e.g. the focus of a pinch gesture
+     * 
+     * @param factor
+     * 			Scale factor, greater than 1 to zoom in
+     * @param focusX
+     * 			X coordinate of the focus point in the view
+     * @param focusY
+     * 			Y coordinate of the focus point in the view
+     */
+	public void zoomBy(float factor, float focusX, float focusY) {
+		if (mViewport.zoom(factor, focusX, focusY)) {
+			invalidate();
+			publishSnapshot();
+		}
+	}
+	
+	/**
+     * Move the board within the view
+     * 
+     * @param dx
+     * 			Distance to move the board right, in view pixels
+     * @param dy
+     * 			Distance to move the board down, in view pixels
+     */
+	public void panBy(float dx, float dy) {
+		if (mViewport.pan(dx, dy)) {
+			invalidate();
+			publishSnapshot();
+		}
+	}
+	
+	/**
+     * Zoom out to show the whole board
+     * 
+     */
+	public void resetZoom() {
+		mViewport.reset();
+		invalidate();
+		publishSnapshot();
+	}
+	
+	/**
+     * Draw tiles zoomed in beyond the resolution of the tile set from tiles decoded on demand from the original image.
+     * The source must be for the image of the current tile set, the previous source is closed.
+     * 
+     * @param tileSource
+     * 			Source of tiles decoded from the original image, with this view as its listener, or null to only draw the tile set
+     */
+	public void setTileSource(RegionTileSource tileSource) {
+		if (mTileSource != null) {
+			mTileSource.close();
+		}
+		mTileSource = tileSource;
+		invalidate();
+	}
+	
+	/**
+     * Tile requested from the tile source has been decoded, redraw to replace the tile set image
+     * 
+     */
+	@Override
+	public void onTileDecoded() {
+		invalidate();
+	}
+	
+	/**
+     * Run an action on the UI thread once the next frame has been drawn, e.g. to measure when new tiles are visible
+     *
+     * @param action
+     * 			Action to run, after any actions already waiting for the frame
+     */
+	public void runAfterNextFrame(Runnable action) {
+		if (mRenderTarget != null) {
+			mRenderTarget.runAfterNextFrame(action);
+			return;
+		}
+		mAfterNextFrame.add(action);
+		invalidate();
+	}
+	
+	/**
+     * Draw the board on a dedicated render thread instead of in onDraw. The view keeps handling touch input and
+     * tile state, and publishes a snapshot of the board to the surface whenever it changes, so the render thread
+     * neither waits for nor blocks the UI thread.
+     *
+     * @param target
+     * 			Surface to draw the board on, or null to draw in onDraw
+     */
+	public void setRenderTarget(PuzzleSurfaceView target) {
+		mRenderTarget = target;
+		publishSnapshot();
+		invalidate();
+	}
+	
+	/**
+     * Publish a snapshot of the board to the render thread, if drawing on a render thread
+     *
+     */
+	private void publishSnapshot() {
+		if (mRenderTarget != null && mPuzzlePositions != null && mTiles != null) {
+			mRenderTarget.publish(BoardSnapshot.capture(mPuzzlePositions, mTiles, mTileSet, mTileCache, mTileWidth, mTileHeight, mViewport));
 		}
 	}
 	
@@ -653,6 +977,7 @@ public class PuzzleView extends View {
 		mEmptyPosition = emptyPosition;
 		mPuzzlePositions = puzzlePositions;
 		invalidate();
+		publishSnapshot();
 	}
 
 }
@@ -0,0 +1,222 @@
+package com.shaneahern.puzzle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.view.SurfaceHolder;
+
+import com.shaneahern.puzzle.metrics.Metrics;
+import com.shaneahern.puzzle.metrics.Timer;
+
+/**
+ * Draws board snapshots onto a surface on its own thread, so drawing never waits for the UI thread and the UI
+ * thread never waits for drawing. Snapshots are double buffered: the render thread draws its front snapshot while
+ * the UI thread publishes the next one to the back buffer, and the render thread swaps in the latest published
+ * snapshot at the start of each frame. Snapshots published between two frames replace each other, so the render
+ * thread always draws the most recent board. While a snapshot has tiles animating, frames are drawn continuously,
+ * paced by the surface, otherwise the thread sleeps until the next snapshot is published.
+ *
+ * The thread holds each snapshot it is given until the snapshot is replaced or the thread quits, so the tile set
+ * of the front snapshot stays held in the TileCache for as long as the thread may draw it.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+class RenderThread extends Thread {
+
+	private final SurfaceHolder mHolder;
+	private final TilePainter mTilePainter;
+	private final int mBackgroundColor;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	private final Timer mFrameTimer = Metrics.get().timer("render.frame");
+	private final Rect mTileDstRect = new Rect();
+	private final Rect mClipBounds = new Rect();
+	// first row, first column, end row and end column of the cells drawn in a frame
+	private final int[] mCellRange = new int[4];
+
+	private final Object mLock = new Object();
+	// guarded by mLock
+	private BoardSnapshot mBack;
+	private final List<Runnable> mAfterNextFrame = new ArrayList<Runnable>();
+	private boolean mQuit;
+	// only used on the render thread, mAnimating is true if tiles were still moving in the last frame drawn
+	private BoardSnapshot mFront;
+	private boolean mAnimating;
+	private final List<Runnable> mAfterFrame = new ArrayList<Runnable>();
+
+	/**
+     * @param holder
+     * 			Holder of the surface to draw on
+     * @param tilePainter
+     * 			Painter for tiles, used only by this thread
+     * @param backgroundColor
+     * 			Color of the board behind the tiles
+     */
+	RenderThread(SurfaceHolder holder, TilePainter tilePainter, int backgroundColor) {
+		super("RenderThread");
+		mHolder = holder;
+		mTilePainter = tilePainter;
+		mBackgroundColor = backgroundColor;
+	}
+
+	/**
+     * Publish a snapshot to be drawn on the next frame, may be called from any thread. The thread retains the
+     * snapshot, a published snapshot that is replaced before it was drawn is released.
+     *
+     * @param snapshot
+     * 			Snapshot of the board
+     */
+	void publish(BoardSnapshot snapshot) {
+		snapshot.retain();
+		BoardSnapshot replaced;
+		synchronized (mLock) {
+			replaced = mBack;
+			mBack = snapshot;
+			mLock.notify();
+		}
+		if (replaced != null) {
+			replaced.release();
+		}
+	}
+
+	/**
+     * Run an action on the UI thread once the next frame has been drawn
+     *
+     * @param action
+     * 			Action to run, after any actions already waiting for the frame
+     */
+	void runAfterNextFrame(Runnable action) {
+		synchronized (mLock) {
+			mAfterNextFrame.add(action);
+			mLock.notify();
+		}
+	}
+
+	/**
+     * Stop drawing and wait for the thread to finish, must be called before the surface is destroyed
+     *
+     */
+	void quit() {
+		synchronized (mLock) {
+			mQuit = true;
+			mLock.notify();
+		}
+		boolean interrupted = false;
+		while (isAlive()) {
+			try {
+				join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+		try {
+			renderLoop();
+		} finally {
+			// nothing is drawn from here on, release the snapshots still held
+			synchronized (mLock) {
+				if (mBack != null) {
+					mBack.release();
+					mBack = null;
+				}
+			}
+			if (mFront != null) {
+				mFront.release();
+				mFront = null;
+			}
+		}
+	}
+
+	private void renderLoop() {
+		while (true) {
+			BoardSnapshot replaced = null;
+			synchronized (mLock) {
+				// sleep until there is a new snapshot or an animation to draw
+				while (!mQuit && mBack == null && mAfterNextFrame.isEmpty() && !mAnimating) {
+					try {
+						mLock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (mQuit) {
+					return;
+				}
+				if (mBack != null) {
+					replaced = mFront;
+					mFront = mBack;
+					mBack = null;
+				}
+				mAfterFrame.addAll(mAfterNextFrame);
+				mAfterNextFrame.clear();
+			}
+			// the previous front snapshot is no longer drawn, so its tile set may now be reused
+			if (replaced != null) {
+				replaced.release();
+			}
+
+			// keep drawing while tiles move, until a frame has been drawn with all tiles at their targets
+			mAnimating = mFront != null && drawFrame(mFront);
+			for (Runnable action : mAfterFrame) {
+				mMainHandler.post(action);
+			}
+			mAfterFrame.clear();
+		}
+	}
+
+	/**
+     * Draw one frame of a snapshot
+     * 
+     * @return true if tiles are still moving at the time of the frame
+     */
+	private boolean drawFrame(BoardSnapshot snapshot) {
+		// lockCanvas blocks until a buffer is free, which paces continuous frames to the display
+		Canvas canvas = mHolder.lockCanvas();
+		if (canvas == null) {
+			return false;
+		}
+		long t = mFrameTimer.start();
+		long frameTimeNanos = System.nanoTime();
+		try {
+			canvas.drawColor(mBackgroundColor);
+			canvas.save();
+			canvas.scale(snapshot.getScale(), snapshot.getScale());
+			canvas.translate(-snapshot.getViewportX(), -snapshot.getViewportY());
+			// only visit the cells visible on the surface
+			canvas.getClipBounds(mClipBounds);
+			int tileWidth = snapshot.getTileWidth();
+			int tileHeight = snapshot.getTileHeight();
+			Viewport.getCellRange(mClipBounds.left, mClipBounds.top, mClipBounds.right, mClipBounds.bottom, 
+					tileWidth, tileHeight, snapshot.getRows(), snapshot.getCols(), mCellRange);
+			for (int row=mCellRange[0]; row < mCellRange[2]; row++) {
+				for (int col=mCellRange[1]; col < mCellRange[3]; col++) {
+					int tileId = snapshot.getTileId(row, col);
+					if (tileId == 0) {
+						continue;
+					}
+					int x = col * tileWidth + snapshot.getOffsetX(row, col, frameTimeNanos);
+					int y = row * tileHeight + snapshot.getOffsetY(row, col, frameTimeNanos);
+					mTileDstRect.set(x, y, x + tileWidth, y + tileHeight);
+					mTilePainter.drawTile(canvas, snapshot.getTileSet(),
+							snapshot.getTileSet() != null ? snapshot.getTileSet().getSrcRect(tileId) : null, mTileDstRect);
+				}
+			}
+			canvas.restore();
+		} finally {
+			mHolder.unlockCanvasAndPost(canvas);
+			mFrameTimer.stop(t);
+		}
+		return snapshot.isAnimating(frameTimeNanos);
+	}
+}
@@ -0,0 +1,163 @@
+package com.shaneahern.puzzle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.shaneahern.puzzle.PuzzleView.Tile;
+import com.shaneahern.puzzle.metrics.Clock;
+import com.shaneahern.puzzle.metrics.Metrics;
+import com.shaneahern.puzzle.metrics.Timer;
+
+/**
+ * Time based animation of tiles towards their target offsets. Each tile moves from its offset at the start of the
+ * animation to its target offset over a duration derived from the distance and the requested speed, eased by a
+ * decelerate interpolator, so motion depends on elapsed time rather than on how often frames are delivered.
+ * The animator ticks once per display frame, iterates only tiles that are still animating, and stops requesting
+ * frames as soon as all tiles have reached their targets.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+class TileAnimator implements FrameScheduler.Callback {
+
+	interface Listener {
+		/**
+	     * Called on each animation frame after tile offsets have been updated
+	     *
+	     */
+		public void onAnimationFrame();
+		
+		/**
+	     * Called once all tiles have reached their target offsets
+	     *
+	     * @param tiles
+	     * 			Tiles that were animated, with their offsets at their targets
+	     */
+		public void onAnimationComplete(List<Tile> tiles);
+	}
+	
+	private final FrameScheduler mScheduler;
+	private final Clock mClock;
+	private final Listener mListener;
+	private final Timer mTickTimer = Metrics.get().timer("view.animation_tick");
+	
+	// tiles still moving, and all tiles animated since the animation started
+	private final List<Tile> mActiveTiles = new ArrayList<Tile>();
+	private final List<Tile> mAnimatedTiles = new ArrayList<Tile>();
+	
+	TileAnimator(FrameScheduler scheduler, Clock clock, Listener listener) {
+		mScheduler = scheduler;
+		mClock = clock;
+		mListener = listener;
+	}
+	
+	/**
+     * Start animating a tile from its current offset to its target offset
+     *
+     * @param tile
+     * 			Tile to animate, targetX and targetY must be set
+     * @param speed
+     * 			Average speed of the animation in pixels per ms
+     */
+	void animate(Tile tile, float speed) {
+		tile.startX = tile.deltaX;
+		tile.startY = tile.deltaY;
+		tile.animationStartNanos = mClock.nanoTime();
+		int distance = Math.max(Math.abs(tile.targetX - tile.deltaX), Math.abs(tile.targetY - tile.deltaY));
+		tile.animationDurationNanos = (long)(distance / speed * 1000000);
+		tile.animating = true;
+		if (!mAnimatedTiles.contains(tile)) {
+			mAnimatedTiles.add(tile);
+		}
+		if (!mActiveTiles.contains(tile)) {
+			mActiveTiles.add(tile);
+		}
+		mScheduler.postFrameCallback(this);
+	}
+	
+	/**
+     * @return true if any tile is still animating
+     */
+	boolean isRunning() {
+		return !mActiveTiles.isEmpty();
+	}
+	
+	/**
+     * Stop the animation, leaving tiles at their current offsets
+     *
+     */
+	void cancel() {
+		mScheduler.removeFrameCallback(this);
+		for (Tile tile : mActiveTiles) {
+			tile.animating = false;
+		}
+		mActiveTiles.clear();
+		mAnimatedTiles.clear();
+	}
+	
+	@Override
+	public void doFrame(long frameTimeNanos) {
+		long t = mTickTimer.start();
+		for (int i=mActiveTiles.size() - 1; i >= 0; i--) {
+			Tile tile = mActiveTiles.get(i);
+			float fraction = fraction(frameTimeNanos, tile.animationStartNanos, tile.animationDurationNanos);
+			if (fraction >= 1f) {
+				tile.deltaX = tile.targetX;
+				tile.deltaY = tile.targetY;
+				tile.animating = false;
+				mActiveTiles.remove(i);
+			} else {
+				tile.deltaX = offset(tile.startX, tile.targetX, fraction);
+				tile.deltaY = offset(tile.startY, tile.targetY, fraction);
+			}
+		}
+		
+		mListener.onAnimationFrame();
+		
+		if (!mActiveTiles.isEmpty()) {
+			mScheduler.postFrameCallback(this);
+		} else {
+			List<Tile> animatedTiles = new ArrayList<Tile>(mAnimatedTiles);
+			mAnimatedTiles.clear();
+			mListener.onAnimationComplete(animatedTiles);
+		}
+		mTickTimer.stop(t);
+	}
+	
+	/**
+     * @param frameTimeNanos
+     * 			Time of the frame
+     * @param startNanos
+     * 			Start time of the animation
+     * @param durationNanos
+     * 			Duration of the animation
+     * @return float elapsed fraction of the animation at the frame time, between 0 and 1
+     */
+	static float fraction(long frameTimeNanos, long startNanos, long durationNanos) {
+		long elapsed = frameTimeNanos - startNanos;
+		return durationNanos <= 0 ? 1f : Math.max(0f, Math.min(1f, (float)elapsed / durationNanos));
+	}
+	
+	/**
+     * @param start
+     * 			Offset at the start of the animation
+     * @param target
+     * 			Offset at the end of the animation
+     * @param fraction
+     * 			Elapsed fraction of the animation
+     * @return int offset at the elapsed fraction, eased by the decelerate interpolator
+     */
+	static int offset(int start, int target, float fraction) {
+		return start + Math.round((target - start) * decelerate(fraction));
+	}
+	
+	/**
+     * Decelerate interpolator, starts at full speed and eases into the target
+     *
+     * @param fraction
+     * 			Elapsed fraction of the animation between 0 and 1
+     * @return float interpolated fraction of the distance covered
+     */
+	static float decelerate(float fraction) {
+		return 1f - (1f - fraction) * (1f - fraction);
+	}
+}
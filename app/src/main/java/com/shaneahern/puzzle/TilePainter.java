@@ -0,0 +1,97 @@
+package com.shaneahern.puzzle;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import com.shaneahern.puzzle.image.TileSet;
+
+/**
+ * Draws single puzzle tiles: the tile image from the shared tile source, or a placeholder fill until tile images
+ * are loaded, and the tile border unless it is already part of the tile images. Shared by the view, which draws on
+ * the UI thread, and the render thread, which draws board snapshots on a surface, so both draw identical tiles.
+ * Each thread must use its own painter.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+class TilePainter {
+
+	private final float mBorderWidth;
+	private final Paint mTilePaint;
+	private final Paint mPlaceholderPaint;
+	private final Paint mBorderPaint;
+	
+	/**
+     * @param borderWidth
+     * 			Width of the border between tiles, half of it is painted inside each tile
+     * @param borderColor
+     * 			Color of the border
+     * @param placeholderColor
+     * 			Fill for tiles whose image has not been loaded
+     */
+	TilePainter(float borderWidth, int borderColor, int placeholderColor) {
+		mBorderWidth = borderWidth;
+		
+		mTilePaint = new Paint();
+		mTilePaint.setFilterBitmap(true);
+		
+		mPlaceholderPaint = new Paint();
+		mPlaceholderPaint.setColor(placeholderColor);
+		
+		// border is painted inside each tile at draw time, half the width of a border drawn centred on the tile edge
+		// and clipped to the tile, which is how tile borders used to be baked into per-tile bitmaps
+		mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		mBorderPaint.setStrokeWidth(borderWidth / 2);
+		mBorderPaint.setStyle(Paint.Style.STROKE);
+		mBorderPaint.setColor(borderColor);
+	}
+	
+	/**
+     * @param canvas
+     * 			Canvas to draw on
+     * @param tileSet
+     * 			Tile images, may be null if not loaded yet
+     * @param srcRect
+     * 			Region of the tile source for the tile, may be null if not loaded yet
+     * @param dst
+     * 			Position and size to draw the tile at
+     */
+	void drawTile(Canvas canvas, TileSet tileSet, Rect srcRect, Rect dst) {
+		drawTile(canvas, tileSet != null && srcRect != null ? tileSet.getSource() : null, srcRect, dst, tileSet != null && tileSet.hasBorders());
+	}
+	
+	/**
+     * Draw a tile from any image, e.g. a mip level of the tile source or a tile decoded on its own
+     *
+     * @param canvas
+     * 			Canvas to draw on
+     * @param image
+     * 			Image holding the tile, may be null if not loaded yet
+     * @param srcRect
+     * 			Region of the image for the tile, null to draw the whole image
+     * @param dst
+     * 			Position and size to draw the tile at
+     * @param hasBorders
+     * 			true if the border is part of the image
+     */
+	void drawTile(Canvas canvas, Bitmap image, Rect srcRect, Rect dst, boolean hasBorders) {
+		if (image != null) {
+			canvas.drawBitmap(image, srcRect, dst, mTilePaint);
+		} else {
+			// placeholder until tile images are loaded
+			canvas.drawRect(dst, mPlaceholderPaint);
+		}
+		if (!hasBorders) {
+			canvas.drawRect(dst.left + mBorderWidth / 4, dst.top + mBorderWidth / 4, 
+					dst.right - mBorderWidth / 4, dst.bottom - mBorderWidth / 4, mBorderPaint);
+		}
+	}
+	
+	/**
+     * @return Paint paint used to draw tile images, e.g. to draw full images matching the tiles
+     */
+	Paint getTilePaint() {
+		return mTilePaint;
+	}
+}
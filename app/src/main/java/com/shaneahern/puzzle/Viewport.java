@@ -0,0 +1,240 @@
+package com.shaneahern.puzzle;
+
+/**
+ * Visible region of the puzzle board, for zooming and panning boards that are larger than the view. The board is
+ * drawn scaled by getScale() with board point (getOffsetX(), getOffsetY()) at the top left of the view. The scale is
+ * kept between the scale that fits the whole board in the view and a maximum zoom, and the offset is kept so that
+ * the view never shows more than necessary outside the board.
+ *
+ * Independent of android classes, so it can be tested on a plain JVM.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class Viewport {
+
+	private final int mViewWidth;
+	private final int mViewHeight;
+	private final int mBoardWidth;
+	private final int mBoardHeight;
+	private final float mMinScale;
+	private final float mMaxScale;
+
+	private float mScale;
+	private float mOffsetX;
+	private float mOffsetY;
+
+	/**
+     * @param viewWidth
+     * 			Width of the view showing the board
+     * @param viewHeight
+     * 			Height of the view showing the board
+     * @param boardWidth
+     * 			Width of the whole board, unscaled
+     * @param boardHeight
+     * 			Height of the whole board, unscaled
+     * @param maxZoom
+     * 			Largest scale relative to the scale that fits the whole board in the view
+     */
+	public Viewport(int viewWidth, int viewHeight, int boardWidth, int boardHeight, float maxZoom) {
+		mViewWidth = viewWidth;
+		mViewHeight = viewHeight;
+		mBoardWidth = boardWidth;
+		mBoardHeight = boardHeight;
+		mMinScale = Math.min((float)viewWidth / boardWidth, (float)viewHeight / boardHeight);
+		mMaxScale = mMinScale * Math.max(1f, maxZoom);
+		reset();
+	}
+
+	/**
+     * Zoom out to show the whole board
+     *
+     */
+	public void reset() {
+		mScale = mMinScale;
+		clamp();
+	}
+
+	/**
+     * Zoom about a point of the view, which stays over the same point of the board
+     *
+     * @param factor
+     * 			Scale factor, greater than 1 to zoom in
+     * @param focusX
+     * 			X coordinate of the focus point in the view
+     * @param focusY
+     * 			Y coordinate of the focus point in the view
+     * @return true if the viewport changed
+     */
+	public boolean zoom(float factor, float focusX, float focusY) {
+		float boardX = toBoardX(focusX);
+		float boardY = toBoardY(focusY);
+		float scale = Math.max(mMinScale, Math.min(mMaxScale, mScale * factor));
+		if (scale == mScale) {
+			return false;
+		}
+		mScale = scale;
+		mOffsetX = boardX - focusX / scale;
+		mOffsetY = boardY - focusY / scale;
+		clamp();
+		return true;
+	}
+
+	/**
+     * Move the board within the view
+     *
+     * @param dx
+     * 			Distance to move the board right, in view pixels
+     * @param dy
+     * 			Distance to move the board down, in view pixels
+     * @return true if the viewport changed
+     */
+	public boolean pan(float dx, float dy) {
+		float offsetX = mOffsetX;
+		float offsetY = mOffsetY;
+		mOffsetX -= dx / mScale;
+		mOffsetY -= dy / mScale;
+		clamp();
+		return offsetX != mOffsetX || offsetY != mOffsetY;
+	}
+
+	/**
+     * Keep the board covering the view where it is large enough, and centred where it is not
+     *
+     */
+	private void clamp() {
+		mOffsetX = clampOffset(mOffsetX, mViewWidth / mScale, mBoardWidth);
+		mOffsetY = clampOffset(mOffsetY, mViewHeight / mScale, mBoardHeight);
+	}
+
+	private static float clampOffset(float offset, float visibleSize, int boardSize) {
+		if (visibleSize >= boardSize) {
+			return (boardSize - visibleSize) / 2;
+		}
+		return Math.max(0, Math.min(boardSize - visibleSize, offset));
+	}
+
+	public float getScale() {
+		return mScale;
+	}
+
+	/**
+     * @return true if the whole board is visible
+     */
+	public boolean isZoomedOut() {
+		return mScale == mMinScale;
+	}
+
+	public float getOffsetX() {
+		return mOffsetX;
+	}
+
+	public float getOffsetY() {
+		return mOffsetY;
+	}
+
+	/**
+     * @param viewX
+     * 			X coordinate in the view, e.g. of a touch
+     * @return float x coordinate on the board
+     */
+	public float toBoardX(float viewX) {
+		return mOffsetX + viewX / mScale;
+	}
+
+	/**
+     * @param viewY
+     * 			Y coordinate in the view, e.g. of a touch
+     * @return float y coordinate on the board
+     */
+	public float toBoardY(float viewY) {
+		return mOffsetY + viewY / mScale;
+	}
+
+	/**
+     * @param boardX
+     * 			X coordinate on the board
+     * @return float x coordinate in the view
+     */
+	public float toViewX(float boardX) {
+		return (boardX - mOffsetX) * mScale;
+	}
+
+	/**
+     * @param boardY
+     * 			Y coordinate on the board
+     * @return float y coordinate in the view
+     */
+	public float toViewY(float boardY) {
+		return (boardY - mOffsetY) * mScale;
+	}
+
+	/**
+     * Compute the cells of the board visible in the view, see getCellRange()
+     *
+     * @param tileWidth
+     * 			Width of a cell on the board
+     * @param tileHeight
+     * 			Height of a cell on the board
+     * @param rows
+     * 			Number of rows on the board
+     * @param cols
+     * 			Number of columns on the board
+     * @param range
+     * 			Set to first row, first column, end row and end column (exclusive) of the visible cells
+     */
+	public void getVisibleCells(int tileWidth, int tileHeight, int rows, int cols, int[] range) {
+		getCellRange(mOffsetX, mOffsetY, toBoardX(mViewWidth), toBoardY(mViewHeight), tileWidth, tileHeight, rows, cols, range);
+	}
+
+	/**
+     * Compute the cells whose tiles may be drawn within a region of the board. Tiles move at most one cell away
+     * from their own cell during a slide, so the range includes one more cell on each side of the region.
+     *
+     * @param left
+     * 			Left of the region on the board
+     * @param top
+     * 			Top of the region on the board
+     * @param right
+     * 			Right of the region on the board
+     * @param bottom
+     * 			Bottom of the region on the board
+     * @param tileWidth
+     * 			Width of a cell on the board
+     * @param tileHeight
+     * 			Height of a cell on the board
+     * @param rows
+     * 			Number of rows on the board
+     * @param cols
+     * 			Number of columns on the board
+     * @param range
+     * 			Set to first row, first column, end row and end column (exclusive) of the cells
+     */
+	public static void getCellRange(float left, float top, float right, float bottom, int tileWidth, int tileHeight,
+			int rows, int cols, int[] range) {
+		range[0] = Math.max(0, (int)Math.floor(top / tileHeight) - 1);
+		range[1] = Math.max(0, (int)Math.floor(left / tileWidth) - 1);
+		range[2] = Math.min(rows, (int)Math.ceil(bottom / tileHeight) + 1);
+		range[3] = Math.min(cols, (int)Math.ceil(right / tileWidth) + 1);
+	}
+
+	/**
+     * Choose the mip level to draw tile images at, the smallest level that still has at least one image pixel per
+     * view pixel. Level n images are 1/2^n of the size of level 0 images.
+     *
+     * @param imageTileSize
+     * 			Size of a tile in the level 0 image
+     * @param tileSize
+     * 			Size of a tile on the board
+     * @param maxLevel
+     * 			Highest mip level available
+     * @return int mip level, 0 when zoomed in far enough to need full resolution images
+     */
+	public int getMipLevel(int imageTileSize, int tileSize, int maxLevel) {
+		float viewTileSize = tileSize * mScale;
+		int level = 0;
+		while (level < maxLevel && (imageTileSize >> (level + 1)) >= viewTileSize) {
+			level++;
+		}
+		return level;
+	}
+}
@@ -0,0 +1,276 @@
+package com.shaneahern.puzzle.image;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Downscales ARGB pixel buffers with an area averaging (box) filter, independently of android.graphics so it can
+ * be tested and benchmarked on a plain JVM. Each output pixel is the average of the source pixels it covers,
+ * weighted by how much of each source pixel it covers, so downscaling by any factor does not alias.
+ *
+ * Images are cropped before they are scaled, so no work is spent on pixels outside of the crop. Source rows are
+ * read from a RowSource in strips, so the whole source image never has to be in memory, and the output rows of
+ * each strip are split across the threads of an executor.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class AreaAverageScaler {
+
+	// output rows scaled per strip of source rows
+	private static final int DEFAULT_STRIP_ROWS = 32;
+
+	/**
+     * Source of rows of ARGB pixels, read in order from top to bottom
+     */
+	public interface RowSource {
+		/**
+	     * Read rows of the source image
+	     *
+	     * @param firstRow
+	     * 			Index of the first row to read
+	     * @param numRows
+	     * 			Number of rows to read
+	     * @param dst
+	     * 			Buffer to read rows into, one row after another with no padding
+	     * @throws IOException if the rows cannot be read
+	     */
+		public void readRows(int firstRow, int numRows, int[] dst) throws IOException;
+	}
+
+	private final ExecutorService mExecutor;
+	private final int mParallelism;
+	private final int mStripRows;
+
+	/**
+     * @param executor
+     * 			Executor to scale on, or null to scale on the calling thread
+     * @param parallelism
+     * 			Number of threads of the executor
+     */
+	public AreaAverageScaler(ExecutorService executor, int parallelism) {
+		this(executor, parallelism, DEFAULT_STRIP_ROWS);
+	}
+
+	/**
+     * @param executor
+     * 			Executor to scale on, or null to scale on the calling thread
+     * @param parallelism
+     * 			Number of threads of the executor
+     * @param stripRows
+     * 			Number of output rows scaled from each strip of source rows
+     */
+	public AreaAverageScaler(ExecutorService executor, int parallelism, int stripRows) {
+		mExecutor = executor;
+		mParallelism = executor != null ? Math.max(1, parallelism) : 1;
+		mStripRows = Math.max(1, stripRows);
+	}
+
+	/**
+     * Crop a region from an image in memory and scale it
+     *
+     * @param src
+     * 			ARGB pixels of the source image
+     * @param srcStride
+     * 			Number of pixels per row of the source image
+     * @param cropX
+     * 			Left of the crop region
+     * @param cropY
+     * 			Top of the crop region
+     * @param cropWidth
+     * 			Width of the crop region
+     * @param cropHeight
+     * 			Height of the crop region
+     * @param dst
+     * 			Buffer for the scaled image, at least dstWidth * dstHeight pixels
+     * @param dstWidth
+     * 			Width of the scaled image
+     * @param dstHeight
+     * 			Height of the scaled image
+     * @throws InterruptedException if the calling thread is interrupted while scaling
+     */
+	public void scale(int[] src, int srcStride, int cropX, int cropY, int cropWidth, int cropHeight,
+			int[] dst, int dstWidth, int dstHeight) throws InterruptedException {
+		Filter filter = new Filter(cropWidth, cropHeight, dstWidth, dstHeight);
+		// the whole crop region is one strip, read in place
+		scaleRows(filter, src, cropY * srcStride + cropX, srcStride, 0, dst, 0, dstHeight);
+	}
+
+	/**
+     * Scale an image read in strips from a row source, e.g. a decoder that decodes a region of an image at a time
+     *
+     * @param source
+     * 			Source of rows of the image, which should already be cropped
+     * @param srcWidth
+     * 			Width of the source image
+     * @param srcHeight
+     * 			Height of the source image
+     * @param dst
+     * 			Buffer for the scaled image, at least dstWidth * dstHeight pixels
+     * @param dstWidth
+     * 			Width of the scaled image
+     * @param dstHeight
+     * 			Height of the scaled image
+     * @throws IOException if rows cannot be read from the source
+     * @throws InterruptedException if the calling thread is interrupted while scaling
+     */
+	public void scale(RowSource source, int srcWidth, int srcHeight, int[] dst, int dstWidth, int dstHeight) throws IOException, InterruptedException {
+		Filter filter = new Filter(srcWidth, srcHeight, dstWidth, dstHeight);
+		int[] strip = null;
+		for (int firstRow=0; firstRow < dstHeight; firstRow += mStripRows) {
+			int endRow = Math.min(dstHeight, firstRow + mStripRows);
+			int firstSrcRow = filter.firstSrcRow(firstRow);
+			int numSrcRows = filter.endSrcRow(endRow - 1) - firstSrcRow;
+			if (strip == null || strip.length < numSrcRows * srcWidth) {
+				strip = new int[numSrcRows * srcWidth];
+			}
+			source.readRows(firstSrcRow, numSrcRows, strip);
+			scaleRows(filter, strip, 0, srcWidth, firstSrcRow, dst, firstRow, endRow);
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+     * Scale output rows firstRow (inclusive) to endRow (exclusive), split across threads
+     *
+     */
+	private void scaleRows(final Filter filter, final int[] src, final int srcOffset, final int srcStride, final int firstSrcRow,
+			final int[] dst, int firstRow, int endRow) throws InterruptedException {
+		int numRows = endRow - firstRow;
+		int numTasks = Math.min(numRows, mParallelism);
+		if (mExecutor == null || numTasks <= 1) {
+			filter.scaleRows(src, srcOffset, srcStride, firstSrcRow, dst, firstRow, endRow);
+			return;
+		}
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(numTasks);
+		try {
+			for (int task=0; task < numTasks; task++) {
+				final int taskFirstRow = firstRow + numRows * task / numTasks;
+				final int taskEndRow = firstRow + numRows * (task + 1) / numTasks;
+				futures.add(mExecutor.submit(new Callable<Void>() {
+					public Void call() {
+						filter.scaleRows(src, srcOffset, srcStride, firstSrcRow, dst, taskFirstRow, taskEndRow);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Unable to scale image", e.getCause());
+		} finally {
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+     * Precomputed horizontal coverage of source pixels by each output column, shared read only by all threads
+     */
+	private static class Filter {
+		final int mSrcWidth;
+		final int mSrcHeight;
+		final int mDstWidth;
+		final double mScaleX;
+		final double mScaleY;
+		// first source column, number of source columns and index of the first weight for each output column
+		final int[] mColFirst;
+		final int[] mColCount;
+		final int[] mColWeightIndex;
+		final float[] mColWeights;
+
+		Filter(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+			mSrcWidth = srcWidth;
+			mSrcHeight = srcHeight;
+			mDstWidth = dstWidth;
+			mScaleX = (double)srcWidth / dstWidth;
+			mScaleY = (double)srcHeight / dstHeight;
+
+			mColFirst = new int[dstWidth];
+			mColCount = new int[dstWidth];
+			mColWeightIndex = new int[dstWidth];
+			List<Float> weights = new ArrayList<Float>();
+			for (int dx=0; dx < dstWidth; dx++) {
+				double x0 = dx * mScaleX;
+				double x1 = Math.min(srcWidth, x0 + mScaleX);
+				int first = (int)x0;
+				int end = Math.min(srcWidth, (int)Math.ceil(x1));
+				mColFirst[dx] = first;
+				mColCount[dx] = Math.max(1, end - first);
+				mColWeightIndex[dx] = weights.size();
+				for (int sx=first; sx < first + mColCount[dx]; sx++) {
+					// fraction of the output pixel covered by this source column
+					weights.add(Float.valueOf((float)((Math.min(x1, sx + 1) - Math.max(x0, sx)) / (x1 - x0))));
+				}
+			}
+			mColWeights = new float[weights.size()];
+			for (int i=0; i < mColWeights.length; i++) {
+				mColWeights[i] = weights.get(i).floatValue();
+			}
+		}
+
+		int firstSrcRow(int dy) {
+			return (int)(dy * mScaleY);
+		}
+
+		int endSrcRow(int dy) {
+			return Math.max(firstSrcRow(dy) + 1, Math.min(mSrcHeight, (int)Math.ceil((dy + 1) * mScaleY)));
+		}
+
+		/**
+	     * Scale output rows firstRow (inclusive) to endRow (exclusive) from source rows held in src, where row
+	     * firstSrcRow of the source starts at srcOffset
+	     *
+	     */
+		void scaleRows(int[] src, int srcOffset, int srcStride, int firstSrcRow, int[] dst, int firstRow, int endRow) {
+			float[] sums = new float[mDstWidth * 4];
+			for (int dy=firstRow; dy < endRow; dy++) {
+				Arrays.fill(sums, 0f);
+				double y0 = dy * mScaleY;
+				double y1 = Math.min(mSrcHeight, y0 + mScaleY);
+				for (int sy=firstSrcRow(dy), endSrcRow=endSrcRow(dy); sy < endSrcRow; sy++) {
+					// fraction of the output pixel covered by this source row
+					float wy = (float)((Math.min(y1, sy + 1) - Math.max(y0, sy)) / (y1 - y0));
+					int rowOffset = srcOffset + (sy - firstSrcRow) * srcStride;
+					for (int dx=0, s=0; dx < mDstWidth; dx++, s += 4) {
+						int weightIndex = mColWeightIndex[dx];
+						int pixelIndex = rowOffset + mColFirst[dx];
+						float a = 0, r = 0, g = 0, b = 0;
+						for (int i=0, count=mColCount[dx]; i < count; i++) {
+							int pixel = src[pixelIndex + i];
+							float w = mColWeights[weightIndex + i];
+							a += w * (pixel >>> 24);
+							r += w * ((pixel >> 16) & 0xff);
+							g += w * ((pixel >> 8) & 0xff);
+							b += w * (pixel & 0xff);
+						}
+						sums[s] += wy * a;
+						sums[s + 1] += wy * r;
+						sums[s + 2] += wy * g;
+						sums[s + 3] += wy * b;
+					}
+				}
+				int dstOffset = dy * mDstWidth;
+				for (int dx=0, s=0; dx < mDstWidth; dx++, s += 4) {
+					dst[dstOffset + dx] = (channel(sums[s]) << 24) | (channel(sums[s + 1]) << 16)
+							| (channel(sums[s + 2]) << 8) | channel(sums[s + 3]);
+				}
+			}
+		}
+
+		private static int channel(float value) {
+			int c = (int)(value + 0.5f);
+			return c < 0 ? 0 : (c > 255 ? 255 : c);
+		}
+	}
+}
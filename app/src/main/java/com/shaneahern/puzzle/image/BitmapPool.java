@@ -0,0 +1,176 @@
+package com.shaneahern.puzzle.image;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+
+import com.shaneahern.puzzle.metrics.Counter;
+import com.shaneahern.puzzle.metrics.Metrics;
+
+/**
+ * Pool of mutable bitmaps that are no longer displayed, so that switching images reuses the memory of previous
+ * images instead of allocating new bitmaps and leaving the old ones for the garbage collector. Bitmaps are pooled
+ * in buckets of the same width, height and config, and are handed out whole, so a pooled bitmap can be used as
+ * the target of a draw or passed as BitmapFactory.Options.inBitmap to decode into. The pool is bounded by the byte
+ * size of its bitmaps, and buckets that were least recently used are emptied first when the pool is full.
+ *
+ * The contents of bitmaps returned from the pool are undefined, callers must overwrite every pixel. Bitmaps put in
+ * the pool must not be used by the caller afterwards.
+ *
+ * The pool counts its misses and evictions itself, so the counts are available whether or not metrics are enabled,
+ * and mirrors them and its hits to the bitmap_pool metrics counters.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class BitmapPool {
+
+	// buckets in access order, so iteration starts at the least recently used bucket
+	private final LinkedHashMap<Long, List<Bitmap>> mBuckets = new LinkedHashMap<Long, List<Bitmap>>(16, 0.75f, true);
+	private final long mMaxBytes;
+	private long mBytes;
+
+	// counts guarded by this
+	private long mMissCount;
+	private long mEvictionCount;
+	private final Counter mHits = Metrics.get().counter("bitmap_pool.hit");
+	private final Counter mMisses = Metrics.get().counter("bitmap_pool.miss");
+	private final Counter mEvictions = Metrics.get().counter("bitmap_pool.evict");
+
+	/**
+     * @param maxBytes
+     * 			Maximum total byte size of pooled bitmaps
+     */
+	public BitmapPool(long maxBytes) {
+		mMaxBytes = maxBytes;
+	}
+
+	/**
+     * Take a bitmap of exactly the given size and config from the pool
+     *
+     * @param width
+     * 			Bitmap width
+     * @param height
+     * 			Bitmap height
+     * @param config
+     * 			Bitmap config
+     * @return Bitmap mutable bitmap with undefined contents, or null if there is no pooled bitmap of the size
+     */
+	public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+		List<Bitmap> bucket = mBuckets.get(key(width, height, config));
+		if (bucket == null || bucket.isEmpty()) {
+			mMissCount++;
+			mMisses.inc();
+			return null;
+		}
+		Bitmap bitmap = bucket.remove(bucket.size() - 1);
+		mBytes -= TileCache.byteCount(bitmap);
+		mHits.inc();
+		return bitmap;
+	}
+
+	/**
+     * Take a bitmap of exactly the given size and config from the pool, or create one if none is pooled
+     *
+     * @param width
+     * 			Bitmap width
+     * @param height
+     * 			Bitmap height
+     * @param config
+     * 			Bitmap config
+     * @return Bitmap mutable bitmap with undefined contents
+     */
+	public Bitmap getOrCreate(int width, int height, Bitmap.Config config) {
+		Bitmap bitmap = get(width, height, config);
+		return bitmap != null ? bitmap : Bitmap.createBitmap(width, height, config);
+	}
+
+	/**
+     * Return a bitmap to the pool. Immutable and recycled bitmaps cannot be reused and are ignored.
+     *
+     * @param bitmap
+     * 			Bitmap no longer used by the caller, may be null
+     */
+	public synchronized void put(Bitmap bitmap) {
+		if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null) {
+			return;
+		}
+		int bytes = TileCache.byteCount(bitmap);
+		if (bytes > mMaxBytes) {
+			return;
+		}
+		Long key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+		List<Bitmap> bucket = mBuckets.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<Bitmap>(2);
+			mBuckets.put(key, bucket);
+		}
+		for (int i=0; i < bucket.size(); i++) {
+			if (bucket.get(i) == bitmap) {
+				// already pooled
+				return;
+			}
+		}
+		bucket.add(bitmap);
+		mBytes += bytes;
+		trimToSize();
+	}
+
+	/**
+     * Drop all pooled bitmaps, e.g. when the system is low on memory
+     *
+     */
+	public synchronized void clear() {
+		mBuckets.clear();
+		mBytes = 0;
+	}
+
+	/**
+     * @return long total byte size of pooled bitmaps
+     */
+	public synchronized long getSize() {
+		return mBytes;
+	}
+
+	/**
+     * @return long number of gets that found no pooled bitmap of the size
+     */
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	/**
+     * @return long number of pooled bitmaps dropped to keep the pool within its size limit
+     */
+	public synchronized long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	/**
+     * Drop pooled bitmaps from the least recently used buckets until the pool is within its size limit
+     *
+     */
+	private void trimToSize() {
+		Iterator<Map.Entry<Long, List<Bitmap>>> it = mBuckets.entrySet().iterator();
+		while (mBytes > mMaxBytes && it.hasNext()) {
+			List<Bitmap> bucket = it.next().getValue();
+			while (mBytes > mMaxBytes && !bucket.isEmpty()) {
+				// dropped bitmaps are reclaimed by the garbage collector
+				Bitmap bitmap = bucket.remove(0);
+				mBytes -= TileCache.byteCount(bitmap);
+				mEvictionCount++;
+				mEvictions.inc();
+			}
+			if (bucket.isEmpty()) {
+				it.remove();
+			}
+		}
+	}
+
+	private static Long key(int width, int height, Bitmap.Config config) {
+		return Long.valueOf(((long)width << 32) | ((long)height << 8) | config.ordinal());
+	}
+}
@@ -0,0 +1,226 @@
+package com.shaneahern.puzzle.image;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+/**
+ * Size bounded disk cache of already cropped and scaled puzzle images, stored as JPEG files named by a hash of
+ * their key. Files are written to a temporary file and renamed into place, so a partially written entry is never
+ * read. When the cache grows beyond its size limit, the least recently used files are deleted. The cache is 
+ * cleared when the app version changes, so entries for resources from a previous build are never returned.
+ * 
+ * Methods do disk I/O and should not be called on the UI thread. The constructor does none, the directory is
+ * created and its version checked on first use, so the cache can be created during startup.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class DiskImageCache {
+
+	private static final String TAG = "DiskImageCache";
+	
+	private static final String FILE_SUFFIX = ".jpg";
+	private static final String VERSION_FILE = "version";
+	private static final int JPEG_QUALITY = 90;
+	
+	private final File mDirectory;
+	private final long mMaxBytes;
+	private final int mAppVersion;
+	// guarded by this
+	private boolean mOpened;
+	
+	/**
+     * @param directory
+     * 			Directory to store cached images in, created if it does not exist
+     * @param maxBytes
+     * 			Maximum total size of cached files
+     * @param appVersion
+     * 			Version of the app, the cache is cleared if it was written by a different version
+     */
+	public DiskImageCache(File directory, long maxBytes, int appVersion) {
+		mDirectory = directory;
+		mMaxBytes = maxBytes;
+		mAppVersion = appVersion;
+	}
+	
+	/**
+     * Create the cache directory and clear it if it was written by a different app version, on first use
+     *
+     */
+	private synchronized void open() {
+		if (!mOpened) {
+			mOpened = true;
+			mDirectory.mkdirs();
+			checkVersion(mAppVersion);
+		}
+	}
+	
+	/**
+     * Read a cached image
+     *
+     * @param key
+     * 			Cache key of the image
+     * @param opts
+     * 			Decode options, e.g. a bitmap to reuse in inBitmap, may be null
+     * @return Bitmap cached image, or null if the image is not in the cache
+     */
+	public Bitmap get(String key, BitmapFactory.Options opts) {
+		File file = fileForKey(key);
+		if (!file.exists()) {
+			return null;
+		}
+		Bitmap bitmap;
+		try {
+			bitmap = BitmapFactory.decodeFile(file.getPath(), opts);
+		} catch (IllegalArgumentException e) {
+			// the bitmap to reuse does not match the image, decode into a new bitmap
+			opts.inBitmap = null;
+			bitmap = BitmapFactory.decodeFile(file.getPath(), opts);
+		}
+		if (bitmap != null) {
+			// last modified time is used for least recently used eviction
+			file.setLastModified(System.currentTimeMillis());
+		}
+		return bitmap;
+	}
+	
+	/**
+     * Write an image to the cache, replacing any image with the same key
+     *
+     * @param key
+     * 			Cache key of the image
+     * @param bitmap
+     * 			Image to cache
+     */
+	public void put(String key, Bitmap bitmap) {
+		File file = fileForKey(key);
+		File tmpFile = new File(mDirectory, file.getName() + ".tmp");
+		try {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+			try {
+				bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+			} finally {
+				out.close();
+			}
+			if (!tmpFile.renameTo(file)) {
+				throw new IOException("Unable to rename " + tmpFile);
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Unable to cache " + key, e);
+			tmpFile.delete();
+			return;
+		}
+		trimToSize();
+	}
+	
+	/**
+     * @param key
+     * 			Cache key of the image
+     * @return true if the image is in the cache
+     */
+	public boolean contains(String key) {
+		return fileForKey(key).exists();
+	}
+	
+	/**
+     * Delete the least recently used files until the cache is within its size limit
+     *
+     */
+	private void trimToSize() {
+		File[] files = mDirectory.listFiles();
+		if (files == null) {
+			return;
+		}
+		long totalBytes = 0;
+		for (File file : files) {
+			totalBytes += file.length();
+		}
+		if (totalBytes <= mMaxBytes) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File lhs, File rhs) {
+				long lhsModified = lhs.lastModified();
+				long rhsModified = rhs.lastModified();
+				return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+			}
+		});
+		for (int i=0; i < files.length && totalBytes > mMaxBytes; i++) {
+			if (files[i].getName().endsWith(FILE_SUFFIX)) {
+				totalBytes -= files[i].length();
+				files[i].delete();
+			}
+		}
+	}
+	
+	private void checkVersion(int appVersion) {
+		File versionFile = new File(mDirectory, VERSION_FILE);
+		String version = Integer.toString(appVersion);
+		if (versionFile.exists() && version.equals(readVersion(versionFile))) {
+			return;
+		}
+		File[] files = mDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		try {
+			OutputStream out = new FileOutputStream(versionFile);
+			try {
+				out.write(version.getBytes("UTF-8"));
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Unable to write cache version", e);
+		}
+	}
+	
+	private static String readVersion(File versionFile) {
+		try {
+			FileInputStream in = new FileInputStream(versionFile);
+			try {
+				byte[] buffer = new byte[(int)versionFile.length()];
+				int read = in.read(buffer);
+				return read > 0 ? new String(buffer, 0, read, "UTF-8") : "";
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+	
+	private File fileForKey(String key) {
+		open();
+		return new File(mDirectory, hash(key) + FILE_SUFFIX);
+	}
+	
+	private static String hash(String key) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			byte[] bytes = digest.digest(key.getBytes("UTF-8"));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : bytes) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(key.hashCode());
+		} catch (IOException e) {
+			return Integer.toHexString(key.hashCode());
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package com.shaneahern.puzzle.image;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.shaneahern.puzzle.metrics.Counter;
+import com.shaneahern.puzzle.metrics.Metrics;
+import com.shaneahern.puzzle.metrics.Timer;
+
+/**
+ * Loads puzzle images off the UI thread. Decoding, cropping, scaling and slicing into tiles all run on a single
+ * background worker, which hands the slicing of tiles out to the TileSlicer's executor, and the finished TileSet is delivered on the UI thread. Starting a new load cancels the load
+ * in progress, and results of superseded loads are never delivered, so only the most recently requested image
+ * reaches the view.
+ * 
+ * Images that are not cached are loaded progressively: a heavily sub-sampled preview is decoded and delivered as
+ * low resolution tiles first, so the board is playable almost immediately, followed by the full resolution tiles.
+ * 
+ * Loads go through the TileCache: a tile set in the memory cache is delivered without decoding, an image in the 
+ * disk cache is read back already cropped and scaled, and newly decoded images are written to the disk cache after
+ * their tiles have been delivered. Disk cache writes run on a separate writer thread of the lowest priority, so a
+ * write never delays the next load and is not interrupted when the load that queued it is cancelled.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class ImageLoader {
+
+	private static final String TAG = "ImageLoader";
+	
+	// preview images are decoded at 1/PREVIEW_DIVISOR of the target size
+	private static final int PREVIEW_DIVISOR = 8;
+	
+	public interface Callback {
+		/**
+	     * Called on the UI thread when low resolution preview tiles are ready, before the full resolution tiles. 
+	     * Not called for images that are already cached.
+	     *
+	     * @param preview
+	     * 			Low resolution tiles for the image, to be replaced by the tiles passed to onImageLoaded()
+	     * @param latencyMs
+	     * 			Time in ms from the load request until the preview tiles were ready
+	     */
+		public void onPreviewLoaded(TileSet preview, long latencyMs);
+		
+		/**
+	     * Called on the UI thread when a load completes
+	     *
+	     * @param tileSet
+	     * 			Tiles for the loaded image, or null if the image could not be loaded
+	     * @param latencyMs
+	     * 			Time in ms from the load request until the tiles were ready
+	     */
+		public void onImageLoaded(TileSet tileSet, long latencyMs);
+	}
+	
+	private final SquareImageDecoder mDecoder;
+	private final TileCache mCache;
+	// only used on the worker thread
+	private final TileSlicer mSlicer;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(final Runnable r) {
+			return new Thread(new Runnable() {
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					r.run();
+				}
+			}, "ImageLoader");
+		}
+	});
+	// disk cache writes, behind the loads
+	private final ExecutorService mWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(final Runnable r) {
+			return new Thread(new Runnable() {
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+					r.run();
+				}
+			}, "ImageLoaderWriter");
+		}
+	});
+	private final Timer mLatencyTimer = Metrics.get().timer("image.load_latency");
+	private final Timer mPreviewLatencyTimer = Metrics.get().timer("image.preview_latency");
+	private final Counter mCacheHits = Metrics.get().counter("image.cache_memory_hit");
+	private final Counter mDiskCacheHits = Metrics.get().counter("image.cache_disk_hit");
+	private final Counter mCacheMisses = Metrics.get().counter("image.cache_miss");
+	
+	// only accessed on the UI thread
+	private Future<?> mCurrentLoad;
+	private int mGeneration;
+	
+	public ImageLoader(SquareImageDecoder decoder, TileCache cache, TileSlicer slicer) {
+		mDecoder = decoder;
+		mCache = cache;
+		mSlicer = slicer;
+	}
+	
+	/**
+     * Load an image into tiles, cancelling any load in progress. Must be called on the UI thread.
+     *
+     * @param request
+     * 			Image to load
+     * @param targetSize
+     * 			Width and height of the puzzle image
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @param lowMemoryMode
+     * 			true to store tile images as RGB_565
+     * @param callback
+     * 			Callback to receive the tiles on the UI thread
+     */
+	public void load(final ImageRequest request, final int targetSize, final int rows, final int cols, final boolean lowMemoryMode, final Callback callback) {
+		cancel();
+		final int generation = mGeneration;
+		final long startTime = mLatencyTimer.start();
+		final long previewStartTime = mPreviewLatencyTimer.start();
+		final long startNanos = System.nanoTime();
+		
+		mCurrentLoad = mExecutor.submit(new Runnable() {
+			public void run() {
+				TileSet tileSet = null;
+				try {
+					String key = TileCache.key(request.getIdentity(mDecoder), targetSize, rows, cols);
+					tileSet = mCache.getFromMemory(key);
+					if (tileSet != null) {
+						mCacheHits.inc();
+						deliver(tileSet, generation, startTime, startNanos, callback);
+						return;
+					}
+					
+					boolean decoded = false;
+					Bitmap image = mCache.getFromDisk(key, targetSize, lowMemoryMode ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+					if (image == null) {
+						loadPreview(request, targetSize, rows, cols, generation, previewStartTime, startNanos, callback);
+						image = request.decode(mDecoder, targetSize);
+						decoded = true;
+					}
+					if (image != null) {
+						if (Thread.interrupted()) {
+							mCache.getBitmapPool().put(image);
+							return;
+						}
+						(decoded ? mCacheMisses : mDiskCacheHits).inc();
+						tileSet = TileSet.createSliced(image, rows, cols, lowMemoryMode, mCache.getBitmapPool(), mSlicer);
+						mCache.putInMemory(key, tileSet);
+						deliver(tileSet, generation, startTime, startNanos, callback);
+						if (decoded) {
+							// write behind, so the disk write does not add to the latency of this load or the next
+							writeBehind(key, tileSet);
+						}
+						return;
+					}
+				} catch (InterruptedIOException e) {
+					return;
+				} catch (InterruptedException e) {
+					return;
+				} catch (IOException e) {
+					Log.w(TAG, "Unable to load " + request, e);
+				}
+				deliver(tileSet, generation, startTime, startNanos, callback);
+			}
+		});
+	}
+	
+	/**
+     * Decode a low resolution preview of the image and deliver it as tiles, on the worker thread
+     * 
+     */
+	private void loadPreview(ImageRequest request, int targetSize, int rows, int cols, 
+			final int generation, final long previewStartTime, final long startNanos, final Callback callback) throws IOException {
+		Bitmap preview = request.decode(mDecoder, Math.max(cols, targetSize / PREVIEW_DIVISOR));
+		if (preview == null) {
+			// the full decode will fail too and report the error
+			return;
+		}
+		// preview tiles are not sliced, their borders are drawn by the view at full resolution
+		final TileSet tileSet = TileSet.create(preview, rows, cols, false, mCache.getBitmapPool());
+		mMainHandler.post(new Runnable() {
+			public void run() {
+				if (generation != mGeneration) {
+					// superseded, the preview was never displayed or cached so its image can be reused
+					mCache.getBitmapPool().put(tileSet.getSource());
+					return;
+				}
+				mPreviewLatencyTimer.stop(previewStartTime);
+				callback.onPreviewLoaded(tileSet, (System.nanoTime() - startNanos) / 1000000);
+			}
+		});
+	}
+	
+	/**
+     * Queue the image of a tile set to be written to the disk cache on the writer thread. The tile set is held
+     * until the write is done, so its image is not reused while the write is queued.
+     * 
+     */
+	private void writeBehind(final String key, final TileSet tileSet) {
+		mCache.acquire(tileSet);
+		mWriter.execute(new Runnable() {
+			public void run() {
+				try {
+					mCache.putOnDisk(key, tileSet);
+				} finally {
+					mCache.release(tileSet);
+				}
+			}
+		});
+	}
+	
+	private void deliver(final TileSet tileSet, final int generation, final long startTime, final long startNanos, final Callback callback) {
+		mMainHandler.post(new Runnable() {
+			public void run() {
+				if (generation != mGeneration) {
+					// superseded by a newer load while the result was in flight, the tiles stay in the cache
+					return;
+				}
+				mCurrentLoad = null;
+				mLatencyTimer.stop(startTime);
+				callback.onImageLoaded(tileSet, (System.nanoTime() - startNanos) / 1000000);
+			}
+		});
+	}
+	
+	/**
+     * Cancel the load in progress, if any. Must be called on the UI thread.
+     *
+     */
+	public void cancel() {
+		mGeneration++;
+		if (mCurrentLoad != null) {
+			mCurrentLoad.cancel(true);
+			mCurrentLoad = null;
+		}
+	}
+	
+	/**
+     * Cancel the load in progress and stop the worker thread, the writer thread stops once queued disk cache 
+     * writes are done
+     *
+     */
+	public void shutdown() {
+		cancel();
+		mExecutor.shutdownNow();
+		mWriter.shutdown();
+	}
+}
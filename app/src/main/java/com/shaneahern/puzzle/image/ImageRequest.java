@@ -0,0 +1,88 @@
+package com.shaneahern.puzzle.image;
+
+import java.io.IOException;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+/**
+ * Describes an image to load into the puzzle and how to decode it
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public abstract class ImageRequest {
+
+	/**
+     * Decode the image as a square of the target size
+     *
+     * @param decoder
+     * 			Decoder to use
+     * @param targetSize
+     * 			Width and height of the decoded image
+     * @return Bitmap decoded image, or null if the image could not be decoded
+     * @throws IOException if the image cannot be read
+     */
+	public abstract Bitmap decode(SquareImageDecoder decoder, int targetSize) throws IOException;
+	
+	/**
+     * Get the identity of the image for caching. The identity changes if the content of the image changes.
+     * May do I/O, so should not be called on the UI thread.
+     *
+     * @param decoder
+     * 			Decoder that will be used to decode the image
+     * @return String identity of the image
+     */
+	public abstract String getIdentity(SquareImageDecoder decoder);
+	
+	/**
+     * @param uri
+     * 			Uri of the image, e.g. an image selected from the Gallery
+     * @return ImageRequest for the image at uri
+     */
+	public static ImageRequest forUri(final Uri uri) {
+		return new ImageRequest() {
+			@Override
+			public Bitmap decode(SquareImageDecoder decoder, int targetSize) throws IOException {
+				return decoder.decode(uri, targetSize);
+			}
+			
+			@Override
+			public String getIdentity(SquareImageDecoder decoder) {
+				return uri + "#" + decoder.getImageVersion(uri);
+			}
+			
+			@Override
+			public String toString() {
+				return uri.toString();
+			}
+		};
+	}
+	
+	/**
+     * @param resources
+     * 			Resources holding the image
+     * @param resId
+     * 			Resource id of the image, e.g. R.drawable.globe
+     * @return ImageRequest for the resource image
+     */
+	public static ImageRequest forResource(final Resources resources, final int resId) {
+		return new ImageRequest() {
+			@Override
+			public Bitmap decode(SquareImageDecoder decoder, int targetSize) throws IOException {
+				return decoder.decode(resources, resId, targetSize);
+			}
+			
+			@Override
+			public String getIdentity(SquareImageDecoder decoder) {
+				// resources only change with the app version, and caches are cleared when the version changes
+				return "res:" + resId;
+			}
+			
+			@Override
+			public String toString() {
+				return "res:" + resId;
+			}
+		};
+	}
+}
@@ -0,0 +1,112 @@
+package com.shaneahern.puzzle.image;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Downscaled copies of the source image of a tile set, for drawing the board zoomed out. Drawing a large image at a
+ * small fraction of its size reads far more pixels than are shown and aliases, drawing from a copy closer to the
+ * size on screen does neither. Level n is half the size of level n - 1, level 0 is the tile set image itself.
+ * Levels are built on first use, each one filtered down from the level above, so boards that are never zoomed out
+ * cost no extra memory.
+ *
+ * Mip chains are not shared and are only used on one thread, the owner returns the levels to the pool with
+ * release() when it no longer draws the tile set.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class MipChain {
+
+	// smallest level image, smaller levels would not hold a pixel per tile on large boards
+	private static final int MIN_LEVEL_SIZE = 32;
+
+	private final TileSet mTileSet;
+	private final BitmapPool mPool;
+	private final Bitmap[] mLevels;
+	private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private final Rect mLevelRect = new Rect();
+
+	/**
+     * @param tileSet
+     * 			Tile set whose source image is level 0
+     * @param pool
+     * 			Pool to take level images from and release them to
+     */
+	public MipChain(TileSet tileSet, BitmapPool pool) {
+		mTileSet = tileSet;
+		mPool = pool;
+		int size = Math.min(tileSet.getSource().getWidth(), tileSet.getSource().getHeight());
+		int numLevels = 1;
+		while ((size >> numLevels) >= MIN_LEVEL_SIZE) {
+			numLevels++;
+		}
+		mLevels = new Bitmap[numLevels];
+		mLevels[0] = tileSet.getSource();
+	}
+
+	public TileSet getTileSet() {
+		return mTileSet;
+	}
+
+	/**
+     * @return int highest mip level
+     */
+	public int getMaxLevel() {
+		return mLevels.length - 1;
+	}
+
+	/**
+     * @return int width of a tile in the level 0 image
+     */
+	public int getTileWidth() {
+		return mTileSet.getSource().getWidth() / mTileSet.getCols();
+	}
+
+	/**
+     * Get the image of a level, building it and any missing levels above it
+     *
+     * @param level
+     * 			Mip level, 0 to getMaxLevel()
+     * @return Bitmap image of the level
+     */
+	public Bitmap getLevel(int level) {
+		if (mLevels[level] == null) {
+			Bitmap above = getLevel(level - 1);
+			Bitmap image = mPool.getOrCreate(Math.max(1, above.getWidth() / 2), Math.max(1, above.getHeight() / 2), above.getConfig());
+			// a filtered draw at half size averages each 2x2 block of the level above
+			mLevelRect.set(0, 0, image.getWidth(), image.getHeight());
+			new Canvas(image).drawBitmap(above, null, mLevelRect, mScalePaint);
+			mLevels[level] = image;
+		}
+		return mLevels[level];
+	}
+
+	/**
+     * Scale a region of the level 0 image, e.g. a tile, to the matching region of a level image
+     *
+     * @param srcRect
+     * 			Region of the level 0 image
+     * @param level
+     * 			Mip level
+     * @param levelRect
+     * 			Set to the region of the level image
+     */
+	public static void getLevelRect(Rect srcRect, int level, Rect levelRect) {
+		levelRect.set(srcRect.left >> level, srcRect.top >> level, srcRect.right >> level, srcRect.bottom >> level);
+	}
+
+	/**
+     * Release the level images built by the chain to the pool, level 0 belongs to the tile set and is not released
+     *
+     */
+	public void release() {
+		for (int level=1; level < mLevels.length; level++) {
+			if (mLevels[level] != null) {
+				mPool.put(mLevels[level]);
+				mLevels[level] = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package com.shaneahern.puzzle.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.shaneahern.puzzle.metrics.Metrics;
+import com.shaneahern.puzzle.metrics.Timer;
+
+/**
+ * Decodes single tile images on demand from the original image, for drawing tiles zoomed in beyond the resolution
+ * of the tile set. The tile set of a large board holds each tile at a few pixels, decoding a whole image at a
+ * resolution that stays sharp at any zoom would not fit in memory. Instead each tile is decoded from its own region
+ * of the original image by a BitmapRegionDecoder, at the smallest power of two sub-sample that is still at least as
+ * large as the tile on screen, and only when it is drawn. Decoded tiles are kept in an LRU cache bounded by bytes,
+ * so memory use depends on the tiles on screen rather than on the size of the board or the image.
+ *
+ * Tiles are decoded on a background thread. getTile() returns null for a tile that is not decoded yet, the caller
+ * draws a fallback, e.g. the tile from the tile set, and the listener is called once the tile is ready. Requests for
+ * tiles that have not been asked for again within a few frames are dropped, so panning across a large board does
+ * not queue up decodes of tiles that have already scrolled out of view.
+ *
+ * All methods except the constructor must be called on the UI thread.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class RegionTileSource {
+
+	private static final String TAG = "RegionTileSource";
+
+	// fraction of the heap that can be used by decoded tiles
+	private static final int CACHE_HEAP_DIVISOR = 16;
+	// requests not renewed within this many frames are dropped before they are decoded
+	private static final int STALE_FRAMES = 2;
+
+	public interface Listener {
+		/**
+	     * Called on the UI thread when a tile requested from getTile() has been decoded
+	     */
+		public void onTileDecoded();
+	}
+
+	private final ContentResolver mContentResolver;
+	private final Uri mUri;
+	private final int mRows;
+	private final int mCols;
+	private final BitmapPool mPool;
+	private final Listener mListener;
+	private final LruCache<Long, Bitmap> mCache;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(final Runnable r) {
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					r.run();
+				}
+			}, TAG);
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private final Timer mDecodeTimer = Metrics.get().timer("image.region_tile_decode");
+
+	// last frame each pending tile was requested in, by cache key
+	private final ConcurrentHashMap<Long, Long> mPending = new ConcurrentHashMap<Long, Long>();
+	private volatile long mFrame;
+	// tile size in the original image, 0 until the image has been opened
+	private volatile int mImageTileSize;
+	private boolean mOpenRequested;
+	private boolean mClosed;
+
+	// only used on the decode thread
+	private BitmapRegionDecoder mDecoder;
+	private Rect mSquare;
+	private int mOrientation;
+	private final Paint mRotatePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	/**
+     * @param contentResolver
+     * 			Resolver to open the image with
+     * @param uri
+     * 			Uri of the image, its centre square is divided into tiles like SquareImageDecoder crops it
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @param pool
+     * 			Pool to take rotated tiles from and release evicted tiles to
+     * @param listener
+     * 			Listener to notify when requested tiles are ready
+     */
+	public RegionTileSource(ContentResolver contentResolver, Uri uri, int rows, int cols, BitmapPool pool, Listener listener) {
+		mContentResolver = contentResolver;
+		mUri = uri;
+		mRows = rows;
+		mCols = cols;
+		mPool = pool;
+		mListener = listener;
+		int cacheBytes = (int)Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / CACHE_HEAP_DIVISOR);
+		mCache = new LruCache<Long, Bitmap>(cacheBytes) {
+			@Override
+			protected int sizeOf(Long key, Bitmap tile) {
+				return TileCache.byteCount(tile);
+			}
+
+			@Override
+			protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+				// evicted on the UI thread between frames, so the tile is no longer drawn
+				mPool.put(oldValue);
+			}
+		};
+	}
+
+	/**
+     * @return int size of a tile in the original image, 0 if the image has not been opened yet
+     */
+	public int getImageTileSize() {
+		return mImageTileSize;
+	}
+
+	/**
+     * Start a new frame, requests from earlier frames that are not renewed in this frame become stale
+     *
+     */
+	public void beginFrame() {
+		mFrame++;
+	}
+
+	/**
+     * Get a tile image at a size suitable for drawing it at viewSize pixels, requesting it if it is not decoded yet
+     *
+     * @param tileId
+     * 			Id of the tile, i.e. its position in the solved puzzle in row major order
+     * @param viewSize
+     * 			Size the tile is drawn at on screen
+     * @return Bitmap tile image, at least viewSize pixels where the image has that resolution, or null if not decoded yet
+     */
+	public Bitmap getTile(int tileId, int viewSize) {
+		if (mClosed) {
+			return null;
+		}
+		int imageTileSize = mImageTileSize;
+		if (imageTileSize == 0) {
+			// tile size is only known once the image is opened, the listener is called when it is
+			if (!mOpenRequested) {
+				mOpenRequested = true;
+				mExecutor.execute(new Runnable() {
+					public void run() {
+						open();
+						notifyListener();
+					}
+				});
+			}
+			return null;
+		}
+		final int sampleSize = SquareImageDecoder.computeSampleSize(imageTileSize, viewSize);
+		final long key = ((long)tileId << 8) | Integer.numberOfTrailingZeros(sampleSize);
+		Bitmap tile = mCache.get(key);
+		if (tile != null) {
+			return tile;
+		}
+		if (mPending.put(key, mFrame) == null) {
+			final int row = tileId / mCols;
+			final int col = tileId % mCols;
+			mExecutor.execute(new Runnable() {
+				public void run() {
+					Long requestFrame = mPending.get(key);
+					if (requestFrame == null || requestFrame.longValue() < mFrame - STALE_FRAMES) {
+						mPending.remove(key);
+						return;
+					}
+					deliver(key, decodeTile(row, col, sampleSize));
+				}
+			});
+		}
+		return null;
+	}
+
+	/**
+     * Open the region decoder and compute the crop of the image, on the decode thread
+     *
+     */
+	private void open() {
+		InputStream in = null;
+		try {
+			in = mContentResolver.openInputStream(mUri);
+			mDecoder = BitmapRegionDecoder.newInstance(in, false);
+			mSquare = SquareImageDecoder.centreSquare(mDecoder.getWidth(), mDecoder.getHeight());
+			mOrientation = SquareImageDecoder.getOrientation(mContentResolver, mUri);
+			mImageTileSize = Math.min(mSquare.width() / mCols, mSquare.height() / mRows);
+		} catch (IOException e) {
+			// not region decodable, tiles are only ever drawn from the tile set
+			Log.i(TAG, "Unable to open " + mUri + ": " + e.getMessage());
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	/**
+     * Decode the tile at a cell of the solved puzzle, on the decode thread
+     *
+     * @return Bitmap tile image, rotated to the image orientation, or null if it cannot be decoded
+     */
+	private Bitmap decodeTile(int row, int col, int sampleSize) {
+		if (mDecoder == null) {
+			return null;
+		}
+		long t = mDecodeTimer.start();
+		// region of the tile in the displayed square, which is the centre square of the image rotated
+		int side = mSquare.width();
+		int left = col * side / mCols;
+		int top = row * side / mRows;
+		int right = (col + 1) * side / mCols;
+		int bottom = (row + 1) * side / mRows;
+		Rect region = new Rect();
+		switch (((mOrientation / 90) % 4 + 4) % 4) {
+		case 1:
+			region.set(top, side - right, bottom, side - left);
+			break;
+		case 2:
+			region.set(side - right, side - bottom, side - left, side - top);
+			break;
+		case 3:
+			region.set(side - bottom, left, side - top, right);
+			break;
+		default:
+			region.set(left, top, right, bottom);
+		}
+		region.offset(mSquare.left, mSquare.top);
+
+		BitmapFactory.Options opts = new BitmapFactory.Options();
+		opts.inSampleSize = sampleSize;
+		opts.inMutable = true;
+		Bitmap tile = mDecoder.decodeRegion(region, opts);
+		if (tile != null && mOrientation % 360 != 0) {
+			tile = rotate(tile, mOrientation);
+		}
+		mDecodeTimer.stop(t);
+		return tile;
+	}
+
+	/**
+     * Rotate a tile about its centre, returning the original tile to the pool
+     *
+     */
+	private Bitmap rotate(Bitmap tile, int orientation) {
+		boolean quarterTurn = orientation % 180 != 0;
+		int width = quarterTurn ? tile.getHeight() : tile.getWidth();
+		int height = quarterTurn ? tile.getWidth() : tile.getHeight();
+		Matrix matrix = new Matrix();
+		matrix.postTranslate(-tile.getWidth() / 2f, -tile.getHeight() / 2f);
+		matrix.postRotate(orientation);
+		matrix.postTranslate(width / 2f, height / 2f);
+		Bitmap rotated = mPool.getOrCreate(width, height, Bitmap.Config.ARGB_8888);
+		new Canvas(rotated).drawBitmap(tile, matrix, mRotatePaint);
+		mPool.put(tile);
+		return rotated;
+	}
+
+	/**
+     * Hand a decoded tile to the cache on the UI thread and notify the listener
+     *
+     */
+	private void deliver(final long key, final Bitmap tile) {
+		mMainHandler.post(new Runnable() {
+			public void run() {
+				mPending.remove(key);
+				if (tile == null) {
+					return;
+				}
+				if (mClosed) {
+					mPool.put(tile);
+					return;
+				}
+				mCache.put(key, tile);
+				mListener.onTileDecoded();
+			}
+		});
+	}
+
+	private void notifyListener() {
+		mMainHandler.post(new Runnable() {
+			public void run() {
+				if (!mClosed) {
+					mListener.onTileDecoded();
+				}
+			}
+		});
+	}
+
+	/**
+     * Stop decoding and release all decoded tiles to the pool
+     *
+     */
+	public void close() {
+		mClosed = true;
+		mPending.clear();
+		mCache.evictAll();
+		mExecutor.execute(new Runnable() {
+			public void run() {
+				if (mDecoder != null) {
+					mDecoder.recycle();
+					mDecoder = null;
+				}
+			}
+		});
+		mExecutor.shutdown();
+	}
+}
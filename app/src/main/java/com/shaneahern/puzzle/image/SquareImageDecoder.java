@@ -0,0 +1,497 @@
+package com.shaneahern.puzzle.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+import android.content.ContentResolver;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+/**
+ * Decodes images into square puzzle images of a target size without ever decoding the full resolution image.
+ * Image bounds are read first, and only the centre square of the image is decoded, with the largest power of two
+ * sample size that still leaves at least the target resolution. The centre square is decoded in strips, which are
+ * downscaled to the exact target size by an AreaAverageScaler as they are decoded, so the decoded square is never
+ * held in memory as a whole, and then rotated to its EXIF orientation. Rotation does not change which pixels are
+ * in the centre square, so the square is cropped before rotation. Images that are smaller than the target size or
+ * cannot be region decoded are decoded whole, then scaled and rotated in a single draw.
+ * 
+ * The scaled pixels are held in an array only while an image is decoded, and are rotated into the result bitmap a
+ * row at a time, so no pixel buffers the size of the image are kept between decodes. A decoder must only be used by
+ * one thread at a time.
+ * 
+ * Intermediate and result bitmaps are taken from a BitmapPool where possible, so decoding images of the same size
+ * one after another reuses the same memory.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class SquareImageDecoder {
+
+	private static final String TAG = "SquareImageDecoder";
+	
+	/**
+     * Opens a new stream on the image each time it is called, as bounds and pixels are decoded from separate streams
+     */
+	public interface ImageSource {
+		public InputStream open() throws IOException;
+	}
+	
+	private final ContentResolver mContentResolver;
+	private final BitmapPool mBitmapPool;
+	private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private final AreaAverageScaler mScaler;
+	
+	public SquareImageDecoder(ContentResolver contentResolver, BitmapPool bitmapPool) {
+		mContentResolver = contentResolver;
+		mBitmapPool = bitmapPool;
+		mScaler = new AreaAverageScaler(TileSlicer.getDefaultExecutor(), Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+     * Decode an image from a content or file Uri, e.g. an image selected from the Gallery
+     *
+     * @param uri
+     * 			Uri of the image
+     * @param targetSize
+     * 			Width and height of the decoded square image
+     * @return Bitmap square image of targetSize, or null if the image could not be decoded
+     * @throws IOException if the image cannot be read
+     */
+	public Bitmap decode(final Uri uri, int targetSize) throws IOException {
+		ImageSource source = new ImageSource() {
+			public InputStream open() throws IOException {
+				return mContentResolver.openInputStream(uri);
+			}
+		};
+		return decode(source, getOrientation(mContentResolver, uri), targetSize);
+	}
+	
+	/**
+     * Decode an image resource
+     *
+     * @param resources
+     * 			Resources holding the image
+     * @param resId
+     * 			Resource id of the image
+     * @param targetSize
+     * 			Width and height of the decoded square image
+     * @return Bitmap square image of targetSize, or null if the image could not be decoded
+     * @throws IOException if the image cannot be read
+     */
+	public Bitmap decode(final Resources resources, final int resId, int targetSize) throws IOException {
+		ImageSource source = new ImageSource() {
+			public InputStream open() throws IOException {
+				return resources.openRawResource(resId);
+			}
+		};
+		return decode(source, 0, targetSize);
+	}
+	
+	/**
+     * Decode the centre square of an image, scaled to targetSize and rotated by orientation
+     *
+     * @param source
+     * 			Source of the encoded image
+     * @param orientation
+     * 			Image orientation in degrees (should normally be 0, 90, 180 or 270)
+     * @param targetSize
+     * 			Width and height of the decoded square image
+     * @return Bitmap square image of targetSize, or null if the image could not be decoded
+     * @throws IOException if the image cannot be read
+     */
+	public Bitmap decode(ImageSource source, int orientation, int targetSize) throws IOException {
+		// read bounds only, no pixels are decoded
+		BitmapFactory.Options opts = new BitmapFactory.Options();
+		opts.inJustDecodeBounds = true;
+		InputStream in = source.open();
+		try {
+			BitmapFactory.decodeStream(in, null, opts);
+		} finally {
+			in.close();
+		}
+		if (opts.outWidth <= 0 || opts.outHeight <= 0) {
+			return null;
+		}
+		checkCancelled(null);
+		
+		Rect square = centreSquare(opts.outWidth, opts.outHeight);
+		opts.inJustDecodeBounds = false;
+		opts.inSampleSize = computeSampleSize(square.width(), targetSize);
+		// decoded squares are mutable so they can go back to the pool once scaled
+		opts.inMutable = true;
+		
+		if (square.width() / opts.inSampleSize >= targetSize) {
+			Bitmap scaled = decodeRegionScaled(source, square, opts, orientation, targetSize);
+			if (scaled != null) {
+				return scaled;
+			}
+		}
+		
+		Bitmap squareBitmap = decodeRegion(source, square, opts);
+		if (squareBitmap == null) {
+			return null;
+		}
+		checkCancelled(squareBitmap);
+		return scaleAndRotate(squareBitmap, orientation, targetSize);
+	}
+	
+	/**
+     * Decode a square region of the image in strips, scaling each strip down to the target size as it is decoded
+     * 
+     * @return Bitmap scaled and rotated image, or null if the image cannot be region decoded
+     */
+	private Bitmap decodeRegionScaled(ImageSource source, Rect region, BitmapFactory.Options opts, int orientation, int targetSize) throws IOException {
+		BitmapRegionDecoder regionDecoder;
+		InputStream in = source.open();
+		try {
+			regionDecoder = BitmapRegionDecoder.newInstance(in, false);
+		} catch (IOException e) {
+			Log.i(TAG, "Region decode not supported: " + e.getMessage());
+			return null;
+		} finally {
+			in.close();
+		}
+		
+		int sampledSize = region.width() / opts.inSampleSize;
+		// only needed for this decode, not kept, as it would hold the memory of a whole image between loads
+		int[] pixels = new int[targetSize * targetSize];
+		StripSource strips = new StripSource(regionDecoder, region, opts, sampledSize);
+		try {
+			mScaler.scale(strips, sampledSize, sampledSize, pixels, targetSize, targetSize);
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Decode cancelled");
+		} catch (IOException e) {
+			Log.i(TAG, "Region decode failed: " + e.getMessage());
+			return null;
+		} finally {
+			strips.release();
+			regionDecoder.recycle();
+		}
+		
+		Bitmap result = mBitmapPool.getOrCreate(targetSize, targetSize, Bitmap.Config.ARGB_8888);
+		if (orientation % 360 == 0) {
+			result.setPixels(pixels, 0, targetSize, 0, 0, targetSize, targetSize);
+		} else {
+			// rotate into the bitmap a row at a time, rather than into a second array the size of the image
+			int[] row = new int[targetSize];
+			for (int y=0; y < targetSize; y++) {
+				rotateRow(pixels, targetSize, orientation, y, row);
+				result.setPixels(row, 0, targetSize, 0, y, targetSize, 1);
+			}
+		}
+		return result;
+	}
+	
+	/**
+     * Rows of a sub-sampled region of an image, decoded a strip at a time
+     */
+	private class StripSource implements AreaAverageScaler.RowSource {
+		private final BitmapRegionDecoder mRegionDecoder;
+		private final Rect mRegion;
+		private final BitmapFactory.Options mOpts;
+		private final int mWidth;
+		private final Rect mStripRect = new Rect();
+		// strip bitmap reused for every strip on KitKat and later, where region decodes can reuse a larger bitmap
+		private Bitmap mStrip;
+		
+		StripSource(BitmapRegionDecoder regionDecoder, Rect region, BitmapFactory.Options opts, int width) {
+			mRegionDecoder = regionDecoder;
+			mRegion = region;
+			mOpts = opts;
+			mWidth = width;
+		}
+		
+		public void readRows(int firstRow, int numRows, int[] dst) throws IOException {
+			int sampleSize = mOpts.inSampleSize;
+			mStripRect.set(mRegion.left, mRegion.top + firstRow * sampleSize, 
+					mRegion.left + mWidth * sampleSize, Math.min(mRegion.bottom, mRegion.top + (firstRow + numRows) * sampleSize));
+			
+			boolean reuse = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+			if (reuse && (mStrip == null || mStrip.getHeight() < numRows)) {
+				mBitmapPool.put(mStrip);
+				mStrip = mBitmapPool.getOrCreate(mWidth, numRows, Bitmap.Config.ARGB_8888);
+			}
+			mOpts.inBitmap = reuse ? mStrip : null;
+			Bitmap strip;
+			try {
+				strip = mRegionDecoder.decodeRegion(mStripRect, mOpts);
+			} finally {
+				mOpts.inBitmap = null;
+			}
+			if (strip == null) {
+				throw new IOException("Unable to decode " + mStripRect);
+			}
+			
+			// the decoded strip can be a pixel short of the expected size, repeat the last column and row
+			int width = Math.min(mWidth, strip.getWidth());
+			int height = Math.min(numRows, strip.getHeight());
+			strip.getPixels(dst, 0, mWidth, 0, 0, width, height);
+			for (int row=0; row < height; row++) {
+				for (int col=width; col < mWidth; col++) {
+					dst[row * mWidth + col] = dst[row * mWidth + width - 1];
+				}
+			}
+			for (int row=height; row < numRows; row++) {
+				System.arraycopy(dst, (height - 1) * mWidth, dst, row * mWidth, mWidth);
+			}
+		}
+		
+		void release() {
+			mBitmapPool.put(mStrip);
+			mStrip = null;
+		}
+	}
+	
+	/**
+     * Get one row of a square image rotated clockwise by a multiple of 90 degrees
+     * 
+     * @param src
+     * 			Pixels of the square image
+     * @param size
+     * 			Width and height of the image
+     * @param degrees
+     * 			Rotation in degrees
+     * @param y
+     * 			Row of the rotated image
+     * @param dst
+     * 			Buffer of at least size pixels for the row
+     */
+	static void rotateRow(int[] src, int size, int degrees, int y, int[] dst) {
+		int quarterTurns = ((degrees / 90) % 4 + 4) % 4;
+		int last = size - 1;
+		// the row is read from a row or column of the source, walked forwards or backwards
+		int srcIndex;
+		int step;
+		switch (quarterTurns) {
+		case 1:
+			srcIndex = last * size + y;
+			step = -size;
+			break;
+		case 2:
+			srcIndex = (last - y) * size + last;
+			step = -1;
+			break;
+		case 3:
+			srcIndex = last - y;
+			step = size;
+			break;
+		default:
+			srcIndex = y * size;
+			step = 1;
+		}
+		for (int x=0; x < size; x++) {
+			dst[x] = src[srcIndex];
+			srcIndex += step;
+		}
+	}
+	
+	/**
+     * Decode a region of the image, falling back to decoding the whole (sub-sampled) image and cropping it for
+     * formats not supported by BitmapRegionDecoder
+     * 
+     */
+	private Bitmap decodeRegion(ImageSource source, Rect region, BitmapFactory.Options opts) throws IOException {
+		InputStream in = source.open();
+		try {
+			BitmapRegionDecoder regionDecoder = BitmapRegionDecoder.newInstance(in, false);
+			try {
+				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+					// region decodes are drawn into the reused bitmap, clipped to its size, so the size must match the sampled region
+					int sampledSize = region.width() / opts.inSampleSize;
+					opts.inBitmap = mBitmapPool.get(sampledSize, sampledSize, Bitmap.Config.ARGB_8888);
+				}
+				try {
+					return regionDecoder.decodeRegion(region, opts);
+				} catch (IllegalArgumentException e) {
+					opts.inBitmap = null;
+					return regionDecoder.decodeRegion(region, opts);
+				}
+			} finally {
+				opts.inBitmap = null;
+				regionDecoder.recycle();
+			}
+		} catch (IOException e) {
+			Log.i(TAG, "Region decode not supported, decoding full image: " + e.getMessage());
+		} finally {
+			in.close();
+		}
+		
+		in = source.open();
+		Bitmap sampled;
+		try {
+			sampled = BitmapFactory.decodeStream(in, null, opts);
+		} finally {
+			in.close();
+		}
+		if (sampled == null) {
+			return null;
+		}
+		Rect sampledSquare = centreSquare(sampled.getWidth(), sampled.getHeight());
+		Bitmap cropped = Bitmap.createBitmap(sampled, sampledSquare.left, sampledSquare.top, sampledSquare.width(), sampledSquare.height());
+		if (cropped != sampled) {
+			mBitmapPool.put(sampled);
+		}
+		return cropped;
+	}
+	
+	/**
+     * Scale a square image to targetSize and rotate it about its centre in one draw
+     * 
+     */
+	private Bitmap scaleAndRotate(Bitmap square, int orientation, int targetSize) {
+		if (square.getWidth() == targetSize && square.getHeight() == targetSize && orientation % 360 == 0) {
+			return square;
+		}
+		Matrix matrix = new Matrix();
+		matrix.postTranslate(-square.getWidth() / 2f, -square.getHeight() / 2f);
+		matrix.postRotate(orientation);
+		matrix.postScale((float)targetSize / square.getWidth(), (float)targetSize / square.getHeight());
+		matrix.postTranslate(targetSize / 2f, targetSize / 2f);
+		
+		// every pixel of the pooled bitmap is overwritten, the rotated and scaled square covers the whole target
+		Bitmap result = mBitmapPool.getOrCreate(targetSize, targetSize, Bitmap.Config.ARGB_8888);
+		new Canvas(result).drawBitmap(square, matrix, mScalePaint);
+		mBitmapPool.put(square);
+		return result;
+	}
+	
+	/**
+     * Stop decoding if the decoding thread has been interrupted, e.g. because the load was cancelled
+     * 
+     * @param partial
+     * 			Bitmap decoded so far, returned to the pool if decoding is cancelled
+     * @throws InterruptedIOException if the thread has been interrupted
+     */
+	private void checkCancelled(Bitmap partial) throws InterruptedIOException {
+		if (Thread.interrupted()) {
+			mBitmapPool.put(partial);
+			throw new InterruptedIOException("Decode cancelled");
+		}
+	}
+	
+	/**
+     * Get a version for an image that changes when the image is modified, from the media store modification time
+     * and size of the image for content Uris or from the file for file Uris
+     * 
+     * @param uri
+     * 			Uri of the image
+     * @return String version of the image, empty if unknown
+     */
+	public String getImageVersion(Uri uri) {
+		if ("file".equals(uri.getScheme())) {
+			File file = new File(uri.getPath());
+			return file.lastModified() + ":" + file.length();
+		}
+		Cursor cursor = null;
+		try {
+			cursor = mContentResolver.query(uri, new String[] { MediaStore.Images.ImageColumns.DATE_MODIFIED, MediaStore.Images.ImageColumns.SIZE }, null, null, null);
+			if (cursor != null && cursor.moveToFirst()) {
+				return cursor.getLong(0) + ":" + cursor.getLong(1);
+			}
+		} catch (RuntimeException e) {
+			Log.i(TAG, "No version for " + uri);
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+		return "";
+	}
+	
+	/**
+     * Get the orientation of an image, from the media store for content Uris or from EXIF data for file Uris
+     * 
+     * @param contentResolver
+     * 			Resolver to query the media store with
+     * @param uri
+     * 			Uri of the image
+     * @return int orientation in degrees
+     */
+	static int getOrientation(ContentResolver contentResolver, Uri uri) {
+		if ("file".equals(uri.getScheme())) {
+			return getExifOrientation(uri.getPath());
+		}
+		Cursor cursor = null;
+		try {
+			cursor = contentResolver.query(uri, new String[] { MediaStore.Images.ImageColumns.ORIENTATION }, null, null, null);
+			if (cursor != null && cursor.moveToFirst()) {
+				return cursor.getInt(0);
+			}
+		} catch (RuntimeException e) {
+			// not a media store uri, e.g. from a document provider that has no orientation column
+			Log.i(TAG, "No orientation for " + uri);
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+		return 0;
+	}
+	
+	/**
+     * @param filePath
+     * 			Path to image file
+     * @return int orientation in degrees from the EXIF data of the image
+     */
+	private static int getExifOrientation(String filePath) {
+		try {
+			ExifInterface exif = new ExifInterface(filePath);
+			switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+			case ExifInterface.ORIENTATION_ROTATE_90:
+				return 90;
+			case ExifInterface.ORIENTATION_ROTATE_180:
+				return 180;
+			case ExifInterface.ORIENTATION_ROTATE_270:
+				return 270;
+			}
+		} catch (IOException e) {
+			Log.i(TAG, "Unable to read EXIF data for " + filePath);
+		}
+		return 0;
+	}
+	
+	/**
+     * @param width
+     * 			Image width
+     * @param height
+     * 			Image height
+     * @return Rect largest square centred in the image
+     */
+	static Rect centreSquare(int width, int height) {
+		int side = Math.min(width, height);
+		int left = (width - side) / 2;
+		int top = (height - side) / 2;
+		return new Rect(left, top, left + side, top + side);
+	}
+	
+	/**
+     * Compute the largest power of two sample size that decodes an image of sourceSize to at least targetSize
+     * 
+     * @param sourceSize
+     * 			Size of the region to decode
+     * @param targetSize
+     * 			Minimum size of the decoded region
+     * @return int power of two sample size, 1 if the source is not larger than the target
+     */
+	public static int computeSampleSize(int sourceSize, int targetSize) {
+		int sampleSize = 1;
+		while (targetSize > 0 && sourceSize / (sampleSize * 2) >= targetSize) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+}
@@ -0,0 +1,213 @@
+package com.shaneahern.puzzle.image;
+
+import java.io.File;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+/**
+ * Two level cache of puzzle tiles. Recently used tile sets are kept in a memory LRU cache bounded by the byte size
+ * of their bitmaps, backed by a disk cache of the cropped and scaled images they were sliced from. Entries are keyed
+ * by image identity, puzzle width and board size, see key(). 
+ * 
+ * Tile sets returned from the memory cache may be displayed by more than one view over time, so they must not be
+ * recycled by the views that display them. Instead the cache counts the users of each tile set: the memory cache
+ * itself, the view displaying it (see setDisplayed()), snapshots of the board held by the render thread and disk
+ * cache writes. When a tile set has no users left, e.g. it was evicted and is no longer displayed or drawn, its
+ * image goes to the BitmapPool to be reused by the next decode.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class TileCache {
+
+	private static final String DISK_CACHE_DIR = "tiles";
+	private static final long DISK_CACHE_MAX_BYTES = 20 * 1024 * 1024;
+	// fraction of the heap that can be used by the memory cache and the bitmap pool
+	private static final int MEMORY_CACHE_HEAP_DIVISOR = 8;
+	private static final int BITMAP_POOL_HEAP_DIVISOR = 16;
+	
+	private static TileCache sInstance;
+	
+	private final LruCache<String, TileSet> mMemoryCache;
+	private final DiskImageCache mDiskCache;
+	private final BitmapPool mBitmapPool;
+	
+	// tile set displayed by the view, guarded by this
+	private TileSet mDisplayed;
+	
+	/**
+     * @param context
+     * 			Any context, the application context is used
+     * @return TileCache shared process wide instance
+     */
+	public static synchronized TileCache getInstance(Context context) {
+		if (sInstance == null) {
+			Context appContext = context.getApplicationContext();
+			int appVersion = 0;
+			try {
+				appVersion = appContext.getPackageManager().getPackageInfo(appContext.getPackageName(), 0).versionCode;
+			} catch (PackageManager.NameNotFoundException e) {
+				// own package is always found
+			}
+			int memoryCacheBytes = (int)Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_CACHE_HEAP_DIVISOR);
+			sInstance = new TileCache(memoryCacheBytes, new DiskImageCache(new File(appContext.getCacheDir(), DISK_CACHE_DIR), DISK_CACHE_MAX_BYTES, appVersion),
+					new BitmapPool(Runtime.getRuntime().maxMemory() / BITMAP_POOL_HEAP_DIVISOR));
+		}
+		return sInstance;
+	}
+	
+	TileCache(int memoryCacheBytes, DiskImageCache diskCache, BitmapPool bitmapPool) {
+		mDiskCache = diskCache;
+		mBitmapPool = bitmapPool;
+		mMemoryCache = new LruCache<String, TileSet>(memoryCacheBytes) {
+			@Override
+			protected int sizeOf(String key, TileSet tileSet) {
+				return byteCount(tileSet.getSource());
+			}
+			
+			@Override
+			protected void entryRemoved(boolean evicted, String key, TileSet oldValue, TileSet newValue) {
+				if (oldValue != newValue) {
+					release(oldValue);
+				}
+			}
+		};
+	}
+	
+	/**
+     * @return BitmapPool pool of bitmaps to decode and draw images into
+     */
+	public BitmapPool getBitmapPool() {
+		return mBitmapPool;
+	}
+	
+	/**
+     * Build the cache key for an image
+     *
+     * @param identity
+     * 			Identity of the image, which changes if the image content changes
+     * @param targetSize
+     * 			Width and height of the puzzle image
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @return String cache key
+     */
+	public static String key(String identity, int targetSize, int rows, int cols) {
+		return identity + "@" + targetSize + "/" + rows + "x" + cols;
+	}
+	
+	/**
+     * @param key
+     * 			Cache key
+     * @return TileSet from the memory cache, or null if not in memory
+     */
+	public TileSet getFromMemory(String key) {
+		return mMemoryCache.get(key);
+	}
+	
+	public void putInMemory(String key, TileSet tileSet) {
+		acquire(tileSet);
+		if (mMemoryCache.put(key, tileSet) == tileSet) {
+			// already cached, entryRemoved() is not called when an entry is replaced by itself
+			release(tileSet);
+		}
+	}
+	
+	/**
+     * Set the tile set displayed by the view, the previously displayed tile set is released
+     *
+     * @param tileSet
+     * 			Tile set now displayed
+     */
+	public synchronized void setDisplayed(TileSet tileSet) {
+		if (tileSet == mDisplayed) {
+			return;
+		}
+		acquire(tileSet);
+		if (mDisplayed != null) {
+			release(mDisplayed);
+		}
+		mDisplayed = tileSet;
+	}
+	
+	/**
+     * Hold a tile set for a user outside the cache, e.g. a snapshot being drawn on the render thread, so its image
+     * is not reused while it is still in use. Each call must be balanced by a call to release().
+     *
+     * @param tileSet
+     * 			Tile set to hold
+     */
+	public synchronized void acquire(TileSet tileSet) {
+		tileSet.mRefCount++;
+	}
+	
+	/**
+     * Release a tile set held by acquire(), its image goes to the BitmapPool when it has no users left
+     *
+     * @param tileSet
+     * 			Tile set to release
+     */
+	public synchronized void release(TileSet tileSet) {
+		if (--tileSet.mRefCount == 0) {
+			mBitmapPool.put(tileSet.getSource());
+		}
+	}
+	
+	/**
+     * Read a cropped and scaled image from the disk cache, decoding into a pooled bitmap if there is one. Does disk I/O.
+     *
+     * @param key
+     * 			Cache key
+     * @param size
+     * 			Width and height of the cached image
+     * @param config
+     * 			Preferred bitmap config of the decoded image
+     * @return Bitmap cached image, or null if not on disk
+     */
+	public Bitmap getFromDisk(String key, int size, Bitmap.Config config) {
+		if (!mDiskCache.contains(key)) {
+			return null;
+		}
+		BitmapFactory.Options opts = new BitmapFactory.Options();
+		opts.inPreferredConfig = config;
+		opts.inMutable = true;
+		opts.inBitmap = mBitmapPool.get(size, size, config);
+		return mDiskCache.get(key, opts);
+	}
+	
+	/**
+     * Write the image of a tile set to the disk cache, does disk I/O. The tile set is held for the duration of the
+     * write, so its image is not reused while it is being compressed.
+     *
+     * @param key
+     * 			Cache key
+     * @param tileSet
+     * 			Tile set whose image to cache
+     */
+	public void putOnDisk(String key, TileSet tileSet) {
+		acquire(tileSet);
+		try {
+			mDiskCache.put(key, tileSet.getSource());
+		} finally {
+			release(tileSet);
+		}
+	}
+	
+	/**
+     * @param key
+     * 			Cache key
+     * @return true if the image is in the disk cache, does disk I/O
+     */
+	public boolean isOnDisk(String key) {
+		return mDiskCache.contains(key);
+	}
+	
+	static int byteCount(Bitmap bitmap) {
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+}
@@ -0,0 +1,162 @@
+package com.shaneahern.puzzle.image;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * Immutable set of puzzle tile images, held as one shared source bitmap and the region of the bitmap for each
+ * tile. Tile sets can be created on any thread and handed to the view, which swaps them in as a whole.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class TileSet {
+
+	private final Bitmap mSource;
+	private final Rect[] mSrcRects;
+	private final int mRows;
+	private final int mCols;
+	private final boolean mHasBorders;
+	// number of users of the source image, i.e. the tile cache, a displaying view, render thread snapshots or a disk
+	// cache write, guarded by the TileCache
+	int mRefCount;
+	
+	private TileSet(Bitmap source, Rect[] srcRects, int rows, int cols, boolean hasBorders) {
+		mSource = source;
+		mSrcRects = srcRects;
+		mRows = rows;
+		mCols = cols;
+		mHasBorders = hasBorders;
+	}
+	
+	/**
+     * Divide an image into equal sized tiles, the tile with id 0 is the empty tile and has no image
+     *
+     * @param image
+     * 			Image to divide into tiles, owned by the tile set from now on
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @param lowMemoryMode
+     * 			true to store the image as RGB_565, halving its memory use
+     * @param pool
+     * 			Pool to take the RGB_565 image from and return the original image to
+     * @return TileSet for the image
+     */
+	public static TileSet create(Bitmap image, int rows, int cols, boolean lowMemoryMode, BitmapPool pool) {
+		if (lowMemoryMode && image.getConfig() != Bitmap.Config.RGB_565) {
+			// RGB_565 uses half the memory of ARGB_8888, tiles are opaque so there is no alpha to lose
+			Bitmap lowMemoryImage = pool.getOrCreate(image.getWidth(), image.getHeight(), Bitmap.Config.RGB_565);
+			new Canvas(lowMemoryImage).drawBitmap(image, 0, 0, null);
+			pool.put(image);
+			image = lowMemoryImage;
+		}
+		return new TileSet(image, createSrcRects(image, rows, cols), rows, cols, false);
+	}
+	
+	/**
+     * Divide an image into equal sized tiles with borders painted into the image by a TileSlicer, so the borders do
+     * not need to be drawn with every frame. The tile with id 0 is the empty tile and has no image.
+     *
+     * @param image
+     * 			Image to divide into tiles, owned by the tile set from now on
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @param lowMemoryMode
+     * 			true to store the image as RGB_565, halving its memory use
+     * @param pool
+     * 			Pool to take the tile image from and return the original image to
+     * @param slicer
+     * 			Slicer to slice the image pixels with
+     * @return TileSet for the image
+     * @throws InterruptedException if the thread is interrupted while slicing
+     */
+	public static TileSet createSliced(Bitmap image, int rows, int cols, boolean lowMemoryMode, BitmapPool pool, TileSlicer slicer) throws InterruptedException {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		
+		// the atlas is uploaded to the image itself where possible, converting to RGB_565 on the way in low memory mode
+		Bitmap.Config config = lowMemoryMode ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+		Bitmap atlas = image;
+		if (!image.isMutable() || image.getConfig() != config) {
+			atlas = pool.getOrCreate(width, height, config);
+		}
+		
+		// slice one row of tiles at a time, so only a band of pixels is held besides the bitmaps, rows below the
+		// last whole row of tiles are copied unchanged
+		int tileHeight = height / rows;
+		int bandHeight = tileHeight > 0 ? tileHeight : height;
+		int[] pixels = slicer.obtainBuffer(width * bandHeight);
+		try {
+			for (int top=0; top < height; top += bandHeight) {
+				int bandRows = Math.min(bandHeight, height - top);
+				image.getPixels(pixels, 0, width, 0, top, width, bandRows);
+				if (tileHeight > 0 && top < rows * tileHeight) {
+					slicer.slice(pixels, pixels, width, tileHeight, 1, cols);
+				}
+				atlas.setPixels(pixels, 0, width, 0, top, width, bandRows);
+			}
+		} catch (InterruptedException e) {
+			if (atlas != image) {
+				pool.put(atlas);
+			}
+			throw e;
+		}
+		if (atlas != image) {
+			pool.put(image);
+		}
+		return new TileSet(atlas, createSrcRects(atlas, rows, cols), rows, cols, true);
+	}
+	
+	private static Rect[] createSrcRects(Bitmap image, int rows, int cols) {
+		Rect[] srcRects = new Rect[rows * cols];
+		// tile size in the source image, which may differ from the size tiles are drawn at
+		int srcTileWidth = image.getWidth() / cols;
+		int srcTileHeight = image.getHeight() / rows;
+		for (int row=0; row < rows; row++) {
+			for (int col=0; col < cols; col++) {
+				int tileId = row * cols + col;
+				if (tileId != 0) {
+					int x = col * srcTileWidth;
+					int y = row * srcTileHeight;
+					srcRects[tileId] = new Rect(x, y, x + srcTileWidth, y + srcTileHeight);
+				}
+			}
+		}
+		return srcRects;
+	}
+	
+	/**
+     * @return Bitmap shared source image of all tiles
+     */
+	public Bitmap getSource() {
+		return mSource;
+	}
+	
+	/**
+     * @param tileId
+     * 			Id of the tile, i.e. its position in the solved puzzle in row major order
+     * @return Rect region of the source image for the tile, null for the empty tile
+     */
+	public Rect getSrcRect(int tileId) {
+		return mSrcRects[tileId];
+	}
+	
+	/**
+     * @return true if tile borders are part of the tile images, false if they must be drawn with the tiles
+     */
+	public boolean hasBorders() {
+		return mHasBorders;
+	}
+	
+	public int getRows() {
+		return mRows;
+	}
+	
+	public int getCols() {
+		return mCols;
+	}
+}
@@ -0,0 +1,218 @@
+package com.shaneahern.puzzle.image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Slices puzzle images held as ARGB pixel buffers into tiles with borders, independently of android.graphics so it
+ * can be tested and benchmarked on a plain JVM. The sliced image is an atlas: one pixel buffer the same size as the
+ * image, in which each tile occupies the same region as in the image, so tiles are views into the one buffer and
+ * the atlas can be uploaded to a single bitmap. Tiles are sliced in parallel on an executor, in chunks of whole
+ * tiles so no two threads write to the same tile.
+ *
+ * A slicer reuses its pixel buffer between calls, so it must only be used by one thread at a time. TileSet slices
+ * an image one row of tiles at a time, so the buffer it keeps is a band of the image rather than the whole image.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class TileSlicer {
+
+	// slicing tasks per thread, more tasks than threads balance the load when some threads start late
+	private static final int TASKS_PER_THREAD = 4;
+
+	private static ExecutorService sDefaultExecutor;
+
+	private final ExecutorService mExecutor;
+	private final int mParallelism;
+	private final int mBorderWidth;
+	private final int mBorderColor;
+	private int[] mBuffer;
+
+	/**
+     * @return ExecutorService shared process wide slicing executor, with one thread per processor
+     */
+	public static synchronized ExecutorService getDefaultExecutor() {
+		if (sDefaultExecutor == null) {
+			sDefaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				private int mCount;
+
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "TileSlicer-" + (++mCount));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sDefaultExecutor;
+	}
+
+	/**
+     * @param executor
+     * 			Executor to slice tiles on, or null to slice on the calling thread
+     * @param parallelism
+     * 			Number of threads of the executor
+     * @param borderWidth
+     * 			Width in pixels of the border painted inside the edges of each tile, 0 for no border
+     * @param borderColor
+     * 			ARGB color of the border
+     */
+	public TileSlicer(ExecutorService executor, int parallelism, int borderWidth, int borderColor) {
+		mExecutor = executor;
+		mParallelism = executor != null ? Math.max(1, parallelism) : 1;
+		mBorderWidth = borderWidth;
+		mBorderColor = borderColor;
+	}
+
+	/**
+     * @param borderWidth
+     * 			Width in pixels of the border painted inside the edges of each tile, 0 for no border
+     * @param borderColor
+     * 			ARGB color of the border
+     * @return TileSlicer on the default executor
+     */
+	public static TileSlicer create(int borderWidth, int borderColor) {
+		return new TileSlicer(getDefaultExecutor(), Runtime.getRuntime().availableProcessors(), borderWidth, borderColor);
+	}
+
+	/**
+     * Slice an image into a tile atlas. Tiles are width / cols by height / rows pixels, any remaining pixels at the
+     * right and bottom edges are not part of a tile and are copied unchanged.
+     *
+     * @param pixels
+     * 			ARGB pixels of the image in row major order
+     * @param width
+     * 			Image width
+     * @param height
+     * 			Image height
+     * @param rows
+     * 			Number of rows of tiles
+     * @param cols
+     * 			Number of columns of tiles
+     * @return int[] atlas of bordered tiles, at least width * height pixels with the same stride as the image,
+     * 			owned by the slicer and overwritten by the next call to slice()
+     * @throws InterruptedException if the calling thread is interrupted while waiting for tiles
+     */
+	public int[] slice(int[] pixels, int width, int height, int rows, int cols) throws InterruptedException {
+		int[] atlas = obtainBuffer(width * height);
+		slice(pixels, atlas, width, height, rows, cols);
+		return atlas;
+	}
+	
+	/**
+     * Get the slicer's reusable pixel buffer, e.g. to read a band of an image into and slice in place. The buffer
+     * is kept for the life of the slicer, so callers should ask for no more than they slice at once.
+     *
+     * @param size
+     * 			Minimum number of pixels in the buffer
+     * @return int[] buffer owned by the slicer, overwritten by the next call to slice()
+     */
+	public int[] obtainBuffer(int size) {
+		if (mBuffer == null || mBuffer.length < size) {
+			mBuffer = new int[size];
+		}
+		return mBuffer;
+	}
+
+	/**
+     * Slice an image into a tile atlas in the given buffer, which may be the image buffer itself to slice in place
+     *
+     * @param src
+     * 			ARGB pixels of the image in row major order
+     * @param dst
+     * 			Buffer for the atlas, at least width * height pixels, may be the same as src
+     * @param width
+     * 			Image width
+     * @param height
+     * 			Image height
+     * @param rows
+     * 			Number of rows of tiles
+     * @param cols
+     * 			Number of columns of tiles
+     * @throws InterruptedException if the calling thread is interrupted while waiting for tiles
+     */
+	public void slice(final int[] src, final int[] dst, final int width, final int height, int rows, final int cols) throws InterruptedException {
+		final int tileWidth = width / cols;
+		final int tileHeight = height / rows;
+		final int numTiles = rows * cols;
+		if (src != dst && (width % cols != 0 || height % rows != 0)) {
+			// pixels outside of whole tiles are not written by the tile tasks
+			System.arraycopy(src, 0, dst, 0, width * height);
+		}
+		if (tileWidth == 0 || tileHeight == 0) {
+			return;
+		}
+
+		int numTasks = Math.min(numTiles, mParallelism * TASKS_PER_THREAD);
+		if (mExecutor == null || numTasks <= 1) {
+			sliceTiles(src, dst, width, tileWidth, tileHeight, cols, 0, numTiles);
+			return;
+		}
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(numTasks);
+		try {
+			for (int task=0; task < numTasks; task++) {
+				final int firstTile = (int)((long)numTiles * task / numTasks);
+				final int endTile = (int)((long)numTiles * (task + 1) / numTasks);
+				futures.add(mExecutor.submit(new Callable<Void>() {
+					public Void call() {
+						sliceTiles(src, dst, width, tileWidth, tileHeight, cols, firstTile, endTile);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Unable to slice tiles", e.getCause());
+		} finally {
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+     * Copy tiles firstTile (inclusive) to endTile (exclusive), in row major order, and paint their borders
+     *
+     */
+	void sliceTiles(int[] src, int[] dst, int stride, int tileWidth, int tileHeight, int cols, int firstTile, int endTile) {
+		int border = Math.min(mBorderWidth, Math.min(tileWidth, tileHeight) / 2);
+		for (int tileId=firstTile; tileId < endTile; tileId++) {
+			int left = (tileId % cols) * tileWidth;
+			int top = (tileId / cols) * tileHeight;
+			for (int y=0; y < tileHeight; y++) {
+				int offset = (top + y) * stride + left;
+				if (y < border || y >= tileHeight - border) {
+					// whole row of the top or bottom border
+					fill(dst, offset, tileWidth, mBorderColor);
+				} else {
+					if (src != dst) {
+						System.arraycopy(src, offset + border, dst, offset + border, tileWidth - 2 * border);
+					}
+					fill(dst, offset, border, mBorderColor);
+					fill(dst, offset + tileWidth - border, border, mBorderColor);
+				}
+			}
+		}
+	}
+
+	private static void fill(int[] buffer, int offset, int length, int color) {
+		for (int i=offset, end=offset + length; i < end; i++) {
+			buffer[i] = color;
+		}
+	}
+
+	/**
+     * @return int width in pixels of the border painted inside each tile
+     */
+	public int getBorderWidth() {
+		return mBorderWidth;
+	}
+}
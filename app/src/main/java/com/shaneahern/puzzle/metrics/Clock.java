@@ -0,0 +1,25 @@
+package com.shaneahern.puzzle.metrics;
+
+/**
+ * Monotonic time source, injectable so that time dependent code can be tested with a fake clock
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public interface Clock {
+	
+	/**
+     * Clock backed by System.nanoTime()
+     */
+	public static final Clock SYSTEM = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+	
+	/**
+     * @return long current time in ns, only meaningful relative to other values from the same clock
+     */
+	public long nanoTime();
+
+}
@@ -0,0 +1,29 @@
+package com.shaneahern.puzzle.metrics;
+
+/**
+ * Monotonic event counter
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public interface Counter {
+	
+	/**
+     * Increment the counter by one
+     *
+     */
+	public void inc();
+	
+	/**
+     * Increment the counter
+     *
+     * @param amount
+     * 			Amount to add to the counter
+     */
+	public void inc(long amount);
+	
+	/**
+     * @return long current value of the counter
+     */
+	public long getCount();
+
+}
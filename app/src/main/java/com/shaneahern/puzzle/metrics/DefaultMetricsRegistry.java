@@ -0,0 +1,141 @@
+package com.shaneahern.puzzle.metrics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.shaneahern.puzzle.stats.HistogramSnapshot;
+import com.shaneahern.puzzle.stats.StripedHistogram;
+
+/**
+ * Registry that keeps metrics in memory. Timers and histograms are backed by lock-free StripedHistograms,
+ * timer durations are recorded in nanoseconds. Timers and histograms share one namespace, as they do in
+ * snapshots, so a name used for one cannot be used for the other.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+	private final ConcurrentMap<String, AtomicCounter> mCounters = new ConcurrentHashMap<String, AtomicCounter>();
+	// histograms and timers, which are histograms of durations
+	private final ConcurrentMap<String, HistogramMetric> mHistograms = new ConcurrentHashMap<String, HistogramMetric>();
+	
+	@Override
+	public Counter counter(String name) {
+		AtomicCounter counter = mCounters.get(name);
+		if (counter == null) {
+			AtomicCounter newCounter = new AtomicCounter();
+			counter = mCounters.putIfAbsent(name, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		return counter;
+	}
+
+	@Override
+	public Timer timer(String name) {
+		HistogramMetric timer = mHistograms.get(name);
+		if (timer == null) {
+			TimerMetric newTimer = new TimerMetric(name);
+			timer = mHistograms.putIfAbsent(name, newTimer);
+			if (timer == null) {
+				timer = newTimer;
+			}
+		}
+		if (!(timer instanceof TimerMetric)) {
+			throw new IllegalArgumentException("Metric " + name + " is already a histogram");
+		}
+		return (TimerMetric)timer;
+	}
+
+	@Override
+	public Histogram histogram(String name) {
+		HistogramMetric histogram = mHistograms.get(name);
+		if (histogram == null) {
+			HistogramMetric newHistogram = new HistogramMetric(name);
+			histogram = mHistograms.putIfAbsent(name, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		if (histogram instanceof TimerMetric) {
+			throw new IllegalArgumentException("Metric " + name + " is already a timer");
+		}
+		return histogram;
+	}
+
+	@Override
+	public MetricsSnapshot snapshot() {
+		Map<String, Long> counters = new TreeMap<String, Long>();
+		for (Map.Entry<String, AtomicCounter> entry : mCounters.entrySet()) {
+			counters.put(entry.getKey(), entry.getValue().getCount());
+		}
+		Map<String, HistogramSnapshot> histograms = new TreeMap<String, HistogramSnapshot>();
+		Set<String> timers = new TreeSet<String>();
+		for (Map.Entry<String, HistogramMetric> entry : mHistograms.entrySet()) {
+			histograms.put(entry.getKey(), entry.getValue().mHistogram.snapshot());
+			if (entry.getValue() instanceof TimerMetric) {
+				timers.add(entry.getKey());
+			}
+		}
+		return new MetricsSnapshot(System.currentTimeMillis(), counters, histograms, timers);
+	}
+	
+	private static class AtomicCounter extends AtomicLong implements Counter {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void inc() {
+			incrementAndGet();
+		}
+
+		@Override
+		public void inc(long amount) {
+			addAndGet(amount);
+		}
+
+		@Override
+		public long getCount() {
+			return get();
+		}
+	}
+	
+	private static class HistogramMetric implements Histogram {
+		
+		final StripedHistogram mHistogram;
+		
+		HistogramMetric(String name) {
+			mHistogram = new StripedHistogram(name);
+		}
+
+		@Override
+		public void record(long value) {
+			mHistogram.record(value);
+		}
+	}
+	
+	// a timer is a histogram of durations in nanoseconds, so that operations shorter than a microsecond still
+	// record their time
+	private static class TimerMetric extends HistogramMetric implements Timer {
+		
+		TimerMetric(String name) {
+			super(name);
+		}
+
+		@Override
+		public long start() {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void stop(long startToken) {
+			record(System.nanoTime() - startToken);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.shaneahern.puzzle.metrics;
+
+/**
+ * Summary of recent frames traced by a FrameTracer. Percentiles cover the most recent frames held by the tracer,
+ * the frame counts cover all frames since the tracer was created or reset.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class FrameReport {
+
+	public final long totalFrames;
+	public final long jankyFrames;
+	public final long p50FrameNanos;
+	public final long p95FrameNanos;
+	public final long p99FrameNanos;
+	public final long p50TickIntervalNanos;
+	public final long p99TickIntervalNanos;
+	public final float meanTilesDrawn;
+	// dropped frames for each recent animation, oldest first
+	public final int[] droppedFramesPerAnimation;
+	
+	FrameReport(long totalFrames, long jankyFrames, long p50FrameNanos, long p95FrameNanos, long p99FrameNanos,
+			long p50TickIntervalNanos, long p99TickIntervalNanos, float meanTilesDrawn, int[] droppedFramesPerAnimation) {
+		this.totalFrames = totalFrames;
+		this.jankyFrames = jankyFrames;
+		this.p50FrameNanos = p50FrameNanos;
+		this.p95FrameNanos = p95FrameNanos;
+		this.p99FrameNanos = p99FrameNanos;
+		this.p50TickIntervalNanos = p50TickIntervalNanos;
+		this.p99TickIntervalNanos = p99TickIntervalNanos;
+		this.meanTilesDrawn = meanTilesDrawn;
+		this.droppedFramesPerAnimation = droppedFramesPerAnimation;
+	}
+	
+	/**
+     * @return int total dropped frames over the recent animations
+     */
+	public int getDroppedFrames() {
+		int dropped = 0;
+		for (int d : droppedFramesPerAnimation) {
+			dropped += d;
+		}
+		return dropped;
+	}
+	
+	@Override
+	public String toString() {
+		return "frames=" + totalFrames + " janky=" + jankyFrames
+				+ " p50=" + p50FrameNanos / 1000 + "us p95=" + p95FrameNanos / 1000 + "us p99=" + p99FrameNanos / 1000 + "us"
+				+ " tick p50=" + p50TickIntervalNanos / 1000 + "us p99=" + p99TickIntervalNanos / 1000 + "us"
+				+ " tiles=" + meanTilesDrawn
+				+ " animations=" + droppedFramesPerAnimation.length + " dropped=" + getDroppedFrames();
+	}
+}
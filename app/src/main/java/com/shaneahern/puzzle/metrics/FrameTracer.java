@@ -0,0 +1,187 @@
+package com.shaneahern.puzzle.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Per-frame tracing for the puzzle view. Records the duration of each draw, the number of tiles drawn, and the
+ * interval between animation ticks, in fixed size ring buffers holding the most recent frames and animations.
+ * Frames whose draw takes longer than the frame budget are counted as janky. While an animation is running, the
+ * interval between consecutive frames is used to count how many display frames were dropped by that animation.
+ * 
+ * All methods are expected to be called from the thread that draws the view.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class FrameTracer {
+
+	// 60 fps display
+	public static final long DEFAULT_FRAME_BUDGET_NANOS = 1000000000L / 60;
+	
+	private static final int MAX_FRAMES = 512;
+	private static final int MAX_ANIMATIONS = 64;
+	
+	private final Clock mClock;
+	private final long mFrameBudgetNanos;
+	
+	// ring buffers of recent frames
+	private final long[] mDrawNanos = new long[MAX_FRAMES];
+	private final int[] mTilesDrawn = new int[MAX_FRAMES];
+	private final long[] mTickIntervalNanos = new long[MAX_FRAMES];
+	private int mFrameCount;
+	private int mTickCount;
+	private long mJankyFrames;
+	private long mTotalFrames;
+	
+	// ring buffer of dropped frames for recent animations
+	private final int[] mAnimationDroppedFrames = new int[MAX_ANIMATIONS];
+	private int mAnimationCount;
+	
+	// state of the animation in progress
+	private boolean mAnimating;
+	private long mLastTickTime = -1;
+	private long mLastFrameTime = -1;
+	private int mCurrentDroppedFrames;
+	
+	public FrameTracer() {
+		this(Clock.SYSTEM, DEFAULT_FRAME_BUDGET_NANOS);
+	}
+	
+	/**
+     * @param clock
+     * 			Time source used for all measurements
+     * @param frameBudgetNanos
+     * 			Time available to draw one frame, draws taking longer are janky
+     */
+	public FrameTracer(Clock clock, long frameBudgetNanos) {
+		mClock = clock;
+		mFrameBudgetNanos = frameBudgetNanos;
+	}
+	
+	/**
+     * Mark the start of a frame draw
+     *
+     * @return long token to be passed to endFrame()
+     */
+	public long beginFrame() {
+		return mClock.nanoTime();
+	}
+	
+	/**
+     * Mark the end of a frame draw
+     *
+     * @param frameToken
+     * 			Token returned by beginFrame()
+     * @param tilesDrawn
+     * 			Number of tiles drawn in the frame
+     */
+	public void endFrame(long frameToken, int tilesDrawn) {
+		long now = mClock.nanoTime();
+		long drawNanos = now - frameToken;
+		int slot = mFrameCount++ % MAX_FRAMES;
+		mDrawNanos[slot] = drawNanos;
+		mTilesDrawn[slot] = tilesDrawn;
+		mTotalFrames++;
+		if (drawNanos > mFrameBudgetNanos) {
+			mJankyFrames++;
+		}
+		
+		if (mAnimating) {
+			if (mLastFrameTime >= 0) {
+				// each full frame budget beyond the first between consecutive frames is a display frame that was not drawn
+				long missed = (frameToken - mLastFrameTime - mFrameBudgetNanos / 2) / mFrameBudgetNanos;
+				if (missed > 0) {
+					mCurrentDroppedFrames += missed;
+				}
+			}
+			mLastFrameTime = frameToken;
+		}
+	}
+	
+	/**
+     * Mark the start of an animation. Dropped frames are counted until endAnimation() is called.
+     *
+     */
+	public void beginAnimation() {
+		if (!mAnimating) {
+			mAnimating = true;
+			mCurrentDroppedFrames = 0;
+			mLastTickTime = -1;
+			mLastFrameTime = -1;
+		}
+	}
+	
+	/**
+     * Mark an animation tick, records the interval from the previous tick of the same animation
+     *
+     */
+	public void animationTick() {
+		long now = mClock.nanoTime();
+		if (mLastTickTime >= 0) {
+			mTickIntervalNanos[mTickCount++ % MAX_FRAMES] = now - mLastTickTime;
+		}
+		mLastTickTime = now;
+	}
+	
+	/**
+     * Mark the end of an animation and record its dropped frames
+     *
+     */
+	public void endAnimation() {
+		if (mAnimating) {
+			mAnimating = false;
+			mAnimationDroppedFrames[mAnimationCount++ % MAX_ANIMATIONS] = mCurrentDroppedFrames;
+		}
+	}
+	
+	/**
+     * Summarize the recent frames and animations
+     *
+     * @return FrameReport with frame time percentiles and dropped frames
+     */
+	public FrameReport getReport() {
+		int frames = Math.min(mFrameCount, MAX_FRAMES);
+		long[] drawNanos = Arrays.copyOf(mDrawNanos, frames);
+		Arrays.sort(drawNanos);
+		long tilesDrawn = 0;
+		for (int i=0; i < frames; i++) {
+			tilesDrawn += mTilesDrawn[i];
+		}
+		
+		int ticks = Math.min(mTickCount, MAX_FRAMES);
+		long[] tickIntervals = Arrays.copyOf(mTickIntervalNanos, ticks);
+		Arrays.sort(tickIntervals);
+		
+		int animations = Math.min(mAnimationCount, MAX_ANIMATIONS);
+		int[] droppedFrames = new int[animations];
+		// oldest animation first
+		for (int i=0; i < animations; i++) {
+			droppedFrames[i] = mAnimationDroppedFrames[(mAnimationCount - animations + i) % MAX_ANIMATIONS];
+		}
+		
+		return new FrameReport(mTotalFrames, mJankyFrames, 
+				percentile(drawNanos, 50), percentile(drawNanos, 95), percentile(drawNanos, 99), 
+				percentile(tickIntervals, 50), percentile(tickIntervals, 99),
+				frames == 0 ? 0 : (float)tilesDrawn / frames, droppedFrames);
+	}
+	
+	/**
+     * Clear all recorded frames and animations
+     *
+     */
+	public void reset() {
+		mFrameCount = 0;
+		mTickCount = 0;
+		mTotalFrames = 0;
+		mJankyFrames = 0;
+		mAnimationCount = 0;
+		mAnimating = false;
+	}
+	
+	private static long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int)Math.ceil(percentile / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+}
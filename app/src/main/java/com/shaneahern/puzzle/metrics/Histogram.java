@@ -0,0 +1,18 @@
+package com.shaneahern.puzzle.metrics;
+
+/**
+ * Distribution of recorded values, e.g. sizes or counts per operation
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public interface Histogram {
+	
+	/**
+     * Record a value in the distribution
+     *
+     * @param value
+     * 			Value to record
+     */
+	public void record(long value);
+
+}
@@ -0,0 +1,40 @@
+package com.shaneahern.puzzle.metrics;
+
+/**
+ * Holder for the process wide metrics registry. Defaults to a no-op registry, so instrumented code costs nothing
+ * until a real registry is installed with setRegistry(). Metrics are looked up when instrumented objects are
+ * created, so the registry should be installed before the views and controller are created.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public final class Metrics {
+
+	private static volatile MetricsRegistry sRegistry = NoopMetricsRegistry.INSTANCE;
+	
+	private Metrics() {
+	}
+	
+	/**
+     * @return MetricsRegistry the currently installed registry
+     */
+	public static MetricsRegistry get() {
+		return sRegistry;
+	}
+	
+	/**
+     * Install the process wide registry
+     *
+     * @param registry
+     * 			Registry to install, or null to restore the no-op registry
+     */
+	public static void setRegistry(MetricsRegistry registry) {
+		sRegistry = registry != null ? registry : NoopMetricsRegistry.INSTANCE;
+	}
+	
+	/**
+     * @return true if a registry other than the no-op registry is installed
+     */
+	public static boolean isEnabled() {
+		return sRegistry != NoopMetricsRegistry.INSTANCE;
+	}
+}
@@ -0,0 +1,128 @@
+package com.shaneahern.puzzle.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import com.shaneahern.puzzle.stats.HistogramSnapshot;
+
+/**
+ * Appends metrics snapshots to a local CSV file, one row per metric, tagged with a build identifier so that
+ * exports from different builds can be collected from devices and compared. Columns are:
+ * 
+ * <pre>
+ * timestamp,build,metric,unit,count,sum,min,p50,p95,p99,max
+ * </pre>
+ * 
+ * Counters only fill in the count column. Timers have the unit ns, histograms of other values leave it empty.
+ * 
+ * The file is capped: once it has grown past its size limit, it is rotated to a file of the same name with a ".1"
+ * suffix, replacing the previous rotated file, and a new file is started. At most about twice the limit is kept.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class MetricsFileExporter {
+
+	static final String HEADER = "timestamp,build,metric,unit,count,sum,min,p50,p95,p99,max";
+	static final String ROTATED_SUFFIX = ".1";
+	private static final long DEFAULT_MAX_BYTES = 256 * 1024;
+	
+	private final File mFile;
+	private final String mBuild;
+	private final long mMaxBytes;
+	
+	/**
+     * @param file
+     * 			File to append snapshots to, created with a header row if it does not exist
+     * @param build
+     * 			Build identifier written on every row, e.g. the version name
+     */
+	public MetricsFileExporter(File file, String build) {
+		this(file, build, DEFAULT_MAX_BYTES);
+	}
+	
+	/**
+     * @param file
+     * 			File to append snapshots to, created with a header row if it does not exist
+     * @param build
+     * 			Build identifier written on every row, e.g. the version name
+     * @param maxBytes
+     * 			Size past which the file is rotated before the next export
+     */
+	public MetricsFileExporter(File file, String build, long maxBytes) {
+		mFile = file;
+		mBuild = build;
+		mMaxBytes = maxBytes;
+	}
+	
+	/**
+     * Append a snapshot of the registry to the export file
+     *
+     * @param registry
+     * 			Registry to export
+     * @throws IOException if the file cannot be written
+     */
+	public void export(MetricsRegistry registry) throws IOException {
+		export(registry.snapshot());
+	}
+	
+	/**
+     * Append a snapshot to the export file
+     *
+     * @param snapshot
+     * 			Snapshot to export
+     * @throws IOException if the file cannot be written
+     */
+	public void export(MetricsSnapshot snapshot) throws IOException {
+		if (mFile.length() > mMaxBytes) {
+			rotate();
+		}
+		boolean writeHeader = !mFile.exists() || mFile.length() == 0;
+		Writer writer = new FileWriter(mFile, true);
+		try {
+			StringBuilder sb = new StringBuilder();
+			if (writeHeader) {
+				sb.append(HEADER).append('\n');
+			}
+			for (Map.Entry<String, Long> counter : snapshot.getCounters().entrySet()) {
+				appendPrefix(sb, snapshot, counter.getKey());
+				sb.append(',').append(counter.getValue()).append(",,,,,,\n");
+			}
+			for (HistogramSnapshot h : snapshot.getHistograms().values()) {
+				appendPrefix(sb, snapshot, h.getName());
+				sb.append(snapshot.getUnit(h.getName())).append(',')
+					.append(h.getCount()).append(',')
+					.append(h.getSum()).append(',')
+					.append(h.getMin()).append(',')
+					.append(h.getPercentile(50)).append(',')
+					.append(h.getPercentile(95)).append(',')
+					.append(h.getPercentile(99)).append(',')
+					.append(h.getMax()).append('\n');
+			}
+			writer.write(sb.toString());
+		} finally {
+			writer.close();
+		}
+	}
+	
+	/**
+     * Move the export file aside to the rotated file, replacing an older rotated file
+     *
+     * @throws IOException if the file cannot be moved
+     */
+	private void rotate() throws IOException {
+		File rotated = new File(mFile.getPath() + ROTATED_SUFFIX);
+		if (rotated.exists() && !rotated.delete()) {
+			throw new IOException("Unable to delete " + rotated);
+		}
+		if (!mFile.renameTo(rotated)) {
+			throw new IOException("Unable to rotate " + mFile);
+		}
+	}
+	
+	private void appendPrefix(StringBuilder sb, MetricsSnapshot snapshot, String name) {
+		sb.append(snapshot.getTimestamp()).append(',').append(mBuild).append(',').append(name).append(',');
+	}
+}
@@ -0,0 +1,24 @@
+package com.shaneahern.puzzle.metrics;
+
+/**
+ * Source of named counters, timers and histograms. The same instance is returned for repeated requests for the same
+ * name, so callers should look metrics up once and keep the reference rather than looking them up on hot paths.
+ * Timers and histograms share one namespace, asking for a timer with the name of a histogram, or the other way
+ * around, throws IllegalArgumentException.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public interface MetricsRegistry {
+	
+	public Counter counter(String name);
+	
+	public Timer timer(String name);
+	
+	public Histogram histogram(String name);
+	
+	/**
+     * @return MetricsSnapshot of the current values of all metrics in the registry
+     */
+	public MetricsSnapshot snapshot();
+
+}
@@ -0,0 +1,55 @@
+package com.shaneahern.puzzle.metrics;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.shaneahern.puzzle.stats.HistogramSnapshot;
+
+/**
+ * Values of all metrics in a registry at a point in time. Timer and histogram values share the histograms map,
+ * timer values are in nanoseconds and getUnit() tells them apart.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class MetricsSnapshot {
+
+	public static final String UNIT_NANOS = "ns";
+
+	private final long mTimestamp;
+	private final Map<String, Long> mCounters;
+	private final Map<String, HistogramSnapshot> mHistograms;
+	// names of the histograms that are timers
+	private final Set<String> mTimers;
+	
+	MetricsSnapshot(long timestamp, Map<String, Long> counters, Map<String, HistogramSnapshot> histograms, Set<String> timers) {
+		mTimestamp = timestamp;
+		mCounters = counters;
+		mHistograms = histograms;
+		mTimers = timers;
+	}
+	
+	/**
+     * @return long wall clock time in ms when the snapshot was taken
+     */
+	public long getTimestamp() {
+		return mTimestamp;
+	}
+	
+	public Map<String, Long> getCounters() {
+		return mCounters;
+	}
+	
+	public Map<String, HistogramSnapshot> getHistograms() {
+		return mHistograms;
+	}
+	
+	/**
+     * @param name
+     * 			Name of a histogram
+     * @return String unit of the values, UNIT_NANOS for timers, or an empty string for histograms of values
+     * 			recorded by the caller, whose unit the registry does not know
+     */
+	public String getUnit(String name) {
+		return mTimers.contains(name) ? UNIT_NANOS : "";
+	}
+}
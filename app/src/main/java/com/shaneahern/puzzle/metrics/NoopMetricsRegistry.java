@@ -0,0 +1,65 @@
+package com.shaneahern.puzzle.metrics;
+
+import java.util.Collections;
+
+import com.shaneahern.puzzle.stats.HistogramSnapshot;
+
+/**
+ * Registry used when metrics are disabled. All metrics are shared stateless instances whose methods do nothing,
+ * and timers never read the clock.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+final class NoopMetricsRegistry implements MetricsRegistry, Counter, Timer, Histogram {
+
+	static final NoopMetricsRegistry INSTANCE = new NoopMetricsRegistry();
+	
+	private NoopMetricsRegistry() {
+	}
+	
+	@Override
+	public Counter counter(String name) {
+		return this;
+	}
+
+	@Override
+	public Timer timer(String name) {
+		return this;
+	}
+
+	@Override
+	public Histogram histogram(String name) {
+		return this;
+	}
+
+	@Override
+	public MetricsSnapshot snapshot() {
+		return new MetricsSnapshot(System.currentTimeMillis(), Collections.<String, Long>emptyMap(), Collections.<String, HistogramSnapshot>emptyMap(), Collections.<String>emptySet());
+	}
+
+	@Override
+	public void inc() {
+	}
+
+	@Override
+	public void inc(long amount) {
+	}
+
+	@Override
+	public long getCount() {
+		return 0;
+	}
+
+	@Override
+	public long start() {
+		return 0;
+	}
+
+	@Override
+	public void stop(long startToken) {
+	}
+
+	@Override
+	public void record(long value) {
+	}
+}
@@ -0,0 +1,40 @@
+package com.shaneahern.puzzle.metrics;
+
+/**
+ * Records the duration of an operation. Usage is start() before the operation and stop() with the returned
+ * token after it, so that a disabled timer never needs to read the clock:
+ * 
+ * <pre>
+ * long t = timer.start();
+ * doWork();
+ * timer.stop(t);
+ * </pre>
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public interface Timer {
+	
+	/**
+     * Start timing an operation
+     *
+     * @return long token to be passed to stop() when the operation completes
+     */
+	public long start();
+	
+	/**
+     * Stop timing an operation and record its duration
+     *
+     * @param startToken
+     * 			Token returned by start() when the operation began
+     */
+	public void stop(long startToken);
+	
+	/**
+     * Record the duration of an operation that was timed elsewhere
+     *
+     * @param durationNanos
+     * 			Duration of the operation in ns
+     */
+	public void record(long durationNanos);
+
+}
@@ -0,0 +1,76 @@
+package com.shaneahern.puzzle.race;
+
+import com.shaneahern.puzzle.PuzzlePosition;
+
+/**
+ * Encodes a puzzle move in a single byte. A move is fully described by where its origin is relative to the empty
+ * position, the top two bits hold the direction of the origin from the empty position and the low six bits hold the
+ * distance minus one. Decoding needs the empty position the move was made from, which both sides of a race know as
+ * long as they apply the same moves in the same order.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class MoveCodec {
+
+	// direction of the move origin from the empty position
+	public static final int ABOVE = 0;
+	public static final int BELOW = 1;
+	public static final int LEFT = 2;
+	public static final int RIGHT = 3;
+
+	// longest slide that fits in the low six bits
+	public static final int MAX_DISTANCE = 64;
+
+	private MoveCodec() {
+	}
+
+	/**
+     * @param empty
+     * 			Empty position before the move
+     * @param origin
+     * 			Position the move originates from, in the same row or column as the empty position
+     * @return byte encoded move
+     * @throws IllegalArgumentException if there is no move from origin, or it slides too many tiles to encode
+     */
+	public static byte encode(PuzzlePosition empty, PuzzlePosition origin) {
+		int rows = origin.getRow() - empty.getRow();
+		int cols = origin.getCol() - empty.getCol();
+		int direction;
+		int distance;
+		if (cols == 0 && rows != 0) {
+			direction = rows < 0 ? ABOVE : BELOW;
+			distance = Math.abs(rows);
+		} else if (rows == 0 && cols != 0) {
+			direction = cols < 0 ? LEFT : RIGHT;
+			distance = Math.abs(cols);
+		} else {
+			throw new IllegalArgumentException("No move from " + origin.getRow() + "," + origin.getCol()
+					+ " with empty position " + empty.getRow() + "," + empty.getCol());
+		}
+		if (distance > MAX_DISTANCE) {
+			throw new IllegalArgumentException("Move of " + distance + " tiles cannot be encoded");
+		}
+		return (byte)((direction << 6) | (distance - 1));
+	}
+
+	/**
+     * @param move
+     * 			Encoded move
+     * @param empty
+     * 			Empty position before the move
+     * @return PuzzlePosition position the move originates from, may be outside the board if the move is corrupt
+     */
+	public static PuzzlePosition decode(byte move, PuzzlePosition empty) {
+		int distance = (move & 0x3f) + 1;
+		switch ((move >> 6) & 0x3) {
+		case ABOVE:
+			return new PuzzlePosition(empty.getRow() - distance, empty.getCol());
+		case BELOW:
+			return new PuzzlePosition(empty.getRow() + distance, empty.getCol());
+		case LEFT:
+			return new PuzzlePosition(empty.getRow(), empty.getCol() - distance);
+		default:
+			return new PuzzlePosition(empty.getRow(), empty.getCol() + distance);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.shaneahern.puzzle.race;
+
+import java.util.Random;
+
+import com.shaneahern.puzzle.PuzzleController;
+import com.shaneahern.puzzle.PuzzlePosition;
+import com.shaneahern.puzzle.PuzzleView;
+
+/**
+ * Board of one player in a race. Starts from a scramble generated from a seed, so every peer that knows the seed
+ * builds the identical board, and then only changes by applying encoded moves, so every peer that applies the same
+ * moves in the same order stays on the identical board. Keeps the sequence number of the next move and a Zobrist
+ * hash of the board, which is updated incrementally with each move and exchanged as a checksum to detect peers that
+ * have drifted apart.
+ *
+ * Not thread safe.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class RaceBoard {
+
+	public static final int ROWS = PuzzleView.PUZZLE_ROWS;
+	public static final int COLS = PuzzleView.PUZZLE_COLS;
+
+	private static final ZobristHash sZobrist = new ZobristHash(ROWS, COLS, ZobristHash.DEFAULT_SEED);
+
+	private final PuzzleController mController;
+	// number of moves applied since the scramble, i.e. sequence number of the next move
+	private int mSeq;
+	private long mChecksum;
+
+	/**
+     * @param seed
+     * 			Seed of the scramble
+     * @param scrambleAttempts
+     * 			Number of random positions to attempt scramble moves from
+     */
+	public RaceBoard(long seed, int scrambleAttempts) {
+		mController = new PuzzleController();
+		mController.scramble(scrambleAttempts, new Random(seed));
+		mChecksum = sZobrist.hash(getPuzzlePositions());
+	}
+
+	/**
+     * Encode the move from a position, without applying it
+     *
+     * @param p
+     * 			Position of move
+     * @return byte encoded move
+     * @throws IllegalArgumentException if there is no legal move from p
+     */
+	public byte encode(PuzzlePosition p) {
+		return MoveCodec.encode(getEmptyPosition(), p);
+	}
+
+	/**
+     * Apply an encoded move
+     *
+     * @param move
+     * 			Encoded move
+     * @return true if the move is legal on this board and was applied
+     */
+	public boolean apply(byte move) {
+		PuzzlePosition empty = getEmptyPosition();
+		PuzzlePosition origin = MoveCodec.decode(move, empty);
+		if (origin.getRow() < 0 || origin.getRow() >= ROWS || origin.getCol() < 0 || origin.getCol() >= COLS) {
+			return false;
+		}
+		// only the cells from the origin to the empty position change
+		mChecksum ^= hashSpan(origin, empty);
+		if (!mController.move(origin)) {
+			mChecksum ^= hashSpan(origin, empty);
+			return false;
+		}
+		mChecksum ^= hashSpan(origin, empty);
+		mSeq++;
+		return true;
+	}
+
+	private long hashSpan(PuzzlePosition a, PuzzlePosition b) {
+		int[][] puzzlePositions = getPuzzlePositions();
+		long hash = 0;
+		for (int row=Math.min(a.getRow(), b.getRow()); row <= Math.max(a.getRow(), b.getRow()); row++) {
+			for (int col=Math.min(a.getCol(), b.getCol()); col <= Math.max(a.getCol(), b.getCol()); col++) {
+				hash ^= sZobrist.key(row, col, puzzlePositions[row][col]);
+			}
+		}
+		return hash;
+	}
+
+	/**
+     * @return int number of moves applied since the scramble, i.e. sequence number of the next move
+     */
+	public int getSeq() {
+		return mSeq;
+	}
+
+	/**
+     * @return long Zobrist hash of the board
+     */
+	public long getChecksum() {
+		return mChecksum;
+	}
+
+	/**
+     * @return true if all tiles are in their starting position
+     */
+	public boolean isSolved() {
+		int[][] puzzlePositions = getPuzzlePositions();
+		for (int row=0; row < ROWS; row++) {
+			for (int col=0; col < COLS; col++) {
+				if (puzzlePositions[row][col] != row * COLS + col) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public int[][] getPuzzlePositions() {
+		return mController.getModel().getPuzzlePositions();
+	}
+
+	public PuzzlePosition getEmptyPosition() {
+		return mController.getModel().getEmptyPosition();
+	}
+}
@@ -0,0 +1,241 @@
+package com.shaneahern.puzzle.race;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import com.shaneahern.puzzle.metrics.Counter;
+import com.shaneahern.puzzle.metrics.Metrics;
+
+/**
+ * Connection to one peer of a race. Messages are appended to a pending packet and a writer thread sends the packet
+ * once the oldest message in it has waited for the batching delay, or at once if it has grown large or a flush is
+ * requested, so a burst of moves goes out in one packet. Consecutive moves are appended to the last MOVES message
+ * while it is open. Nagle is disabled on the socket, batching is done here where it is known when a burst ends.
+ * A reader thread parses incoming packets and passes their messages to the handler.
+ *
+ * Send methods may be called from any thread and never block on the network. If the pending packet is full, because
+ * the peer has stopped reading and the writer is stuck on the socket, the connection is closed at once rather than
+ * waiting for room. Dropping a message would leave the peer with a board that drifts, closing it reports the peer
+ * as disconnected.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+class RaceConnection {
+
+	// pending packets of this size are sent without waiting for the batching delay
+	private static final int FLUSH_BYTES = 1024;
+
+	private final Socket mSocket;
+	private final OutputStream mOut;
+	private final DataInputStream mIn;
+	private final long mBatchDelayNanos;
+	private final RaceProtocol.Handler mHandler;
+	private final Counter mPacketsCounter = Metrics.get().counter("race.packets_sent");
+	private final Counter mBytesCounter = Metrics.get().counter("race.bytes_sent");
+
+	// pending packet and the state of its last MOVES message, guarded by mLock
+	private final Object mLock = new Object();
+	private final ByteBuffer mPending = ByteBuffer.allocate(RaceProtocol.MAX_PACKET_BYTES);
+	private long mFirstPendingNanos;
+	private int mRunCountIndex = -1;
+	private int mRunNextSeq;
+	private boolean mFlushRequested;
+	private boolean mClosed;
+	private int mPacketsSent;
+
+	/**
+     * @param socket
+     * 			Connected socket to the peer
+     * @param batchDelayMs
+     * 			Time a message may wait for others to share its packet
+     * @param handler
+     * 			Handler of incoming messages, called on the reader thread
+     */
+	RaceConnection(Socket socket, long batchDelayMs, RaceProtocol.Handler handler) throws IOException {
+		mSocket = socket;
+		mSocket.setTcpNoDelay(true);
+		mOut = socket.getOutputStream();
+		mIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		mBatchDelayNanos = batchDelayMs * 1000000;
+		mHandler = handler;
+	}
+
+	/**
+     * Start the reader and writer threads
+     *
+     */
+	void start() {
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				byte[] packet = new byte[RaceProtocol.MAX_PACKET_BYTES];
+				try {
+					while (true) {
+						RaceProtocol.readPacket(mIn, packet, mHandler);
+					}
+				} catch (IOException e) {
+					// peer closed the stream or sent garbage, either way the race with it is over
+				}
+				close();
+				mHandler.onClosed();
+			}
+		}, "RaceConnection reader");
+		reader.setDaemon(true);
+		reader.start();
+
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				writeLoop();
+			}
+		}, "RaceConnection writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	void sendStart(int rows, int cols, long seed, int scrambleAttempts) {
+		synchronized (mLock) {
+			if (beginMessage(RaceProtocol.START_BYTES)) {
+				RaceProtocol.writeStart(mPending, rows, cols, seed, scrambleAttempts);
+			}
+		}
+	}
+
+	/**
+     * @param seq
+     * 			Sequence number of the move
+     * @param move
+     * 			Encoded move
+     */
+	void sendMove(int seq, byte move) {
+		synchronized (mLock) {
+			if (!mClosed && mRunCountIndex >= 0 && seq == mRunNextSeq && mPending.hasRemaining()) {
+				if (RaceProtocol.appendMove(mPending, mRunCountIndex, move) == RaceProtocol.MAX_MOVES_PER_MESSAGE) {
+					mRunCountIndex = -1;
+				}
+			} else if (beginMessage(RaceProtocol.MOVES_HEADER_BYTES + 1)) {
+				mRunCountIndex = RaceProtocol.writeMovesHeader(mPending, seq);
+				RaceProtocol.appendMove(mPending, mRunCountIndex, move);
+			}
+			mRunNextSeq = seq + 1;
+			requestWrite();
+		}
+	}
+
+	void sendChecksum(int seq, long checksum) {
+		synchronized (mLock) {
+			if (beginMessage(RaceProtocol.CHECKSUM_BYTES)) {
+				RaceProtocol.writeChecksum(mPending, seq, checksum);
+			}
+		}
+	}
+
+	/**
+     * Send the pending packet without waiting for the batching delay
+     *
+     */
+	void flush() {
+		synchronized (mLock) {
+			if (mPending.position() > 0) {
+				mFlushRequested = true;
+				mLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+     * @return int number of packets sent so far
+     */
+	int getPacketsSent() {
+		synchronized (mLock) {
+			return mPacketsSent;
+		}
+	}
+
+	/**
+     * Close the socket, pending messages are dropped
+     *
+     */
+	void close() {
+		synchronized (mLock) {
+			if (mClosed) {
+				return;
+			}
+			mClosed = true;
+			mLock.notifyAll();
+		}
+		try {
+			mSocket.close();
+		} catch (IOException e) {
+			// nothing to do
+		}
+	}
+
+	/**
+     * Close the open MOVES message and make room for a message, closing the connection if the pending packet is full.
+     * Called with mLock held.
+     *
+     * @return false if the connection is closed and the message must be dropped
+     */
+	private boolean beginMessage(int bytes) {
+		mRunCountIndex = -1;
+		if (mClosed) {
+			return false;
+		}
+		if (mPending.remaining() < bytes) {
+			// the writer has not taken a whole packet, the peer is too far behind to catch up
+			close();
+			return false;
+		}
+		if (mPending.position() == 0) {
+			mFirstPendingNanos = System.nanoTime();
+		}
+		requestWrite();
+		return true;
+	}
+
+	private void requestWrite() {
+		if (mPending.position() >= FLUSH_BYTES) {
+			mFlushRequested = true;
+		}
+		mLock.notifyAll();
+	}
+
+	private void writeLoop() {
+		ByteBuffer packet = ByteBuffer.allocate(RaceProtocol.MAX_PACKET_BYTES);
+		try {
+			while (true) {
+				synchronized (mLock) {
+					// wait for a message, then for the rest of its batch
+					while (!mClosed && mPending.position() == 0) {
+						mLock.wait();
+					}
+					long waitNanos;
+					while (!mClosed && !mFlushRequested && (waitNanos = mFirstPendingNanos + mBatchDelayNanos - System.nanoTime()) > 0) {
+						mLock.wait(waitNanos / 1000000, (int)(waitNanos % 1000000));
+					}
+					if (mClosed) {
+						return;
+					}
+					packet.clear();
+					mPending.flip();
+					packet.put(mPending);
+					mPending.clear();
+					mRunCountIndex = -1;
+					mFlushRequested = false;
+					mPacketsSent++;
+				}
+				RaceProtocol.writePacket(mOut, packet);
+				mPacketsCounter.inc();
+				mBytesCounter.inc(packet.position() + 2);
+			}
+		} catch (InterruptedException e) {
+			close();
+		} catch (IOException e) {
+			// reader sees the closed socket and notifies the handler
+			close();
+		}
+	}
+}
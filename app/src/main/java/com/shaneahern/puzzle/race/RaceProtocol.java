@@ -0,0 +1,166 @@
+package com.shaneahern.puzzle.race;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format of races. A stream carries packets, each a big endian unsigned 16 bit length followed by that many
+ * bytes of messages. Messages are
+ *
+ * START     type, version, rows, cols, scramble seed (64 bit), scramble attempts (32 bit)
+ * MOVES     type, sequence number of the first move (32 bit), number of moves (8 bit), one byte per move
+ * CHECKSUM  type, number of moves the checksum follows (32 bit), Zobrist hash of the board (64 bit)
+ *
+ * Moves are encoded by MoveCodec. Each side of a connection sends START once before any other message, consecutive
+ * moves share one MOVES message and all messages written within the batching delay share one packet, so a burst of
+ * moves costs a few bytes of framing rather than a packet per move.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class RaceProtocol {
+
+	public static final int VERSION = 1;
+
+	public static final byte MSG_START = 1;
+	public static final byte MSG_MOVES = 2;
+	public static final byte MSG_CHECKSUM = 3;
+
+	public static final int MAX_PACKET_BYTES = 0xffff;
+	public static final int MAX_MOVES_PER_MESSAGE = 0xff;
+
+	public static final int START_BYTES = 16;
+	public static final int MOVES_HEADER_BYTES = 6;
+	public static final int CHECKSUM_BYTES = 13;
+
+	public interface Handler {
+		public void onStart(int version, int rows, int cols, long seed, int scrambleAttempts);
+
+		/**
+	     * @param firstSeq
+	     * 			Sequence number of the first move
+	     * @param moves
+	     * 			Encoded moves, only valid during the call
+	     * @param offset
+	     * 			Offset of the first move in moves
+	     * @param count
+	     * 			Number of moves
+	     */
+		public void onMoves(int firstSeq, byte[] moves, int offset, int count);
+
+		public void onChecksum(int seq, long checksum);
+
+		/**
+	     * Called when the stream ends or fails, no further messages follow
+	     */
+		public void onClosed();
+	}
+
+	private RaceProtocol() {
+	}
+
+	public static void writeStart(ByteBuffer buffer, int rows, int cols, long seed, int scrambleAttempts) {
+		buffer.put(MSG_START);
+		buffer.put((byte)VERSION);
+		buffer.put((byte)rows);
+		buffer.put((byte)cols);
+		buffer.putLong(seed);
+		buffer.putInt(scrambleAttempts);
+	}
+
+	/**
+     * Write the header of a MOVES message with no moves, moves are appended after it
+     *
+     * @param buffer
+     * 			Buffer to write to
+     * @param firstSeq
+     * 			Sequence number of the first move
+     * @return int index of the move count in buffer, to update as moves are appended
+     */
+	public static int writeMovesHeader(ByteBuffer buffer, int firstSeq) {
+		buffer.put(MSG_MOVES);
+		buffer.putInt(firstSeq);
+		int countIndex = buffer.position();
+		buffer.put((byte)0);
+		return countIndex;
+	}
+
+	/**
+     * Append a move to the MOVES message whose header was written at countIndex
+     *
+     * @param buffer
+     * 			Buffer to write to, the MOVES message must be the last message in it
+     * @param countIndex
+     * 			Index of the move count returned by writeMovesHeader()
+     * @param move
+     * 			Encoded move
+     * @return int number of moves in the message
+     */
+	public static int appendMove(ByteBuffer buffer, int countIndex, byte move) {
+		int count = (buffer.get(countIndex) & 0xff) + 1;
+		buffer.put(countIndex, (byte)count);
+		buffer.put(move);
+		return count;
+	}
+
+	public static void writeChecksum(ByteBuffer buffer, int seq, long checksum) {
+		buffer.put(MSG_CHECKSUM);
+		buffer.putInt(seq);
+		buffer.putLong(checksum);
+	}
+
+	/**
+     * Write the messages in buffer, from 0 to its position, to a stream as one packet
+     *
+     */
+	public static void writePacket(OutputStream out, ByteBuffer buffer) throws IOException {
+		int length = buffer.position();
+		out.write(length >> 8);
+		out.write(length);
+		out.write(buffer.array(), buffer.arrayOffset(), length);
+		out.flush();
+	}
+
+	/**
+     * Read one packet from a stream and pass its messages to a handler
+     *
+     * @throws ProtocolException if the packet holds an unknown or truncated message
+     */
+	public static void readPacket(DataInputStream in, byte[] packet, Handler handler) throws IOException {
+		int length = in.readUnsignedShort();
+		in.readFully(packet, 0, length);
+		ByteBuffer buffer = ByteBuffer.wrap(packet, 0, length);
+		try {
+			while (buffer.hasRemaining()) {
+				byte type = buffer.get();
+				switch (type) {
+				case MSG_START:
+					int version = buffer.get() & 0xff;
+					int rows = buffer.get() & 0xff;
+					int cols = buffer.get() & 0xff;
+					handler.onStart(version, rows, cols, buffer.getLong(), buffer.getInt());
+					break;
+				case MSG_MOVES:
+					int firstSeq = buffer.getInt();
+					int count = buffer.get() & 0xff;
+					if (count > buffer.remaining()) {
+						throw new ProtocolException("Truncated moves");
+					}
+					handler.onMoves(firstSeq, packet, buffer.position(), count);
+					buffer.position(buffer.position() + count);
+					break;
+				case MSG_CHECKSUM:
+					handler.onChecksum(buffer.getInt(), buffer.getLong());
+					break;
+				default:
+					throw new ProtocolException("Unknown message type " + type);
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new ProtocolException("Truncated message");
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package com.shaneahern.puzzle.race;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.shaneahern.puzzle.PuzzlePosition;
+import com.shaneahern.puzzle.metrics.Counter;
+import com.shaneahern.puzzle.metrics.Metrics;
+
+/**
+ * Head to head race between this player and any number of peers, each connected to every other by a socket. Peers
+ * never exchange boards. A race starts from a seed, every peer scrambles its own board and a board for each
+ * opponent from that seed, and from then on only moves are sent, one byte each, in lockstep order. Each peer
+ * applies the moves it receives to the board of the peer that sent them, so every peer shows every board live.
+ *
+ * Every CHECKSUM_INTERVAL moves the sender also sends the Zobrist hash of its board. The receiver compares it with
+ * the hash of its copy of that board after the same number of moves and reports a desync if they differ, e.g. after
+ * a bug or a version mismatch, rather than showing a board that has silently drifted.
+ *
+ * Starting a race sends START to all peers, and a peer that receives START before it has started itself joins the
+ * race with the same seed and sends START to its own peers, so starting on any one device starts everyone. The
+ * board of a peer is built from the START received from that peer, which always precedes its moves.
+ *
+ * Listener methods are called on connection threads with the session locked, they must return quickly and must not
+ * wait for other threads that lock the session. Other methods may be called from any thread.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class RaceSession {
+
+	// moves between checksums
+	public static final int CHECKSUM_INTERVAL = 16;
+
+	public interface Listener {
+		/**
+	     * Called when the race starts, locally or by a START from a peer
+	     */
+		public void onRaceStarted(long seed);
+
+		/**
+	     * Called after moves of a peer have been applied to its board, once per batch of moves received
+	     */
+		public void onPeerMoved(int peer, RaceBoard board);
+
+		/**
+	     * Called once if the board of a peer no longer matches its checksums or moves, no further moves of the peer
+	     * are applied
+	     *
+	     * @param seq
+	     * 			Number of moves after which the board of the peer was found to differ, 0 if the race parameters differ
+	     */
+		public void onDesync(int peer, int seq);
+
+		/**
+	     * Called when the connection to a peer closes, also when the peer falls so far behind that a whole packet of
+	     * moves is waiting for it, as moves are never dropped
+	     */
+		public void onPeerDisconnected(int peer);
+	}
+
+	private class Peer implements RaceProtocol.Handler {
+		final int mId;
+		RaceConnection mConnection;
+		RaceBoard mBoard;
+		boolean mDesynced;
+
+		Peer(int id) {
+			mId = id;
+		}
+
+		public void onStart(int version, int rows, int cols, long seed, int scrambleAttempts) {
+			synchronized (RaceSession.this) {
+				if (mDesynced || mBoard != null) {
+					return;
+				}
+				if (version != RaceProtocol.VERSION || rows != RaceBoard.ROWS || cols != RaceBoard.COLS) {
+					desync(this, 0);
+					return;
+				}
+				if (mLocalBoard == null) {
+					startLocked(seed, scrambleAttempts);
+				} else if (seed != mSeed || scrambleAttempts != mScrambleAttempts) {
+					// started by two players at once with different seeds
+					desync(this, 0);
+					return;
+				}
+				mBoard = new RaceBoard(seed, scrambleAttempts);
+				mListener.onPeerMoved(mId, mBoard);
+			}
+		}
+
+		public void onMoves(int firstSeq, byte[] moves, int offset, int count) {
+			synchronized (RaceSession.this) {
+				if (mDesynced) {
+					return;
+				}
+				if (mBoard == null || firstSeq != mBoard.getSeq()) {
+					desync(this, firstSeq);
+					return;
+				}
+				for (int i=0; i < count; i++) {
+					if (!mBoard.apply(moves[offset + i])) {
+						desync(this, mBoard.getSeq());
+						return;
+					}
+				}
+				mListener.onPeerMoved(mId, mBoard);
+			}
+		}
+
+		public void onChecksum(int seq, long checksum) {
+			synchronized (RaceSession.this) {
+				if (mDesynced) {
+					return;
+				}
+				if (mBoard == null || mBoard.getSeq() != seq || mBoard.getChecksum() != checksum) {
+					desync(this, seq);
+				}
+			}
+		}
+
+		public void onClosed() {
+			synchronized (RaceSession.this) {
+				if (!mClosed) {
+					mListener.onPeerDisconnected(mId);
+				}
+			}
+		}
+	}
+
+	private final long mBatchDelayMs;
+	private final Listener mListener;
+	private final List<Peer> mPeers = new ArrayList<Peer>();
+	private final Counter mDesyncCounter = Metrics.get().counter("race.desyncs");
+
+	// null until the race starts
+	private RaceBoard mLocalBoard;
+	private long mSeed;
+	private int mScrambleAttempts;
+	private boolean mClosed;
+
+	/**
+     * @param batchDelayMs
+     * 			Time a move may wait for following moves to share its packet
+     * @param listener
+     * 			Listener to notify of the race and the moves of peers
+     */
+	public RaceSession(long batchDelayMs, Listener listener) {
+		mBatchDelayMs = batchDelayMs;
+		mListener = listener;
+	}
+
+	/**
+     * Race against the peer at the other end of a connected socket, the session owns the socket from now on
+     *
+     * @return int id of the peer, passed to the listener
+     */
+	public int addPeer(Socket socket) throws IOException {
+		synchronized (this) {
+			Peer peer = new Peer(mPeers.size());
+			peer.mConnection = new RaceConnection(socket, mBatchDelayMs, peer);
+			mPeers.add(peer);
+			if (mLocalBoard != null) {
+				peer.mConnection.sendStart(RaceBoard.ROWS, RaceBoard.COLS, mSeed, mScrambleAttempts);
+			}
+			peer.mConnection.start();
+			return peer.mId;
+		}
+	}
+
+	/**
+     * Start the race and tell all peers to start it
+     *
+     * @param seed
+     * 			Seed of the scramble
+     * @param scrambleAttempts
+     * 			Number of random positions to attempt scramble moves from
+     * @throws IllegalStateException if the race has already started
+     */
+	public synchronized void start(long seed, int scrambleAttempts) {
+		if (mLocalBoard != null) {
+			throw new IllegalStateException("Race already started");
+		}
+		startLocked(seed, scrambleAttempts);
+	}
+
+	private void startLocked(long seed, int scrambleAttempts) {
+		mSeed = seed;
+		mScrambleAttempts = scrambleAttempts;
+		mLocalBoard = new RaceBoard(seed, scrambleAttempts);
+		for (Peer peer : mPeers) {
+			peer.mConnection.sendStart(RaceBoard.ROWS, RaceBoard.COLS, seed, scrambleAttempts);
+		}
+		mListener.onRaceStarted(seed);
+	}
+
+	/**
+     * Make a move on the local board and send it to all peers. Sending never waits for the network, so it is done
+     * with the session locked, which keeps the moves to every peer in the order of the local board.
+     *
+     * @param p
+     * 			Position of move
+     * @return true if the race has started and there is a legal move from p
+     */
+	public synchronized boolean move(PuzzlePosition p) {
+		if (mLocalBoard == null || mClosed) {
+			return false;
+		}
+		byte move;
+		try {
+			move = mLocalBoard.encode(p);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		int seq = mLocalBoard.getSeq();
+		if (!mLocalBoard.apply(move)) {
+			return false;
+		}
+		boolean checksum = mLocalBoard.getSeq() % CHECKSUM_INTERVAL == 0;
+		for (Peer peer : mPeers) {
+			peer.mConnection.sendMove(seq, move);
+			if (checksum) {
+				peer.mConnection.sendChecksum(mLocalBoard.getSeq(), mLocalBoard.getChecksum());
+			}
+		}
+		return true;
+	}
+
+	private void desync(Peer peer, int seq) {
+		peer.mDesynced = true;
+		mDesyncCounter.inc();
+		mListener.onDesync(peer.mId, seq);
+	}
+
+	/**
+     * @return RaceBoard board of this player, or null if the race has not started
+     */
+	public synchronized RaceBoard getLocalBoard() {
+		return mLocalBoard;
+	}
+
+	/**
+     * @return RaceBoard board of a peer, or null if it has not started
+     */
+	public synchronized RaceBoard getPeerBoard(int peer) {
+		return mPeers.get(peer).mBoard;
+	}
+
+	/**
+     * @return int number of packets sent to all peers so far
+     */
+	public synchronized int getPacketsSent() {
+		int packets = 0;
+		for (Peer peer : mPeers) {
+			packets += peer.mConnection.getPacketsSent();
+		}
+		return packets;
+	}
+
+	/**
+     * Send pending moves without waiting for the batching delay, e.g. when the player lifts their finger
+     *
+     */
+	public synchronized void flush() {
+		for (Peer peer : mPeers) {
+			peer.mConnection.flush();
+		}
+	}
+
+	/**
+     * Leave the race and close all connections
+     *
+     */
+	public void close() {
+		List<Peer> peers;
+		synchronized (this) {
+			mClosed = true;
+			peers = new ArrayList<Peer>(mPeers);
+		}
+		for (Peer peer : peers) {
+			peer.mConnection.close();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.shaneahern.puzzle.race;
+
+import java.util.Random;
+
+/**
+ * Zobrist hashing of puzzle boards. Every combination of cell and tile has a random 64 bit key, and the hash of a
+ * board is the XOR of the keys of the tile in each cell. A move only changes the cells it slides tiles through, so
+ * the hash can be kept up to date by XORing the keys of those cells out before the move and in after it, without
+ * looking at the rest of the board. Two boards with the same hash are the same board with overwhelming probability.
+ *
+ * Keys are drawn from a seeded java.util.Random, whose sequence is specified, so every peer of a race computes the
+ * same hashes from the same seed.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class ZobristHash {
+
+	// seed shared by all peers, changing it breaks checksums with older versions
+	public static final long DEFAULT_SEED = 0x5a0b1257L;
+
+	private final int mCols;
+	private final int mNumTiles;
+	// key of tile t in cell c at [c * mNumTiles + t]
+	private final long[] mKeys;
+
+	/**
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @param seed
+     * 			Seed of the keys
+     */
+	public ZobristHash(int rows, int cols, long seed) {
+		mCols = cols;
+		mNumTiles = rows * cols;
+		mKeys = new long[mNumTiles * mNumTiles];
+		Random random = new Random(seed);
+		for (int i=0; i < mKeys.length; i++) {
+			mKeys[i] = random.nextLong();
+		}
+	}
+
+	/**
+     * @param row
+     * 			Row of the cell
+     * @param col
+     * 			Column of the cell
+     * @param tile
+     * 			Tile in the cell, 0 for the empty tile
+     * @return long key of the tile in the cell
+     */
+	public long key(int row, int col, int tile) {
+		return mKeys[(row * mCols + col) * mNumTiles + tile];
+	}
+
+	/**
+     * @param puzzlePositions
+     * 			Tile in each cell of the board
+     * @return long hash of the whole board
+     */
+	public long hash(int[][] puzzlePositions) {
+		long hash = 0;
+		for (int row=0; row < puzzlePositions.length; row++) {
+			for (int col=0; col < puzzlePositions[row].length; col++) {
+				hash ^= key(row, col, puzzlePositions[row][col]);
+			}
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,176 @@
+package com.shaneahern.puzzle.sensor;
+
+/**
+ * Detects the device being shaken from a stream of accelerometer samples. Gravity is removed from each sample with
+ * a high-pass filter, so holding or slowly tilting the device never counts as movement, and a sample is strong if
+ * the magnitude of the remaining linear acceleration is above a threshold. Recent samples are kept in a ring buffer
+ * covering a short window, and a shake is detected when the window spans long enough, holds enough strong samples
+ * and at least half of its samples are strong. A single bump produces only a few strong samples and does not count.
+ * After a shake the detector waits out a cooldown, so one shake is reported once.
+ *
+ * Samples are timed by their own timestamps rather than by when they are delivered, so samples batched by the
+ * sensor hub and delivered together are evaluated exactly as if they had arrived one by one.
+ *
+ * Independent of android classes, so it can be tested on a plain JVM by replaying recorded sample traces. Not
+ * thread safe, samples must be passed in from one thread.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class ShakeDetector {
+
+	public interface Listener {
+		/**
+	     * Called from onSample() when a shake is detected
+	     */
+		public void onShake();
+	}
+
+	public static final float STANDARD_GRAVITY = 9.80665f;
+
+	// linear acceleration of a strong sample, in m/s^2
+	private static final float DEFAULT_THRESHOLD = 1.1f * STANDARD_GRAVITY;
+	private static final long DEFAULT_WINDOW_NANOS = 500000000L;
+	private static final long DEFAULT_COOLDOWN_NANOS = 1000000000L;
+	// time constant of the gravity estimate, slower changes than this are treated as tilting rather than shaking
+	private static final float GRAVITY_TIME_CONSTANT_SECONDS = 0.25f;
+	// a window must span at least this fraction of the window and hold this many strong samples to be a shake
+	private static final float MIN_SPAN_FRACTION = 0.5f;
+	private static final int MIN_STRONG_SAMPLES = 4;
+	// enough for the window at the fastest rate sensors deliver at, older samples are dropped when full
+	private static final int MAX_SAMPLES = 64;
+
+	private final Listener mListener;
+	private final float mThresholdSquared;
+	private final long mWindowNanos;
+	private final long mCooldownNanos;
+
+	// gravity estimate, the low-pass filtered acceleration
+	private float mGravityX;
+	private float mGravityY;
+	private float mGravityZ;
+	private long mLastSampleNanos;
+	private boolean mHasGravity;
+
+	// ring buffer of the samples in the window, oldest at mFirst
+	private final long[] mTimes = new long[MAX_SAMPLES];
+	private final boolean[] mStrong = new boolean[MAX_SAMPLES];
+	private int mFirst;
+	private int mCount;
+	private int mStrongCount;
+	private long mCooldownEndNanos = Long.MIN_VALUE;
+
+	/**
+     * Detector with thresholds suitable for shaking a phone by hand
+     *
+     * @param listener
+     * 			Listener to notify of shakes
+     */
+	public ShakeDetector(Listener listener) {
+		this(listener, DEFAULT_THRESHOLD, DEFAULT_WINDOW_NANOS, DEFAULT_COOLDOWN_NANOS);
+	}
+
+	/**
+     * @param listener
+     * 			Listener to notify of shakes
+     * @param threshold
+     * 			Linear acceleration of a strong sample, in m/s^2
+     * @param windowNanos
+     * 			Length of the window of samples a shake is detected in
+     * @param cooldownNanos
+     * 			Time after a shake during which no further shake is reported
+     */
+	public ShakeDetector(Listener listener, float threshold, long windowNanos, long cooldownNanos) {
+		mListener = listener;
+		mThresholdSquared = threshold * threshold;
+		mWindowNanos = windowNanos;
+		mCooldownNanos = cooldownNanos;
+	}
+
+	/**
+     * Add an accelerometer sample
+     *
+     * @param timestampNanos
+     * 			Time the sample was taken, e.g. SensorEvent.timestamp
+     * @param x
+     * 			Acceleration along the x axis in m/s^2, including gravity
+     * @param y
+     * 			Acceleration along the y axis in m/s^2, including gravity
+     * @param z
+     * 			Acceleration along the z axis in m/s^2, including gravity
+     * @return true if the sample completed a shake
+     */
+	public boolean onSample(long timestampNanos, float x, float y, float z) {
+		long elapsedNanos = timestampNanos - mLastSampleNanos;
+		if (!mHasGravity || elapsedNanos > mWindowNanos || elapsedNanos < 0) {
+			// first sample, or sampling was paused and the device may have been turned since, start afresh
+			mGravityX = x;
+			mGravityY = y;
+			mGravityZ = z;
+			mHasGravity = true;
+			clear();
+		} else {
+			float dt = elapsedNanos / 1e9f;
+			float alpha = GRAVITY_TIME_CONSTANT_SECONDS / (GRAVITY_TIME_CONSTANT_SECONDS + dt);
+			mGravityX = alpha * mGravityX + (1 - alpha) * x;
+			mGravityY = alpha * mGravityY + (1 - alpha) * y;
+			mGravityZ = alpha * mGravityZ + (1 - alpha) * z;
+		}
+		mLastSampleNanos = timestampNanos;
+
+		float linearX = x - mGravityX;
+		float linearY = y - mGravityY;
+		float linearZ = z - mGravityZ;
+		boolean strong = linearX * linearX + linearY * linearY + linearZ * linearZ > mThresholdSquared;
+		add(timestampNanos, strong);
+
+		if (timestampNanos < mCooldownEndNanos || !isShaking()) {
+			return false;
+		}
+		mCooldownEndNanos = timestampNanos + mCooldownNanos;
+		clear();
+		mListener.onShake();
+		return true;
+	}
+
+	/**
+     * Forget all samples and the gravity estimate, e.g. when sampling stops
+     *
+     */
+	public void reset() {
+		mHasGravity = false;
+		mCooldownEndNanos = Long.MIN_VALUE;
+		clear();
+	}
+
+	private void add(long timestampNanos, boolean strong) {
+		// drop samples that have left the window, and the oldest sample if the buffer is full
+		while (mCount > 0 && (mCount == MAX_SAMPLES || timestampNanos - mTimes[mFirst] > mWindowNanos)) {
+			if (mStrong[mFirst]) {
+				mStrongCount--;
+			}
+			mFirst = (mFirst + 1) % MAX_SAMPLES;
+			mCount--;
+		}
+		int index = (mFirst + mCount) % MAX_SAMPLES;
+		mTimes[index] = timestampNanos;
+		mStrong[index] = strong;
+		mCount++;
+		if (strong) {
+			mStrongCount++;
+		}
+	}
+
+	private boolean isShaking() {
+		if (mCount == 0 || mStrongCount < MIN_STRONG_SAMPLES || mStrongCount * 2 < mCount) {
+			return false;
+		}
+		long span = mTimes[(mFirst + mCount - 1) % MAX_SAMPLES] - mTimes[mFirst];
+		return span >= mWindowNanos * MIN_SPAN_FRACTION;
+	}
+
+	private void clear() {
+		mFirst = 0;
+		mCount = 0;
+		mStrongCount = 0;
+	}
+}
@@ -0,0 +1,250 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Optimal solver using A* with duplicate detection. Every board generated is kept in a NodeStore with its moves
+ * from the start and its parent, so a board reached again is recognised rather than searched again, which IDA*
+ * cannot do. That makes A* faster on boards whose search fits in memory, and the node store bounds how much that
+ * is. Boards are packed into longs as by PackedBoard, so boards of up to 16 cells can be solved.
+ *
+ * The open list is a BucketQueue of slots by f and g. A board reached again by a shorter path is updated in place
+ * and queued again, and the older queue entry is skipped when it is popped, as its g no longer matches the store.
+ * The heuristic state of each board is saved with its node (see Heuristic.save()), restored when the node is
+ * expanded and updated incrementally for each of its successors, so expanding a node never looks the board up in
+ * the heuristic's tables again.
+ *
+ * The counts of the last search show how much work duplicate detection saved: boards generated, boards found
+ * already in the store, those of them reached by a shorter path, and stale queue entries skipped.
+ *
+ * A solver is not thread safe, use one solver per thread to solve instances in parallel.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class AStarSolver {
+
+	private static final int DEFAULT_EXPECTED_NODES = 1 << 16;
+
+	private final int mRows;
+	private final int mCols;
+	private final Heuristic mHeuristic;
+	private final NodeStore mStore;
+	private final BucketQueue mQueue = new BucketQueue();
+	private final long mGoal;
+	// cells next to each cell
+	private final int[][] mNeighbours;
+	private final int[] mTiles;
+
+	// counts of the last search
+	private long mNodes;
+	private long mGenerated;
+	private long mDuplicates;
+	private long mImproved;
+	private long mStale;
+
+	/**
+     * Solver keeping its nodes on the heap
+     *
+     * @param rows
+     * 			Number of rows of the puzzles to solve
+     * @param cols
+     * 			Number of columns of the puzzles to solve, at most PackedBoard.MAX_CELLS cells
+     * @param heuristic
+     * 			Heuristic for the size of the puzzles, must never overestimate and is only used by this solver
+     */
+	public AStarSolver(int rows, int cols, Heuristic heuristic) {
+		this(rows, cols, heuristic, new HeapNodeStore(DEFAULT_EXPECTED_NODES));
+	}
+
+	/**
+     * @param rows
+     * 			Number of rows of the puzzles to solve
+     * @param cols
+     * 			Number of columns of the puzzles to solve, at most PackedBoard.MAX_CELLS cells
+     * @param heuristic
+     * 			Heuristic for the size of the puzzles, must never overestimate, save states of at most 32 bits and is
+     * 			only used by this solver
+     * @param store
+     * 			Store for the nodes, cleared at the start of each search
+     */
+	public AStarSolver(int rows, int cols, Heuristic heuristic, NodeStore store) {
+		int size = rows * cols;
+		if (size > PackedBoard.MAX_CELLS) {
+			throw new IllegalArgumentException(rows + "x" + cols + " boards do not fit in a packed board");
+		}
+		if (heuristic.getStateBits() > 32) {
+			throw new IllegalArgumentException(heuristic.getName() + " states do not fit in a node");
+		}
+		mRows = rows;
+		mCols = cols;
+		mHeuristic = heuristic;
+		mStore = store;
+		mTiles = new int[size];
+		for (int cell=0; cell < size; cell++) {
+			mTiles[cell] = cell;
+		}
+		mGoal = PackedBoard.pack(mTiles);
+		mNeighbours = new int[size][];
+		for (int cell=0; cell < size; cell++) {
+			int row = cell / cols;
+			int col = cell % cols;
+			int[] neighbours = new int[4];
+			int count = 0;
+			if (row > 0) {
+				neighbours[count++] = cell - cols;
+			}
+			if (col > 0) {
+				neighbours[count++] = cell - 1;
+			}
+			if (col < cols - 1) {
+				neighbours[count++] = cell + 1;
+			}
+			if (row < rows - 1) {
+				neighbours[count++] = cell + cols;
+			}
+			mNeighbours[cell] = new int[count];
+			System.arraycopy(neighbours, 0, mNeighbours[cell], 0, count);
+		}
+	}
+
+	/**
+     * Find a shortest solution
+     *
+     * @param instance
+     * 			Board to solve, must be solvable and the size of the solver
+     * @return Solution shortest solution
+     */
+	public Solution solve(PuzzleInstance instance) {
+		return solve(instance, Long.MAX_VALUE);
+	}
+
+	/**
+     * Find a shortest solution, giving up after expanding a number of nodes
+     *
+     * @param instance
+     * 			Board to solve, must be solvable and the size of the solver
+     * @param nodeLimit
+     * 			Number of nodes to expand before giving up
+     * @return Solution shortest solution, or an unsolved result if the search gave up
+     * @throws IllegalArgumentException if the instance is the wrong size or not solvable
+     */
+	public Solution solve(PuzzleInstance instance, long nodeLimit) {
+		if (instance.getRows() != mRows || instance.getCols() != mCols) {
+			throw new IllegalArgumentException(instance.getId() + " is not " + mRows + "x" + mCols);
+		}
+		int[] tiles = instance.getTiles();
+		if (!PuzzleInstance.isSolvable(tiles, mCols)) {
+			throw new IllegalArgumentException(instance.getId() + " is not solvable");
+		}
+		long start = System.nanoTime();
+		NodeStore store = mStore;
+		BucketQueue queue = mQueue;
+		store.clear();
+		queue.clear();
+		mNodes = 0;
+		mGenerated = 0;
+		mDuplicates = 0;
+		mImproved = 0;
+		mStale = 0;
+
+		int rootH = mHeuristic.init(tiles);
+		int root = store.add(PackedBoard.pack(tiles), 0, NodeStore.NONE, mHeuristic.save());
+		queue.push(root, rootH, 0);
+		while (!queue.isEmpty()) {
+			int slot = queue.pop();
+			int g = queue.getPoppedG();
+			if (store.getG(slot) != g) {
+				mStale++;
+				continue;
+			}
+			long state = store.getState(slot);
+			if (state == mGoal) {
+				return new Solution(path(slot, g), mNodes, System.nanoTime() - start);
+			}
+			if (++mNodes > nodeLimit) {
+				break;
+			}
+			int parent = store.getParent(slot);
+			long parentState = parent != NodeStore.NONE ? store.getState(parent) : state;
+			PackedBoard.unpack(state, mTiles);
+			int blank = PackedBoard.findBlank(state, mTiles.length);
+			mHeuristic.restore(mTiles, store.getHeuristicState(slot));
+			int[] neighbours = mNeighbours[blank];
+			for (int i=0; i < neighbours.length; i++) {
+				int next = neighbours[i];
+				long child = PackedBoard.move(state, blank, next);
+				if (child == parentState) {
+					continue;
+				}
+				mGenerated++;
+				int tile = mTiles[next];
+				int h = mHeuristic.applyMove(tile, next, blank);
+				int existing = store.find(child);
+				if (existing == NodeStore.NONE) {
+					queue.push(store.add(child, g + 1, slot, mHeuristic.save()), g + 1 + h, g + 1);
+				} else {
+					mDuplicates++;
+					if (g + 1 < store.getG(existing)) {
+						store.update(existing, g + 1, slot);
+						queue.push(existing, g + 1 + h, g + 1);
+						mImproved++;
+					}
+				}
+				mHeuristic.undoMove(tile, next, blank);
+			}
+		}
+		return new Solution(null, mNodes, System.nanoTime() - start);
+	}
+
+	/**
+     * @return int[] cell of the empty tile in each board from the start to a node, excluding the start
+     */
+	private int[] path(int slot, int length) {
+		int[] moves = new int[length];
+		for (int i=length - 1; i >= 0; i--) {
+			moves[i] = PackedBoard.findBlank(mStore.getState(slot), mTiles.length);
+			slot = mStore.getParent(slot);
+		}
+		return moves;
+	}
+
+	/**
+     * @return long number of successors generated by the last search, not counting moves straight back
+     */
+	public long getGenerated() {
+		return mGenerated;
+	}
+
+	/**
+     * @return long number of successors already in the node store
+     */
+	public long getDuplicates() {
+		return mDuplicates;
+	}
+
+	/**
+     * @return long number of duplicates reached by a shorter path and queued again
+     */
+	public long getImproved() {
+		return mImproved;
+	}
+
+	/**
+     * @return long number of queue entries skipped as their node was since reached by a shorter path
+     */
+	public long getStale() {
+		return mStale;
+	}
+
+	/**
+     * @return int number of distinct boards stored by the last search
+     */
+	public int getStored() {
+		return mStore.size();
+	}
+
+	/**
+     * @return int largest size of the open list in the last search
+     */
+	public int getMaxOpen() {
+		return mQueue.getMaxSize();
+	}
+}
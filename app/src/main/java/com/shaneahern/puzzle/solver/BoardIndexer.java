@@ -0,0 +1,119 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Dense index of the boards of a puzzle, through a PermutationRanker of the cell of each tile. With solvable only,
+ * the index covers just the half of the boards that can reach the solved board. Whether a board is solvable depends
+ * on the parity of its permutation and the cell of the empty tile. The permutation ranked is the cell of each tile,
+ * with the empty tile first, so the two boards with the same half rank, which differ in the cells of the last two
+ * tiles, have the empty tile in the same cell and opposite parity, and exactly one of them is solvable.
+ *
+ * Indexers hold scratch arrays and never allocate after construction, so an indexer must not be shared between
+ * threads.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class BoardIndexer {
+
+	private final int mRows;
+	private final int mCols;
+	private final int mCells;
+	private final boolean mSolvableOnly;
+	private final PermutationRanker mRanker;
+	// cell of each tile
+	private final int[] mValues;
+	private final int[] mTiles;
+
+	/**
+     * @param rows
+     * 			Rows of the board
+     * @param cols
+     * 			Columns of the board, at least 3 cells and at most 20, whose factorial fits in a long
+     * @param order
+     * 			PermutationRanker.LEXICOGRAPHIC or PermutationRanker.MYRVOLD_RUSKEY
+     * @param solvableOnly
+     * 			true to index only the boards that can be solved
+     */
+	public BoardIndexer(int rows, int cols, int order, boolean solvableOnly) {
+		mRows = rows;
+		mCols = cols;
+		mCells = rows * cols;
+		if (mCells < 3) {
+			throw new IllegalArgumentException(rows + "x" + cols + " boards are too small to index");
+		}
+		mSolvableOnly = solvableOnly;
+		mRanker = new PermutationRanker(mCells, mCells, order);
+		mValues = new int[mCells];
+		mTiles = new int[mCells];
+	}
+
+	/**
+     * @return long number of indexes
+     */
+	public long size() {
+		return mSolvableOnly ? mRanker.size() / 2 : mRanker.size();
+	}
+
+	/**
+     * @param tiles
+     * 			Tile in each cell in row major order, solvable if the indexer is solvable only
+     * @return long index of the board
+     */
+	public long rank(int[] tiles) {
+		for (int cell=0; cell < mCells; cell++) {
+			mValues[tiles[cell]] = cell;
+		}
+		return mSolvableOnly ? mRanker.rankHalf(mValues) : mRanker.rank(mValues);
+	}
+
+	/**
+     * @param puzzlePositions
+     * 			Tile at each row and column, as held by PuzzleModel
+     * @return long index of the board
+     */
+	public long rank(int[][] puzzlePositions) {
+		for (int row=0; row < mRows; row++) {
+			for (int col=0; col < mCols; col++) {
+				mTiles[row * mCols + col] = puzzlePositions[row][col];
+			}
+		}
+		return rank(mTiles);
+	}
+
+	/**
+     * @param index
+     * 			Index from 0 to size() - 1
+     * @param tiles
+     * 			Set to the tile in each cell in row major order
+     */
+	public void unrank(long index, int[] tiles) {
+		if (mSolvableOnly) {
+			mRanker.unrankHalf(index, mValues);
+			int blank = mValues[0];
+			if (PermutationRanker.parity(mValues, mCells) != (blank / mCols + blank % mCols) % 2) {
+				int swap = mValues[mCells - 2];
+				mValues[mCells - 2] = mValues[mCells - 1];
+				mValues[mCells - 1] = swap;
+			}
+		} else {
+			mRanker.unrank(index, mValues);
+		}
+		for (int tile=0; tile < mCells; tile++) {
+			tiles[mValues[tile]] = tile;
+		}
+	}
+
+	/**
+     * @param index
+     * 			Index from 0 to size() - 1
+     * @param puzzlePositions
+     * 			Set to the tile at each row and column, as held by PuzzleModel
+     */
+	public void unrank(long index, int[][] puzzlePositions) {
+		unrank(index, mTiles);
+		for (int row=0; row < mRows; row++) {
+			for (int col=0; col < mCols; col++) {
+				puzzlePositions[row][col] = mTiles[row * mCols + col];
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.shaneahern.puzzle.solver;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue of node slots for A*, with a stack of slots for every f and g value. Pop takes a slot of the
+ * lowest f, and of those the highest g, nearest the goal. Moves and estimates are small integers, so push is a
+ * stack push and pop scans forward from the lowest f seen, which with a consistent heuristic only ever rises, so
+ * both are constant time with no comparisons and no objects per entry.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class BucketQueue {
+
+	// slots in each bucket, by f then g
+	private int[][][] mBuckets = new int[64][][];
+	private int[][] mCounts = new int[64][];
+	// number of slots with each f
+	private int[] mFCounts = new int[64];
+	// highest g that may have slots, for each f
+	private int[] mTopG = new int[64];
+	private int mMinF;
+	private int mSize;
+	private int mMaxSize;
+	private int mPoppedF;
+	private int mPoppedG;
+
+	public void push(int slot, int f, int g) {
+		if (f >= mFCounts.length) {
+			growF(f);
+		}
+		int[][] buckets = mBuckets[f];
+		int[] counts = mCounts[f];
+		if (buckets == null || g >= buckets.length) {
+			int length = Math.max(g + 1, buckets == null ? 16 : buckets.length * 2);
+			int[][] newBuckets = new int[length][];
+			int[] newCounts = new int[length];
+			if (buckets != null) {
+				System.arraycopy(buckets, 0, newBuckets, 0, buckets.length);
+				System.arraycopy(counts, 0, newCounts, 0, counts.length);
+			}
+			mBuckets[f] = buckets = newBuckets;
+			mCounts[f] = counts = newCounts;
+		}
+		int[] bucket = buckets[g];
+		int count = counts[g];
+		if (bucket == null) {
+			buckets[g] = bucket = new int[64];
+		} else if (count == bucket.length) {
+			int[] newBucket = new int[count * 2];
+			System.arraycopy(bucket, 0, newBucket, 0, count);
+			buckets[g] = bucket = newBucket;
+		}
+		bucket[count] = slot;
+		counts[g] = count + 1;
+		mFCounts[f]++;
+		if (g > mTopG[f]) {
+			mTopG[f] = g;
+		}
+		if (f < mMinF || mSize == 0) {
+			mMinF = f;
+		}
+		if (++mSize > mMaxSize) {
+			mMaxSize = mSize;
+		}
+	}
+
+	private void growF(int f) {
+		int length = Math.max(f + 1, mFCounts.length * 2);
+		int[][][] buckets = new int[length][][];
+		int[][] counts = new int[length][];
+		int[] fCounts = new int[length];
+		int[] topG = new int[length];
+		System.arraycopy(mBuckets, 0, buckets, 0, mBuckets.length);
+		System.arraycopy(mCounts, 0, counts, 0, mCounts.length);
+		System.arraycopy(mFCounts, 0, fCounts, 0, mFCounts.length);
+		System.arraycopy(mTopG, 0, topG, 0, mTopG.length);
+		mBuckets = buckets;
+		mCounts = counts;
+		mFCounts = fCounts;
+		mTopG = topG;
+	}
+
+	/**
+     * Remove a slot of the lowest f and highest g, whose f and g are then given by getPoppedF() and getPoppedG()
+     *
+     * @return int slot
+     * @throws IllegalStateException if the queue is empty
+     */
+	public int pop() {
+		if (mSize == 0) {
+			throw new IllegalStateException("Queue is empty");
+		}
+		int f = mMinF;
+		while (mFCounts[f] == 0) {
+			f++;
+		}
+		mMinF = f;
+		int[] counts = mCounts[f];
+		int g = mTopG[f];
+		while (counts[g] == 0) {
+			g--;
+		}
+		mTopG[f] = g;
+		int count = --counts[g];
+		mFCounts[f]--;
+		mSize--;
+		mPoppedF = f;
+		mPoppedG = g;
+		return mBuckets[f][g][count];
+	}
+
+	public int getPoppedF() {
+		return mPoppedF;
+	}
+
+	public int getPoppedG() {
+		return mPoppedG;
+	}
+
+	public boolean isEmpty() {
+		return mSize == 0;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	/**
+     * @return int largest number of slots queued at once since the queue was created or cleared
+     */
+	public int getMaxSize() {
+		return mMaxSize;
+	}
+
+	/**
+     * Remove every slot, keeping the buckets for reuse
+     *
+     */
+	public void clear() {
+		for (int f=0; f < mFCounts.length; f++) {
+			if (mCounts[f] != null) {
+				Arrays.fill(mCounts[f], 0);
+			}
+			mFCounts[f] = 0;
+			mTopG[f] = 0;
+		}
+		mMinF = 0;
+		mSize = 0;
+		mMaxSize = 0;
+	}
+}
@@ -0,0 +1,111 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Combines heuristics into one. The maximum of heuristics that never overestimate also never overestimates, and is
+ * at least as strong as each of them. The sum is stronger still, but only never overestimates if the heuristics
+ * count disjoint sets of moves, e.g. pattern databases over disjoint groups of tiles, so sum() is not safe for
+ * combining e.g. Manhattan distance and walking distance.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class CompositeHeuristic implements Heuristic {
+
+	private final Heuristic[] mHeuristics;
+	private final boolean mAdditive;
+	private int mValue;
+
+	private CompositeHeuristic(Heuristic[] heuristics, boolean additive) {
+		if (heuristics.length == 0) {
+			throw new IllegalArgumentException("No heuristics to combine");
+		}
+		mHeuristics = heuristics.clone();
+		mAdditive = additive;
+	}
+
+	/**
+     * @return CompositeHeuristic maximum of the heuristics
+     */
+	public static CompositeHeuristic max(Heuristic... heuristics) {
+		return new CompositeHeuristic(heuristics, false);
+	}
+
+	/**
+     * @return CompositeHeuristic sum of the heuristics, which must count disjoint sets of moves
+     */
+	public static CompositeHeuristic sum(Heuristic... heuristics) {
+		return new CompositeHeuristic(heuristics, true);
+	}
+
+	public int init(int[] tiles) {
+		for (Heuristic heuristic : mHeuristics) {
+			heuristic.init(tiles);
+		}
+		return combine();
+	}
+
+	public int applyMove(int tile, int from, int to) {
+		for (Heuristic heuristic : mHeuristics) {
+			heuristic.applyMove(tile, from, to);
+		}
+		return combine();
+	}
+
+	public int undoMove(int tile, int from, int to) {
+		for (Heuristic heuristic : mHeuristics) {
+			heuristic.undoMove(tile, from, to);
+		}
+		return combine();
+	}
+
+	public int getStateBits() {
+		int bits = 0;
+		for (Heuristic heuristic : mHeuristics) {
+			bits += heuristic.getStateBits();
+		}
+		return bits;
+	}
+
+	/**
+     * @return int states of the heuristics side by side, the first in the lowest bits, only valid if getStateBits()
+     * 			is at most 32
+     */
+	public int save() {
+		int state = 0;
+		int shift = 0;
+		for (Heuristic heuristic : mHeuristics) {
+			state |= heuristic.save() << shift;
+			shift += heuristic.getStateBits();
+		}
+		return state;
+	}
+
+	public int restore(int[] tiles, int state) {
+		for (Heuristic heuristic : mHeuristics) {
+			int bits = heuristic.getStateBits();
+			heuristic.restore(tiles, bits < 32 ? state & ((1 << bits) - 1) : state);
+			state = bits < 32 ? state >>> bits : 0;
+		}
+		return combine();
+	}
+
+	private int combine() {
+		int value = mAdditive ? 0 : Integer.MIN_VALUE;
+		for (Heuristic heuristic : mHeuristics) {
+			value = mAdditive ? value + heuristic.getValue() : Math.max(value, heuristic.getValue());
+		}
+		mValue = value;
+		return value;
+	}
+
+	public int getValue() {
+		return mValue;
+	}
+
+	public String getName() {
+		StringBuilder sb = new StringBuilder(mAdditive ? "sum(" : "max(");
+		for (int i=0; i < mHeuristics.length; i++) {
+			sb.append(i > 0 ? "," : "").append(mHeuristics[i].getName());
+		}
+		return sb.append(')').toString();
+	}
+}
@@ -0,0 +1,205 @@
+package com.shaneahern.puzzle.solver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Distance of every reachable board from the solved board, as written by ExternalBfs. Boards are packed as by
+ * PackedBoard and grouped by distance, each group sorted, so a group is stored as the differences between
+ * consecutive boards in variable length encoding, seven bits per byte. Boards at the same distance are dense in
+ * the sorted order, so most differences take one or two bytes rather than the eight of a packed board.
+ *
+ * Layout, big endian: magic, rows, cols (ints), tiles tracked (long bit set, bit t for tile t), number of
+ * distances (int), number of boards at each distance (longs), then the boards at each distance in turn.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class DistanceFile {
+
+	private static final int MAGIC = 0x505a4431;
+	private static final int BUFFER_BYTES = 1 << 20;
+
+	public interface Visitor {
+		public void visit(long state, int distance);
+	}
+
+	private final File mFile;
+	private final int mRows;
+	private final int mCols;
+	private final long mPatternMask;
+	private final long[] mCounts;
+	private final long mDataOffset;
+
+	private DistanceFile(File file, int rows, int cols, long patternMask, long[] counts, long dataOffset) {
+		mFile = file;
+		mRows = rows;
+		mCols = cols;
+		mPatternMask = patternMask;
+		mCounts = counts;
+		mDataOffset = dataOffset;
+	}
+
+	/**
+     * Write a distance file from sorted files of packed boards, one per distance
+     *
+     */
+	static void write(File file, int rows, int cols, long patternMask, File[] layers) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			FileChannel channel = out.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			buffer.putInt(MAGIC);
+			buffer.putInt(rows);
+			buffer.putInt(cols);
+			buffer.putLong(patternMask);
+			buffer.putInt(layers.length);
+			for (File layer : layers) {
+				buffer.putLong(layer.length() / 8);
+			}
+			for (File layer : layers) {
+				LongFileReader in = new LongFileReader(layer, BUFFER_BYTES);
+				try {
+					long previous = Long.MIN_VALUE;
+					while (in.hasNext()) {
+						long state = in.next();
+						// difference as an unsigned value, boards are sorted as signed longs
+						long delta = state - previous;
+						previous = state;
+						if (buffer.remaining() < 10) {
+							drain(channel, buffer);
+						}
+						while ((delta & ~0x7fL) != 0) {
+							buffer.put((byte)((delta & 0x7f) | 0x80));
+							delta >>>= 7;
+						}
+						buffer.put((byte)delta);
+					}
+				} finally {
+					in.close();
+				}
+			}
+			drain(channel, buffer);
+			channel.force(true);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+     * Read the header of a distance file
+     *
+     * @throws IOException if the file is not a distance file
+     */
+	public static DistanceFile open(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(24);
+			readFully(channel, header);
+			if (header.getInt() != MAGIC) {
+				throw new IOException(file + " is not a distance file");
+			}
+			int rows = header.getInt();
+			int cols = header.getInt();
+			long patternMask = header.getLong();
+			int layers = header.getInt();
+			ByteBuffer counts = ByteBuffer.allocate(layers * 8);
+			readFully(channel, counts);
+			long[] layerCounts = new long[layers];
+			for (int i=0; i < layers; i++) {
+				layerCounts[i] = counts.getLong();
+			}
+			return new DistanceFile(file, rows, cols, patternMask, layerCounts, 24 + layers * 8);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Truncated distance file");
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+     * Visit every board in order of distance, and in sorted order within each distance
+     *
+     */
+	public void forEach(Visitor visitor) throws IOException {
+		FileInputStream in = new FileInputStream(mFile);
+		try {
+			FileChannel channel = in.getChannel();
+			channel.position(mDataOffset);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			buffer.flip();
+			for (int distance=0; distance < mCounts.length; distance++) {
+				long previous = Long.MIN_VALUE;
+				for (long i=0; i < mCounts[distance]; i++) {
+					long delta = 0;
+					int shift = 0;
+					byte b;
+					do {
+						if (!buffer.hasRemaining()) {
+							buffer.clear();
+							if (channel.read(buffer) < 0) {
+								throw new IOException("Truncated distance file");
+							}
+							buffer.flip();
+						}
+						b = buffer.get();
+						delta |= (long)(b & 0x7f) << shift;
+						shift += 7;
+					} while ((b & 0x80) != 0);
+					previous += delta;
+					visitor.visit(previous, distance);
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	public int getRows() {
+		return mRows;
+	}
+
+	public int getCols() {
+		return mCols;
+	}
+
+	/**
+     * @return long bit set of the tiles that are tracked, other tiles are packed as one indistinguishable tile
+     */
+	public long getPatternMask() {
+		return mPatternMask;
+	}
+
+	/**
+     * @return int largest distance of any board
+     */
+	public int getMaxDistance() {
+		return mCounts.length - 1;
+	}
+
+	/**
+     * @return long[] number of boards at each distance
+     */
+	public long[] getHistogram() {
+		return mCounts.clone();
+	}
+}
@@ -0,0 +1,544 @@
+package com.shaneahern.puzzle.solver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+
+/**
+ * Breadth first search of every board reachable from the solved board, held on disk rather than in memory, for
+ * boards whose state space does not fit in the heap. Each layer of the search is a sorted file of packed boards.
+ * The successors of a layer are collected in a fixed size buffer, which is sorted and written out as a run file
+ * whenever it fills, then the runs are merged, dropping duplicates and every board of the layer before, into the
+ * next layer. The layer before is the only one that has to be checked, a move always moves the empty tile to a cell
+ * of the other colour of a chess board, so a board at distance d can only reappear at distance d - 1 or d + 1.
+ *
+ * Tiles outside an optional pattern are packed as one indistinguishable tile, which gives the exact distance of
+ * every placement of the pattern tiles and the empty tile, counting the moves of every tile.
+ *
+ * Memory is the state buffer plus one direct buffer per open file, whatever the size of the search. The progress is
+ * recorded after every layer, so a search that is stopped, by interrupting the thread or killing the process, picks
+ * up from the last complete layer when run again on the same directory. The result is a DistanceFile and a
+ * histogram of the number of boards at each distance.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class ExternalBfs {
+
+	public static final String DISTANCE_FILE = "distances.bin";
+	public static final String HISTOGRAM_FILE = "histogram.csv";
+
+	private static final String PROGRESS_FILE = "progress.properties";
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final int IO_BUFFER_BYTES = 1 << 20;
+	private static final int MERGE_BUFFER_BYTES = 64 << 10;
+	private static final int MAX_MERGE_FAN_IN = 256;
+
+	private static final Comparator<LongFileReader> BY_NEXT = new Comparator<LongFileReader>() {
+		@Override
+		public int compare(LongFileReader a, LongFileReader b) {
+			long x = a.peek();
+			long y = b.peek();
+			return x < y ? -1 : x == y ? 0 : 1;
+		}
+	};
+
+	private final int mRows;
+	private final int mCols;
+	private final int mCells;
+	private final long mPatternMask;
+	private final File mDir;
+	private final int mBufferStates;
+	private final int mFanIn;
+	// cells the empty tile can move to from each cell
+	private final int[][] mNeighbours;
+
+	private long[] mBuffer;
+	private Properties mProgress;
+	private int mRunCount;
+	private long mRunsWritten;
+	private long mMergePasses;
+
+	/**
+     * @param rows
+     * 			Rows of the board
+     * @param cols
+     * 			Columns of the board, rows * cols at most PackedBoard.MAX_CELLS
+     * @param patternTiles
+     * 			Tiles told apart from one another, or null to tell every tile apart
+     * @param dir
+     * 			Directory for the layers, the progress and the results
+     * @param bufferStates
+     * 			Number of boards sorted in memory at once, 8 bytes each on the heap
+     */
+	public ExternalBfs(int rows, int cols, int[] patternTiles, File dir, int bufferStates) {
+		if (rows * cols > PackedBoard.MAX_CELLS) {
+			throw new IllegalArgumentException(rows + "x" + cols + " boards do not fit in a packed board");
+		}
+		if (bufferStates < 4) {
+			throw new IllegalArgumentException("Buffer must hold the successors of a board");
+		}
+		mRows = rows;
+		mCols = cols;
+		mCells = rows * cols;
+		mDir = dir;
+		mBufferStates = bufferStates;
+		mFanIn = Math.min(MAX_MERGE_FAN_IN, Math.max(2, (int)Math.min(Integer.MAX_VALUE, bufferStates * 8L / MERGE_BUFFER_BYTES)));
+
+		long patternMask = 0;
+		if (patternTiles == null) {
+			for (int tile=1; tile < mCells; tile++) {
+				patternMask |= 1L << tile;
+			}
+		} else {
+			for (int tile : patternTiles) {
+				if (tile <= 0 || tile >= mCells) {
+					throw new IllegalArgumentException("No tile " + tile + " on a " + rows + "x" + cols + " board");
+				}
+				patternMask |= 1L << tile;
+			}
+		}
+		mPatternMask = patternMask;
+
+		mNeighbours = new int[mCells][];
+		for (int cell=0; cell < mCells; cell++) {
+			int row = cell / cols;
+			int col = cell % cols;
+			int[] neighbours = new int[4];
+			int count = 0;
+			if (row > 0) {
+				neighbours[count++] = cell - cols;
+			}
+			if (row < rows - 1) {
+				neighbours[count++] = cell + cols;
+			}
+			if (col > 0) {
+				neighbours[count++] = cell - 1;
+			}
+			if (col < cols - 1) {
+				neighbours[count++] = cell + 1;
+			}
+			mNeighbours[cell] = Arrays.copyOf(neighbours, count);
+		}
+	}
+
+	/**
+     * @return long packed solved board, with the tiles outside the pattern replaced by the lowest of them
+     */
+	public long getGoal() {
+		int[] tiles = new int[mCells];
+		for (int cell=0; cell < mCells; cell++) {
+			tiles[cell] = abstractTile(cell);
+		}
+		return PackedBoard.pack(tiles);
+	}
+
+	/**
+     * @param tiles
+     * 			Tile in each cell of a board
+     * @return long packed board as it appears in the distance file
+     */
+	public long abstractState(int[] tiles) {
+		int[] abstracted = new int[mCells];
+		for (int cell=0; cell < mCells; cell++) {
+			abstracted[cell] = abstractTile(tiles[cell]);
+		}
+		return PackedBoard.pack(abstracted);
+	}
+
+	private int abstractTile(int tile) {
+		if (tile == 0 || (mPatternMask & (1L << tile)) != 0) {
+			return tile;
+		}
+		// the lowest tile outside the pattern stands for all of them
+		return Long.numberOfTrailingZeros(~mPatternMask & ~1L);
+	}
+
+	/**
+     * Run the search to the end, or carry on from where an earlier run stopped
+     *
+     * @return long[] number of boards at each distance
+     * @throws InterruptedIOException if the thread is interrupted, the search can be resumed
+     */
+	public long[] run() throws IOException {
+		runLayers(Integer.MAX_VALUE);
+		return getHistogram();
+	}
+
+	/**
+     * Expand at most a number of layers, and write the results if the search ends
+     *
+     * @param maxLayers
+     * 			Number of layers to expand before returning
+     * @return boolean true if the search is complete
+     * @throws InterruptedIOException if the thread is interrupted, the search can be resumed
+     */
+	public boolean runLayers(int maxLayers) throws IOException {
+		if (!mDir.isDirectory() && !mDir.mkdirs()) {
+			throw new IOException("Cannot create " + mDir);
+		}
+		loadProgress();
+		if (isComplete()) {
+			return true;
+		}
+		cleanUp();
+
+		for (int i=0; i < maxLayers; i++) {
+			int depth = getDepth();
+			long count = expand(depth);
+			if (count == 0) {
+				finish(depth);
+				return true;
+			}
+			mProgress.setProperty("count." + (depth + 1), Long.toString(count));
+			mProgress.setProperty("depth", Integer.toString(depth + 1));
+			saveProgress();
+		}
+		return false;
+	}
+
+	public boolean isComplete() {
+		return mProgress != null && Boolean.parseBoolean(mProgress.getProperty("complete"));
+	}
+
+	/**
+     * @return int distance of the last complete layer
+     */
+	public int getDepth() {
+		return Integer.parseInt(mProgress.getProperty("depth"));
+	}
+
+	/**
+     * @return long[] number of boards at each distance found so far
+     */
+	public long[] getHistogram() {
+		long[] counts = new long[getDepth() + 1];
+		for (int depth=0; depth < counts.length; depth++) {
+			counts[depth] = Long.parseLong(mProgress.getProperty("count." + depth));
+		}
+		return counts;
+	}
+
+	public File getDistanceFile() {
+		return new File(mDir, DISTANCE_FILE);
+	}
+
+	public File getHistogramFile() {
+		return new File(mDir, HISTOGRAM_FILE);
+	}
+
+	/**
+     * @return long number of sorted runs written by this instance
+     */
+	public long getRunsWritten() {
+		return mRunsWritten;
+	}
+
+	/**
+     * @return long number of merges of runs into larger runs, before the final merge of each layer
+     */
+	public long getMergePasses() {
+		return mMergePasses;
+	}
+
+	private File layerFile(int depth) {
+		return new File(mDir, "layer-" + depth + ".bin");
+	}
+
+	private void loadProgress() throws IOException {
+		File file = new File(mDir, PROGRESS_FILE);
+		Properties progress = new Properties();
+		if (file.exists()) {
+			FileInputStream in = new FileInputStream(file);
+			try {
+				progress.load(in);
+			} finally {
+				in.close();
+			}
+			if (Integer.parseInt(progress.getProperty("rows")) != mRows || Integer.parseInt(progress.getProperty("cols")) != mCols
+					|| Long.parseLong(progress.getProperty("pattern")) != mPatternMask) {
+				throw new IOException(mDir + " holds a search of a different board");
+			}
+			mProgress = progress;
+			return;
+		}
+
+		LongFileWriter out = new LongFileWriter(layerFile(0), 8);
+		out.write(getGoal());
+		out.close();
+		progress.setProperty("rows", Integer.toString(mRows));
+		progress.setProperty("cols", Integer.toString(mCols));
+		progress.setProperty("pattern", Long.toString(mPatternMask));
+		progress.setProperty("depth", "0");
+		progress.setProperty("count.0", "1");
+		mProgress = progress;
+		saveProgress();
+	}
+
+	private void saveProgress() throws IOException {
+		File file = new File(mDir, PROGRESS_FILE);
+		File tmp = new File(mDir, PROGRESS_FILE + TMP_SUFFIX);
+		FileOutputStream out = new FileOutputStream(tmp);
+		try {
+			mProgress.store(out, null);
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		rename(tmp, file);
+	}
+
+	/**
+     * Delete whatever a stopped run left behind after its last complete layer
+     *
+     */
+	private void cleanUp() throws IOException {
+		int depth = getDepth();
+		File[] files = mDir.listFiles();
+		if (files == null) {
+			throw new IOException("Cannot list " + mDir);
+		}
+		for (File file : files) {
+			String name = file.getName();
+			boolean stale = name.endsWith(TMP_SUFFIX) || name.startsWith("run-");
+			if (name.startsWith("layer-") && name.endsWith(".bin")) {
+				// a layer renamed into place before the progress recorded it is made again
+				stale = Integer.parseInt(name.substring(6, name.length() - 4)) > depth;
+			}
+			if (stale && !file.delete()) {
+				throw new IOException("Cannot delete " + file);
+			}
+		}
+	}
+
+	/**
+     * Make layer depth + 1 from layer depth
+     *
+     * @return long number of boards in the new layer
+     */
+	private long expand(int depth) throws IOException {
+		if (mBuffer == null) {
+			mBuffer = new long[mBufferStates];
+		}
+		long[] buffer = mBuffer;
+		List<File> runs = new ArrayList<File>();
+		int size = 0;
+		LongFileReader in = new LongFileReader(layerFile(depth), IO_BUFFER_BYTES);
+		try {
+			while (in.hasNext()) {
+				long state = in.next();
+				int blank = PackedBoard.findBlank(state, mCells);
+				for (int from : mNeighbours[blank]) {
+					buffer[size++] = PackedBoard.move(state, blank, from);
+					if (size == buffer.length) {
+						runs.add(writeRun(buffer, size));
+						size = 0;
+					}
+				}
+			}
+		} finally {
+			in.close();
+		}
+		if (size > 0) {
+			runs.add(writeRun(buffer, size));
+		}
+
+		while (runs.size() > mFanIn) {
+			List<File> merged = new ArrayList<File>();
+			for (int i=0; i < runs.size(); i += mFanIn) {
+				List<File> group = runs.subList(i, Math.min(runs.size(), i + mFanIn));
+				if (group.size() == 1) {
+					merged.add(group.get(0));
+					continue;
+				}
+				File run = nextRunFile();
+				merge(group, null, run);
+				merged.add(run);
+				mMergePasses++;
+			}
+			runs = merged;
+		}
+
+		File next = layerFile(depth + 1);
+		File tmp = new File(mDir, next.getName() + TMP_SUFFIX);
+		long count = merge(runs, depth > 0 ? layerFile(depth - 1) : null, tmp);
+		rename(tmp, next);
+		return count;
+	}
+
+	private File nextRunFile() throws IOException {
+		if (Thread.interrupted()) {
+			throw new InterruptedIOException("Search interrupted, run again to resume");
+		}
+		mRunsWritten++;
+		return new File(mDir, "run-" + (mRunCount++) + ".bin");
+	}
+
+	private File writeRun(long[] buffer, int size) throws IOException {
+		Arrays.sort(buffer, 0, size);
+		File run = nextRunFile();
+		LongFileWriter out = new LongFileWriter(run, IO_BUFFER_BYTES);
+		try {
+			for (int i=0; i < size; i++) {
+				if (i == 0 || buffer[i] != buffer[i - 1]) {
+					out.write(buffer[i]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		return run;
+	}
+
+	/**
+     * Merge sorted runs into one sorted file without duplicates, and delete the runs
+     *
+     * @param subtract
+     * 			Sorted file of boards to leave out, or null
+     * @return long number of boards written
+     */
+	private long merge(List<File> runs, File subtract, File output) throws IOException {
+		int bufferBytes = Math.max(MERGE_BUFFER_BYTES, IO_BUFFER_BYTES / Math.max(1, runs.size()));
+		PriorityQueue<LongFileReader> queue = new PriorityQueue<LongFileReader>(Math.max(1, runs.size()), BY_NEXT);
+		List<LongFileReader> readers = new ArrayList<LongFileReader>();
+		LongFileReader previous = null;
+		LongFileWriter out = null;
+		try {
+			for (File run : runs) {
+				LongFileReader reader = new LongFileReader(run, bufferBytes);
+				readers.add(reader);
+				if (reader.hasNext()) {
+					queue.add(reader);
+				}
+			}
+			if (subtract != null) {
+				previous = new LongFileReader(subtract, IO_BUFFER_BYTES);
+			}
+			out = new LongFileWriter(output, IO_BUFFER_BYTES);
+			boolean first = true;
+			long last = 0;
+			while (!queue.isEmpty()) {
+				LongFileReader reader = queue.poll();
+				long state = reader.next();
+				if (reader.hasNext()) {
+					queue.add(reader);
+				}
+				if (!first && state == last) {
+					continue;
+				}
+				first = false;
+				last = state;
+				if (previous != null) {
+					while (previous.hasNext() && previous.peek() < state) {
+						previous.next();
+					}
+					if (previous.hasNext() && previous.peek() == state) {
+						continue;
+					}
+				}
+				out.write(state);
+			}
+			out.close();
+			return out.getCount();
+		} finally {
+			for (LongFileReader reader : readers) {
+				reader.close();
+			}
+			if (previous != null) {
+				previous.close();
+			}
+			for (File run : runs) {
+				run.delete();
+			}
+		}
+	}
+
+	/**
+     * Write the distance file and histogram and delete the layers
+     *
+     * @param maxDepth
+     * 			Distance of the last layer that is not empty
+     */
+	private void finish(int maxDepth) throws IOException {
+		File[] layers = new File[maxDepth + 1];
+		for (int depth=0; depth <= maxDepth; depth++) {
+			layers[depth] = layerFile(depth);
+		}
+		File tmp = new File(mDir, DISTANCE_FILE + TMP_SUFFIX);
+		DistanceFile.write(tmp, mRows, mCols, mPatternMask, layers);
+		rename(tmp, getDistanceFile());
+
+		tmp = new File(mDir, HISTOGRAM_FILE + TMP_SUFFIX);
+		FileOutputStream out = new FileOutputStream(tmp);
+		try {
+			Writer writer = new OutputStreamWriter(out, "US-ASCII");
+			writer.write("distance,states\n");
+			long[] counts = getHistogram();
+			for (int depth=0; depth < counts.length; depth++) {
+				writer.write(depth + "," + counts[depth] + "\n");
+			}
+			writer.flush();
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		rename(tmp, getHistogramFile());
+
+		mProgress.setProperty("complete", "true");
+		saveProgress();
+		for (File layer : layers) {
+			layer.delete();
+		}
+		layerFile(maxDepth + 1).delete();
+	}
+
+	private static void rename(File from, File to) throws IOException {
+		if (!from.renameTo(to)) {
+			throw new IOException("Cannot rename " + from + " to " + to);
+		}
+	}
+
+	/**
+     * Run a search from the command line, for example
+     * java -Xmx64m com.shaneahern.puzzle.solver.ExternalBfs 3 4 /tmp/bfs-3x4 4000000
+     *
+     * @param args
+     * 			rows, cols, directory, buffer states and optionally the pattern tiles separated by commas
+     */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 4) {
+			System.err.println("usage: ExternalBfs rows cols dir bufferStates [tile,tile,...]");
+			System.exit(2);
+		}
+		int[] pattern = null;
+		if (args.length > 4) {
+			String[] tiles = args[4].split(",");
+			pattern = new int[tiles.length];
+			for (int i=0; i < tiles.length; i++) {
+				pattern[i] = Integer.parseInt(tiles[i].trim());
+			}
+		}
+		ExternalBfs bfs = new ExternalBfs(Integer.parseInt(args[0]), Integer.parseInt(args[1]), pattern, new File(args[2]),
+				Integer.parseInt(args[3]));
+		long start = System.nanoTime();
+		while (!bfs.runLayers(1)) {
+			long[] counts = bfs.getHistogram();
+			System.out.println(String.format("depth %3d %14d states %8.1f s", counts.length - 1, counts[counts.length - 1],
+					(System.nanoTime() - start) / 1e9));
+		}
+		long total = 0;
+		for (long count : bfs.getHistogram()) {
+			total += count;
+		}
+		System.out.println(total + " states, max distance " + bfs.getDepth() + ", written to " + bfs.getDistanceFile());
+	}
+}
@@ -0,0 +1,98 @@
+package com.shaneahern.puzzle.solver;
+
+import java.util.Arrays;
+
+/**
+ * Node store on the heap in parallel primitive arrays, found through a LongIntHashMap from board to slot, about 44
+ * bytes a node with no object per node. The default store of the best first solvers, OffHeapNodeStore takes over
+ * when the nodes outgrow the heap.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class HeapNodeStore implements NodeStore {
+
+	private final LongIntHashMap mIndex;
+	private long[] mStates;
+	private int[] mG;
+	private int[] mParents;
+	private int[] mHeuristicStates;
+	private int mSize;
+
+	/**
+     * @param expectedSize
+     * 			Number of nodes to hold before the arrays first grow
+     */
+	public HeapNodeStore(int expectedSize) {
+		int capacity = Math.max(16, expectedSize);
+		mIndex = new LongIntHashMap(capacity, NONE);
+		mStates = new long[capacity];
+		mG = new int[capacity];
+		mParents = new int[capacity];
+		mHeuristicStates = new int[capacity];
+	}
+
+	@Override
+	public int find(long state) {
+		return mIndex.get(state);
+	}
+
+	@Override
+	public int add(long state, int g, int parent, int heuristicState) {
+		if (mSize == mStates.length) {
+			int capacity = mSize + (mSize >> 1);
+			mStates = Arrays.copyOf(mStates, capacity);
+			mG = Arrays.copyOf(mG, capacity);
+			mParents = Arrays.copyOf(mParents, capacity);
+			mHeuristicStates = Arrays.copyOf(mHeuristicStates, capacity);
+		}
+		int slot = mSize++;
+		mStates[slot] = state;
+		mG[slot] = g;
+		mParents[slot] = parent;
+		mHeuristicStates[slot] = heuristicState;
+		mIndex.put(state, slot);
+		return slot;
+	}
+
+	@Override
+	public long getState(int slot) {
+		return mStates[slot];
+	}
+
+	@Override
+	public int getG(int slot) {
+		return mG[slot];
+	}
+
+	@Override
+	public int getParent(int slot) {
+		return mParents[slot];
+	}
+
+	@Override
+	public int getHeuristicState(int slot) {
+		return mHeuristicStates[slot];
+	}
+
+	@Override
+	public void update(int slot, int g, int parent) {
+		mG[slot] = g;
+		mParents[slot] = parent;
+	}
+
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	@Override
+	public void clear() {
+		mIndex.clear();
+		mSize = 0;
+	}
+
+	@Override
+	public void close() {
+		clear();
+	}
+}
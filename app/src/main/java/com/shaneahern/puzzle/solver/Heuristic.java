@@ -0,0 +1,83 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Estimate of the number of moves needed to solve a board, kept up to date move by move. A search calls init()
+ * once for the board it starts from, then applyMove() as it makes each move and undoMove() as it takes it back, so
+ * a heuristic updates its value from the one tile that moved in constant time instead of looking at the whole
+ * board at every node. Heuristics used by optimal solvers must never overestimate.
+ *
+ * Moves follow PuzzleModel: a tile slides from its cell into the empty cell next to it, leaving its own cell empty.
+ * A PuzzleModel move that slides several tiles along a row or column is a series of such moves, starting with the
+ * tile next to the empty cell.
+ *
+ * Best first searches expand nodes in any order rather than one move from the last, so a heuristic can save a
+ * compact state for the current board, kept with each node, and restore it when the node is expanded instead of
+ * setting the board with init(). State that a pass over the board builds without lookups need not be saved.
+ *
+ * Heuristics are stateful and not thread safe, use one instance per search. Precomputed tables are shared.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public interface Heuristic {
+
+	/**
+     * Set the board the search starts from
+     *
+     * @param tiles
+     * 			Tile in each cell in row major order, 0 for the empty tile
+     * @return int estimate for the board
+     */
+	public int init(int[] tiles);
+
+	/**
+     * A tile slides into the empty cell
+     *
+     * @param tile
+     * 			Tile that moves
+     * @param from
+     * 			Cell the tile moves from, the empty cell after the move
+     * @param to
+     * 			Cell the tile moves to, the empty cell before the move
+     * @return int estimate for the board after the move
+     */
+	public int applyMove(int tile, int from, int to);
+
+	/**
+     * Take back the last move applied, with the same arguments it was applied with
+     *
+     * @return int estimate for the board before the move
+     */
+	public int undoMove(int tile, int from, int to);
+
+	/**
+     * @return int number of low bits of the states returned by save(), 0 if the heuristic saves no state
+     */
+	public int getStateBits();
+
+	/**
+     * @return int state of the current board, for restore()
+     */
+	public int save();
+
+	/**
+     * Set the board to one whose state was saved, the same as init() for the board but without the work the saved
+     * state stands for
+     *
+     * @param tiles
+     * 			Tile in each cell in row major order, 0 for the empty tile
+     * @param state
+     * 			State returned by save() for the board
+     * @return int estimate for the board
+     */
+	public int restore(int[] tiles, int state);
+
+	/**
+     * @return int estimate for the current board
+     */
+	public int getValue();
+
+	/**
+     * @return String name of the heuristic in reports
+     */
+	public String getName();
+}
@@ -0,0 +1,42 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Creates heuristics by name, e.g. from benchmark options. Each call creates a new instance, as heuristics are
+ * stateful.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class Heuristics {
+
+	public static final String MANHATTAN = "manhattan";
+	public static final String LINEAR_CONFLICT = "linear_conflict";
+	public static final String WALKING_DISTANCE = "walking_distance";
+	// maximum of linear conflict and walking distance
+	public static final String MAX = "max";
+
+	private Heuristics() {
+	}
+
+	/**
+     * @param name
+     * 			One of the names above
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @return Heuristic new heuristic
+     * @throws IllegalArgumentException if the name is unknown or the heuristic does not support the board size
+     */
+	public static Heuristic create(String name, int rows, int cols) {
+		if (MANHATTAN.equals(name)) {
+			return new ManhattanHeuristic(rows, cols);
+		} else if (LINEAR_CONFLICT.equals(name)) {
+			return new LinearConflictHeuristic(rows, cols);
+		} else if (WALKING_DISTANCE.equals(name)) {
+			return new WalkingDistanceHeuristic(rows, cols);
+		} else if (MAX.equals(name)) {
+			return CompositeHeuristic.max(new LinearConflictHeuristic(rows, cols), new WalkingDistanceHeuristic(rows, cols));
+		}
+		throw new IllegalArgumentException("Unknown heuristic " + name);
+	}
+}
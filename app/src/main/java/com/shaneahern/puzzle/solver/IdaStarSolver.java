@@ -0,0 +1,209 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Optimal solver using iterative deepening A*. Each iteration is a depth first search that prunes any node whose
+ * moves so far plus the heuristic estimate of its remaining moves exceeds a bound, and the next bound is the
+ * smallest value that was pruned, so the first solution found is a shortest one. Memory use is only the current
+ * path, which is what makes 4x4 and larger boards solvable at all, at the cost of expanding some nodes again in
+ * every iteration.
+ *
+ * The board is kept in a single array that is updated in place as the search moves the empty tile and restored as
+ * it backtracks, and the heuristic is updated incrementally from the one tile that moved, so expanding a node does
+ * no allocation. Moves straight back to the parent are never generated.
+ *
+ * A solver is not thread safe, use one solver per thread to solve instances in parallel.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class IdaStarSolver {
+
+	private static final int FOUND = -1;
+	private static final int GAVE_UP = -2;
+
+	private final int mRows;
+	private final int mCols;
+	private final Heuristic mHeuristic;
+	// cells next to each cell
+	private final int[][] mNeighbours;
+
+	// search state
+	private final int[] mTiles;
+	private int mBlank;
+	private int[] mPath;
+	private long mNodes;
+	private long mNodeLimit;
+
+	/**
+     * Solver using the Manhattan distance
+     *
+     * @param rows
+     * 			Number of rows of the puzzles to solve
+     * @param cols
+     * 			Number of columns of the puzzles to solve
+     */
+	public IdaStarSolver(int rows, int cols) {
+		this(rows, cols, new ManhattanHeuristic(rows, cols));
+	}
+
+	/**
+     * @param rows
+     * 			Number of rows of the puzzles to solve
+     * @param cols
+     * 			Number of columns of the puzzles to solve
+     * @param heuristic
+     * 			Heuristic for the size of the puzzles, must never overestimate and is only used by this solver
+     */
+	public IdaStarSolver(int rows, int cols, Heuristic heuristic) {
+		mRows = rows;
+		mCols = cols;
+		mHeuristic = heuristic;
+		int size = rows * cols;
+		mTiles = new int[size];
+		mNeighbours = new int[size][];
+		for (int cell=0; cell < size; cell++) {
+			int row = cell / cols;
+			int col = cell % cols;
+			int[] neighbours = new int[4];
+			int count = 0;
+			if (row > 0) {
+				neighbours[count++] = cell - cols;
+			}
+			if (col > 0) {
+				neighbours[count++] = cell - 1;
+			}
+			if (col < cols - 1) {
+				neighbours[count++] = cell + 1;
+			}
+			if (row < rows - 1) {
+				neighbours[count++] = cell + cols;
+			}
+			mNeighbours[cell] = new int[count];
+			System.arraycopy(neighbours, 0, mNeighbours[cell], 0, count);
+		}
+	}
+
+	/**
+     * Find a shortest solution
+     *
+     * @param instance
+     * 			Board to solve, must be solvable and the size of the solver
+     * @return Solution shortest solution
+     */
+	public Solution solve(PuzzleInstance instance) {
+		return solve(instance, Long.MAX_VALUE);
+	}
+
+	/**
+     * Find a shortest solution, giving up after expanding a number of nodes
+     *
+     * @param instance
+     * 			Board to solve, must be solvable and the size of the solver
+     * @param nodeLimit
+     * 			Number of nodes to expand before giving up
+     * @return Solution shortest solution, or an unsolved result if the search gave up
+     * @throws IllegalArgumentException if the instance is the wrong size or not solvable
+     */
+	public Solution solve(PuzzleInstance instance, long nodeLimit) {
+		if (instance.getRows() != mRows || instance.getCols() != mCols) {
+			throw new IllegalArgumentException(instance.getId() + " is not " + mRows + "x" + mCols);
+		}
+		int[] tiles = instance.getTiles();
+		if (!PuzzleInstance.isSolvable(tiles, mCols)) {
+			throw new IllegalArgumentException(instance.getId() + " is not solvable");
+		}
+		long start = System.nanoTime();
+		for (int cell=0; cell < tiles.length; cell++) {
+			mTiles[cell] = tiles[cell];
+			if (tiles[cell] == 0) {
+				mBlank = cell;
+			}
+		}
+		int h = mHeuristic.init(tiles);
+		mNodes = 0;
+		mNodeLimit = nodeLimit;
+		int bound = h;
+		while (true) {
+			mPath = ensureCapacity(mPath, bound);
+			int result = search(0, bound, h, -1);
+			if (result == FOUND) {
+				int[] moves = new int[bound];
+				System.arraycopy(mPath, 0, moves, 0, bound);
+				return new Solution(moves, mNodes, System.nanoTime() - start);
+			}
+			if (result == GAVE_UP) {
+				return new Solution(null, mNodes, System.nanoTime() - start);
+			}
+			bound = result;
+		}
+	}
+
+	private static int[] ensureCapacity(int[] path, int length) {
+		return path != null && path.length >= length ? path : new int[Math.max(length, 2 * (path != null ? path.length : 32))];
+	}
+
+	/**
+     * Test if the board is solved, only needed when the heuristic estimates no more moves
+     *
+     */
+	private boolean isSolved() {
+		for (int cell=0; cell < mTiles.length; cell++) {
+			if (mTiles[cell] != cell) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+     * Search below the current node
+     *
+     * @param g
+     * 			Number of moves to the node
+     * @param bound
+     * 			Bound on moves plus estimate of this iteration
+     * @param h
+     * 			Heuristic estimate for the node
+     * @param parent
+     * 			Cell of the empty tile in the parent node, -1 at the root
+     * @return int FOUND if the node leads to a solution within the bound, GAVE_UP if the node limit was reached,
+     * 			otherwise the smallest moves plus estimate that exceeded the bound below the node
+     */
+	private int search(int g, int bound, int h, int parent) {
+		int f = g + h;
+		if (f > bound) {
+			return f;
+		}
+		if (h == 0 && isSolved()) {
+			return FOUND;
+		}
+		if (++mNodes > mNodeLimit) {
+			return GAVE_UP;
+		}
+		int min = Integer.MAX_VALUE;
+		int blank = mBlank;
+		int[] neighbours = mNeighbours[blank];
+		for (int i=0; i < neighbours.length; i++) {
+			int next = neighbours[i];
+			if (next == parent) {
+				continue;
+			}
+			int tile = mTiles[next];
+			mTiles[blank] = tile;
+			mTiles[next] = 0;
+			mBlank = next;
+			mPath[g] = next;
+			int result = search(g + 1, bound, mHeuristic.applyMove(tile, next, blank), blank);
+			mHeuristic.undoMove(tile, next, blank);
+			mTiles[next] = tile;
+			mTiles[blank] = 0;
+			mBlank = blank;
+			if (result < 0) {
+				return result;
+			}
+			if (result < min) {
+				min = result;
+			}
+		}
+		return min;
+	}
+}
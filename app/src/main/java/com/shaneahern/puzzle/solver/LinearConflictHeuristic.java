@@ -0,0 +1,201 @@
+package com.shaneahern.puzzle.solver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Manhattan distance plus linear conflicts. Two tiles in their solved row, in the wrong order, cannot pass each
+ * other without one of them leaving the row and coming back, which costs two moves the Manhattan distance does not
+ * count, and likewise for columns. For each row and column the minimum number of tiles that have to leave it is the
+ * number of its tiles that belong in it less the longest run of them already in increasing order.
+ *
+ * The conflicts of a line only depend on which of its cells hold which of its own tiles, so each row and column is
+ * kept as a key with one digit per cell, 0 for a cell without one of its own tiles and otherwise the solved position
+ * of the tile plus one, and the conflicts of every possible key are precomputed. A move changes the digit of the
+ * moving tile in at most two rows and two columns, so updating the conflicts is a few table lookups.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class LinearConflictHeuristic implements Heuristic {
+
+	// conflicts of every key of a line, by line length
+	private static final Map<Integer, int[]> sTables = new HashMap<Integer, int[]>();
+
+	private final int mCols;
+	private final ManhattanHeuristic mManhattan;
+	private final int[] mRowTable;
+	private final int[] mColTable;
+	// place value of the digit of each cell of a row, of a column
+	private final int[] mRowPlace;
+	private final int[] mColPlace;
+
+	private final int[] mRowKeys;
+	private final int[] mColKeys;
+	private int mConflicts;
+
+	/**
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     */
+	public LinearConflictHeuristic(int rows, int cols) {
+		mCols = cols;
+		mManhattan = new ManhattanHeuristic(rows, cols);
+		mRowTable = getTable(cols);
+		mColTable = getTable(rows);
+		mRowPlace = places(cols);
+		mColPlace = places(rows);
+		mRowKeys = new int[rows];
+		mColKeys = new int[cols];
+	}
+
+	private static int[] places(int length) {
+		int[] places = new int[length];
+		int place = 1;
+		for (int i=0; i < length; i++) {
+			places[i] = place;
+			place *= length + 1;
+		}
+		return places;
+	}
+
+	/**
+     * @param length
+     * 			Number of cells in the line
+     * @return int[] conflict moves of every key of a line
+     */
+	private static int[] getTable(int length) {
+		synchronized (sTables) {
+			int[] table = sTables.get(length);
+			if (table == null) {
+				int base = length + 1;
+				int size = 1;
+				for (int i=0; i < length; i++) {
+					size *= base;
+				}
+				table = new int[size];
+				int[] digits = new int[length];
+				int[] tails = new int[length];
+				for (int key=0; key < size; key++) {
+					int count = 0;
+					for (int i=0, k=key; i < length; i++, k /= base) {
+						if (k % base != 0) {
+							digits[count++] = k % base;
+						}
+					}
+					// longest strictly increasing run, by patience sorting
+					int longest = 0;
+					for (int i=0; i < count; i++) {
+						int position = 0;
+						while (position < longest && tails[position] < digits[i]) {
+							position++;
+						}
+						tails[position] = digits[i];
+						if (position == longest) {
+							longest++;
+						}
+					}
+					table[key] = 2 * (count - longest);
+				}
+				sTables.put(length, table);
+			}
+			return table;
+		}
+	}
+
+	public int init(int[] tiles) {
+		mManhattan.init(tiles);
+		for (int i=0; i < mRowKeys.length; i++) {
+			mRowKeys[i] = 0;
+		}
+		for (int i=0; i < mColKeys.length; i++) {
+			mColKeys[i] = 0;
+		}
+		for (int cell=0; cell < tiles.length; cell++) {
+			int tile = tiles[cell];
+			if (tile != 0) {
+				if (tile / mCols == cell / mCols) {
+					mRowKeys[cell / mCols] += (tile % mCols + 1) * mRowPlace[cell % mCols];
+				}
+				if (tile % mCols == cell % mCols) {
+					mColKeys[cell % mCols] += (tile / mCols + 1) * mColPlace[cell / mCols];
+				}
+			}
+		}
+		mConflicts = 0;
+		for (int key : mRowKeys) {
+			mConflicts += mRowTable[key];
+		}
+		for (int key : mColKeys) {
+			mConflicts += mColTable[key];
+		}
+		return getValue();
+	}
+
+	public int applyMove(int tile, int from, int to) {
+		mManhattan.applyMove(tile, from, to);
+		move(tile, from, to);
+		return getValue();
+	}
+
+	public int undoMove(int tile, int from, int to) {
+		mManhattan.undoMove(tile, from, to);
+		move(tile, to, from);
+		return getValue();
+	}
+
+	private void move(int tile, int from, int to) {
+		int goalRow = tile / mCols;
+		int goalCol = tile % mCols;
+		int fromRow = from / mCols;
+		int fromCol = from % mCols;
+		int toRow = to / mCols;
+		int toCol = to % mCols;
+		if (goalRow == fromRow) {
+			changeRow(fromRow, -(goalCol + 1) * mRowPlace[fromCol]);
+		}
+		if (goalRow == toRow) {
+			changeRow(toRow, (goalCol + 1) * mRowPlace[toCol]);
+		}
+		if (goalCol == fromCol) {
+			changeCol(fromCol, -(goalRow + 1) * mColPlace[fromRow]);
+		}
+		if (goalCol == toCol) {
+			changeCol(toCol, (goalRow + 1) * mColPlace[toRow]);
+		}
+	}
+
+	private void changeRow(int row, int delta) {
+		mConflicts -= mRowTable[mRowKeys[row]];
+		mRowKeys[row] += delta;
+		mConflicts += mRowTable[mRowKeys[row]];
+	}
+
+	private void changeCol(int col, int delta) {
+		mConflicts -= mColTable[mColKeys[col]];
+		mColKeys[col] += delta;
+		mConflicts += mColTable[mColKeys[col]];
+	}
+
+	public int getStateBits() {
+		return 0;
+	}
+
+	public int save() {
+		return 0;
+	}
+
+	public int restore(int[] tiles, int state) {
+		// the line keys are rebuilt in one pass over the board, they do not fit in a saved state
+		return init(tiles);
+	}
+
+	public int getValue() {
+		return mManhattan.getValue() + mConflicts;
+	}
+
+	public String getName() {
+		return "linear_conflict";
+	}
+}
@@ -0,0 +1,75 @@
+package com.shaneahern.puzzle.solver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file of longs sequentially through a file channel and a direct buffer, with a one value look ahead for
+ * merging sorted files.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+class LongFileReader {
+
+	private final FileInputStream mIn;
+	private final FileChannel mChannel;
+	private final ByteBuffer mBuffer;
+	private boolean mHasNext;
+	private long mNext;
+	private boolean mEof;
+
+	/**
+     * @param file
+     * 			File to read
+     * @param bufferBytes
+     * 			Size of the read buffer
+     */
+	LongFileReader(File file, int bufferBytes) throws IOException {
+		mIn = new FileInputStream(file);
+		mChannel = mIn.getChannel();
+		mBuffer = ByteBuffer.allocateDirect(Math.max(8, bufferBytes & ~7));
+		mBuffer.flip();
+		advance();
+	}
+
+	boolean hasNext() {
+		return mHasNext;
+	}
+
+	/**
+     * @return long next value, without consuming it
+     */
+	long peek() {
+		return mNext;
+	}
+
+	long next() throws IOException {
+		long value = mNext;
+		advance();
+		return value;
+	}
+
+	private void advance() throws IOException {
+		if (mBuffer.remaining() < 8 && !mEof) {
+			mBuffer.compact();
+			while (mBuffer.hasRemaining()) {
+				if (mChannel.read(mBuffer) < 0) {
+					mEof = true;
+					break;
+				}
+			}
+			mBuffer.flip();
+		}
+		mHasNext = mBuffer.remaining() >= 8;
+		if (mHasNext) {
+			mNext = mBuffer.getLong();
+		}
+	}
+
+	void close() throws IOException {
+		mIn.close();
+	}
+}
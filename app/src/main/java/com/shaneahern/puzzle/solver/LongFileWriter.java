@@ -0,0 +1,66 @@
+package com.shaneahern.puzzle.solver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a file of longs sequentially through a file channel and a large direct buffer, which keeps the buffer out
+ * of the heap and writes in large sequential chunks.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+class LongFileWriter {
+
+	private final FileOutputStream mOut;
+	private final FileChannel mChannel;
+	private final ByteBuffer mBuffer;
+	private long mCount;
+
+	/**
+     * @param file
+     * 			File to create or truncate
+     * @param bufferBytes
+     * 			Size of the write buffer
+     */
+	LongFileWriter(File file, int bufferBytes) throws IOException {
+		mOut = new FileOutputStream(file);
+		mChannel = mOut.getChannel();
+		mBuffer = ByteBuffer.allocateDirect(Math.max(8, bufferBytes & ~7));
+	}
+
+	void write(long value) throws IOException {
+		if (!mBuffer.hasRemaining()) {
+			drain();
+		}
+		mBuffer.putLong(value);
+		mCount++;
+	}
+
+	long getCount() {
+		return mCount;
+	}
+
+	private void drain() throws IOException {
+		mBuffer.flip();
+		while (mBuffer.hasRemaining()) {
+			mChannel.write(mBuffer);
+		}
+		mBuffer.clear();
+	}
+
+	/**
+     * Write out the buffer, force the file to disk and close it
+     *
+     */
+	void close() throws IOException {
+		try {
+			drain();
+			mChannel.force(true);
+		} finally {
+			mOut.close();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.shaneahern.puzzle.solver;
+
+import java.util.Arrays;
+
+/**
+ * Map from long keys to int values in two parallel arrays, with open addressing and linear probing from a
+ * multiplicative hash of the key, so a lookup is a few array reads with no boxing and no entry objects. Key 0 marks
+ * an empty entry in the key array, so it is held apart in a field.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class LongIntHashMap {
+
+	private static final int MAX_LOAD_PERCENT = 60;
+
+	private final int mMissing;
+	private long[] mKeys;
+	private int[] mValues;
+	private int mBits;
+	private int mMask;
+	private int mMaxSize;
+	private int mSize;
+	private boolean mHasZero;
+	private int mZeroValue;
+
+	/**
+     * @param expectedSize
+     * 			Number of keys to hold before the arrays first grow
+     * @param missing
+     * 			Value returned for a key that is not in the map
+     */
+	public LongIntHashMap(int expectedSize, int missing) {
+		mMissing = missing;
+		int bits = 4;
+		while (((1L << bits) * MAX_LOAD_PERCENT / 100) < expectedSize) {
+			bits++;
+		}
+		allocate(bits);
+	}
+
+	private void allocate(int bits) {
+		if (bits > 30) {
+			throw new IllegalStateException("Map is full");
+		}
+		mBits = bits;
+		mMask = (1 << bits) - 1;
+		mMaxSize = (int)((1L << bits) * MAX_LOAD_PERCENT / 100);
+		mKeys = new long[1 << bits];
+		mValues = new int[1 << bits];
+	}
+
+	private int hash(long key) {
+		return (int)((key * 0x9e3779b97f4a7c15L) >>> (64 - mBits));
+	}
+
+	/**
+     * @return int value of the key, or the missing value
+     */
+	public int get(long key) {
+		if (key == 0) {
+			return mHasZero ? mZeroValue : mMissing;
+		}
+		long[] keys = mKeys;
+		int i = hash(key);
+		while (true) {
+			long k = keys[i];
+			if (k == key) {
+				return mValues[i];
+			}
+			if (k == 0) {
+				return mMissing;
+			}
+			i = (i + 1) & mMask;
+		}
+	}
+
+	/**
+     * @return int previous value of the key, or the missing value
+     */
+	public int put(long key, int value) {
+		if (key == 0) {
+			int previous = mHasZero ? mZeroValue : mMissing;
+			if (!mHasZero) {
+				mHasZero = true;
+				mSize++;
+			}
+			mZeroValue = value;
+			return previous;
+		}
+		int i = hash(key);
+		while (true) {
+			long k = mKeys[i];
+			if (k == key) {
+				int previous = mValues[i];
+				mValues[i] = value;
+				return previous;
+			}
+			if (k == 0) {
+				break;
+			}
+			i = (i + 1) & mMask;
+		}
+		mKeys[i] = key;
+		mValues[i] = value;
+		if (++mSize > mMaxSize) {
+			grow();
+		}
+		return mMissing;
+	}
+
+	private void grow() {
+		long[] keys = mKeys;
+		int[] values = mValues;
+		allocate(mBits + 1);
+		for (int j=0; j < keys.length; j++) {
+			long key = keys[j];
+			if (key != 0) {
+				int i = hash(key);
+				while (mKeys[i] != 0) {
+					i = (i + 1) & mMask;
+				}
+				mKeys[i] = key;
+				mValues[i] = values[j];
+			}
+		}
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	/**
+     * @return int number of entries in the arrays
+     */
+	public int capacity() {
+		return mKeys.length;
+	}
+
+	/**
+     * Remove every key, keeping the arrays
+     *
+     */
+	public void clear() {
+		Arrays.fill(mKeys, 0);
+		mHasZero = false;
+		mSize = 0;
+	}
+}
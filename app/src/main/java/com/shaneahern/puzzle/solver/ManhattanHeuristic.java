@@ -0,0 +1,70 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Sum over all tiles of the rows plus columns between the tile and its solved cell. Every move brings one tile at
+ * most one step closer, so it never overestimates. A move changes the distance of the moving tile only, which is
+ * looked up in a table of the distance of every tile from every cell.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class ManhattanHeuristic implements Heuristic {
+
+	// distance of tile t in cell c at [t][c], 0 for the empty tile
+	private final int[][] mDistance;
+	private int mValue;
+
+	/**
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     */
+	public ManhattanHeuristic(int rows, int cols) {
+		int size = rows * cols;
+		mDistance = new int[size][size];
+		for (int tile=1; tile < size; tile++) {
+			for (int cell=0; cell < size; cell++) {
+				mDistance[tile][cell] = Math.abs(cell / cols - tile / cols) + Math.abs(cell % cols - tile % cols);
+			}
+		}
+	}
+
+	public int init(int[] tiles) {
+		mValue = 0;
+		for (int cell=0; cell < tiles.length; cell++) {
+			mValue += mDistance[tiles[cell]][cell];
+		}
+		return mValue;
+	}
+
+	public int applyMove(int tile, int from, int to) {
+		mValue += mDistance[tile][to] - mDistance[tile][from];
+		return mValue;
+	}
+
+	public int undoMove(int tile, int from, int to) {
+		mValue -= mDistance[tile][to] - mDistance[tile][from];
+		return mValue;
+	}
+
+	public int getStateBits() {
+		return 0;
+	}
+
+	public int save() {
+		return 0;
+	}
+
+	public int restore(int[] tiles, int state) {
+		// a pass of table lookups over the board, as cheap as reading a saved value back
+		return init(tiles);
+	}
+
+	public int getValue() {
+		return mValue;
+	}
+
+	public String getName() {
+		return "manhattan";
+	}
+}
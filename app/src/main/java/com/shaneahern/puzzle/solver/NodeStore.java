@@ -0,0 +1,77 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Nodes of a best first search, each a packed board (see PackedBoard) with the number of moves that reached it,
+ * the node it was reached from and the saved state of the heuristic for the board (see Heuristic.save()), so the
+ * heuristic is restored rather than recomputed when the node is expanded. Nodes are numbered by slot in the order
+ * they are added and found by board, so a solver keeps slots in its open list and follows parent slots back to the
+ * start to recover the solution. The storage behind the slots is up to the implementation, which lets a solver
+ * move between the heap and off heap storage without change.
+ *
+ * Stores are not thread safe.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public interface NodeStore {
+
+	public static final int NONE = -1;
+
+	/**
+     * @param state
+     * 			Packed board
+     * @return int slot of the board, or NONE if it has not been added
+     */
+	public int find(long state);
+
+	/**
+     * Add a board that is not in the store
+     *
+     * @param state
+     * 			Packed board
+     * @param g
+     * 			Number of moves from the start
+     * @param parent
+     * 			Slot of the node the board was reached from, or NONE for the start
+     * @param heuristicState
+     * 			Saved heuristic state of the board
+     * @return int slot of the new node
+     */
+	public int add(long state, int g, int parent, int heuristicState);
+
+	public long getState(int slot);
+
+	public int getG(int slot);
+
+	public int getParent(int slot);
+
+	public int getHeuristicState(int slot);
+
+	/**
+     * Record a shorter way to a node
+     *
+     * @param slot
+     * 			Slot of the node
+     * @param g
+     * 			New number of moves from the start
+     * @param parent
+     * 			Slot of the node it is now reached from
+     */
+	public void update(int slot, int g, int parent);
+
+	/**
+     * @return int number of nodes
+     */
+	public int size();
+
+	/**
+     * Remove every node, keeping the memory for reuse
+     *
+     */
+	public void clear();
+
+	/**
+     * Release the memory of the store, which cannot be used afterwards
+     *
+     */
+	public void close();
+}
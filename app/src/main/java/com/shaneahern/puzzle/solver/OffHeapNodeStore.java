@@ -0,0 +1,272 @@
+package com.shaneahern.puzzle.solver;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * Node store kept out of the Java heap, so a search of hundreds of millions of nodes needs neither a huge heap nor
+ * a collector that walks every node. Nodes are 16 byte records, board, parent slot and g, in fixed size segments
+ * indexed by slot. Heuristic states are 4 byte entries in segments of their own, indexed by slot the same way, so
+ * records keep a power of two size. Boards are found through an open addressing table of slots, also in segments,
+ * probed linearly from a multiplicative hash of the board and doubled when it is 70% full, about 28 bytes a node in
+ * all.
+ *
+ * Segments come from direct buffers up to a memory cap. Past the cap they are mapped from files in a spill
+ * directory and paged to and from disk by the kernel, which keeps the nodes added early, most of the search, in
+ * memory. Direct buffers also count against the JVM limit on direct memory, -XX:MaxDirectMemorySize.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class OffHeapNodeStore implements NodeStore {
+
+	public static final int DEFAULT_SEGMENT_BYTES = 1 << 24;
+
+	private static final int RECORD_BYTES = 16;
+	private static final int RECORD_SHIFT = 4;
+	private static final int PARENT_OFFSET = 8;
+	private static final int G_OFFSET = 12;
+	private static final int INITIAL_INDEX_BITS = 12;
+	private static final int MAX_LOAD_PERCENT = 70;
+
+	private final SegmentAllocator mAllocator;
+	private final int mSegmentBytes;
+	// records per segment is 1 << mRecordsShift
+	private final int mRecordsShift;
+	private final int mRecordsMask;
+
+	private ByteBuffer[] mRecords;
+	private int mRecordSegments;
+	private int mSize;
+
+	// heuristic state of each slot, heuristic states per segment is 1 << mHeuristicShift
+	private final int mHeuristicShift;
+	private final int mHeuristicMask;
+	private ByteBuffer[] mHeuristicStates;
+	private int mHeuristicSegments;
+
+	// index of slot + 1 for each entry, 0 for an empty entry
+	private ByteBuffer[] mIndex;
+	private int mIndexBits;
+	private int mIndexMask;
+	private int mEntriesShift;
+	private int mEntriesMask;
+	private int mMaxSize;
+
+	/**
+     * @param memoryCapBytes
+     * 			Most bytes of direct memory to use
+     * @param spillDir
+     * 			Directory to spill to past the cap, or null to throw IllegalStateException instead
+     */
+	public OffHeapNodeStore(long memoryCapBytes, File spillDir) {
+		this(memoryCapBytes, spillDir, DEFAULT_SEGMENT_BYTES);
+	}
+
+	/**
+     * @param memoryCapBytes
+     * 			Most bytes of direct memory to use
+     * @param spillDir
+     * 			Directory to spill to past the cap, or null to throw IllegalStateException instead
+     * @param segmentBytes
+     * 			Size of each segment, a power of two of at least 4096 bytes
+     */
+	public OffHeapNodeStore(long memoryCapBytes, File spillDir, int segmentBytes) {
+		if (segmentBytes < 4096 || Integer.bitCount(segmentBytes) != 1) {
+			throw new IllegalArgumentException("Segment size " + segmentBytes + " is not a power of two of at least 4096");
+		}
+		mAllocator = new SegmentAllocator(memoryCapBytes, spillDir);
+		mSegmentBytes = segmentBytes;
+		mRecordsShift = Integer.numberOfTrailingZeros(segmentBytes) - RECORD_SHIFT;
+		mRecordsMask = (1 << mRecordsShift) - 1;
+		mRecords = new ByteBuffer[16];
+		mHeuristicShift = Integer.numberOfTrailingZeros(segmentBytes) - 2;
+		mHeuristicMask = (1 << mHeuristicShift) - 1;
+		mHeuristicStates = new ByteBuffer[4];
+		mIndex = allocateIndex(INITIAL_INDEX_BITS);
+	}
+
+	private ByteBuffer[] allocateIndex(int bits) {
+		mIndexBits = bits;
+		mIndexMask = (1 << bits) - 1;
+		mMaxSize = (int)((1L << bits) * MAX_LOAD_PERCENT / 100);
+		long bytes = 4L << bits;
+		int segmentBytes = (int)Math.min(bytes, mSegmentBytes);
+		mEntriesShift = Integer.numberOfTrailingZeros(segmentBytes) - 2;
+		mEntriesMask = (1 << mEntriesShift) - 1;
+		ByteBuffer[] index = new ByteBuffer[(int)(bytes / segmentBytes)];
+		for (int i=0; i < index.length; i++) {
+			index[i] = mAllocator.allocate(segmentBytes);
+		}
+		return index;
+	}
+
+	private int hash(long state) {
+		return (int)((state * 0x9e3779b97f4a7c15L) >>> (64 - mIndexBits));
+	}
+
+	private int getEntry(int i) {
+		return mIndex[i >>> mEntriesShift].getInt((i & mEntriesMask) << 2);
+	}
+
+	private void setEntry(int i, int entry) {
+		mIndex[i >>> mEntriesShift].putInt((i & mEntriesMask) << 2, entry);
+	}
+
+	private ByteBuffer record(int slot) {
+		return mRecords[slot >>> mRecordsShift];
+	}
+
+	private int offset(int slot) {
+		return (slot & mRecordsMask) << RECORD_SHIFT;
+	}
+
+	@Override
+	public int find(long state) {
+		int i = hash(state);
+		while (true) {
+			int entry = getEntry(i);
+			if (entry == 0) {
+				return NONE;
+			}
+			if (getState(entry - 1) == state) {
+				return entry - 1;
+			}
+			i = (i + 1) & mIndexMask;
+		}
+	}
+
+	@Override
+	public int add(long state, int g, int parent, int heuristicState) {
+		if (mSize == Integer.MAX_VALUE - 1) {
+			throw new IllegalStateException("Node store is full");
+		}
+		if (mSize >= mMaxSize) {
+			growIndex();
+		}
+		int slot = mSize++;
+		int segment = slot >>> mRecordsShift;
+		if (segment == mRecordSegments) {
+			if (segment == mRecords.length) {
+				ByteBuffer[] records = new ByteBuffer[segment * 2];
+				System.arraycopy(mRecords, 0, records, 0, segment);
+				mRecords = records;
+			}
+			mRecords[segment] = mAllocator.allocate(mSegmentBytes);
+			mRecordSegments++;
+		}
+		ByteBuffer buffer = mRecords[segment];
+		int offset = offset(slot);
+		buffer.putLong(offset, state);
+		buffer.putInt(offset + PARENT_OFFSET, parent);
+		buffer.putInt(offset + G_OFFSET, g);
+		int heuristicSegment = slot >>> mHeuristicShift;
+		if (heuristicSegment == mHeuristicSegments) {
+			if (heuristicSegment == mHeuristicStates.length) {
+				ByteBuffer[] states = new ByteBuffer[heuristicSegment * 2];
+				System.arraycopy(mHeuristicStates, 0, states, 0, heuristicSegment);
+				mHeuristicStates = states;
+			}
+			mHeuristicStates[heuristicSegment] = mAllocator.allocate(mSegmentBytes);
+			mHeuristicSegments++;
+		}
+		mHeuristicStates[heuristicSegment].putInt((slot & mHeuristicMask) << 2, heuristicState);
+		insert(state, slot);
+		return slot;
+	}
+
+	private void insert(long state, int slot) {
+		int i = hash(state);
+		while (getEntry(i) != 0) {
+			i = (i + 1) & mIndexMask;
+		}
+		setEntry(i, slot + 1);
+	}
+
+	private void growIndex() {
+		ByteBuffer[] old = mIndex;
+		mIndex = allocateIndex(mIndexBits + 1);
+		for (ByteBuffer buffer : old) {
+			mAllocator.free(buffer);
+		}
+		// the records are read in order, rather than the old table
+		for (int slot=0; slot < mSize; slot++) {
+			insert(getState(slot), slot);
+		}
+	}
+
+	@Override
+	public long getState(int slot) {
+		return record(slot).getLong(offset(slot));
+	}
+
+	@Override
+	public int getG(int slot) {
+		return record(slot).getInt(offset(slot) + G_OFFSET);
+	}
+
+	@Override
+	public int getParent(int slot) {
+		return record(slot).getInt(offset(slot) + PARENT_OFFSET);
+	}
+
+	@Override
+	public int getHeuristicState(int slot) {
+		return mHeuristicStates[slot >>> mHeuristicShift].getInt((slot & mHeuristicMask) << 2);
+	}
+
+	@Override
+	public void update(int slot, int g, int parent) {
+		ByteBuffer buffer = record(slot);
+		int offset = offset(slot);
+		buffer.putInt(offset + PARENT_OFFSET, parent);
+		buffer.putInt(offset + G_OFFSET, g);
+	}
+
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	@Override
+	public void clear() {
+		for (ByteBuffer buffer : mIndex) {
+			for (int i=0; i < buffer.capacity(); i += 8) {
+				buffer.putLong(i, 0);
+			}
+		}
+		mSize = 0;
+	}
+
+	@Override
+	public void close() {
+		for (int i=0; i < mRecordSegments; i++) {
+			mAllocator.free(mRecords[i]);
+			mRecords[i] = null;
+		}
+		for (int i=0; i < mHeuristicSegments; i++) {
+			mAllocator.free(mHeuristicStates[i]);
+			mHeuristicStates[i] = null;
+		}
+		for (ByteBuffer buffer : mIndex) {
+			mAllocator.free(buffer);
+		}
+		mRecordSegments = 0;
+		mHeuristicSegments = 0;
+		mIndex = new ByteBuffer[0];
+		mSize = 0;
+	}
+
+	/**
+     * @return long bytes of direct memory in use
+     */
+	public long getDirectBytes() {
+		return mAllocator.getDirectBytes();
+	}
+
+	/**
+     * @return long bytes spilled to mapped files
+     */
+	public long getMappedBytes() {
+		return mAllocator.getMappedBytes();
+	}
+}
@@ -0,0 +1,82 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Boards of up to 16 cells packed in a long, four bits per cell with cell i in bits 4i to 4i + 3. Packed boards are
+ * compared, sorted and hashed as plain longs, which is what makes them cheap to keep in large sorted files and
+ * primitive hash tables. Packed boards of 16 cells use the sign bit, so every consumer must order them the same
+ * way, as signed longs.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class PackedBoard {
+
+	public static final int MAX_CELLS = 16;
+
+	private PackedBoard() {
+	}
+
+	/**
+     * @param tiles
+     * 			Tile in each cell, each 0 to 15
+     * @return long packed board
+     * @throws IllegalArgumentException if the board has more than MAX_CELLS cells
+     */
+	public static long pack(int[] tiles) {
+		if (tiles.length > MAX_CELLS) {
+			throw new IllegalArgumentException(tiles.length + " cells do not fit in a packed board");
+		}
+		long state = 0;
+		for (int cell=0; cell < tiles.length; cell++) {
+			state |= (long)tiles[cell] << (cell * 4);
+		}
+		return state;
+	}
+
+	/**
+     * @param state
+     * 			Packed board
+     * @param tiles
+     * 			Set to the tile in each cell, its length is the number of cells
+     */
+	public static void unpack(long state, int[] tiles) {
+		for (int cell=0; cell < tiles.length; cell++) {
+			tiles[cell] = get(state, cell);
+		}
+	}
+
+	public static int get(long state, int cell) {
+		return (int)(state >>> (cell * 4)) & 0xf;
+	}
+
+	/**
+     * @param state
+     * 			Packed board
+     * @param cells
+     * 			Number of cells
+     * @return int cell of the empty tile
+     */
+	public static int findBlank(long state, int cells) {
+		for (int cell=0; cell < cells; cell++) {
+			if (get(state, cell) == 0) {
+				return cell;
+			}
+		}
+		throw new IllegalArgumentException("No empty tile in " + Long.toHexString(state));
+	}
+
+	/**
+     * Slide the tile in a cell into the empty cell
+     *
+     * @param state
+     * 			Packed board
+     * @param blank
+     * 			Cell of the empty tile
+     * @param from
+     * 			Cell of the tile that moves, the empty cell after the move
+     * @return long packed board after the move
+     */
+	public static long move(long state, int blank, int from) {
+		long tile = (state >>> (from * 4)) & 0xf;
+		return (state & ~(0xfL << (from * 4))) | (tile << (blank * 4));
+	}
+}
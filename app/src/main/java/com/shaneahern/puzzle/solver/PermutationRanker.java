@@ -0,0 +1,307 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Bijection between the arrangements of k distinct values taken from 0 to n - 1 and the indexes 0 to
+ * n! / (n - k)! - 1, for dense tables indexed by board, such as pattern databases, distance tables and visited bit
+ * sets. A full permutation is the case k = n.
+ *
+ * Two orders are offered. LEXICOGRAPHIC ranks arrangements in dictionary order, so nearby indexes share a prefix,
+ * and counts the smaller unused values with a bit mask rather than a nested loop. MYRVOLD_RUSKEY ranks in an order
+ * with no meaning, but ranking and unranking both take a single pass of swaps.
+ *
+ * Rankers keep scratch arrays for the Myrvold-Ruskey swaps and never allocate after construction, so a ranker must
+ * not be shared between threads.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class PermutationRanker {
+
+	public static final int LEXICOGRAPHIC = 0;
+	public static final int MYRVOLD_RUSKEY = 1;
+
+	// largest n the bit masks of used values hold, the number of arrangements must also fit in a long
+	public static final int MAX_ELEMENTS = 64;
+
+	// position of the d-th set bit of each byte, at byte * 8 + d
+	private static final byte[] SELECT_IN_BYTE = new byte[256 * 8];
+
+	static {
+		for (int b=0; b < 256; b++) {
+			int d = 0;
+			for (int bit=0; bit < 8; bit++) {
+				if ((b & (1 << bit)) != 0) {
+					SELECT_IN_BYTE[b * 8 + d++] = (byte)bit;
+				}
+			}
+		}
+	}
+
+	private final int mN;
+	private final int mK;
+	private final int mOrder;
+	private final long mSize;
+	// weight of the digit of each position, the number of arrangements of the positions after it
+	private final long[] mWeights;
+	// first position whose weight and digits fit in an int, from which division is done in ints
+	private final int mIntStart;
+	private final int[] mPerm;
+	private final int[] mInverse;
+
+	/**
+     * @param n
+     * 			Number of values, at most MAX_ELEMENTS
+     * @param k
+     * 			Number of values in each arrangement, at most n, and few enough that n! / (n - k)! fits in a long
+     * @param order
+     * 			LEXICOGRAPHIC or MYRVOLD_RUSKEY
+     */
+	public PermutationRanker(int n, int k, int order) {
+		if (n < 1 || n > MAX_ELEMENTS || k < 1 || k > n) {
+			throw new IllegalArgumentException("Cannot rank " + k + " of " + n + " values");
+		}
+		if (order != LEXICOGRAPHIC && order != MYRVOLD_RUSKEY) {
+			throw new IllegalArgumentException("Unknown order " + order);
+		}
+		mN = n;
+		mK = k;
+		mOrder = order;
+		mWeights = new long[k];
+		long weight = 1;
+		for (int i=k - 1; i >= 0; i--) {
+			mWeights[i] = weight;
+			if (weight > Long.MAX_VALUE / (n - i)) {
+				throw new IllegalArgumentException("Arrangements of " + k + " of " + n + " values do not fit in a long");
+			}
+			weight *= n - i;
+		}
+		mSize = weight;
+		int intStart = 0;
+		while (intStart < k && mWeights[intStart] * (n - intStart) > Integer.MAX_VALUE) {
+			intStart++;
+		}
+		mIntStart = intStart;
+		mPerm = new int[n];
+		mInverse = new int[n];
+	}
+
+	public int getN() {
+		return mN;
+	}
+
+	public int getK() {
+		return mK;
+	}
+
+	/**
+     * @return long number of arrangements, one more than the largest rank
+     */
+	public long size() {
+		return mSize;
+	}
+
+	/**
+     * @param values
+     * 			Distinct values from 0 to n - 1, only the first k are read
+     * @return long index of the arrangement
+     */
+	public long rank(int[] values) {
+		if (mOrder == LEXICOGRAPHIC) {
+			return rankLexicographic(values);
+		}
+		return rankMyrvoldRuskey(values);
+	}
+
+	/**
+     * @param rank
+     * 			Index from 0 to size() - 1
+     * @param values
+     * 			Set to the arrangement in the first k entries
+     */
+	public void unrank(long rank, int[] values) {
+		if (mOrder == LEXICOGRAPHIC) {
+			unrankLexicographic(rank, values);
+		} else {
+			unrankMyrvoldRuskey(rank, values);
+		}
+	}
+
+	private long rankLexicographic(int[] values) {
+		long rank = 0;
+		long used = 0;
+		for (int i=0; i < mK; i++) {
+			int value = values[i];
+			// unused values smaller than this one
+			int smaller = value - Long.bitCount(used & ((1L << value) - 1));
+			rank += smaller * mWeights[i];
+			used |= 1L << value;
+		}
+		return rank;
+	}
+
+	private void unrankLexicographic(long rank, int[] values) {
+		long free = -1L >>> (64 - mN);
+		int i = 0;
+		for (; i < mIntStart; i++) {
+			int digit = (int)(rank / mWeights[i]);
+			rank -= digit * mWeights[i];
+			free = place(values, i, digit, free);
+		}
+		// the rest of the rank is less than the weight of the position before, which fits in an int
+		int intRank = (int)rank;
+		for (; i < mK; i++) {
+			int weight = (int)mWeights[i];
+			int digit = intRank / weight;
+			intRank -= digit * weight;
+			free = place(values, i, digit, free);
+		}
+	}
+
+	/**
+     * Set a position to the digit-th smallest unused value
+     *
+     * @return long bit mask of the values still unused
+     */
+	private static long place(int[] values, int i, int digit, long free) {
+		long bits = free;
+		int base = 0;
+		int count = Integer.bitCount((int)bits & 0xff);
+		while (digit >= count) {
+			digit -= count;
+			bits >>>= 8;
+			base += 8;
+			count = Integer.bitCount((int)bits & 0xff);
+		}
+		int value = base + SELECT_IN_BYTE[((int)bits & 0xff) * 8 + digit];
+		values[i] = value;
+		return free & ~(1L << value);
+	}
+
+	/**
+     * Myrvold and Ruskey's rank, read from the last position down. The arrangement is laid out in the last k
+     * positions of a permutation, reversed, so only the digits of those positions are produced and the values
+     * outside the arrangement can fill the other positions in any order.
+     *
+     */
+	private long rankMyrvoldRuskey(int[] values) {
+		int[] perm = mPerm;
+		int[] inverse = mInverse;
+		long used = 0;
+		for (int i=0; i < mK; i++) {
+			perm[mN - 1 - i] = values[i];
+			inverse[values[i]] = mN - 1 - i;
+			used |= 1L << values[i];
+		}
+		int position = 0;
+		for (int value=0; value < mN; value++) {
+			if ((used & (1L << value)) == 0) {
+				perm[position] = value;
+				inverse[value] = position++;
+			}
+		}
+		long rank = 0;
+		long multiplier = 1;
+		for (int i=mN; i > mN - mK; i--) {
+			int s = perm[i - 1];
+			int j = inverse[i - 1];
+			perm[j] = s;
+			perm[i - 1] = i - 1;
+			inverse[s] = j;
+			inverse[i - 1] = i - 1;
+			rank += s * multiplier;
+			multiplier *= i;
+		}
+		return rank;
+	}
+
+	private void unrankMyrvoldRuskey(long rank, int[] values) {
+		int[] perm = mPerm;
+		for (int i=0; i < mN; i++) {
+			perm[i] = i;
+		}
+		int i = mN;
+		for (; i > mN - mK && rank > Integer.MAX_VALUE; i--) {
+			long quotient = rank / i;
+			int j = (int)(rank - quotient * i);
+			rank = quotient;
+			int swap = perm[i - 1];
+			perm[i - 1] = perm[j];
+			perm[j] = swap;
+		}
+		int intRank = (int)rank;
+		for (; i > mN - mK; i--) {
+			int quotient = intRank / i;
+			int j = intRank - quotient * i;
+			intRank = quotient;
+			int swap = perm[i - 1];
+			perm[i - 1] = perm[j];
+			perm[j] = swap;
+		}
+		for (int j=0; j < mK; j++) {
+			values[j] = perm[mN - 1 - j];
+		}
+	}
+
+	/**
+     * Index of a full permutation among the permutations of the same parity. Exchanging the last two values gives
+     * the one permutation of the other parity with the same index, in either order, so the index of half the
+     * permutations is a bijection onto 0 to size() / 2 - 1.
+     *
+     * @param values
+     * 			Permutation of 0 to n - 1
+     * @return long index from 0 to size() / 2 - 1
+     */
+	public long rankHalf(int[] values) {
+		checkHalf();
+		long rank = rank(values);
+		if (mOrder == LEXICOGRAPHIC) {
+			// exchanging the last two values changes only the last digit, which is 0 or 1
+			return rank >>> 1;
+		}
+		// the last two values are the first two positions of the swaps, exchanging them changes only the digit of
+		// the last swap, which has weight n! / 2
+		long half = mSize >>> 1;
+		return rank >= half ? rank - half : rank;
+	}
+
+	/**
+     * Inverse of rankHalf, which sets one of the pair of permutations with the index, exchanging the last two
+     * values turns it into the other
+     *
+     */
+	public void unrankHalf(long index, int[] values) {
+		checkHalf();
+		unrank(mOrder == LEXICOGRAPHIC ? index << 1 : index, values);
+	}
+
+	private void checkHalf() {
+		if (mK != mN || mN < 2) {
+			throw new IllegalStateException("Half ranks need a full permutation of at least two values");
+		}
+	}
+
+	/**
+     * @param values
+     * 			Permutation of 0 to n - 1
+     * @param n
+     * 			Number of values, at most 32
+     * @return int 0 if the permutation is even, 1 if it is odd
+     */
+	public static int parity(int[] values, int n) {
+		int visited = 0;
+		int swaps = 0;
+		for (int start=0; start < n; start++) {
+			if ((visited & (1 << start)) != 0) {
+				continue;
+			}
+			// a cycle of length l is l - 1 swaps
+			int value = start;
+			do {
+				visited |= 1 << value;
+				value = values[value];
+				swaps++;
+			} while (value != start);
+			swaps--;
+		}
+		return swaps & 1;
+	}
+}
@@ -0,0 +1,242 @@
+package com.shaneahern.puzzle.solver;
+
+import java.util.Random;
+
+import com.shaneahern.puzzle.PuzzleModel;
+import com.shaneahern.puzzle.PuzzlePosition;
+
+/**
+ * A puzzle board to solve, as the tile in each cell in row major order. Tiles are numbered like PuzzleModel numbers
+ * them: tile i belongs in cell i and the empty tile is 0, so the solved board has the empty tile in the top left
+ * corner. This is also the numbering of the standard published benchmark instances, which can be read with parse().
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class PuzzleInstance {
+
+	private final String mId;
+	private final int mRows;
+	private final int mCols;
+	private final int[] mTiles;
+
+	/**
+     * @param id
+     * 			Name of the instance in reports
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @param tiles
+     * 			Tile in each cell in row major order, 0 for the empty tile
+     * @throws IllegalArgumentException if tiles is not a permutation of the tiles of the puzzle
+     */
+	public PuzzleInstance(String id, int rows, int cols, int[] tiles) {
+		if (tiles.length != rows * cols) {
+			throw new IllegalArgumentException(id + ": " + tiles.length + " tiles for a " + rows + "x" + cols + " puzzle");
+		}
+		boolean[] seen = new boolean[tiles.length];
+		for (int tile : tiles) {
+			if (tile < 0 || tile >= tiles.length || seen[tile]) {
+				throw new IllegalArgumentException(id + ": tiles are not a permutation");
+			}
+			seen[tile] = true;
+		}
+		mId = id;
+		mRows = rows;
+		mCols = cols;
+		mTiles = tiles.clone();
+	}
+
+	/**
+     * Parse an instance from a line of whitespace separated numbers, the tiles optionally preceded by an id, e.g.
+     * the lines of the published 4x4 benchmark sets
+     *
+     * @param line
+     * 			Line to parse
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @param defaultId
+     * 			Id of the instance if the line has none
+     * @throws IllegalArgumentException if the line is not a board of the given size
+     */
+	public static PuzzleInstance parse(String line, int rows, int cols, String defaultId) {
+		String[] fields = line.trim().split("\\s+");
+		int first = fields.length - rows * cols;
+		if (first != 0 && first != 1) {
+			throw new IllegalArgumentException("Not a " + rows + "x" + cols + " instance: " + line);
+		}
+		int[] tiles = new int[rows * cols];
+		try {
+			for (int i=0; i < tiles.length; i++) {
+				tiles[i] = Integer.parseInt(fields[first + i]);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a " + rows + "x" + cols + " instance: " + line);
+		}
+		return new PuzzleInstance(first == 1 ? fields[0] : defaultId, rows, cols, tiles);
+	}
+
+	/**
+     * Uniformly random solvable board
+     *
+     */
+	public static PuzzleInstance randomPermutation(String id, int rows, int cols, Random random) {
+		int[] tiles = new int[rows * cols];
+		for (int i=0; i < tiles.length; i++) {
+			tiles[i] = i;
+		}
+		for (int i=tiles.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tile = tiles[i];
+			tiles[i] = tiles[j];
+			tiles[j] = tile;
+		}
+		if (!isSolvable(tiles, cols)) {
+			// swapping two tiles other than the empty one flips the parity
+			int a = tiles[0] == 0 ? 1 : 0;
+			int b = tiles[2] == 0 ? 1 : 2;
+			int tile = tiles[a];
+			tiles[a] = tiles[b];
+			tiles[b] = tile;
+		}
+		return new PuzzleInstance(id, rows, cols, tiles);
+	}
+
+	/**
+     * Board reached from the solved board by a random walk of the empty tile that never steps straight back, whose
+     * difficulty grows with the length of the walk
+     *
+     */
+	public static PuzzleInstance randomWalk(String id, int rows, int cols, int moves, Random random) {
+		int[] tiles = new int[rows * cols];
+		for (int i=0; i < tiles.length; i++) {
+			tiles[i] = i;
+		}
+		int blank = 0;
+		int previous = -1;
+		int[] neighbours = new int[4];
+		for (int m=0; m < moves; m++) {
+			int count = 0;
+			int row = blank / cols;
+			int col = blank % cols;
+			if (row > 0) {
+				neighbours[count++] = blank - cols;
+			}
+			if (row < rows - 1) {
+				neighbours[count++] = blank + cols;
+			}
+			if (col > 0) {
+				neighbours[count++] = blank - 1;
+			}
+			if (col < cols - 1) {
+				neighbours[count++] = blank + 1;
+			}
+			int next;
+			do {
+				next = neighbours[random.nextInt(count)];
+			} while (next == previous);
+			tiles[blank] = tiles[next];
+			tiles[next] = 0;
+			previous = blank;
+			blank = next;
+		}
+		return new PuzzleInstance(id, rows, cols, tiles);
+	}
+
+	/**
+     * A board is solvable if the parity of its permutation matches the parity of the distance of the empty tile from
+     * its solved cell, as every move swaps the empty tile with a neighbour
+     *
+     * @param tiles
+     * 			Tile in each cell in row major order
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @return true if the solved board can be reached
+     */
+	public static boolean isSolvable(int[] tiles, int cols) {
+		int swaps = 0;
+		int[] permutation = tiles.clone();
+		int blank = 0;
+		for (int i=0; i < permutation.length; i++) {
+			if (tiles[i] == 0) {
+				blank = i;
+			}
+			while (permutation[i] != i) {
+				int tile = permutation[i];
+				permutation[i] = permutation[tile];
+				permutation[tile] = tile;
+				swaps++;
+			}
+		}
+		return swaps % 2 == (blank / cols + blank % cols) % 2;
+	}
+
+	/**
+     * Replay a solution on a PuzzleModel set to this board, checking every move is a legal single tile slide
+     *
+     * @param moves
+     * 			Cell the empty tile moves to in each move, i.e. the origin of each move
+     * @return true if every move is legal and the model ends up solved
+     */
+	public boolean verify(int[] moves) {
+		PuzzleModel model = new PuzzleModel(mRows, mCols, new PuzzlePosition(0, 0));
+		model.setPuzzlePositions(toPuzzlePositions());
+		for (int move : moves) {
+			PuzzlePosition empty = model.getEmptyPosition();
+			int row = move / mCols;
+			int col = move % mCols;
+			if (move < 0 || move >= mTiles.length || Math.abs(row - empty.getRow()) + Math.abs(col - empty.getCol()) != 1) {
+				return false;
+			}
+			model.move(new PuzzlePosition(row, col));
+		}
+		int[][] puzzlePositions = model.getPuzzlePositions();
+		for (int i=0; i < mTiles.length; i++) {
+			if (puzzlePositions[i / mCols][i % mCols] != i) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+     * @return int[][] tile in each cell, as PuzzleModel stores them
+     */
+	public int[][] toPuzzlePositions() {
+		int[][] puzzlePositions = new int[mRows][mCols];
+		for (int i=0; i < mTiles.length; i++) {
+			puzzlePositions[i / mCols][i % mCols] = mTiles[i];
+		}
+		return puzzlePositions;
+	}
+
+	public String getId() {
+		return mId;
+	}
+
+	public int getRows() {
+		return mRows;
+	}
+
+	public int getCols() {
+		return mCols;
+	}
+
+	/**
+     * @return int[] copy of the tile in each cell in row major order
+     */
+	public int[] getTiles() {
+		return mTiles.clone();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(mId);
+		for (int tile : mTiles) {
+			sb.append(' ').append(tile);
+		}
+		return sb.toString();
+	}
+}
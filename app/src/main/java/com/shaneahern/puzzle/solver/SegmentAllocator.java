@@ -0,0 +1,91 @@
+package com.shaneahern.puzzle.solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Hands out fixed size off heap segments, direct buffers until a memory cap is reached and then buffers mapped from
+ * temporary files, whose pages the kernel writes out to disk and reads back as it needs. Each spill file is deleted
+ * as soon as it is mapped, the mapping keeps it alive until the buffer is collected, so nothing is left on disk if
+ * the process dies.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+class SegmentAllocator {
+
+	private final long mMemoryCap;
+	private final File mSpillDir;
+	private long mDirectBytes;
+	private long mMappedBytes;
+	// direct and mapped buffers share a class, so mapped ones are remembered
+	private final Set<ByteBuffer> mMapped = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+
+	/**
+     * @param memoryCapBytes
+     * 			Most bytes to allocate in direct buffers
+     * @param spillDir
+     * 			Directory for spill files, or null to fail once the cap is reached
+     */
+	SegmentAllocator(long memoryCapBytes, File spillDir) {
+		mMemoryCap = memoryCapBytes;
+		mSpillDir = spillDir;
+	}
+
+	/**
+     * Allocate a zeroed segment in native byte order
+     *
+     * @throws IllegalStateException if the cap is reached and there is no spill directory, or spilling fails
+     */
+	ByteBuffer allocate(int bytes) {
+		if (mDirectBytes + bytes <= mMemoryCap) {
+			mDirectBytes += bytes;
+			return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+		}
+		if (mSpillDir == null) {
+			throw new IllegalStateException("Memory cap of " + mMemoryCap + " bytes reached");
+		}
+		try {
+			File file = File.createTempFile("nodes", ".seg", mSpillDir);
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(bytes);
+				ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes).order(ByteOrder.nativeOrder());
+				mMappedBytes += bytes;
+				mMapped.add(buffer);
+				return buffer;
+			} finally {
+				raf.close();
+				file.delete();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot spill to " + mSpillDir, e);
+		}
+	}
+
+	/**
+     * Return a segment to the budget, its memory is freed when the buffer is collected
+     *
+     */
+	void free(ByteBuffer buffer) {
+		if (mMapped.remove(buffer)) {
+			mMappedBytes -= buffer.capacity();
+		} else {
+			mDirectBytes -= buffer.capacity();
+		}
+	}
+
+	long getDirectBytes() {
+		return mDirectBytes;
+	}
+
+	long getMappedBytes() {
+		return mMappedBytes;
+	}
+}
@@ -0,0 +1,63 @@
+package com.shaneahern.puzzle.solver;
+
+/**
+ * Result of solving a puzzle instance, with the search statistics reported by benchmarks
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class Solution {
+
+	private final int[] mMoves;
+	private final long mNodes;
+	private final long mElapsedNanos;
+
+	/**
+     * @param moves
+     * 			Cell the empty tile moves to in each move, or null if the search gave up
+     * @param nodes
+     * 			Number of nodes expanded
+     * @param elapsedNanos
+     * 			Time spent searching
+     */
+	Solution(int[] moves, long nodes, long elapsedNanos) {
+		mMoves = moves;
+		mNodes = nodes;
+		mElapsedNanos = elapsedNanos;
+	}
+
+	/**
+     * @return true if a solution was found before the search gave up
+     */
+	public boolean isSolved() {
+		return mMoves != null;
+	}
+
+	/**
+     * @return int[] cell the empty tile moves to in each move, i.e. the origin of each move, or null if not solved
+     */
+	public int[] getMoves() {
+		return mMoves;
+	}
+
+	/**
+     * @return int number of moves, or -1 if not solved
+     */
+	public int getLength() {
+		return mMoves != null ? mMoves.length : -1;
+	}
+
+	public long getNodes() {
+		return mNodes;
+	}
+
+	public long getElapsedNanos() {
+		return mElapsedNanos;
+	}
+
+	/**
+     * @return double nodes expanded per second
+     */
+	public double getNodesPerSecond() {
+		return mElapsedNanos > 0 ? mNodes * 1e9 / mElapsedNanos : 0;
+	}
+}
@@ -0,0 +1,242 @@
+package com.shaneahern.puzzle.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Walking distance. Looking only at rows, a board is the number of tiles in each row that belong in each row, plus
+ * the row of the empty tile, and a vertical move takes a tile from a row next to the empty tile into the row of the
+ * empty tile. The least number of vertical moves that solves this relaxed board is an exact count over far fewer
+ * states than the real puzzle, and is found for all of them at once by a breadth first search from the solved
+ * state. Vertical and horizontal moves are counted apart, so the distances of the rows and of the columns add up to
+ * an estimate that never overestimates and accounts for tiles in each other's way, unlike the Manhattan distance.
+ *
+ * The search also records, for each state, the state each move leads to, so a move is a single table lookup in
+ * the direction it is made in and the other direction does not change. Tables are built once per board size and
+ * shared. A state is packed in a long, which limits the heuristic to boards up to 4x4, and found through a
+ * LongIntHashMap. The saved state of a board is the index of its rows state and of its columns state, so restoring
+ * a board needs no lookup at all.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class WalkingDistanceHeuristic implements Heuristic {
+
+	/**
+     * Distances of every state of lines of tiles, and the transitions between them. Lines are rows for vertical
+     * moves, and columns for horizontal moves.
+     */
+	static class Table {
+		final int mLines;
+		final int mBits;
+		// state reached by moving the empty tile to line - 1 (direction 0) or line + 1 (direction 1) with a tile
+		// that belongs in line g, at [(state * 2 + direction) * lines + g], -1 if there is no such tile
+		final int[] mNext;
+		final byte[] mDistance;
+		final LongIntHashMap mIndex;
+		// bits of a state index
+		final int mIndexBits;
+
+		/**
+         * @param lines
+         * 			Number of lines
+         * @param length
+         * 			Number of cells in each line
+         */
+		Table(int lines, int length) {
+			mLines = lines;
+			mBits = 32 - Integer.numberOfLeadingZeros(length);
+			if (lines * lines * mBits + 32 - Integer.numberOfLeadingZeros(lines) > 63) {
+				throw new IllegalArgumentException("Walking distance is only supported for boards up to 4x4");
+			}
+			int[] counts = new int[lines * lines];
+			for (int line=0; line < lines; line++) {
+				counts[line * lines + line] = length;
+			}
+			// the empty tile belongs in the first line
+			counts[0]--;
+
+			mIndex = new LongIntHashMap(1024, -1);
+			List<Long> states = new ArrayList<Long>();
+			List<Integer> distances = new ArrayList<Integer>();
+			List<int[]> next = new ArrayList<int[]>();
+			long goal = encode(counts, 0);
+			mIndex.put(goal, 0);
+			states.add(goal);
+			distances.add(0);
+			for (int i=0; i < states.size(); i++) {
+				long state = states.get(i);
+				int blank = decode(state, counts);
+				int[] transitions = new int[2 * lines];
+				for (int direction=0; direction < 2; direction++) {
+					int line = direction == 0 ? blank - 1 : blank + 1;
+					for (int g=0; g < lines; g++) {
+						transitions[direction * lines + g] = -1;
+						if (line < 0 || line >= lines || counts[line * lines + g] == 0) {
+							continue;
+						}
+						counts[line * lines + g]--;
+						counts[blank * lines + g]++;
+						long nextState = encode(counts, line);
+						counts[line * lines + g]++;
+						counts[blank * lines + g]--;
+						int index = mIndex.get(nextState);
+						if (index < 0) {
+							index = states.size();
+							mIndex.put(nextState, index);
+							states.add(nextState);
+							distances.add(distances.get(i) + 1);
+						}
+						transitions[direction * lines + g] = index;
+					}
+				}
+				next.add(transitions);
+			}
+			mNext = new int[states.size() * 2 * lines];
+			mDistance = new byte[states.size()];
+			for (int i=0; i < states.size(); i++) {
+				System.arraycopy(next.get(i), 0, mNext, i * 2 * lines, 2 * lines);
+				mDistance[i] = (byte)(int)distances.get(i);
+			}
+			mIndexBits = 32 - Integer.numberOfLeadingZeros(states.size() - 1);
+		}
+
+		long encode(int[] counts, int blank) {
+			long state = blank;
+			for (int count : counts) {
+				state = (state << mBits) | count;
+			}
+			return state;
+		}
+
+		/**
+         * @return int line of the empty tile, counts are set from the state
+         */
+		int decode(long state, int[] counts) {
+			for (int i=counts.length - 1; i >= 0; i--) {
+				counts[i] = (int)(state & ((1 << mBits) - 1));
+				state >>>= mBits;
+			}
+			return (int)state;
+		}
+
+		int next(int state, int direction, int goalLine) {
+			return mNext[(state * 2 + direction) * mLines + goalLine];
+		}
+	}
+
+	private static final Map<String, Table> sTables = new HashMap<String, Table>();
+
+	private final int mRows;
+	private final int mCols;
+	private final Table mRowTable;
+	private final Table mColTable;
+	private int mRowState;
+	private int mColState;
+	// scratch counts for init()
+	private final int[] mRowCounts;
+	private final int[] mColCounts;
+
+	/**
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @throws IllegalArgumentException if the board is larger than 4x4
+     */
+	public WalkingDistanceHeuristic(int rows, int cols) {
+		mRows = rows;
+		mCols = cols;
+		mRowTable = getTable(rows, cols);
+		mColTable = getTable(cols, rows);
+		mRowCounts = new int[rows * rows];
+		mColCounts = new int[cols * cols];
+	}
+
+	private static Table getTable(int lines, int length) {
+		synchronized (sTables) {
+			String key = lines + "x" + length;
+			Table table = sTables.get(key);
+			if (table == null) {
+				table = new Table(lines, length);
+				sTables.put(key, table);
+			}
+			return table;
+		}
+	}
+
+	/**
+     * @return int number of states of the rows plus the columns, i.e. the size of the tables
+     */
+	public int getTableSize() {
+		return mRowTable.mDistance.length + mColTable.mDistance.length;
+	}
+
+	public int init(int[] tiles) {
+		int[] rowCounts = mRowCounts;
+		int[] colCounts = mColCounts;
+		Arrays.fill(rowCounts, 0);
+		Arrays.fill(colCounts, 0);
+		int blank = 0;
+		for (int cell=0; cell < tiles.length; cell++) {
+			int tile = tiles[cell];
+			if (tile == 0) {
+				blank = cell;
+			} else {
+				rowCounts[(cell / mCols) * mRows + tile / mCols]++;
+				colCounts[(cell % mCols) * mCols + tile % mCols]++;
+			}
+		}
+		mRowState = mRowTable.mIndex.get(mRowTable.encode(rowCounts, blank / mCols));
+		mColState = mColTable.mIndex.get(mColTable.encode(colCounts, blank % mCols));
+		return getValue();
+	}
+
+	public int getStateBits() {
+		return mRowTable.mIndexBits + mColTable.mIndexBits;
+	}
+
+	public int save() {
+		return (mColState << mRowTable.mIndexBits) | mRowState;
+	}
+
+	public int restore(int[] tiles, int state) {
+		mRowState = state & ((1 << mRowTable.mIndexBits) - 1);
+		mColState = state >>> mRowTable.mIndexBits;
+		return getValue();
+	}
+
+	public int applyMove(int tile, int from, int to) {
+		move(tile, from, to);
+		return getValue();
+	}
+
+	public int undoMove(int tile, int from, int to) {
+		move(tile, to, from);
+		return getValue();
+	}
+
+	/**
+     * The empty tile moves from cell to to cell from, swapping lines with the tile in the direction it moves in
+     *
+     */
+	private void move(int tile, int from, int to) {
+		int fromRow = from / mCols;
+		int toRow = to / mCols;
+		if (fromRow != toRow) {
+			mRowState = mRowTable.next(mRowState, fromRow < toRow ? 0 : 1, tile / mCols);
+		} else {
+			mColState = mColTable.next(mColState, from % mCols < to % mCols ? 0 : 1, tile % mCols);
+		}
+	}
+
+	public int getValue() {
+		return mRowTable.mDistance[mRowState] + mColTable.mDistance[mColState];
+	}
+
+	public String getName() {
+		return "walking_distance";
+	}
+}
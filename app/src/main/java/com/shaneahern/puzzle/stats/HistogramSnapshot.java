@@ -0,0 +1,78 @@
+package com.shaneahern.puzzle.stats;
+
+/**
+ * Immutable copy of the bucket counts of a StripedHistogram at a point in time. Percentiles are resolved to the
+ * upper bound of the bucket that holds the requested rank, clamped to the largest recorded value.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class HistogramSnapshot {
+
+	private final String mName;
+	private final long[] mCounts;
+	private final long mCount;
+	private final long mSum;
+	private final long mMin;
+	private final long mMax;
+	
+	HistogramSnapshot(String name, long[] counts, long count, long sum, long min, long max) {
+		mName = name;
+		mCounts = counts;
+		mCount = count;
+		mSum = sum;
+		mMin = count == 0 ? 0 : min;
+		mMax = count == 0 ? 0 : max;
+	}
+	
+	/**
+     * Get the value at or below which the specified percentage of recorded values fall
+     *
+     * @param percentile
+     * 			Percentile between 0 and 100, e.g. 50 for the median or 99 for the 99th percentile
+     * @return long value at the percentile, or 0 if no values were recorded
+     */
+	public long getPercentile(double percentile) {
+		if (mCount == 0) {
+			return 0;
+		}
+		percentile = Math.max(0, Math.min(100, percentile));
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100.0 * mCount));
+		long seen = 0;
+		for (int i=0; i < mCounts.length; i++) {
+			seen += mCounts[i];
+			if (seen >= rank) {
+				return Math.max(mMin, Math.min(mMax, StripedHistogram.bucketUpperBound(i)));
+			}
+		}
+		return mMax;
+	}
+	
+	public String getName() {
+		return mName;
+	}
+	
+	public long getCount() {
+		return mCount;
+	}
+	
+	public long getSum() {
+		return mSum;
+	}
+	
+	public long getMin() {
+		return mMin;
+	}
+	
+	public long getMax() {
+		return mMax;
+	}
+	
+	public double getMean() {
+		return mCount == 0 ? 0 : (double)mSum / mCount;
+	}
+	
+	@Override
+	public String toString() {
+		return mName + " count=" + mCount + " min=" + mMin + " p50=" + getPercentile(50) + " p99=" + getPercentile(99) + " max=" + mMax;
+	}
+}
@@ -0,0 +1,79 @@
+package com.shaneahern.puzzle.stats;
+
+/**
+ * Aggregate statistics for solved puzzles. Each solved game records its moves to solve, time to solve, board size
+ * and scramble difficulty into lock-free histograms, so any number of sessions can record concurrently and
+ * percentile snapshots can be taken at any time without pausing them.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class SolveStats {
+
+	private static final SolveStats sInstance = new SolveStats();
+	
+	private final StripedHistogram mMovesToSolve = new StripedHistogram("moves_to_solve");
+	private final StripedHistogram mTimeToSolveMs = new StripedHistogram("time_to_solve_ms");
+	private final StripedHistogram mBoardSize = new StripedHistogram("board_size");
+	private final StripedHistogram mScrambleMoves = new StripedHistogram("scramble_moves");
+	
+	/**
+     * @return SolveStats shared process wide instance
+     */
+	public static SolveStats getInstance() {
+		return sInstance;
+	}
+	
+	/**
+     * Record a solved game
+     *
+     * @param moves
+     * 			Number of player moves taken to solve the puzzle
+     * @param timeMs
+     * 			Time in ms from the start of the game until the puzzle was solved
+     * @param rows
+     * 			Number of rows in the puzzle
+     * @param cols
+     * 			Number of columns in the puzzle
+     * @param scrambleMoves
+     * 			Number of moves used to scramble the puzzle before the game started
+     */
+	public void recordSolve(int moves, long timeMs, int rows, int cols, int scrambleMoves) {
+		mMovesToSolve.record(moves);
+		mTimeToSolveMs.record(timeMs);
+		mBoardSize.record(rows * cols);
+		mScrambleMoves.record(scrambleMoves);
+	}
+	
+	/**
+     * @return Snapshot of all solve statistics recorded so far
+     */
+	public Snapshot snapshot() {
+		return new Snapshot(mMovesToSolve.snapshot(), mTimeToSolveMs.snapshot(), mBoardSize.snapshot(), mScrambleMoves.snapshot());
+	}
+	
+	/**
+     * Point in time view of the solve statistics
+     */
+	public static class Snapshot {
+		public final HistogramSnapshot movesToSolve;
+		public final HistogramSnapshot timeToSolveMs;
+		public final HistogramSnapshot boardSize;
+		public final HistogramSnapshot scrambleMoves;
+		
+		Snapshot(HistogramSnapshot movesToSolve, HistogramSnapshot timeToSolveMs, HistogramSnapshot boardSize, HistogramSnapshot scrambleMoves) {
+			this.movesToSolve = movesToSolve;
+			this.timeToSolveMs = timeToSolveMs;
+			this.boardSize = boardSize;
+			this.scrambleMoves = scrambleMoves;
+		}
+		
+		public long getSolvedCount() {
+			return movesToSolve.getCount();
+		}
+		
+		@Override
+		public String toString() {
+			return movesToSolve + "\n" + timeToSolveMs + "\n" + boardSize + "\n" + scrambleMoves;
+		}
+	}
+}
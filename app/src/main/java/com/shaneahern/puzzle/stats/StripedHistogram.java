@@ -0,0 +1,165 @@
+package com.shaneahern.puzzle.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values. Values are counted in log-linear buckets (each power of two
+ * is split into SUB_BUCKETS equal buckets, giving a relative error of roughly 3%), and every bucket count is
+ * striped across several AtomicLongArrays so that concurrent writers on different threads rarely touch the same
+ * counter. Snapshots sum the stripes without blocking writers, so a snapshot taken while values are being
+ * recorded may miss the values recorded during the snapshot, but never sees a torn count.
+ *
+ * @author  Shane Ahern (shane@shaneahern.com)
+ */
+public class StripedHistogram {
+
+	// 32 buckets per power of two
+	static final int SUB_BUCKET_BITS = 5;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// values up to 2^MAX_VALUE_BITS - 1 are counted exactly, larger values are clamped into the last bucket
+	static final int MAX_VALUE_BITS = 44;
+	static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	
+	private static final int MAX_STRIPES = 8;
+	
+	private final String mName;
+	private final AtomicLongArray[] mBucketStripes;
+	private final AtomicLongArray mCountStripes;
+	private final AtomicLongArray mSumStripes;
+	private final AtomicLong mMin = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong mMax = new AtomicLong(Long.MIN_VALUE);
+	private final int mStripeMask;
+	
+	public StripedHistogram(String name) {
+		mName = name;
+		int stripes = 1;
+		int processors = Runtime.getRuntime().availableProcessors();
+		while (stripes < processors && stripes < MAX_STRIPES) {
+			stripes <<= 1;
+		}
+		mStripeMask = stripes - 1;
+		mBucketStripes = new AtomicLongArray[stripes];
+		for (int i=0; i < stripes; i++) {
+			mBucketStripes[i] = new AtomicLongArray(BUCKET_COUNT);
+		}
+		// count and sum stripes are spaced 8 longs (one cache line) apart to avoid false sharing between stripes
+		mCountStripes = new AtomicLongArray(stripes * 8);
+		mSumStripes = new AtomicLongArray(stripes * 8);
+	}
+	
+	/**
+     * @return String name of the histogram
+     */
+	public String getName() {
+		return mName;
+	}
+	
+	/**
+     * Record a single value. Negative values are recorded as 0.
+     *
+     * @param value
+     * 			Value to record
+     */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		int stripe = (int)Thread.currentThread().getId() & mStripeMask;
+		mBucketStripes[stripe].incrementAndGet(bucketIndex(value));
+		mCountStripes.incrementAndGet(stripe * 8);
+		mSumStripes.addAndGet(stripe * 8, value);
+		
+		long min = mMin.get();
+		while (value < min && !mMin.compareAndSet(min, value)) {
+			min = mMin.get();
+		}
+		long max = mMax.get();
+		while (value > max && !mMax.compareAndSet(max, value)) {
+			max = mMax.get();
+		}
+	}
+	
+	/**
+     * Take a point in time copy of the histogram. Writers are not blocked while the snapshot is taken.
+     *
+     * @return HistogramSnapshot holding the summed bucket counts of all stripes
+     */
+	public HistogramSnapshot snapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		for (AtomicLongArray stripe : mBucketStripes) {
+			for (int i=0; i < BUCKET_COUNT; i++) {
+				counts[i] += stripe.get(i);
+			}
+		}
+		long sum = 0;
+		for (int i=0; i <= mStripeMask; i++) {
+			sum += mSumStripes.get(i * 8);
+		}
+		// derive count from buckets so that percentiles are always consistent with the total
+		long count = 0;
+		for (long c : counts) {
+			count += c;
+		}
+		return new HistogramSnapshot(mName, counts, count, sum, mMin.get(), mMax.get());
+	}
+	
+	/**
+     * @return long number of values recorded so far
+     */
+	public long getCount() {
+		long count = 0;
+		for (int i=0; i <= mStripeMask; i++) {
+			count += mCountStripes.get(i * 8);
+		}
+		return count;
+	}
+	
+	/**
+     * Map a value to its log-linear bucket. Values below SUB_BUCKETS get one bucket each, larger values
+     * share a bucket with the other values that have the same top SUB_BUCKET_BITS + 1 significant bits.
+     *
+     * @param value
+     * 			Non-negative value
+     * @return int index of the bucket holding the value
+     */
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_VALUE_BITS) {
+			return BUCKET_COUNT - 1;
+		}
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int)(value >>> shift) - SUB_BUCKETS;
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	/**
+     * @param index
+     * 			Bucket index
+     * @return long smallest value that maps to the bucket
+     */
+	static long bucketLowerBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+		return subBucket << shift;
+	}
+	
+	/**
+     * @param index
+     * 			Bucket index
+     * @return long largest value that maps to the bucket
+     */
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		return bucketLowerBound(index) + (1L << shift) - 1;
+	}
+}